@@ -91,3 +91,39 @@ tasks.named("build") {
 tasks.test {
     useJUnitPlatform()
 }
+
+// Headless soak test of the simulation core, e.g. ./gradlew soak --args="--levels 5000 --bot path"
+tasks.register<JavaExec>("soak") {
+    group = "verification"
+    description = "Plays generated levels with bots on all cores and reports throughput, allocation and rule violations"
+    classpath = sourceSets["main"].runtimeClasspath
+    mainClass.set("com.kayar.yetanotherlabyrinth.SoakRunner")
+}
+
+// Deterministic playback benchmark, e.g. ./gradlew replayBench --args="run-3.lrp --runs 5"
+tasks.register<JavaExec>("replayBench") {
+    group = "verification"
+    description = "Replays an input recording headless and reports tick-time percentiles; fails if the run diverges"
+    classpath = sourceSets["main"].runtimeClasspath
+    mainClass.set("com.kayar.yetanotherlabyrinth.ReplayBench")
+}
+
+// Endless mode streaming check, e.g. ./gradlew endlessCheck --args="--ticks 500000 --seed 7"
+tasks.register<JavaExec>("endlessCheck") {
+    group = "verification"
+    description = "Checks endless-mode chunks for connectivity and determinism, then walks a bot east and reports chunk churn, tick times and memory"
+    classpath = sourceSets["main"].runtimeClasspath
+    mainClass.set("com.kayar.yetanotherlabyrinth.EndlessCheck")
+}
+
+// Allocation regression check of the per-tick simulation path; part of `check`
+val allocCheck = tasks.register<JavaExec>("allocCheck") {
+    group = "verification"
+    description = "Drives the simulation for a fixed number of ticks per level and fails if it allocates more than --max-bytes per tick"
+    classpath = sourceSets["main"].runtimeClasspath
+    mainClass.set("com.kayar.yetanotherlabyrinth.AllocationCheck")
+}
+
+tasks.named("check") {
+    dependsOn(allocCheck)
+}
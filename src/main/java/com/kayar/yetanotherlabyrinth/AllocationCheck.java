@@ -0,0 +1,84 @@
+package com.kayar.yetanotherlabyrinth;
+
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+
+/**
+ * Allocation regression check for the per-tick simulation path. Plays each level with scripted input,
+ * warms up, then drives a fixed number of {@link World#tick(double)} calls and measures the bytes
+ * allocated meanwhile by all live threads (so ForkJoinPool workers of the enemy batch count too).
+ * A final crowd level has enough enemies to take the parallel batch path.
+ * <p>
+ * Usage: {@code AllocationCheck [--ticks N] [--max-bytes N] [--seed N] [--max-level N]}.
+ * Exits with status 1 if any level allocates more than --max-bytes per tick on average.
+ */
+public final class AllocationCheck {
+
+    private static final int TILE = 64;
+    private static final double STEP = 1.0 / 120.0;
+
+    private AllocationCheck() {}
+
+    public static void main(String[] args) {
+        int ticks = 20000;
+        double maxBytes = 8;
+        long seed = 1;
+        int maxLevel = 12;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            String v = args[i + 1];
+            switch (args[i]) {
+                case "--ticks" -> ticks = Math.max(1, Integer.parseInt(v));
+                case "--max-bytes" -> maxBytes = Double.parseDouble(v);
+                case "--seed" -> seed = Long.parseLong(v);
+                case "--max-level" -> maxLevel = Math.max(1, Integer.parseInt(v));
+                default -> throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (!(bean instanceof com.sun.management.ThreadMXBean sun) || !sun.isThreadAllocatedMemorySupported()) {
+            System.out.println("Allocation check: per-thread allocation counters not supported by this JVM, skipped");
+            return;
+        }
+
+        int failures = 0;
+        for (int level = 1; level <= maxLevel + 1; level++) {
+            boolean crowd = level > maxLevel;
+            int enemies = crowd ? EnemySystem.PARALLEL_THRESHOLD * 2 : -1;
+            LevelLayout layout = LevelLayout.generate(crowd ? maxLevel : level, true, seed + level, enemies);
+            World world = new World(layout, TILE);
+            Random rnd = new Random(seed ^ level);
+
+            drive(world, rnd, ticks / 2); // warm-up: JIT, first flow field, worker threads
+            long[] ids = sun.getAllThreadIds();
+            long before = sum(sun.getThreadAllocatedBytes(ids));
+            drive(world, rnd, ticks);
+            long allocated = sum(sun.getThreadAllocatedBytes(ids)) - before;
+
+            double perTick = allocated / (double) ticks;
+            boolean ok = perTick <= maxBytes;
+            if (!ok) failures++;
+            System.out.println((crowd ? "Crowd level " + layout.level + " (" + layout.enemyCount + " enemies)" : "Level " + level)
+                    + ": " + String.format("%.2f", perTick) + " bytes/tick" + (ok ? "" : "  FAIL (limit " + maxBytes + ")"));
+        }
+        System.out.println("Allocation check: " + (failures == 0 ? "passed" : failures + " level(s) over the limit"));
+        if (failures > 0) System.exit(1);
+    }
+
+    // Scripted noise as in the soak test; Random and World don't allocate per call
+    private static void drive(World world, Random rnd, int ticks) {
+        for (int t = 0; t < ticks; t++) {
+            if (rnd.nextInt(60) == 0) world.setInput(rnd.nextInt(1 << 6));
+            if (rnd.nextInt(30) == 0) world.addYaw(rnd.nextGaussian() * 45);
+            if (rnd.nextInt(240) == 0) world.jump();
+            world.tick(STEP);
+        }
+    }
+
+    private static long sum(long[] values) {
+        long s = 0;
+        for (long v : values) {
+            if (v > 0) s += v; // -1 for threads that died meanwhile
+        }
+        return s;
+    }
+}
@@ -0,0 +1,245 @@
+package com.kayar.yetanotherlabyrinth;
+
+/**
+ * Unbounded maze for endless mode, made of {@link #CHUNK}-cell square chunks that are generated on demand.
+ * <p>
+ * A chunk is a generator maze of CHUNK + 1 cells with the last row and column dropped, so its first row
+ * and column are the wall between it and its west and north neighbours. Its seed, algorithm and the
+ * two doors it opens in each of these walls only depend on the world seed and the chunk coordinates:
+ * a chunk is the same every time it is generated, and since every chunk is connected inside and opens
+ * doors towards both neighbours, every floor cell can reach every other one.
+ * <p>
+ * Chunks live in a fixed pool of slots managed as an LRU: a missing chunk is generated into the slot
+ * of the least recently used one once the pool is full, so memory stays the same however far the player
+ * goes. Lookups go through an open-addressing table of slot indices, with the last chunk cached for the
+ * runs of queries that hit the same one.
+ */
+public final class ChunkedMaze {
+
+    public static final int CHUNK = 16;  // cells per chunk side; even, the generator grid is CHUNK + 1
+
+    private final long seed;
+    private final int capacity;
+    private final boolean[][] cells; // [slot][lz * CHUNK + lx], true = wall
+    private final int[] chunkX;
+    private final int[] chunkZ;
+    private final int[] older;       // LRU list from the newest slot to the oldest, -1 terminated
+    private final int[] newer;
+    private int newest = -1;
+    private int oldest = -1;
+    private int size;
+    private final int[] table;       // slot + 1 per bucket, 0 = empty
+    private final int tableMask;
+    private int lastSlot = -1;
+    private long generated;
+    private long evicted;
+
+    /**
+     * @param capacity chunks kept in memory; at least the chunks {@link #stream(int, int, int)} keeps around the player
+     */
+    public ChunkedMaze(long seed, int capacity) {
+        if (capacity < 1) throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        this.seed = seed;
+        this.capacity = capacity;
+        this.cells = new boolean[capacity][CHUNK * CHUNK];
+        this.chunkX = new int[capacity];
+        this.chunkZ = new int[capacity];
+        this.older = new int[capacity];
+        this.newer = new int[capacity];
+        int buckets = Integer.highestOneBit(capacity * 2 - 1) << 1;
+        this.table = new int[buckets];
+        this.tableMask = buckets - 1;
+    }
+
+    /** True for walls; any cell coordinates, negative ones included. */
+    public boolean isWall(int gx, int gz) {
+        int slot = slot(Math.floorDiv(gx, CHUNK), Math.floorDiv(gz, CHUNK));
+        return cells[slot][Math.floorMod(gz, CHUNK) * CHUNK + Math.floorMod(gx, CHUNK)];
+    }
+
+    /**
+     * True if a circle of the given radius (at most one tile) at (px, pz) touches a wall, with the same
+     * exact distances as {@link CollisionField}.
+     */
+    public boolean collidesWithWalls(double px, double pz, double radius, int tile) {
+        int gx = (int) Math.floor(px / tile);
+        int gz = (int) Math.floor(pz / tile);
+        int mask = 0;
+        for (int dz = -1; dz <= 1; dz++) {
+            for (int dx = -1; dx <= 1; dx++) {
+                if (isWall(gx + dx, gz + dz)) mask |= 1 << ((dz + 1) * 3 + (dx + 1));
+            }
+        }
+        return CollisionField.touches(mask, px - (double) gx * tile, pz - (double) gz * tile, radius, tile);
+    }
+
+    /**
+     * Makes the chunks within {@code radius} chunks of cell (gx, gz) resident and the most recently used,
+     * so they are evicted last. Returns the number of chunks generated for it.
+     */
+    public int stream(int gx, int gz, int radius) {
+        int side = 2 * radius + 1;
+        if (side * side > capacity) throw new IllegalArgumentException("Radius " + radius + " needs more than " + capacity + " chunks");
+        long before = generated;
+        int cx = Math.floorDiv(gx, CHUNK);
+        int cz = Math.floorDiv(gz, CHUNK);
+        for (int dz = -radius; dz <= radius; dz++) {
+            for (int dx = -radius; dx <= radius; dx++) {
+                slot(cx + dx, cz + dz);
+            }
+        }
+        slot(cx, cz); // the player's own chunk last: newest
+        return (int) (generated - before);
+    }
+
+    /**
+     * Makes the chunk resident and the most recently used. Returns true if it had to be generated.
+     */
+    public boolean load(int cx, int cz) {
+        long before = generated;
+        slot(cx, cz);
+        return generated != before;
+    }
+
+    public static int chunkOf(int g) {
+        return Math.floorDiv(g, CHUNK);
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /** Chunks currently in memory. */
+    public int getResident() {
+        return size;
+    }
+
+    /** Chunks generated so far, regenerations after eviction included. */
+    public long getGenerated() {
+        return generated;
+    }
+
+    public long getEvicted() {
+        return evicted;
+    }
+
+    // Slot of the chunk, generating it (and evicting the oldest one when full) if it isn't resident
+    private int slot(int cx, int cz) {
+        int last = lastSlot;
+        if (last >= 0 && chunkX[last] == cx && chunkZ[last] == cz) {
+            touch(last);
+            return last;
+        }
+        int b = bucket(cx, cz);
+        while (table[b] != 0) {
+            int s = table[b] - 1;
+            if (chunkX[s] == cx && chunkZ[s] == cz) {
+                touch(s);
+                lastSlot = s;
+                return s;
+            }
+            b = (b + 1) & tableMask;
+        }
+        int s;
+        if (size < capacity) {
+            s = size++;
+        } else {
+            s = oldest;
+            unlink(s);
+            removeFromTable(s);
+            evicted++;
+            b = bucket(cx, cz); // the removal may have shifted the probe sequence
+            while (table[b] != 0) b = (b + 1) & tableMask;
+        }
+        chunkX[s] = cx;
+        chunkZ[s] = cz;
+        table[b] = s + 1;
+        generate(cells[s], cx, cz);
+        generated++;
+        linkNewest(s);
+        lastSlot = s;
+        return s;
+    }
+
+    private void generate(boolean[] out, int cx, int cz) {
+        long s = chunkSeed(cx, cz, 0);
+        MazeGenerator.Algorithm alg = LevelLayout.ALGORITHM_ORDER[(int) Math.floorMod(s, (long) LevelLayout.ALGORITHM_ORDER.length)];
+        boolean[][] maze = MazeGenerator.generate(CHUNK + 1, CHUNK + 1, s == 0 ? 1 : s, alg);
+        for (int lz = 0; lz < CHUNK; lz++) {
+            for (int lx = 0; lx < CHUNK; lx++) {
+                out[lz * CHUNK + lx] = maze[lx][lz];
+            }
+        }
+        // doors at odd positions, where the generator's passages meet the chunk wall on both sides
+        openDoors(out, chunkSeed(cx, cz, 1), CHUNK);  // west wall: cells (0, odd)
+        openDoors(out, chunkSeed(cx, cz, 2), 1);      // north wall: cells (odd, 0)
+    }
+
+    // Two distinct doors among the CHUNK / 2 odd positions
+    private static void openDoors(boolean[] out, long r, int stride) {
+        int positions = CHUNK / 2;
+        int first = (int) Math.floorMod(r, (long) positions);
+        int second = (first + 1 + (int) Math.floorMod(r >>> 32, (long) (positions - 1))) % positions;
+        out[(2 * first + 1) * stride] = false;
+        out[(2 * second + 1) * stride] = false;
+    }
+
+    private long chunkSeed(int cx, int cz, int salt) {
+        return mix(seed + mix(((long) cx << 32) ^ (cz & 0xFFFFFFFFL)) + salt);
+    }
+
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    private int bucket(int cx, int cz) {
+        return (int) mix(((long) cx << 32) ^ (cz & 0xFFFFFFFFL)) & tableMask;
+    }
+
+    // Linear probing removal: shift later entries of the run back so lookups never stop early
+    private void removeFromTable(int s) {
+        int i = bucket(chunkX[s], chunkZ[s]);
+        while (table[i] != s + 1) i = (i + 1) & tableMask;
+        table[i] = 0;
+        for (int j = (i + 1) & tableMask; table[j] != 0; j = (j + 1) & tableMask) {
+            int o = table[j] - 1;
+            int home = bucket(chunkX[o], chunkZ[o]);
+            // the entry may move to i unless its home lies cyclically in (i, j]
+            boolean stays = i <= j ? (home > i && home <= j) : (home > i || home <= j);
+            if (!stays) {
+                table[i] = table[j];
+                table[j] = 0;
+                i = j;
+            }
+        }
+    }
+
+    private void touch(int s) {
+        if (s == newest) return;
+        unlink(s);
+        linkNewest(s);
+    }
+
+    private void linkNewest(int s) {
+        newer[s] = -1;
+        older[s] = newest;
+        if (newest >= 0) newer[newest] = s;
+        newest = s;
+        if (oldest < 0) oldest = s;
+    }
+
+    private void unlink(int s) {
+        int n = newer[s];
+        int o = older[s];
+        if (n >= 0) older[n] = o;
+        else newest = o;
+        if (o >= 0) newer[o] = n;
+        else oldest = n;
+    }
+}
@@ -0,0 +1,150 @@
+package com.kayar.yetanotherlabyrinth;
+
+/**
+ * Per-level distance field to walls and pits, built after generation and patched cell by cell when walls move.
+ * Each cell stores which of its 3x3 neighbourhood are walls and which are pits (cells outside the grid
+ * count as walls), so the exact distance from any point to the nearest wall or pit within one tile is a
+ * single array read plus a few multiplies: the distance to an edge neighbour is the offset to that cell
+ * side, to a diagonal neighbour the distance to the shared corner.
+ * Queries are exact for radii up to one tile, which covers the player and enemies.
+ * Shared by the first-person {@link World}, the 2D {@link PlayerControl} and any other agents.
+ */
+public final class CollisionField {
+
+    // Neighbourhood bit for offset (dx, dz) in [-1, 1]: (dz + 1) * 3 + (dx + 1); PIT_SHIFT moves it to the pit half
+    private static final int CENTER = 1 << 4;
+    private static final int PIT_SHIFT = 9;
+    private static final int WALL_MASK = (1 << PIT_SHIFT) - 1;
+
+    private final int w;
+    private final int h;
+    private final int tile;
+    private final int[] masks; // [gz * w + gx]
+
+    public CollisionField(boolean[][] maze, boolean[][] pits, int tile) {
+        this.w = maze.length;
+        this.h = maze[0].length;
+        this.tile = tile;
+        this.masks = new int[w * h];
+        for (int gz = 0; gz < h; gz++) {
+            for (int gx = 0; gx < w; gx++) {
+                masks[gz * w + gx] = buildMask(maze, pits, gx, gz);
+            }
+        }
+    }
+
+    private int buildMask(boolean[][] maze, boolean[][] pits, int gx, int gz) {
+        int mask = 0;
+        for (int dz = -1; dz <= 1; dz++) {
+            for (int dx = -1; dx <= 1; dx++) {
+                int bit = 1 << ((dz + 1) * 3 + (dx + 1));
+                int nx = gx + dx;
+                int nz = gz + dz;
+                if (nx < 0 || nz < 0 || nx >= w || nz >= h) {
+                    mask |= bit; // treat outside as walls
+                } else {
+                    if (maze[nx][nz]) mask |= bit;
+                    if (pits != null && pits[nx][nz] && !maze[nx][nz]) mask |= bit << PIT_SHIFT;
+                }
+            }
+        }
+        return mask;
+    }
+
+    /**
+     * Call after cell (gx, gz) of the grids changed: refreshes the masks of the 3x3 cells that see it.
+     */
+    public void cellChanged(boolean[][] maze, boolean[][] pits, int gx, int gz) {
+        for (int nz = Math.max(0, gz - 1); nz <= Math.min(h - 1, gz + 1); nz++) {
+            for (int nx = Math.max(0, gx - 1); nx <= Math.min(w - 1, gx + 1); nx++) {
+                masks[nz * w + nx] = buildMask(maze, pits, nx, nz);
+            }
+        }
+    }
+
+    /**
+     * True if a circle of the given radius (at most one tile) at (px, pz) touches a wall or leaves the grid.
+     */
+    public boolean collidesWithWalls(double px, double pz, double radius) {
+        int gx = (int) Math.floor(px / tile);
+        int gz = (int) Math.floor(pz / tile);
+        if (gx < 0 || gz < 0 || gx >= w || gz >= h) return true;
+        int mask = masks[gz * w + gx] & WALL_MASK;
+        if ((mask & CENTER) != 0) return true;
+        return mask != 0 && minDistSq(mask, px - gx * tile, pz - gz * tile, tile) <= radius * radius;
+    }
+
+    /**
+     * True if a circle of the given radius (at most one tile) at (px, pz) overlaps a pit cell.
+     */
+    public boolean overlapsPit(double px, double pz, double radius) {
+        int gx = (int) Math.floor(px / tile);
+        int gz = (int) Math.floor(pz / tile);
+        if (gx < 0 || gz < 0 || gx >= w || gz >= h) return false; // ignore outside
+        int mask = masks[gz * w + gx] >>> PIT_SHIFT;
+        if ((mask & CENTER) != 0) return true;
+        return mask != 0 && minDistSq(mask, px - gx * tile, pz - gz * tile, tile) <= radius * radius;
+    }
+
+    /**
+     * Signed distance from (px, pz) to the nearest wall: negative inside a wall or outside the grid,
+     * capped at one tile when no wall is adjacent to the point's cell.
+     */
+    public double wallDistance(double px, double pz) {
+        int gx = (int) Math.floor(px / tile);
+        int gz = (int) Math.floor(pz / tile);
+        if (gx < 0 || gz < 0 || gx >= w || gz >= h) return -1;
+        double fx = px - gx * tile;
+        double fz = pz - gz * tile;
+        int mask = masks[gz * w + gx] & WALL_MASK;
+        if ((mask & CENTER) != 0) {
+            // inside a wall cell: distance to its nearest side, negated
+            return -Math.min(Math.min(fx, tile - fx), Math.min(fz, tile - fz));
+        }
+        return mask == 0 ? tile : Math.min(tile, Math.sqrt(minDistSq(mask, fx, fz, tile)));
+    }
+
+    public boolean isWall(int gx, int gz) {
+        if (gx < 0 || gz < 0 || gx >= w || gz >= h) return true;
+        return (masks[gz * w + gx] & CENTER) != 0;
+    }
+
+    public boolean isPit(int gx, int gz) {
+        if (gx < 0 || gz < 0 || gx >= w || gz >= h) return false;
+        return ((masks[gz * w + gx] >>> PIT_SHIFT) & CENTER) != 0;
+    }
+
+    /**
+     * True if a circle (radius at most one tile) at local point (fx, fz) of a cell touches a neighbour
+     * flagged in the 3x3 mask (bit (dz + 1) * 3 + (dx + 1)); for grids that aren't one array, like
+     * {@link ChunkedMaze}.
+     */
+    static boolean touches(int mask, double fx, double fz, double radius, int tile) {
+        if ((mask & CENTER) != 0) return true;
+        return mask != 0 && minDistSq(mask, fx, fz, tile) <= radius * radius;
+    }
+
+    // Squared distance from local point (fx, fz) in [0, tile) to the nearest neighbour flagged in mask
+    private static double minDistSq(int mask, double fx, double fz, int tile) {
+        double l = fx;
+        double r = tile - fx;
+        double u = fz;
+        double d = tile - fz;
+        double best = Double.MAX_VALUE;
+        // edge neighbours: distance to the shared side
+        if ((mask & (1 << 3)) != 0) best = Math.min(best, l * l);
+        if ((mask & (1 << 5)) != 0) best = Math.min(best, r * r);
+        if ((mask & (1 << 1)) != 0) best = Math.min(best, u * u);
+        if ((mask & (1 << 7)) != 0) best = Math.min(best, d * d);
+        // diagonal neighbours: distance to the shared corner
+        if ((mask & 1) != 0) best = Math.min(best, l * l + u * u);
+        if ((mask & (1 << 2)) != 0) best = Math.min(best, r * r + u * u);
+        if ((mask & (1 << 6)) != 0) best = Math.min(best, l * l + d * d);
+        if ((mask & (1 << 8)) != 0) best = Math.min(best, r * r + d * d);
+        return best;
+    }
+
+    public int getTile() {
+        return tile;
+    }
+}
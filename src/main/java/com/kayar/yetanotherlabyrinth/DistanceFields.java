@@ -0,0 +1,393 @@
+package com.kayar.yetanotherlabyrinth;
+
+import java.io.Serial;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Breadth-first distance fields of one maze, in cells: from the spawn, from the exit and from the
+ * solution path (the cells on a shortest spawn-to-exit route). Only walls block; pits count as floor,
+ * since the player can jump them. Placement rules read these instead of searching, and
+ * {@link #step(int[], int, int, int, int)} turns any field into a one-lookup compass hint.
+ * <p>
+ * Small grids run a plain queue BFS. From {@link #PARALLEL_CELLS} cells on, each BFS level's frontier is
+ * split into ranges on the common ForkJoinPool; cells are claimed with a compare-and-set on the distance
+ * array, so the distances are the same as the sequential ones (only the frontier order differs).
+ */
+public final class DistanceFields {
+
+    public static final int PARALLEL_CELLS = 1 << 18; // grids from this size use the parallel BFS
+    private static final int SPLIT_SIZE = 2048;       // frontier cells per parallel task
+    private static final int[] DX = {1, -1, 0, 0};
+    private static final int[] DZ = {0, 0, 1, -1};
+    private static final VarHandle CELL = MethodHandles.arrayElementVarHandle(int[].class);
+
+    private final int w;
+    private final int h;
+    private final int[] fromSpawn;
+    private final int[] fromExit;
+    private final int[] fromPath;
+    private final int pathLength; // steps from spawn to exit, -1 when the exit is unreachable
+
+    public DistanceFields(boolean[][] maze, int spawnGX, int spawnGZ, int exitGX, int exitGZ) {
+        this.w = maze.length;
+        this.h = maze[0].length;
+        this.fromSpawn = compute(maze, new int[]{spawnGZ * w + spawnGX}, 1);
+        this.fromExit = compute(maze, new int[]{exitGZ * w + exitGX}, 1);
+        this.pathLength = fromSpawn[exitGZ * w + exitGX];
+
+        // a cell is on a shortest route iff its distances to both ends add up to the route length
+        int[] path = new int[w * h];
+        int count = 0;
+        if (pathLength >= 0) {
+            for (int c = 0; c < w * h; c++) {
+                if (fromSpawn[c] >= 0 && fromSpawn[c] + fromExit[c] == pathLength) path[count++] = c;
+            }
+        }
+        this.fromPath = compute(maze, path, count);
+    }
+
+    /**
+     * BFS distances from the given source cells (index gz * width + gx) over the maze's floor cells;
+     * -1 for walls and unreachable cells. Uses the parallel BFS on large grids.
+     */
+    public static int[] compute(boolean[][] maze, int[] sources, int count) {
+        return compute(maze, sources, count, maze.length * maze[0].length >= PARALLEL_CELLS);
+    }
+
+    static int[] compute(boolean[][] maze, int[] sources, int count, boolean parallel) {
+        int w = maze.length;
+        int h = maze[0].length;
+        boolean[] floor = new boolean[w * h];
+        for (int gx = 0; gx < w; gx++) {
+            for (int gz = 0; gz < h; gz++) {
+                floor[gz * w + gx] = !maze[gx][gz];
+            }
+        }
+        int[] dist = new int[w * h];
+        java.util.Arrays.fill(dist, -1);
+        int[] frontier = new int[w * h];
+        int size = 0;
+        for (int i = 0; i < count; i++) {
+            int c = sources[i];
+            if (c < 0 || c >= w * h) throw new IllegalArgumentException("Source cell out of range: " + c);
+            if (!floor[c] || dist[c] == 0) continue;
+            dist[c] = 0;
+            frontier[size++] = c;
+        }
+        if (parallel) {
+            expandParallel(floor, w, h, dist, frontier, size);
+        } else {
+            expand(floor, w, h, dist, frontier, size);
+        }
+        return dist;
+    }
+
+    // Plain BFS; the frontier array doubles as the queue
+    private static void expand(boolean[] floor, int w, int h, int[] dist, int[] queue, int tail) {
+        int head = 0;
+        while (head < tail) {
+            int c = queue[head++];
+            int cx = c % w;
+            int cz = c / w;
+            int nd = dist[c] + 1;
+            for (int d = 0; d < 4; d++) {
+                int nx = cx + DX[d];
+                int nz = cz + DZ[d];
+                if (nx < 0 || nz < 0 || nx >= w || nz >= h) continue;
+                int n = nz * w + nx;
+                if (!floor[n] || dist[n] >= 0) continue;
+                dist[n] = nd;
+                queue[tail++] = n;
+            }
+        }
+    }
+
+    // Level-synchronous BFS: every level's frontier is expanded by parallel ranges into the next one
+    private static void expandParallel(boolean[] floor, int w, int h, int[] dist, int[] frontier, int size) {
+        int[] next = new int[w * h];
+        AtomicInteger nextSize = new AtomicInteger();
+        int depth = 0;
+        while (size > 0) {
+            nextSize.set(0);
+            Level level = new Level(floor, w, h, dist, depth + 1, frontier, next, nextSize, 0, size);
+            if (size > SPLIT_SIZE) {
+                ForkJoinPool.commonPool().invoke(level);
+            } else {
+                level.compute(); // maze frontiers are mostly narrow: not worth a fork
+            }
+            int[] t = frontier;
+            frontier = next;
+            next = t;
+            size = nextSize.get();
+            depth++;
+        }
+    }
+
+    private static final class Level extends RecursiveAction {
+        @Serial
+        private static final long serialVersionUID = 1L;
+
+        private final boolean[] floor;
+        private final int w;
+        private final int h;
+        private final int[] dist;
+        private final int nd;
+        private final int[] frontier;
+        private final int[] next;
+        private final AtomicInteger nextSize;
+        private final int from;
+        private final int to;
+
+        Level(boolean[] floor, int w, int h, int[] dist, int nd, int[] frontier, int[] next, AtomicInteger nextSize, int from, int to) {
+            this.floor = floor;
+            this.w = w;
+            this.h = h;
+            this.dist = dist;
+            this.nd = nd;
+            this.frontier = frontier;
+            this.next = next;
+            this.nextSize = nextSize;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > SPLIT_SIZE) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new Level(floor, w, h, dist, nd, frontier, next, nextSize, from, mid),
+                        new Level(floor, w, h, dist, nd, frontier, next, nextSize, mid, to));
+                return;
+            }
+            // claim into a local buffer, then reserve one range of the next frontier for all of it
+            int[] found = new int[(to - from) * 4];
+            int count = 0;
+            for (int i = from; i < to; i++) {
+                int c = frontier[i];
+                int cx = c % w;
+                int cz = c / w;
+                for (int d = 0; d < 4; d++) {
+                    int nx = cx + DX[d];
+                    int nz = cz + DZ[d];
+                    if (nx < 0 || nz < 0 || nx >= w || nz >= h) continue;
+                    int n = nz * w + nx;
+                    if (!floor[n] || (int) CELL.getOpaque(dist, n) >= 0) continue;
+                    if (CELL.compareAndSet(dist, n, -1, nd)) found[count++] = n;
+                }
+            }
+            int at = nextSize.getAndAdd(count);
+            System.arraycopy(found, 0, next, at, count);
+        }
+    }
+
+    /**
+     * Direction (FlowField.DIR_*) from (gx, gz) to a neighbour one step closer to the field's sources,
+     * or FlowField.DIR_NONE at a source or when the cell isn't reached by the field.
+     */
+    public static byte step(int[] field, int w, int h, int gx, int gz) {
+        if (gx < 0 || gz < 0 || gx >= w || gz >= h) return FlowField.DIR_NONE;
+        int d = field[gz * w + gx];
+        if (d <= 0) return FlowField.DIR_NONE;
+        for (byte dir = 0; dir < 4; dir++) {
+            int nx = gx + DX[dir];
+            int nz = gz + DZ[dir];
+            if (nx < 0 || nz < 0 || nx >= w || nz >= h) continue;
+            if (field[nz * w + nx] == d - 1) return dir;
+        }
+        return FlowField.DIR_NONE;
+    }
+
+    /**
+     * The smallest value v among the first {@code count} values such that at least the given fraction
+     * of them is below or equal to v (nearest-rank percentile), or -1 when there are none.
+     */
+    public static int percentile(int[] values, int count, double fraction) {
+        if (count == 0) return -1;
+        int max = 0;
+        for (int i = 0; i < count; i++) max = Math.max(max, values[i]);
+        int[] histogram = new int[max + 2];
+        for (int i = 0; i < count; i++) histogram[values[i] + 1]++; // -1 (unreachable) lands in slot 0
+        int rank = Math.max(1, (int) Math.ceil(fraction * count));
+        int seen = 0;
+        for (int v = 0; v < histogram.length; v++) {
+            seen += histogram[v];
+            if (seen >= rank) return v - 1;
+        }
+        return max;
+    }
+
+    public int getWidth() {
+        return w;
+    }
+
+    public int getHeight() {
+        return h;
+    }
+
+    public int getPathLength() {
+        return pathLength;
+    }
+
+    /** Path distance from the spawn, -1 for walls and unreachable cells. */
+    public int fromSpawn(int gx, int gz) {
+        return fromSpawn[gz * w + gx];
+    }
+
+    public int fromExit(int gx, int gz) {
+        return fromExit[gz * w + gx];
+    }
+
+    /** Path distance to the nearest cell of a shortest spawn-to-exit route (0 on the route). */
+    public int fromPath(int gx, int gz) {
+        return fromPath[gz * w + gx];
+    }
+
+    public boolean onPath(int gx, int gz) {
+        return fromPath[gz * w + gx] == 0;
+    }
+
+    /**
+     * The exit field itself, for {@link #step(int[], int, int, int, int)}; only the level's {@link World}
+     * updates it, through an {@link Updater}, when walls move.
+     */
+    int[] exitField() {
+        return fromExit;
+    }
+
+    /**
+     * Keeps BFS fields of one maze current while single cells change, touching only the cells whose
+     * distance changes. An opened cell lowers distances outwards from it. A closed cell cuts loose the
+     * cells whose every shortest route crossed it (found level by level from the cell) and re-reaches
+     * them from the rest of the field with a Dijkstra over just that region. Scratch space is allocated
+     * once; no allocation per change.
+     */
+    static final class Updater {
+        private final boolean[][] maze;
+        private final int w;
+        private final int h;
+        private final int[] queue;
+        private final int[] mark; // stamp = queued, stamp + 1 = cut loose
+        private int stamp;
+        private final LongHeap heap = new LongHeap();
+
+        Updater(boolean[][] maze) {
+            this.maze = maze;
+            this.w = maze.length;
+            this.h = maze[0].length;
+            this.queue = new int[w * h];
+            this.mark = new int[w * h];
+        }
+
+        /**
+         * Updates the field (of this maze, from sources that stay floor) after cell (gx, gz) turned into
+         * a wall or floor; call once per changed cell.
+         */
+        void cellChanged(int[] field, int gx, int gz) {
+            if (maze[gx][gz]) close(field, gz * w + gx);
+            else open(field, gz * w + gx);
+        }
+
+        private void open(int[] field, int c) {
+            int best = -1;
+            for (int d = 0; d < 4; d++) {
+                int n = neighbour(c, d);
+                if (n >= 0 && field[n] >= 0 && (best < 0 || field[n] + 1 < best)) best = field[n] + 1;
+            }
+            field[c] = best;
+            if (best < 0) return;
+            // a BFS from the cell reaches every cell it shortens first with its new distance
+            int tail = 0;
+            queue[tail++] = c;
+            for (int head = 0; head < tail; head++) {
+                int u = queue[head];
+                int nd = field[u] + 1;
+                for (int d = 0; d < 4; d++) {
+                    int n = neighbour(u, d);
+                    if (n < 0 || (field[n] >= 0 && field[n] <= nd)) continue;
+                    field[n] = nd;
+                    queue[tail++] = n;
+                }
+            }
+        }
+
+        private void close(int[] field, int c) {
+            int old = field[c];
+            field[c] = -1;
+            if (old < 0) return;
+            if (stamp > Integer.MAX_VALUE - 4) {
+                java.util.Arrays.fill(mark, 0);
+                stamp = 0;
+            }
+            stamp += 2;
+            int queued = stamp;
+            int loose = stamp + 1;
+            // Cells one step farther than the closed cell, then their dependents level by level: a cell is
+            // cut loose unless a neighbour one step closer to the sources is still attached. Levels come
+            // out of the queue in order, so the closer neighbours are always classified first.
+            int tail = 0;
+            for (int d = 0; d < 4; d++) {
+                int n = neighbour(c, d);
+                if (n >= 0 && field[n] == old + 1) {
+                    mark[n] = queued;
+                    queue[tail++] = n;
+                }
+            }
+            int count = 0; // cut-loose cells, compacted into the consumed front of the queue
+            for (int head = 0; head < tail; head++) {
+                int u = queue[head];
+                int du = field[u];
+                boolean attached = false;
+                for (int d = 0; d < 4 && !attached; d++) {
+                    int m = neighbour(u, d);
+                    attached = m >= 0 && field[m] == du - 1 && mark[m] != loose;
+                }
+                if (attached) continue;
+                mark[u] = loose;
+                queue[count++] = u;
+                for (int d = 0; d < 4; d++) {
+                    int k = neighbour(u, d);
+                    if (k >= 0 && field[k] == du + 1 && mark[k] != queued && mark[k] != loose) {
+                        mark[k] = queued;
+                        queue[tail++] = k;
+                    }
+                }
+            }
+            for (int i = 0; i < count; i++) field[queue[i]] = -1;
+
+            // re-reach them from their attached border
+            heap.clear();
+            for (int i = 0; i < count; i++) {
+                int u = queue[i];
+                int best = -1;
+                for (int d = 0; d < 4; d++) {
+                    int m = neighbour(u, d);
+                    if (m >= 0 && field[m] >= 0 && (best < 0 || field[m] + 1 < best)) best = field[m] + 1;
+                }
+                if (best > 0) heap.push(best, u);
+            }
+            while (!heap.isEmpty()) {
+                long top = heap.pop();
+                int u = LongHeap.value(top);
+                if (field[u] >= 0) continue;
+                int du = LongHeap.priority(top);
+                field[u] = du;
+                for (int d = 0; d < 4; d++) {
+                    int k = neighbour(u, d);
+                    if (k >= 0 && mark[k] == loose && field[k] < 0) heap.push(du + 1, k);
+                }
+            }
+        }
+
+        // Floor neighbour of cell c in direction d, or -1
+        private int neighbour(int c, int d) {
+            int nx = c % w + DX[d];
+            int nz = c / w + DZ[d];
+            if (nx < 0 || nz < 0 || nx >= w || nz >= h || maze[nx][nz]) return -1;
+            return nz * w + nx;
+        }
+    }
+}
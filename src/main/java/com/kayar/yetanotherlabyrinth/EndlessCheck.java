@@ -0,0 +1,282 @@
+package com.kayar.yetanotherlabyrinth;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Headless check of endless mode. Verifies on a block of chunks around the spawn that every floor cell
+ * is reachable from the spawn and that chunks regenerated after eviction come out the same, then lets
+ * a bot walk east through an {@link EndlessWorld} for a number of ticks. Meanwhile the player must never
+ * overlap a wall, the maze must stay within its chunk capacity and the camera, placed around a
+ * {@link FloatingOrigin} as the renderer places it, must stay within the rebase distance. Reports the
+ * distance walked, chunks generated and evicted, origin rebases, tick-time percentiles of the first and
+ * last quarter, allocation per tick and the retained heap growth.
+ * <p>
+ * Usage: {@code EndlessCheck [--ticks N] [--seed N] [--region N]}.
+ * Exits with status 1 on a violation or if the bot got nowhere.
+ */
+public final class EndlessCheck {
+
+    private static final int TILE = 64;
+    private static final double STEP = 1.0 / 120.0;
+    private static final long MAX_HEAP_GROWTH = 4 << 20;
+
+    private static int violations;
+
+    private EndlessCheck() {}
+
+    public static void main(String[] args) {
+        long ticks = 200_000;
+        long seed = 1;
+        int region = 6;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            String v = args[i + 1];
+            switch (args[i]) {
+                case "--ticks" -> ticks = Math.max(1, Long.parseLong(v));
+                case "--seed" -> seed = Long.parseLong(v);
+                case "--region" -> region = Math.max(2, Integer.parseInt(v));
+                default -> throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+        checkConnected(seed, region);
+        checkDeterministic(seed, region);
+        walk(seed, ticks);
+        System.out.println("Violations:  " + violations);
+        if (violations > 0) System.exit(1);
+    }
+
+    // Every floor cell of the region's chunks is reachable from the spawn without leaving the region,
+    // and every chunk has its corner walled and two doors in its west and north walls
+    private static void checkConnected(long seed, int region) {
+        ChunkedMaze maze = new ChunkedMaze(seed, region * region);
+        int n = region * ChunkedMaze.CHUNK;
+        for (int cz = 0; cz < region; cz++) {
+            for (int cx = 0; cx < region; cx++) {
+                int gx0 = cx * ChunkedMaze.CHUNK;
+                int gz0 = cz * ChunkedMaze.CHUNK;
+                int west = 0;
+                int north = 0;
+                for (int k = 1; k < ChunkedMaze.CHUNK; k++) {
+                    if (!maze.isWall(gx0, gz0 + k)) west++;
+                    if (!maze.isWall(gx0 + k, gz0)) north++;
+                }
+                if (!maze.isWall(gx0, gz0) || west != 2 || north != 2) {
+                    violation("chunk " + cx + "," + cz + " has " + west + " west and " + north + " north doors");
+                }
+            }
+        }
+        boolean[] seen = new boolean[n * n];
+        int[] queue = new int[n * n];
+        int tail = 0;
+        queue[tail++] = n + 1;
+        seen[n + 1] = true;
+        for (int head = 0; head < tail; head++) {
+            int c = queue[head];
+            int x = c % n;
+            int z = c / n;
+            for (int d = 0; d < 4; d++) {
+                int nx = x + FlowField.dx((byte) d);
+                int nz = z + FlowField.dz((byte) d);
+                if (nx < 0 || nz < 0 || nx >= n || nz >= n || seen[nz * n + nx] || maze.isWall(nx, nz)) continue;
+                seen[nz * n + nx] = true;
+                queue[tail++] = nz * n + nx;
+            }
+        }
+        int floor = 0;
+        for (int z = 0; z < n; z++) {
+            for (int x = 0; x < n; x++) {
+                if (!maze.isWall(x, z)) floor++;
+            }
+        }
+        if (tail != floor) violation("only " + tail + " of " + floor + " floor cells reachable from the spawn");
+        System.out.println("Region:      " + region + "x" + region + " chunks, " + floor + " floor cells, " + tail + " reachable");
+    }
+
+    // The region read column by column through a pool of two chunks, so chunks are evicted and regenerated
+    // all the time, matches a pool that holds the whole region
+    private static void checkDeterministic(long seed, int region) {
+        ChunkedMaze full = new ChunkedMaze(seed, (region + 1) * (region + 1));
+        ChunkedMaze small = new ChunkedMaze(seed, 2);
+        int n = region * ChunkedMaze.CHUNK;
+        for (int x = -n / 2; x < n / 2; x++) {
+            for (int z = -n / 2; z < n / 2; z++) {
+                if (full.isWall(x, z) != small.isWall(x, z)) {
+                    violation("cell " + x + "," + z + " differs after regeneration");
+                    return;
+                }
+            }
+        }
+        System.out.println("Regenerated: " + small.getGenerated() + " chunk generations through a pool of 2, "
+                + small.getEvicted() + " evictions, all equal to a pool holding the region");
+    }
+
+    private static void walk(long seed, long ticks) {
+        EndlessWorld world = new EndlessWorld(seed, TILE);
+        ChunkedMaze maze = world.getMaze();
+        EastBot bot = new EastBot(world);
+        double rebaseDistance = FloatingOrigin.rebaseDistanceFromSystemProperty(TILE);
+        FloatingOrigin origin = new FloatingOrigin(rebaseDistance, TILE);
+        double maxLocal = 0;
+        FrameTimeStats first = new FrameTimeStats();
+        FrameTimeStats last = new FrameTimeStats();
+        long quarter = Math.max(1, ticks / 4);
+        long lastStart = Math.max(quarter, ticks - quarter);
+        long heapAtQuarter = 0;
+        long allocAtQuarter = 0;
+        long heapGrowth = 0;
+        long allocated = 0;
+        long t0 = System.nanoTime();
+        for (long t = 0; t < ticks; t++) {
+            // memory is compared between the end of the first and the start of the last quarter
+            if (t == quarter) {
+                heapAtQuarter = retainedHeap();
+                allocAtQuarter = allocatedBytes();
+            }
+            if (t == lastStart) {
+                allocated = allocatedBytes() - allocAtQuarter;
+                heapGrowth = retainedHeap() - heapAtQuarter;
+            }
+            long s = System.nanoTime();
+            bot.steer();
+            world.tick(STEP);
+            long d = System.nanoTime() - s;
+            if (t < quarter) first.add(d);
+            else if (t >= ticks - quarter) last.add(d);
+            if (world.collidesWithWalls(world.getX(), world.getZ())) {
+                violation("player overlaps a wall at " + world.getX() + "," + world.getZ());
+                break;
+            }
+            origin.update(world.getX(), world.getZ());
+            double local = Math.max(Math.abs(origin.localX(world.getX())), Math.abs(origin.localZ(world.getZ())));
+            maxLocal = Math.max(maxLocal, local);
+            if (local > rebaseDistance) {
+                violation("camera " + local + " from the floating origin, above the rebase distance " + rebaseDistance);
+                break;
+            }
+            if (maze.getResident() > maze.getCapacity()) {
+                violation("resident chunks " + maze.getResident() + " above the capacity " + maze.getCapacity());
+                break;
+            }
+        }
+        double wall = (System.nanoTime() - t0) / 1e9;
+        System.out.println("Walk:        " + ticks + " ticks in " + String.format("%.2f", wall) + " s, reached chunk "
+                + world.getChunkX() + "," + world.getChunkZ() + " (" + world.getFarthest() + " chunks from the spawn)");
+        System.out.println("Chunks:      " + maze.getGenerated() + " generated, " + maze.getEvicted() + " evicted, "
+                + maze.getResident() + " resident of " + maze.getCapacity());
+        System.out.println("Origin:      " + origin.getRebases() + " rebases, camera at most " + String.format("%.0f", maxLocal)
+                + " units from the origin, " + String.format("%.0f", Math.hypot(world.getX(), world.getZ())) + " from the world's");
+        System.out.println("First 1/4:   tick " + first.summary(1_000, "us"));
+        System.out.println("Last 1/4:    tick " + last.summary(1_000, "us"));
+        System.out.println("Allocation:  " + String.format("%.1f", allocated / (double) Math.max(1, lastStart - quarter)) + " bytes/tick in the middle half (chunk generation)");
+        System.out.println("Heap:        " + String.format("%+.1f", heapGrowth / 1024.0) + " KB retained growth over the middle half");
+        if (world.getFarthest() < 2) violation("bot got nowhere");
+        if (heapGrowth > MAX_HEAP_GROWTH) violation("retained heap grew by " + heapGrowth + " bytes");
+    }
+
+    /**
+     * Heads for the easternmost cell it can reach within the streamed chunks: a BFS over the chunks
+     * around the player's, followed cell by cell, searched again in every new chunk.
+     */
+    private static final class EastBot {
+        private final EndlessWorld world;
+        private final ChunkedMaze maze;
+        private final int n;        // window side in cells
+        private final int[] parent; // window cell -> previous cell, -1 unseen
+        private final int[] queue;
+        private final int[] path;
+        private int pathLength;
+        private int pathPos;
+        private int originX;        // window origin in cells
+        private int originZ;
+        private int chunkX = Integer.MIN_VALUE;
+        private int chunkZ;
+
+        EastBot(EndlessWorld world) {
+            this.world = world;
+            this.maze = world.getMaze();
+            this.n = (2 * (EndlessWorld.STREAM_RADIUS - 1) + 1) * ChunkedMaze.CHUNK;
+            this.parent = new int[n * n];
+            this.queue = new int[n * n];
+            this.path = new int[n * n];
+        }
+
+        void steer() {
+            int tile = world.getTile();
+            int gx = (int) Math.floor(world.getX() / tile);
+            int gz = (int) Math.floor(world.getZ() / tile);
+            if (ChunkedMaze.chunkOf(gx) != chunkX || ChunkedMaze.chunkOf(gz) != chunkZ || pathPos >= pathLength) {
+                chunkX = ChunkedMaze.chunkOf(gx);
+                chunkZ = ChunkedMaze.chunkOf(gz);
+                search(gx, gz);
+            }
+            // advance when the player entered the next cell of the path
+            while (pathPos < pathLength && path[pathPos] == (gz - originZ) * n + (gx - originX)) pathPos++;
+            int next = pathPos < pathLength ? path[pathPos] : (gz - originZ) * n + (gx - originX);
+            int nx = originX + next % n;
+            int nz = originZ + next / n;
+            // line up with the corridor before turning into the next cell, like the soak test's path bot
+            double off = nx != gx ? Math.abs(world.getZ() - (gz + 0.5) * tile) : Math.abs(world.getX() - (gx + 0.5) * tile);
+            if (off > tile * 0.1) {
+                nx = gx;
+                nz = gz;
+            }
+            double dx = (nx + 0.5) * tile - world.getX();
+            double dz = (nz + 0.5) * tile - world.getZ();
+            world.setYaw(Math.toDegrees(Math.atan2(dx, dz)));
+            world.setInput(dx * dx + dz * dz > 4 ? World.INPUT_FORWARD : 0);
+        }
+
+        private void search(int gx, int gz) {
+            int r = EndlessWorld.STREAM_RADIUS - 1;
+            originX = (chunkX - r) * ChunkedMaze.CHUNK;
+            originZ = (chunkZ - r) * ChunkedMaze.CHUNK;
+            java.util.Arrays.fill(parent, -1);
+            int start = (gz - originZ) * n + (gx - originX);
+            parent[start] = start;
+            int tail = 0;
+            queue[tail++] = start;
+            int best = start;
+            for (int head = 0; head < tail; head++) {
+                int c = queue[head];
+                int x = c % n;
+                int z = c / n;
+                if (x > best % n) best = c;
+                for (int d = 0; d < 4; d++) {
+                    int nx = x + FlowField.dx((byte) d);
+                    int nz = z + FlowField.dz((byte) d);
+                    if (nx < 0 || nz < 0 || nx >= n || nz >= n) continue;
+                    int nc = nz * n + nx;
+                    if (parent[nc] >= 0 || maze.isWall(originX + nx, originZ + nz)) continue;
+                    parent[nc] = c;
+                    queue[tail++] = nc;
+                }
+            }
+            // path from start (exclusive) to best, reversed into place
+            pathLength = 0;
+            for (int c = best; c != start; c = parent[c]) path[pathLength++] = c;
+            for (int i = 0, j = pathLength - 1; i < j; i++, j--) {
+                int t = path[i];
+                path[i] = path[j];
+                path[j] = t;
+            }
+            pathPos = 0;
+        }
+    }
+
+    private static long retainedHeap() {
+        Runtime rt = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) System.gc();
+        return rt.totalMemory() - rt.freeMemory();
+    }
+
+    private static long allocatedBytes() {
+        if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean sun && sun.isThreadAllocatedMemorySupported()) {
+            return sun.getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return 0;
+    }
+
+    private static void violation(String message) {
+        violations++;
+        if (violations <= 10) System.out.println("VIOLATION: " + message);
+    }
+}
@@ -0,0 +1,169 @@
+package com.kayar.yetanotherlabyrinth;
+
+import javafx.scene.Group;
+import javafx.scene.PerspectiveCamera;
+import javafx.scene.paint.PhongMaterial;
+import javafx.scene.shape.Box;
+import javafx.scene.shape.CullFace;
+import javafx.scene.shape.MeshView;
+import javafx.scene.shape.TriangleMesh;
+
+/**
+ * First-person controller of endless mode: binds input, camera and sounds ({@link FirstPersonControl})
+ * to an {@link EndlessWorld} and keeps the chunks around the player meshed in the 3D scene.
+ * <p>
+ * Each chunk is one node group placed at the chunk's origin: a single {@link WallMesher} mesh of the
+ * wall faces that look onto its floor cells, plus a floor and a ceiling slab. Chunks within
+ * {@link #VIEW_RADIUS} of the player's are shown, at most one is meshed per frame (nearest first), and
+ * groups of chunks more than a chunk beyond that are detached and reused, so the scene holds a fixed
+ * number of nodes. The root group is shifted with a {@link FloatingOrigin} that follows the player,
+ * so however far the walk goes, the camera and the chunks around it stay at small scene coordinates.
+ * The world is small enough to tick on the FX thread: {@link #advance(int)} runs the fixed steps,
+ * {@link #render(double)} places the camera between the last two.
+ */
+public class EndlessControl extends FirstPersonControl {
+
+    public static final int VIEW_RADIUS = EndlessWorld.STREAM_RADIUS - 1; // chunks meshed around the player's
+    private static final int POOL_SIDE = 2 * (VIEW_RADIUS + 1) + 1;       // views are kept one chunk longer
+
+    private final EndlessWorld world;
+    private final double step;
+
+    private final Group root;
+    private final double wallHeight;
+    private final PhongMaterial wallMat;
+    private final PhongMaterial floorMat;
+    private final PhongMaterial skyMat;
+    private final ChunkView[] views = new ChunkView[POOL_SIDE * POOL_SIDE];
+    private final WallMesher mesher = new WallMesher(ChunkedMaze.CHUNK);
+    private final WallMesher.Grid grid;
+    private int viewChunkX = Integer.MIN_VALUE; // player chunk the views were last checked for
+    private int viewChunkZ;
+    private boolean viewsComplete;
+
+    /**
+     * @param root group the chunk views are added to; shifted with the floating origin
+     */
+    public EndlessControl(EndlessWorld world, PerspectiveCamera camera, double step, Group root, double wallHeight,
+                          PhongMaterial wallMat, PhongMaterial floorMat, PhongMaterial skyMat) {
+        super(world, camera, root, world.getTile(), world.getCameraHeight());
+        this.world = world;
+        this.step = step;
+        this.root = root;
+        this.wallHeight = wallHeight;
+        this.wallMat = wallMat;
+        this.floorMat = floorMat;
+        this.skyMat = skyMat;
+        this.grid = world.getMaze()::isWall;
+        for (int i = 0; i < views.length; i++) views[i] = new ChunkView();
+        world.setListener(this);
+        placeCamera(world.getX(), world.getZ(), 0, world.getYaw(), world.getPitch());
+        // the first frame shows every chunk in view
+        updateViews();
+        while (!viewsComplete) updateViews();
+    }
+
+    /** Runs this many fixed steps. */
+    public void advance(int steps) {
+        for (int i = 0; i < steps; i++) world.tick(step);
+    }
+
+    /**
+     * Places the camera between the previous and the current step and meshes at most one missing chunk.
+     *
+     * @param alpha fraction of a step elapsed since the current state, in [0, 1]
+     */
+    public void render(double alpha) {
+        placeCamera(world.renderX(alpha), world.renderZ(alpha), world.renderYOffset(alpha), world.getYaw(), world.getPitch());
+        updateViews();
+    }
+
+    private void updateViews() {
+        int cx = world.getChunkX();
+        int cz = world.getChunkZ();
+        if (cx != viewChunkX || cz != viewChunkZ) {
+            viewChunkX = cx;
+            viewChunkZ = cz;
+            viewsComplete = false;
+            for (ChunkView v : views) {
+                if (v.attached && Math.max(Math.abs(v.cx - cx), Math.abs(v.cz - cz)) > VIEW_RADIUS + 1) v.detach();
+            }
+        }
+        if (viewsComplete) return;
+        // nearest ring first
+        for (int r = 0; r <= VIEW_RADIUS; r++) {
+            for (int dz = -r; dz <= r; dz++) {
+                for (int dx = -r; dx <= r; dx++) {
+                    if (Math.max(Math.abs(dx), Math.abs(dz)) != r || find(cx + dx, cz + dz) != null) continue;
+                    free().attach(cx + dx, cz + dz);
+                    return;
+                }
+            }
+        }
+        viewsComplete = true;
+    }
+
+    private ChunkView find(int cx, int cz) {
+        for (ChunkView v : views) {
+            if (v.attached && v.cx == cx && v.cz == cz) return v;
+        }
+        return null;
+    }
+
+    // A detached view; the pool covers every chunk that is ever kept attached
+    private ChunkView free() {
+        for (ChunkView v : views) {
+            if (!v.attached) return v;
+        }
+        throw new IllegalStateException("No free chunk view");
+    }
+
+    // One chunk's nodes; meshes are rebuilt in place when the view moves to another chunk
+    private final class ChunkView {
+        final Group group = new Group();
+        final TriangleMesh mesh = new TriangleMesh();
+        boolean attached;
+        int cx;
+        int cz;
+
+        ChunkView() {
+            double size = ChunkedMaze.CHUNK * world.getTile();
+            mesh.getTexCoords().setAll(WallMesher.TEX_COORDS);
+            MeshView walls = new MeshView(mesh);
+            walls.setMaterial(wallMat);
+            walls.setCullFace(CullFace.NONE);
+            Box floor = new Box(size, 4, size);
+            floor.setMaterial(floorMat);
+            floor.setTranslateX(size / 2.0);
+            floor.setTranslateZ(size / 2.0);
+            Box ceiling = new Box(size, 4, size);
+            ceiling.setMaterial(skyMat);
+            ceiling.setTranslateX(size / 2.0);
+            ceiling.setTranslateY(-wallHeight);
+            ceiling.setTranslateZ(size / 2.0);
+            group.getChildren().addAll(floor, ceiling, walls);
+        }
+
+        void attach(int cx, int cz) {
+            this.cx = cx;
+            this.cz = cz;
+            int quads = mesher.build(grid, cx * ChunkedMaze.CHUNK, cz * ChunkedMaze.CHUNK, ChunkedMaze.CHUNK, world.getTile(), wallHeight);
+            mesh.getPoints().setAll(mesher.getPoints(), 0, quads * 12);
+            mesh.getFaces().setAll(mesher.getFaces(), 0, quads * 12);
+            double size = ChunkedMaze.CHUNK * world.getTile();
+            group.setTranslateX(cx * size);
+            group.setTranslateZ(cz * size);
+            root.getChildren().add(group);
+            attached = true;
+        }
+
+        void detach() {
+            root.getChildren().remove(group);
+            attached = false;
+        }
+    }
+
+    public EndlessWorld getWorld() {
+        return world;
+    }
+}
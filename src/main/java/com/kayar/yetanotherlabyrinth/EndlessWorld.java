@@ -0,0 +1,177 @@
+package com.kayar.yetanotherlabyrinth;
+
+/**
+ * Headless simulation of endless mode: the player walking, turning and jumping through a
+ * {@link ChunkedMaze}, with the {@link PlayerMotion} of {@link World} but no items, pits or enemies.
+ * Whenever the player enters another chunk, the chunks within {@link #STREAM_RADIUS} are streamed in,
+ * at most one generated per tick so crossing a chunk border never costs a whole row of chunks at once;
+ * the maze keeps a fixed number of chunks, so memory and tick time don't depend on how far the player
+ * has walked.
+ * Coordinates are world units as in World; the spawn is cell (1, 1) of chunk (0, 0).
+ */
+public final class EndlessWorld implements PlayerInput {
+
+    public static final int STREAM_RADIUS = 3; // chunks resident around the player's, one more than the view needs
+    private static final int STREAM_SIDE = 2 * STREAM_RADIUS + 1;
+    static final int CAPACITY = (2 * STREAM_RADIUS + 3) * (2 * STREAM_RADIUS + 3); // two rings of slack before eviction
+
+    private static final World.Listener NO_LISTENER = new World.Listener() {};
+
+    private final ChunkedMaze maze;
+    private final int tile;
+    private final PlayerMotion player;
+
+    private World.Listener listener = NO_LISTENER;
+    private double time;
+    private long ticks;
+    private int chunkX;
+    private int chunkZ;
+    private int farthest; // largest chunk distance (Chebyshev) from the spawn chunk reached so far
+    private int prefetch = STREAM_SIDE * STREAM_SIDE; // next chunk of the streaming square to load
+
+    public EndlessWorld(long seed, int tile) {
+        this.maze = new ChunkedMaze(seed, CAPACITY);
+        this.tile = tile;
+        this.player = new PlayerMotion(tile, tile * 1.5, tile * 1.5, (px, pz, r) -> maze.collidesWithWalls(px, pz, r, tile));
+        maze.stream(1, 1, STREAM_RADIUS);
+    }
+
+    public void setListener(World.Listener listener) {
+        this.listener = listener != null ? listener : NO_LISTENER;
+    }
+
+    /**
+     * Advances the simulation by one fixed step of dt seconds.
+     */
+    public void tick(double dt) {
+        ticks++;
+        time += dt;
+        player.step(dt, listener);
+
+        int gx = (int) Math.floor(player.x / tile);
+        int gz = (int) Math.floor(player.z / tile);
+        int cx = ChunkedMaze.chunkOf(gx);
+        int cz = ChunkedMaze.chunkOf(gz);
+        if (cx != chunkX || cz != chunkZ) {
+            chunkX = cx;
+            chunkZ = cz;
+            farthest = Math.max(farthest, Math.max(Math.abs(cx), Math.abs(cz)));
+            // the inner square was the outer ring a chunk ago, so this rarely generates anything
+            maze.stream(gx, gz, STREAM_RADIUS - 1);
+            prefetch = 0;
+        }
+        prefetch();
+    }
+
+    // Loads the streaming square in order until one chunk had to be generated
+    private void prefetch() {
+        while (prefetch < STREAM_SIDE * STREAM_SIDE) {
+            int dx = prefetch % STREAM_SIDE - STREAM_RADIUS;
+            int dz = prefetch / STREAM_SIDE - STREAM_RADIUS;
+            prefetch++;
+            if (maze.load(chunkX + dx, chunkZ + dz)) break;
+        }
+    }
+
+    public boolean collidesWithWalls(double px, double pz) {
+        return maze.collidesWithWalls(px, pz, player.radius, tile);
+    }
+
+    // --- Input ---
+
+    public void setInput(int bits) {
+        player.input = bits;
+    }
+
+    @Override
+    public void setInput(int bit, boolean on) {
+        player.setInput(bit, on);
+    }
+
+    @Override
+    public void jump() {
+        player.jumpRequested = true;
+    }
+
+    @Override
+    public void addYaw(double deltaDegrees) {
+        player.yaw += deltaDegrees;
+    }
+
+    @Override
+    public void addPitch(double deltaDegrees) {
+        player.pitch += deltaDegrees;
+    }
+
+    public void setYaw(double degrees) {
+        player.yaw = degrees;
+    }
+
+    // --- State ---
+
+    public ChunkedMaze getMaze() {
+        return maze;
+    }
+
+    public int getTile() {
+        return tile;
+    }
+
+    public double getX() {
+        return player.x;
+    }
+
+    public double getZ() {
+        return player.z;
+    }
+
+    public double renderX(double alpha) {
+        return player.renderX(alpha);
+    }
+
+    public double renderZ(double alpha) {
+        return player.renderZ(alpha);
+    }
+
+    public double renderYOffset(double alpha) {
+        return player.renderYOffset(alpha);
+    }
+
+    public double getYaw() {
+        return player.yaw;
+    }
+
+    public double getPitch() {
+        return player.pitch;
+    }
+
+    public double getCameraHeight() {
+        return player.cameraHeight;
+    }
+
+    public double getRadius() {
+        return player.radius;
+    }
+
+    /** Chunk the player is in. */
+    public int getChunkX() {
+        return chunkX;
+    }
+
+    public int getChunkZ() {
+        return chunkZ;
+    }
+
+    /** Farthest the player has been from the spawn chunk, in chunks. */
+    public int getFarthest() {
+        return farthest;
+    }
+
+    public double getTime() {
+        return time;
+    }
+
+    public long getTicks() {
+        return ticks;
+    }
+}
@@ -0,0 +1,405 @@
+package com.kayar.yetanotherlabyrinth;
+
+import java.io.Serial;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Enemy simulation as a structure of arrays: positions, patrol targets, speeds, contact cooldowns and
+ * sprite animation state live in parallel primitive arrays indexed by enemy id.
+ * Enemies patrol a straight corridor run until the player is within {@link #AGGRO_CELLS} path steps and
+ * in line of sight (as of the last {@link #updateSight(LineOfSight, int)}), then chase by following the
+ * shared {@link FlowField}; when the player gets away they walk back to the centre of their cell and
+ * patrol the run through it. An enemy never steps into a wall cell: when a
+ * shifting wall closes ahead, a patrol turns back at its current cell and a chaser waits there.
+ * {@link #update(double, double, double)} moves every enemy in one batch; each enemy only writes its own slots, so large
+ * populations are split into ranges on the common ForkJoinPool, using a task tree built once and reset
+ * every update. The cell index is refreshed afterwards on the calling thread. Rendering reads the arrays in a separate pass.
+ */
+public final class EnemySystem {
+
+    public static final int ANIM_FRAMES = 7;        // sprite sheet columns
+    static final int PARALLEL_THRESHOLD = 2048;      // below this the batch runs on the calling thread
+    private static final int SPLIT_SIZE = 1024;      // enemies per parallel task
+    public static final int AGGRO_CELLS = 8;          // path distance at which enemies start chasing
+
+    // behaviour states
+    static final byte PATROL = 0;
+    static final byte CHASE = 1;
+    static final byte RECENTER = 2; // lost the player: back to the cell centre, then patrol from there
+
+    private final int count;
+    private final double[] x;
+    private final double[] z;
+    private final double[] prevX;
+    private final double[] prevZ;
+    private final double[] x1;        // patrol ends
+    private final double[] z1;
+    private final double[] x2;
+    private final double[] z2;
+    private final boolean[] towardSecond;
+    private final double[] speed;     // units per second
+    private final double[] dirX;      // last movement direction (unit), 0 when idle
+    private final double[] dirZ;
+    private final double[] damageCooldown;
+    // animation
+    private final double[] animAccum;
+    private final int[] frame;
+    private final int[] dirRow;       // sprite row: 0=back, 1=left, 2=front, 3=right
+    private final byte[] state;
+    private final boolean[] seesPlayer; // line of sight to the player's cell, from updateSight()
+    private final int[] cellBuf;         // enemy cells for the batched sight query
+    private double animFrameTime = 0.12;
+    private boolean frozen;           // stops movement and animation (player dead)
+
+    private final SpatialGrid index;
+    private final CollisionField collision; // live walls and pits, for walls that shift after generation
+    private final FlowField flow;     // null: patrol only
+    private final int tile;
+    private final Batch batch;        // parallel task tree, null below PARALLEL_THRESHOLD
+    // player position and step for the current update
+    private double targetX;
+    private double targetZ;
+    private double stepDt;
+
+    public EnemySystem(LevelLayout layout, int tile, CollisionField collision, FlowField flow) {
+        this.count = layout.enemyCount;
+        this.collision = collision;
+        this.flow = flow;
+        this.tile = tile;
+        this.state = new byte[count];
+        this.seesPlayer = new boolean[count];
+        this.cellBuf = new int[count];
+        this.x = new double[count];
+        this.z = new double[count];
+        this.prevX = new double[count];
+        this.prevZ = new double[count];
+        this.x1 = new double[count];
+        this.z1 = new double[count];
+        this.x2 = new double[count];
+        this.z2 = new double[count];
+        this.towardSecond = new boolean[count];
+        this.speed = new double[count];
+        this.dirX = new double[count];
+        this.dirZ = new double[count];
+        this.damageCooldown = new double[count];
+        this.animAccum = new double[count];
+        this.frame = new int[count];
+        this.dirRow = new int[count];
+        this.index = new SpatialGrid(layout.width, layout.height, tile, count);
+        this.batch = count >= PARALLEL_THRESHOLD ? new Batch(0, count) : null;
+
+        int[] cells = layout.enemyCells;
+        double half = tile / 2.0;
+        for (int i = 0; i < count; i++) {
+            int o = i * LevelLayout.ENEMY_STRIDE;
+            x[i] = prevX[i] = cells[o] * tile + half;
+            z[i] = prevZ[i] = cells[o + 1] * tile + half;
+            x1[i] = cells[o + 2] * tile + half;
+            z1[i] = cells[o + 3] * tile + half;
+            x2[i] = cells[o + 4] * tile + half;
+            z2[i] = cells[o + 5] * tile + half;
+            towardSecond[i] = true;
+            speed[i] = layout.enemySpeed * tile;
+            dirRow[i] = 2;
+            index.update(i, x[i], z[i]);
+        }
+    }
+
+    /**
+     * Advances all enemies by one step towards or around the player at (playerX, playerZ).
+     * The flow field must not change during the call.
+     */
+    public void update(double dt, double playerX, double playerZ) {
+        this.targetX = playerX;
+        this.targetZ = playerZ;
+        if (batch != null) {
+            stepDt = dt;
+            batch.reinitialize();
+            ForkJoinPool.commonPool().invoke(batch);
+        } else {
+            updateRange(0, count, dt);
+        }
+        for (int i = 0; i < count; i++) {
+            index.update(i, x[i], z[i]);
+        }
+    }
+
+    private void updateRange(int from, int to, double dt) {
+        for (int i = from; i < to; i++) {
+            prevX[i] = x[i];
+            prevZ[i] = z[i];
+            if (damageCooldown[i] > 0) damageCooldown[i] -= dt;
+            if (frozen) continue;
+
+            int gx = (int) Math.floor(x[i] / tile);
+            int gz = (int) Math.floor(z[i] / tile);
+            double tx;
+            double tz;
+            int d = flow != null ? flow.distance(gx, gz) : -1;
+            // aggro needs sight of the player; a chase goes on around corners while the path stays short
+            if (d >= 0 && d <= AGGRO_CELLS && (state[i] == CHASE || seesPlayer[i])) {
+                state[i] = CHASE;
+            } else if (state[i] == CHASE) {
+                state[i] = RECENTER;
+                x1[i] = x2[i] = (gx + 0.5) * tile;
+                z1[i] = z2[i] = (gz + 0.5) * tile;
+            }
+            if (state[i] == CHASE) {
+                // Next cell centre along the flow field; inside the player's cell go for the player.
+                // Both stay within two adjacent free cells, so the straight move can't cross a wall.
+                // While the player is over a pit the root stays on the last free cell: wait at its centre.
+                byte dir = flow.direction(gx, gz);
+                if (d == 0 || dir == FlowField.DIR_NONE) {
+                    boolean sameCell = (int) Math.floor(targetX / tile) == gx && (int) Math.floor(targetZ / tile) == gz;
+                    tx = sameCell ? targetX : (gx + 0.5) * tile;
+                    tz = sameCell ? targetZ : (gz + 0.5) * tile;
+                } else {
+                    tx = (gx + FlowField.dx(dir) + 0.5) * tile;
+                    tz = (gz + FlowField.dz(dir) + 0.5) * tile;
+                }
+            } else {
+                // Move towards the current patrol end, turn around when reached
+                tx = towardSecond[i] ? x2[i] : x1[i];
+                tz = towardSecond[i] ? z2[i] : z1[i];
+            }
+            double dx = tx - x[i];
+            double dz = tz - z[i];
+            double dist = Math.sqrt(dx * dx + dz * dz);
+            if (dist > 1e-4 && blockedAhead(i, dx / dist, dz / dist, dist)) {
+                // a wall shifted into the way: chasers wait for the next step's direction, patrols end
+                // their run at this cell and turn back
+                tx = state[i] == CHASE ? x[i] : (gx + 0.5) * tile;
+                tz = state[i] == CHASE ? z[i] : (gz + 0.5) * tile;
+                if (state[i] != CHASE) {
+                    if (towardSecond[i]) {
+                        x2[i] = tx;
+                        z2[i] = tz;
+                    } else {
+                        x1[i] = tx;
+                        z1[i] = tz;
+                    }
+                }
+                dx = tx - x[i];
+                dz = tz - z[i];
+                dist = Math.sqrt(dx * dx + dz * dz);
+            }
+            if (dist > 1e-4) {
+                double nx = dx / dist;
+                double nz = dz / dist;
+                double step = Math.min(speed[i] * dt, dist);
+                x[i] += nx * step;
+                z[i] += nz * step;
+                dirX[i] = nx;
+                dirZ[i] = nz;
+                // choose sprite row by movement direction
+                if (Math.abs(nx) > Math.abs(nz)) {
+                    dirRow[i] = nx > 0 ? 3 : 1; // right : left
+                } else {
+                    dirRow[i] = nz > 0 ? 2 : 0; // front : back
+                }
+            } else {
+                if (state[i] == RECENTER) {
+                    state[i] = PATROL;
+                    patrolRun(i, gx, gz);
+                }
+                if (state[i] == PATROL) towardSecond[i] = !towardSecond[i];
+                dirX[i] = 0;
+                dirZ[i] = 0;
+            }
+
+            // Animate: advance a frame every animFrameTime seconds
+            animAccum[i] += dt;
+            if (animAccum[i] >= animFrameTime) {
+                int steps = (int) (animAccum[i] / animFrameTime);
+                animAccum[i] -= steps * animFrameTime;
+                frame[i] = (frame[i] + steps) % ANIM_FRAMES;
+            }
+        }
+    }
+
+    // True if the point half a tile ahead along unit direction (nx, nz), or the target if nearer, is in a
+    // wall or a pit: that is the cell the enemy enters next
+    private boolean blockedAhead(int i, double nx, double nz, double dist) {
+        double look = Math.min(dist, tile / 2.0);
+        int gx = (int) Math.floor((x[i] + nx * look) / tile);
+        int gz = (int) Math.floor((z[i] + nz * look) / tile);
+        return collision.isWall(gx, gz) || collision.isPit(gx, gz);
+    }
+
+    /** Size of {@link #writeState(ByteBuffer)}'s output. */
+    int stateBytes() {
+        return count * (12 * Double.BYTES + 2 * Integer.BYTES + 2);
+    }
+
+    /**
+     * Writes the per-enemy simulation state (positions, patrol ends and direction, behaviour, cooldowns,
+     * animation) for {@link SaveGame}. Sight and the cell index are derived and rebuilt on restore.
+     */
+    void writeState(ByteBuffer out) {
+        DoubleBuffer d = out.asDoubleBuffer();
+        for (double[] a : doubleState()) d.put(a, 0, count);
+        SaveGame.skip(out, d.position() * Double.BYTES);
+        IntBuffer ints = out.asIntBuffer().put(frame, 0, count).put(dirRow, 0, count);
+        SaveGame.skip(out, ints.position() * Integer.BYTES);
+        out.put(state, 0, count);
+        for (int i = 0; i < count; i++) out.put((byte) (towardSecond[i] ? 1 : 0));
+    }
+
+    void readState(ByteBuffer in) {
+        DoubleBuffer d = in.asDoubleBuffer();
+        for (double[] a : doubleState()) d.get(a, 0, count);
+        SaveGame.skip(in, d.position() * Double.BYTES);
+        IntBuffer ints = in.asIntBuffer().get(frame, 0, count).get(dirRow, 0, count);
+        SaveGame.skip(in, ints.position() * Integer.BYTES);
+        in.get(state, 0, count);
+        for (int i = 0; i < count; i++) {
+            towardSecond[i] = in.get() != 0;
+            index.update(i, x[i], z[i]);
+        }
+    }
+
+    private double[][] doubleState() {
+        return new double[][]{x, z, prevX, prevZ, x1, z1, x2, z2, dirX, dirZ, damageCooldown, animAccum};
+    }
+
+    // Patrol ends: the longer straight run of free cells through (gx, gz), as in LevelLayout. Read from the
+    // live walls, since shifts open cells the generation-time topology has no runs for.
+    private void patrolRun(int i, int gx, int gz) {
+        int minX = gx;
+        int maxX = gx;
+        int minZ = gz;
+        int maxZ = gz;
+        while (isFree(minX - 1, gz)) minX--;
+        while (isFree(maxX + 1, gz)) maxX++;
+        while (isFree(gx, minZ - 1)) minZ--;
+        while (isFree(gx, maxZ + 1)) maxZ++;
+        if (maxX - minX >= maxZ - minZ) {
+            x1[i] = (minX + 0.5) * tile; z1[i] = (gz + 0.5) * tile;
+            x2[i] = (maxX + 0.5) * tile; z2[i] = (gz + 0.5) * tile;
+        } else {
+            x1[i] = (gx + 0.5) * tile; z1[i] = (minZ + 0.5) * tile;
+            x2[i] = (gx + 0.5) * tile; z2[i] = (maxZ + 0.5) * tile;
+        }
+        towardSecond[i] = true;
+    }
+
+    private boolean isFree(int gx, int gz) {
+        return !collision.isWall(gx, gz) && !collision.isPit(gx, gz);
+    }
+
+    // Range task of the batch update. The tree is built once; each update resets and reruns it.
+    private final class Batch extends RecursiveAction {
+        @Serial
+        private static final long serialVersionUID = 1L;
+
+        private final int from;
+        private final int to;
+        private final Batch left;
+        private final Batch right;
+
+        Batch(int from, int to) {
+            this.from = from;
+            this.to = to;
+            if (to - from <= SPLIT_SIZE) {
+                left = null;
+                right = null;
+            } else {
+                int mid = (from + to) >>> 1;
+                left = new Batch(from, mid);
+                right = new Batch(mid, to);
+            }
+        }
+
+        @Override
+        protected void compute() {
+            if (left == null) {
+                updateRange(from, to, stepDt);
+                return;
+            }
+            left.reinitialize();
+            right.reinitialize();
+            invokeAll(left, right);
+        }
+    }
+
+    /**
+     * Refreshes which enemies can see the player's cell, as one batched (and mostly cached) query. The
+     * next {@link #update(double, double, double)} lets only these enemies start a chase.
+     */
+    public void updateSight(LineOfSight sight, int playerCell) {
+        for (int i = 0; i < count; i++) {
+            cellBuf[i] = index.cellOf(i);
+        }
+        sight.cellsVisible(cellBuf, count, playerCell, seesPlayer);
+    }
+
+    /**
+     * Starts the contact cooldown of enemy i if it has expired; returns whether it may hit now.
+     */
+    public boolean tryContact(int i, double cooldown) {
+        if (damageCooldown[i] > 0) return false;
+        damageCooldown[i] = cooldown;
+        return true;
+    }
+
+    /** Seconds per animation frame (quality tiers slow the animation down). */
+    public void setAnimFrameTime(double seconds) {
+        this.animFrameTime = seconds;
+    }
+
+    public void setFrozen(boolean frozen) {
+        this.frozen = frozen;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public SpatialGrid getIndex() {
+        return index;
+    }
+
+    public double getX(int i) {
+        return x[i];
+    }
+
+    public double getZ(int i) {
+        return z[i];
+    }
+
+    public double getPrevX(int i) {
+        return prevX[i];
+    }
+
+    public double getPrevZ(int i) {
+        return prevZ[i];
+    }
+
+    public double getDirX(int i) {
+        return dirX[i];
+    }
+
+    public double getDirZ(int i) {
+        return dirZ[i];
+    }
+
+    public int getFrame(int i) {
+        return frame[i];
+    }
+
+    public boolean isChasing(int i) {
+        return state[i] == CHASE;
+    }
+
+    public boolean seesPlayer(int i) {
+        return seesPlayer[i];
+    }
+
+    public int getDirRow(int i) {
+        return dirRow[i];
+    }
+}
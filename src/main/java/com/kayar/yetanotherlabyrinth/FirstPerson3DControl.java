@@ -1,364 +1,187 @@
 package com.kayar.yetanotherlabyrinth;
 
-import com.almasb.fxgl.audio.Sound;
 import com.almasb.fxgl.dsl.FXGL;
-import com.almasb.fxgl.entity.component.Component;
-import javafx.geometry.Point2D;
+import javafx.scene.Group;
 import javafx.scene.PerspectiveCamera;
 
 /**
- * First-person 3D controller using the maze grid for collision on XZ plane.
+ * First-person 3D controller: binds input, camera and sounds ({@link FirstPersonControl}) to the
+ * headless {@link World}.
  * - Movement: WASD (forward/back/strafe), Q/E to turn left/right (yaw).
  * - Space to jump (simple vertical motion with gravity and ceiling clamp).
  * - Plays footstep sounds while moving.
- * - Triggers win when close to exit (by XZ distance).
+ * - Shows the level-complete dialog when the world reports the exit.
+ * The world runs on a {@link SimulationLoop} thread: {@link #advance(int)} lets it run fixed steps,
+ * {@link #render(double)} takes the newest snapshot, replays the world's events on the FX thread and
+ * places the camera between the snapshot's last two steps so rendering can run at any rate.
+ * The scene is drawn around a {@link FloatingOrigin}: the camera sits at its local coordinates and the
+ * level's root group is shifted opposite to the origin, so large levels render without jitter.
+ * With an {@link InputRecording} the gameplay input is either recorded or replayed from it.
  */
-public class FirstPerson3DControl extends Component {
+public class FirstPerson3DControl extends FirstPersonControl {
 
-    private final boolean[][] maze; // [w][h] true = wall
-    private final boolean[][] pits; // [w][h] true = pit (hole) on walkable cell
-    private final int gridW;
-    private final int gridH;
-    private final int tile;
+    private final SimulationLoop sim;
 
-    private final double radius;          // collision radius
-    private final double cameraHeight;    // eye height (Y)
+    private WorldSnapshot snapshot;
+    private double renderAlpha; // interpolation factor within the snapshot used for the last render()
+    private int health; // as of the last event replayed on the FX thread
+    private boolean dead;
 
-    private final double baseSpeed = 180; // units per second
-    private double speed = baseSpeed;
-
-    private final PerspectiveCamera camera;
-
-    private final double exitX;
-    private final double exitZ;
-
-    // key logic
-    private final double keyX;
-    private final double keyZ;
-    private boolean hasKey = false;
-    private boolean keyActive = true;
-    private long lastExitMsgMs = 0;
-
-    // position and orientation (degrees)
-    private double x;
-    private double z;
-    private double yaw; // degrees, 0 means facing +Z
-    private double pitch; // degrees, 0 means level; positive = look up
-
-    // vertical motion (jump)
-    private double yOffset = 0;      // positive => camera is higher than ground eye level
-    private double yVelocity = 0;    // positive => moving up
-    private boolean grounded = true; // on the floor
-    private final double gravity;    // units/s^2 (acts downward)
-    private final double jumpSpeed;  // initial upward speed
-
-    // pits logic
-    private final double safeJumpHeightFactor = 0.45; // must be higher than this fraction of tile to clear a pit
-    private boolean gameOverTriggered = false;
-    private double pitTimeAccum = 0.0; // seconds accumulated while in damaging pit state
-
-    // inputs
-    private boolean moveForward;
-    private boolean moveBackward;
-    private boolean moveLeft;
-    private boolean moveRight;
-    private boolean turnLeft;
-    private boolean turnRight;
-
-    private long lastStepSound = 0;
-    private long stepIntervalMs = 450;
-    private final Sound jumpSfx;
-    private final Sound walkSfx;
-
-
-    public FirstPerson3DControl(boolean[][] maze, boolean[][] pits, int tile, PerspectiveCamera camera, Point2D spawn2D, Point2D exitCenter2D, Point2D keyCenter2D) {
-        this.maze = maze;
-        this.pits = pits;
-        this.gridW = maze.length;
-        this.gridH = maze[0].length;
-        this.tile = tile;
-        this.radius = tile * 0.30;
-        this.cameraHeight = tile * 0.85;
-        this.camera = camera;
-
-        this.x = spawn2D.getX();
-        this.z = spawn2D.getY();
-        this.yaw = 0; // facing +Z initially
-
-        this.exitX = exitCenter2D.getX();
-        this.exitZ = exitCenter2D.getY();
-        if (keyCenter2D != null) {
-            this.keyX = keyCenter2D.getX();
-            this.keyZ = keyCenter2D.getY();
-            this.keyActive = true;
-        } else {
-            this.keyX = 0;
-            this.keyZ = 0;
-            this.keyActive = false;
-        }
-
-        // set jump constants relative to tile size
-        this.gravity = tile * 7.0;      // tuned for feel, not real gravity
-        this.jumpSpeed = tile * 3.2;    // enough to clear small bumps, below ceiling
-        this.jumpSfx = FXGL.getAssetLoader().loadSound("jump1.mp3");
-        this.walkSfx = FXGL.getAssetLoader().loadSound("walk-2.mp3");
+    public FirstPerson3DControl(World world, PerspectiveCamera camera, double step) {
+        this(world, camera, null, step, null, false);
     }
 
-    @Override
-    public void onUpdate(double tpf) {
-        // turning with Q/E (or mapped keys)
-        double turnSpeed = 120; // degrees/sec
-        if (turnLeft && !turnRight) yaw -= turnSpeed * tpf;
-        if (turnRight && !turnLeft) yaw += turnSpeed * tpf;
-
-        // compute forward/right vectors from yaw (XZ plane)
-        double yawRad = Math.toRadians(yaw);
-        double fwdX = -Math.sin(yawRad);
-        double fwdZ = -Math.cos(yawRad); // JavaFX camera looks along -Z at yaw=0
-        double rightX = Math.cos(yawRad);
-        double rightZ = -Math.sin(yawRad);
-
-        double vx = 0;
-        double vz = 0;
-        if (moveForward) {
-            vx -= fwdX;
-            vz -= fwdZ;
-        }
-        if (moveBackward) {
-            vx += fwdX;
-            vz += fwdZ;
-        }
-        if (moveLeft) {
-            vx -= rightX;
-            vz -= rightZ;
-        }
-        if (moveRight) {
-            vx += rightX;
-            vz += rightZ;
-        }
-
-        boolean moving = false;
-        if (Math.hypot(vx, vz) > 1e-6) {
-            double len = Math.hypot(vx, vz);
-            vx = (vx / len) * speed * tpf;
-            vz = (vz / len) * speed * tpf;
-            moving = true;
-        }
-
-        // axis-separated movement for sliding along walls
-        if (Math.abs(vx) > 1e-9) tryMove(vx, 0);
-        if (Math.abs(vz) > 1e-9) tryMove(0, vz);
-
-        // vertical motion (apply gravity and clamp to ceiling)
-        // ceiling height approx: wallHeight - cameraHeight; wallHeight ~= tile * 1.8
-        double maxHeadroom = Math.max(0, tile * 1.8 - cameraHeight - 4); // small margin
-        if (!grounded || yVelocity != 0) {
-            yVelocity -= gravity * tpf; // gravity pulls down
-            yOffset += yVelocity * tpf;
-
-            // ceiling clamp
-            if (yOffset > maxHeadroom) {
-                yOffset = maxHeadroom;
-                if (yVelocity > 0) yVelocity = 0;
-            }
+    /**
+     * @param sceneRoot group holding the level's 3D content in world coordinates, or null if the camera
+     *                  isn't drawing a scene graph (the raycaster reads world coordinates itself)
+     * @param recording input recording of this level, or null
+     * @param replay    true to play the recording back (input is ignored), false to record into it
+     */
+    public FirstPerson3DControl(World world, PerspectiveCamera camera, Group sceneRoot, double step,
+                                InputRecording recording, boolean replay) {
+        this(new SimulationLoop(world, step), world, camera, sceneRoot, recording, replay);
+    }
 
-            // floor collision
-            if (yOffset <= 0) {
-                yOffset = 0;
-                yVelocity = 0;
-                grounded = true;
-            } else {
-                grounded = false;
-            }
+    private FirstPerson3DControl(SimulationLoop sim, World world, PerspectiveCamera camera, Group sceneRoot,
+                                 InputRecording recording, boolean replay) {
+        super(sim, camera, sceneRoot, world.getTile(), world.getCameraHeight());
+        this.sim = sim;
+        if (recording != null) {
+            if (replay) sim.play(recording);
+            else sim.record(recording);
         }
+        this.health = world.getHealth(); // a restored world may start hurt
+        this.dead = world.isDead();
+        this.snapshot = sim.latest();
+        placeCamera(snapshot.renderX(1), snapshot.renderZ(1), snapshot.renderYOffset(1), getYaw(), getPitch());
+        sim.start();
+    }
 
-        // update camera transform (yaw + pitch)
-        camera.setTranslateX(x);
-        camera.setTranslateY(-cameraHeight - yOffset); // negative Y so that floor at 0 is "below"
-        camera.setTranslateZ(z);
-        camera.getTransforms().setAll(
-                new javafx.scene.transform.Rotate(yaw, javafx.scene.transform.Rotate.Y_AXIS),
-                new javafx.scene.transform.Rotate(pitch, javafx.scene.transform.Rotate.X_AXIS)
-        );
+    /**
+     * Lets the simulation thread run this many more fixed steps. Call every frame before
+     * {@link #render(double)}, also with 0.
+     */
+    public void advance(int steps) {
+        sim.requestSteps(steps);
+    }
 
-        if (moving) maybePlayStep();
+    /**
+     * Takes the newest simulation state, replays its events and places the camera between its previous
+     * and current step, at the point {@link SimulationLoop#renderAlpha(WorldSnapshot, double)} picks for
+     * the frame clock. Yaw and pitch include mouse look the simulation hasn't consumed yet, so they don't lag.
+     *
+     * @param alpha fraction of a step the frame clock has left over, in [0, 1]
+     */
+    public void render(double alpha) {
+        snapshot = sim.latest();
+        sim.pollEvents(this);
+        renderAlpha = sim.renderAlpha(snapshot, alpha);
+        placeCamera(snapshot.renderX(renderAlpha), snapshot.renderZ(renderAlpha), snapshot.renderYOffset(renderAlpha),
+                getYaw(), getPitch());
+    }
 
-        // Pit damage over time: if overlapping pit and not high enough, apply damage every 300ms
-        // Allow jumping over pits: do not damage while ascending (yVelocity > 0)
-        if (!gameOverTriggered) {
-            boolean pit = isOnPit(x, z);
-            double safeH = tile * safeJumpHeightFactor;
-            boolean damaging = pit && (yVelocity <= 0) && (yOffset < safeH);
-            if (damaging) {
-                pitTimeAccum += tpf;
-                // every 0.3 seconds apply 10 damage
-                while (pitTimeAccum >= 0.3 && !gameOverTriggered) {
-                    pitTimeAccum -= 0.3;
-                    LabyrinthApp app = LabyrinthApp.getInstance();
-                    if (app != null) {
-                        app.damagePlayer(10);
-                        if (app.isPlayerDead()) {
-                            gameOverTriggered = true;
-                        }
-                    }
-                }
-            } else {
-                pitTimeAccum = 0.0;
-            }
-        }
+    /** Whether a replay has simulated all of its recorded ticks. */
+    public boolean isReplayFinished() {
+        return sim.isPlaybackFinished();
+    }
 
-        // key pickup detection
-        if (keyActive) {
-            double kdx = x - keyX;
-            double kdz = z - keyZ;
-            if (kdx * kdx + kdz * kdz <= (tile * 0.5) * (tile * 0.5)) {
-                keyActive = false;
-                hasKey = true;
-                FXGL.getNotificationService().pushNotification("You found a key!");
-                LabyrinthApp.getInstance().onKeyPicked();
-            }
-        }
+    /** State hash at the end of the replay, to compare with {@link InputRecording#getStateHash()}. */
+    public long getReplayHash() {
+        return sim.getPlaybackHash();
+    }
 
-        // win detection based on XZ distance to exit, gated by key possession
-        double dx = x - exitX;
-        double dz = z - exitZ;
-        if (dx * dx + dz * dz <= (tile * 0.5) * (tile * 0.5)) {
-            if (!hasKey) {
-                long now = System.currentTimeMillis();
-                if (now - lastExitMsgMs > 1500) {
-                    lastExitMsgMs = now;
-                    FXGL.getNotificationService().pushNotification("The exit is locked. Find the key!");
-                }
-            } else {
-                FXGL.getDialogService().showMessageBox(LabyrinthApp.buildExitMessage(), () -> FXGL.getGameController().startNewGame());
-            }
-        }
+    /** Asks the simulation for a quick save; collect it with {@link #takeSave()} on a later frame. */
+    public boolean requestSave() {
+        return sim.requestSave();
     }
 
-    private void tryMove(double dx, double dz) {
-        double nx = this.x + dx;
-        double nz = this.z + dz;
-        if (!collidesWithWalls(nx, nz)) {
-            this.x = nx;
-            this.z = nz;
-        }
+    /** The {@link SaveGame} bytes once the simulation produced them, otherwise null. */
+    public byte[] takeSave() {
+        return sim.takeSave();
     }
 
-    private boolean collidesWithWalls(double px, double pz) {
-        int minGX = (int) Math.floor((px - radius) / tile);
-        int maxGX = (int) Math.floor((px + radius) / tile);
-        int minGZ = (int) Math.floor((pz - radius) / tile);
-        int maxGZ = (int) Math.floor((pz + radius) / tile);
+    /** Stops the simulation thread (finishing a recording); the controller is done after this. */
+    public void stop() {
+        sim.stop();
+    }
 
-        for (int gx = minGX; gx <= maxGX; gx++) {
-            for (int gz = minGZ; gz <= maxGZ; gz++) {
-                if (gx < 0 || gz < 0 || gx >= gridW || gz >= gridH) return true; // treat outside as walls
-                if (maze[gx][gz]) {
-                    double tileCenterX = gx * tile + tile / 2.0;
-                    double tileCenterZ = gz * tile + tile / 2.0;
-                    double nearestX = clamp(px, tileCenterX - tile / 2.0, tileCenterX + tile / 2.0);
-                    double nearestZ = clamp(pz, tileCenterZ - tile / 2.0, tileCenterZ + tile / 2.0);
-                    double dx = px - nearestX;
-                    double dz = pz - nearestZ;
-                    if (dx * dx + dz * dz <= radius * radius)
-                        return true;
-                }
-            }
-        }
-        return false;
+    @Override
+    public void onRemoved() {
+        sim.stop();
     }
 
-    private boolean isOnPit(double px, double pz) {
-        if (pits == null) return false;
-        int minGX = (int) Math.floor((px - radius) / tile);
-        int maxGX = (int) Math.floor((px + radius) / tile);
-        int minGZ = (int) Math.floor((pz - radius) / tile);
-        int maxGZ = (int) Math.floor((pz + radius) / tile);
+    // --- World events (replayed on the FX thread; footsteps and jumps play in FirstPersonControl) ---
 
-        for (int gx = minGX; gx <= maxGX; gx++) {
-            for (int gz = minGZ; gz <= maxGZ; gz++) {
-                if (gx < 0 || gz < 0 || gx >= gridW || gz >= gridH) continue; // ignore outside
-                if (pits[gx][gz]) {
-                    double v = 2.0;
-                    double tileCenterX = gx * tile + tile / v;
-                    double tileCenterZ = gz * tile + tile / v;
-                    double nearestX = clamp(px, tileCenterX - tile / v, tileCenterX + tile / v);
-                    double nearestZ = clamp(pz, tileCenterZ - tile / v, tileCenterZ + tile / v);
-                    double dx = px - nearestX;
-                    double dz = pz - nearestZ;
-                    if (dx * dx + dz * dz <= radius * radius)
-                        return true;
-                }
-            }
-        }
-        return false;
+    @Override
+    public void onKeyPicked() {
+        FXGL.getNotificationService().pushNotification("You found a key!");
+        LabyrinthApp.getInstance().onKeyPicked();
     }
 
-    private void maybePlayStep() {
-        long now = System.currentTimeMillis();
-        if (now - lastStepSound >= stepIntervalMs) {
-            FXGL.getAudioPlayer().playSound(walkSfx);
-            lastStepSound = now;
-        }
+    @Override
+    public void onExitLocked() {
+        FXGL.getNotificationService().pushNotification("The exit is locked. Find the key!");
     }
 
-    private static double clamp(double v, double min, double max) {
-        return Math.max(min, Math.min(max, v));
+    @Override
+    public void onExitReached() {
+        FXGL.getDialogService().showMessageBox(LabyrinthApp.buildExitMessage(), () -> FXGL.getGameController().startNewGame());
     }
 
-    // Input toggles
-    public void setMoveForward(boolean v) {
-        this.moveForward = v;
+    @Override
+    public void onDamaged(int amount, int health) {
+        this.health = health;
+        LabyrinthApp.getInstance().onPlayerDamaged();
     }
 
-    public void setMoveBackward(boolean v) {
-        this.moveBackward = v;
+    @Override
+    public void onDied() {
+        dead = true;
+        LabyrinthApp.getInstance().onPlayerDeath();
     }
 
-    public void setMoveLeft(boolean v) {
-        this.moveLeft = v;
+    @Override
+    public void onWallChanged(int gx, int gz, boolean wall) {
+        LabyrinthApp.getInstance().onWallChanged(gx, gz, wall);
     }
 
-    public void setMoveRight(boolean v) {
-        this.moveRight = v;
+    /** Enemy animation speed (quality tiers slow it down); forwarded only when it changes. */
+    public void setAnimFrameTime(double seconds) {
+        sim.setAnimFrameTime(seconds);
     }
 
-    public void setTurnLeft(boolean v) {
-        this.turnLeft = v;
+    // State of the last snapshot taken by render()
+    public WorldSnapshot getSnapshot() {
+        return snapshot;
     }
 
-    public void setTurnRight(boolean v) {
-        this.turnRight = v;
+    // Getters for minimap
+    public double getX() {
+        return snapshot.getX();
     }
 
-    // Actions
-    public void jump() {
-        if (grounded) {
-            yVelocity = jumpSpeed;
-            grounded = false;
-            FXGL.getAudioPlayer().playSound(jumpSfx);
-        }
+    public double getZ() {
+        return snapshot.getZ();
     }
 
-    // Mouse look support (adjust yaw/pitch by given delta in degrees)
-    public void addYaw(double deltaDegrees) {
-        this.yaw += deltaDegrees;
+    public double getYaw() {
+        return sim.lookYaw(snapshot);
     }
 
-    public void addPitch(double deltaDegrees) {
-        this.pitch += deltaDegrees;
+    public double getPitch() {
+        return sim.lookPitch(snapshot);
     }
 
-    // Getters for minimap
-    public double getX() {
-        return x;
+    public int getHealth() {
+        return health;
     }
 
-    public double getZ() {
-        return z;
+    public boolean isDead() {
+        return dead;
     }
 
-    public double getYaw() {
-        return yaw;
+    /** Interpolation factor of the last render(), for drawing the snapshot's enemies at the same time. */
+    public double getRenderAlpha() {
+        return renderAlpha;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,132 @@
+package com.kayar.yetanotherlabyrinth;
+
+import com.almasb.fxgl.audio.Sound;
+import com.almasb.fxgl.dsl.FXGL;
+import com.almasb.fxgl.entity.component.Component;
+import javafx.scene.Group;
+import javafx.scene.PerspectiveCamera;
+
+/**
+ * Input, camera and sounds shared by the first-person controllers ({@link FirstPerson3DControl} for
+ * levels, {@link EndlessControl} for endless mode): the input toggles forward to a {@link PlayerInput},
+ * footsteps and jumps play their sounds, and {@link #placeCamera} puts the camera at an interpolated pose
+ * relative to a {@link FloatingOrigin}, shifting the scene's root group whenever the origin moves.
+ */
+public abstract class FirstPersonControl extends Component implements World.Listener {
+
+    private final PlayerInput input;
+    private final PerspectiveCamera camera;
+    private final Group sceneRoot; // content shifted with the floating origin; null without one
+    private final FloatingOrigin origin;
+    private final double cameraHeight;
+    private final javafx.scene.transform.Rotate yawRotate = new javafx.scene.transform.Rotate(0, javafx.scene.transform.Rotate.Y_AXIS);
+    private final javafx.scene.transform.Rotate pitchRotate = new javafx.scene.transform.Rotate(0, javafx.scene.transform.Rotate.X_AXIS);
+
+    private double renderX;    // interpolated position last applied to the camera
+    private double renderZ;
+    private double renderYOffset;
+
+    private final Sound jumpSfx;
+    private final Sound walkSfx;
+
+    /**
+     * @param sceneRoot group holding the 3D content in world coordinates, or null if the camera isn't
+     *                  drawing a scene graph
+     */
+    protected FirstPersonControl(PlayerInput input, PerspectiveCamera camera, Group sceneRoot, int tile, double cameraHeight) {
+        this.input = input;
+        this.camera = camera;
+        this.sceneRoot = sceneRoot;
+        this.origin = new FloatingOrigin(FloatingOrigin.rebaseDistanceFromSystemProperty(tile), tile);
+        this.cameraHeight = cameraHeight;
+        camera.getTransforms().setAll(yawRotate, pitchRotate);
+        this.jumpSfx = FXGL.getAssetLoader().loadSound("jump1.mp3");
+        this.walkSfx = FXGL.getAssetLoader().loadSound("walk-2.mp3");
+    }
+
+    /** Moves the camera to the player at (x, z), yOffset above the floor, looking along yaw and pitch. */
+    protected void placeCamera(double x, double z, double yOffset, double yaw, double pitch) {
+        renderX = x;
+        renderZ = z;
+        renderYOffset = yOffset;
+        if (origin.update(x, z) && sceneRoot != null) {
+            sceneRoot.setTranslateX(-origin.getX());
+            sceneRoot.setTranslateZ(-origin.getZ());
+        }
+        camera.setTranslateX(origin.localX(x));
+        camera.setTranslateY(-cameraHeight - yOffset); // negative Y so that floor at 0 is "below"
+        camera.setTranslateZ(origin.localZ(z));
+        yawRotate.setAngle(yaw);
+        pitchRotate.setAngle(pitch);
+    }
+
+    // --- World events ---
+
+    @Override
+    public void onFootstep() {
+        FXGL.getAudioPlayer().playSound(walkSfx);
+    }
+
+    @Override
+    public void onJump() {
+        FXGL.getAudioPlayer().playSound(jumpSfx);
+    }
+
+    // Input toggles
+    public void setMoveForward(boolean v) {
+        input.setInput(World.INPUT_FORWARD, v);
+    }
+
+    public void setMoveBackward(boolean v) {
+        input.setInput(World.INPUT_BACKWARD, v);
+    }
+
+    public void setMoveLeft(boolean v) {
+        input.setInput(World.INPUT_LEFT, v);
+    }
+
+    public void setMoveRight(boolean v) {
+        input.setInput(World.INPUT_RIGHT, v);
+    }
+
+    public void setTurnLeft(boolean v) {
+        input.setInput(World.INPUT_TURN_LEFT, v);
+    }
+
+    public void setTurnRight(boolean v) {
+        input.setInput(World.INPUT_TURN_RIGHT, v);
+    }
+
+    // Actions
+    public void jump() {
+        input.jump();
+    }
+
+    // Mouse look support (adjust yaw/pitch by given delta in degrees)
+    public void addYaw(double deltaDegrees) {
+        input.addYaw(deltaDegrees);
+    }
+
+    public void addPitch(double deltaDegrees) {
+        input.addPitch(deltaDegrees);
+    }
+
+    // Interpolated values last applied by placeCamera(), for views other than the camera
+    public double getRenderX() {
+        return renderX;
+    }
+
+    public double getRenderZ() {
+        return renderZ;
+    }
+
+    /** Origin the camera's coordinates are relative to. */
+    public FloatingOrigin getOrigin() {
+        return origin;
+    }
+
+    // Eye height above the floor, including the current (interpolated) jump offset
+    public double getEyeHeight() {
+        return cameraHeight + renderYOffset;
+    }
+}
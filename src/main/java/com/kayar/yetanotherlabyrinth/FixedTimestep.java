@@ -0,0 +1,59 @@
+package com.kayar.yetanotherlabyrinth;
+
+/**
+ * Fixed-rate simulation clock. Frame time is accumulated and consumed in whole steps of a constant
+ * size, so gameplay doesn't depend on the frame rate; the leftover fraction is exposed as an
+ * interpolation factor for rendering between the last two simulation states.
+ * A single long frame (GC pause, level build) is capped at a few steps and the rest is dropped,
+ * which slows the game down for that frame instead of simulating a burst.
+ */
+public final class FixedTimestep {
+
+    private final double step;
+    private final int maxStepsPerFrame;
+    private double accumulator = 0;
+
+    public FixedTimestep(double hz, int maxStepsPerFrame) {
+        this.step = 1.0 / hz;
+        this.maxStepsPerFrame = maxStepsPerFrame;
+    }
+
+    /**
+     * Simulation rate from -Dlabyrinth.simHz (default 120).
+     */
+    public static double hzFromSystemProperty() {
+        try {
+            return Math.max(10, Double.parseDouble(System.getProperty("labyrinth.simHz", "120")));
+        } catch (NumberFormatException e) {
+            return 120;
+        }
+    }
+
+    /**
+     * Adds a frame's worth of time and returns how many simulation steps to run now.
+     */
+    public int advance(double frameSeconds) {
+        if (frameSeconds > 0) accumulator += frameSeconds;
+        int steps = (int) Math.floor(accumulator / step);
+        if (steps > maxStepsPerFrame) {
+            steps = maxStepsPerFrame;
+            accumulator = 0; // drop the backlog rather than catching up later
+        } else {
+            accumulator -= steps * step;
+        }
+        return steps;
+    }
+
+    /** Fraction of a step elapsed since the last simulation state, in [0, 1). */
+    public double alpha() {
+        return Math.min(1.0, accumulator / step);
+    }
+
+    public double getStep() {
+        return step;
+    }
+
+    public void reset() {
+        accumulator = 0;
+    }
+}
@@ -0,0 +1,78 @@
+package com.kayar.yetanotherlabyrinth;
+
+/**
+ * Floating origin of the 3D scene. The simulation keeps authoritative double coordinates; the scene is
+ * drawn relative to an origin near the player, so the camera and the geometry around it stay at small
+ * coordinates where the renderer's single-precision transforms are exact enough.
+ * The origin moves in whole multiples of a snap distance, and only once the player is more than the
+ * rebase distance from it, so rebasing is rare and a rebased scene lines up with the old one exactly.
+ * <p>
+ * Callers shift the content group by ({@code -getX()}, {@code -getZ()}) and place the camera at
+ * {@link #localX(double)}, {@link #localZ(double)} whenever {@link #update(double, double)} reports a move.
+ */
+public final class FloatingOrigin {
+
+    private final double rebaseDistance;
+    private final double snap;
+    private double x;
+    private double z;
+    private int rebases;
+
+    /**
+     * @param rebaseDistance how far the player may get from the origin along either axis before it moves
+     * @param snap           the origin stays on multiples of this distance, at most the rebase distance
+     */
+    public FloatingOrigin(double rebaseDistance, double snap) {
+        if (!(snap > 0) || !(rebaseDistance >= snap)) {
+            throw new IllegalArgumentException("Rebase distance " + rebaseDistance + " below snap " + snap);
+        }
+        this.rebaseDistance = rebaseDistance;
+        this.snap = snap;
+    }
+
+    /**
+     * Rebase distance from -Dlabyrinth.rebaseDistance in world units (default 32 tiles), never below a tile.
+     */
+    public static double rebaseDistanceFromSystemProperty(int tile) {
+        try {
+            return Math.max(tile, Double.parseDouble(System.getProperty("labyrinth.rebaseDistance", String.valueOf(32 * tile))));
+        } catch (NumberFormatException e) {
+            return 32 * tile;
+        }
+    }
+
+    /**
+     * Moves the origin to the snap point nearest the player if the player is farther than the rebase
+     * distance from it. Returns true if it moved.
+     */
+    public boolean update(double px, double pz) {
+        if (Math.abs(px - x) <= rebaseDistance && Math.abs(pz - z) <= rebaseDistance) return false;
+        x = Math.rint(px / snap) * snap;
+        z = Math.rint(pz / snap) * snap;
+        rebases++;
+        return true;
+    }
+
+    /** Scene coordinate of world coordinate wx. */
+    public double localX(double wx) {
+        return wx - x;
+    }
+
+    /** Scene coordinate of world coordinate wz. */
+    public double localZ(double wz) {
+        return wz - z;
+    }
+
+    public double getX() {
+        return x;
+    }
+
+    public double getZ() {
+        return z;
+    }
+
+    /** How many times the origin moved. */
+    public int getRebases() {
+        return rebases;
+    }
+}
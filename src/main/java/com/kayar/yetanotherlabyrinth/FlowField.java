@@ -0,0 +1,122 @@
+package com.kayar.yetanotherlabyrinth;
+
+/**
+ * Breadth-first flow field over the maze rooted at the player's cell, shared by all enemies.
+ * Every cell within a fixed path distance of the root stores that distance and the direction of the
+ * neighbour one step closer, so steering is an O(1) lookup per enemy. Walls and pits are impassable.
+ * <p>
+ * Enemies only look the field up near the player, so the search stops at that distance: a rebuild
+ * touches O(radius^2) cells whatever the grid size, and runs to completion as soon as the root cell
+ * changes (or walls move, {@link #invalidate()}), so readers never steer by an old root. Only the cells
+ * the last build reached are cleared before the next one.
+ */
+public final class FlowField {
+
+    // Directions to the next cell towards the root
+    public static final byte DIR_NONE = -1;
+    public static final byte DIR_POS_X = 0;
+    public static final byte DIR_NEG_X = 1;
+    public static final byte DIR_POS_Z = 2;
+    public static final byte DIR_NEG_Z = 3;
+    private static final int[] DX = {1, -1, 0, 0};
+    private static final int[] DZ = {0, 0, 1, -1};
+
+    private final CollisionField collision;
+    private final int w;
+    private final int h;
+    private final int maxDistance; // cells farther than this from the root stay unreachable
+
+    private final int[] dist;      // distance in cells, -1 = unreachable or beyond maxDistance
+    private final byte[] dir;
+    private final int[] queue;     // cells reached by the last build, in BFS order
+    private int reached;
+
+    private int rootX = -1;
+    private int rootZ = -1;
+    private int version;           // increments with every rebuild
+
+    public FlowField(CollisionField collision, int w, int h, int maxDistance) {
+        this.collision = collision;
+        this.w = w;
+        this.h = h;
+        this.maxDistance = Math.max(0, maxDistance);
+        this.dist = new int[w * h];
+        this.dir = new byte[w * h];
+        // cells within Manhattan distance r of the root, the most a search of depth r can reach
+        long diamond = 2L * this.maxDistance * (this.maxDistance + 1) + 1;
+        this.queue = new int[(int) Math.min((long) w * h, diamond)];
+        java.util.Arrays.fill(dist, -1);
+        java.util.Arrays.fill(dir, DIR_NONE);
+    }
+
+    /**
+     * Sets the root cell and rebuilds the field if it changed; cells that enemies can't stand on
+     * (walls, pits) keep the previous field.
+     */
+    public void setRoot(int gx, int gz) {
+        if (collision.isWall(gx, gz) || collision.isPit(gx, gz)) return;
+        if (gx == rootX && gz == rootZ) return;
+        rootX = gx;
+        rootZ = gz;
+        rebuild();
+    }
+
+    /** Rebuilds the field for the current root after cells changed. */
+    public void invalidate() {
+        if (rootX >= 0) rebuild();
+    }
+
+    private void rebuild() {
+        for (int i = 0; i < reached; i++) {
+            dist[queue[i]] = -1;
+            dir[queue[i]] = DIR_NONE;
+        }
+        int root = rootZ * w + rootX;
+        dist[root] = 0;
+        int tail = 0;
+        queue[tail++] = root;
+        for (int head = 0; head < tail; head++) {
+            int c = queue[head];
+            int nd = dist[c] + 1;
+            if (nd > maxDistance) continue;
+            int cx = c % w;
+            int cz = c / w;
+            for (int d = 0; d < 4; d++) {
+                int nx = cx + DX[d];
+                int nz = cz + DZ[d];
+                if (nx < 0 || nz < 0 || nx >= w || nz >= h) continue;
+                int n = nz * w + nx;
+                if (dist[n] >= 0 || collision.isWall(nx, nz) || collision.isPit(nx, nz)) continue;
+                dist[n] = nd;
+                dir[n] = (byte) (d ^ 1); // from n, step back the way we came
+                queue[tail++] = n;
+            }
+        }
+        reached = tail;
+        version++;
+    }
+
+    /** Path distance in cells from (gx, gz) to the root, or -1 if unreachable or outside. */
+    public int distance(int gx, int gz) {
+        if (gx < 0 || gz < 0 || gx >= w || gz >= h) return -1;
+        return dist[gz * w + gx];
+    }
+
+    /** Direction of the next cell towards the root (DIR_*), DIR_NONE at the root or when unreachable. */
+    public byte direction(int gx, int gz) {
+        if (gx < 0 || gz < 0 || gx >= w || gz >= h) return DIR_NONE;
+        return dir[gz * w + gx];
+    }
+
+    public static int dx(byte direction) {
+        return DX[direction];
+    }
+
+    public static int dz(byte direction) {
+        return DZ[direction];
+    }
+
+    public int getVersion() {
+        return version;
+    }
+}
@@ -0,0 +1,63 @@
+package com.kayar.yetanotherlabyrinth;
+
+/**
+ * Collects durations (frame times, tick times) in nanoseconds and summarizes them as mean and
+ * percentiles, for comparing replays of the same run between builds. Samples are kept in a growable
+ * array, so adding one doesn't allocate except when it doubles.
+ */
+public final class FrameTimeStats {
+
+    private long[] samples = new long[1024];
+    private int count;
+    private long total;
+
+    public void add(long nanos) {
+        if (count == samples.length) samples = java.util.Arrays.copyOf(samples, count * 2);
+        samples[count++] = nanos;
+        total += nanos;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public long getTotalNanos() {
+        return total;
+    }
+
+    public double meanNanos() {
+        return count == 0 ? 0 : total / (double) count;
+    }
+
+    /** Nearest-rank percentile (fraction in [0, 1]) of the samples so far. */
+    public long percentileNanos(double fraction) {
+        if (count == 0) return 0;
+        long[] sorted = java.util.Arrays.copyOf(samples, count);
+        java.util.Arrays.sort(sorted);
+        return rank(sorted, fraction);
+    }
+
+    /**
+     * One-line summary with the values divided by {@code unitNanos} and labelled with {@code unit},
+     * e.g. {@code summary(1_000_000, "ms")}.
+     */
+    public String summary(double unitNanos, String unit) {
+        if (count == 0) return "no samples";
+        long[] sorted = java.util.Arrays.copyOf(samples, count);
+        java.util.Arrays.sort(sorted);
+        return String.format("%d samples, mean %.3f %s, p50 %.3f, p95 %.3f, p99 %.3f, max %.3f %s",
+                count, meanNanos() / unitNanos, unit,
+                rank(sorted, 0.50) / unitNanos, rank(sorted, 0.95) / unitNanos,
+                rank(sorted, 0.99) / unitNanos, sorted[count - 1] / unitNanos, unit);
+    }
+
+    private static long rank(long[] sorted, double fraction) {
+        int rank = Math.max(1, (int) Math.ceil(fraction * sorted.length));
+        return sorted[Math.min(sorted.length, rank) - 1];
+    }
+
+    public void clear() {
+        count = 0;
+        total = 0;
+    }
+}
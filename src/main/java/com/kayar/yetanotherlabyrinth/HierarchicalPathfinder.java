@@ -0,0 +1,485 @@
+package com.kayar.yetanotherlabyrinth;
+
+import java.util.HashMap;
+
+/**
+ * Hierarchical path finding (HPA*) over the maze grid for long-range queries on large levels.
+ * <p>
+ * The grid is split into square clusters. At level load every open stretch of a cluster border gets an
+ * entrance: a pair of abstract nodes, one on each side, joined by an inter-cluster edge. Nodes of the
+ * same cluster are joined by intra-cluster edges whose costs come from a search limited to that cluster.
+ * A query links start and goal into their clusters, runs A* on the small abstract graph and refines each
+ * abstract edge back into cells; refined intra-cluster segments are cached. When cells change,
+ * {@link #cellChanged(int, int)} rebuilds only the cluster holding the cell and the edges of its neighbours.
+ * <p>
+ * Walls are impassable; pits can be crossed (by jumping) but cost {@link #PIT_COST} so routes avoid them
+ * when there is a reasonable alternative. Paths are cell indices {@code gz * width + gx}, start to goal.
+ * Reads the given grids live, so callers mutate them and then report the change. Not thread-safe.
+ */
+public final class HierarchicalPathfinder {
+
+    public static final int DEFAULT_CLUSTER_SIZE = 16;
+    public static final int STEP_COST = 1;
+    public static final int PIT_COST = 8;
+    private static final int LONG_ENTRANCE = 6; // open border runs at least this long get an entrance at each end
+
+    private final boolean[][] maze;
+    private final boolean[][] pits;
+    private final int w;
+    private final int h;
+    private final int clusterSize;
+    private final int clustersX;
+    private final int clustersZ;
+
+    // abstract nodes
+    private int capacity = 0;
+    private int[] nodeCell = new int[0];
+    private int[] nodeCluster = new int[0];
+    private int[] partner = new int[0];      // node across the border
+    private boolean[] alive = new boolean[0];
+    private int[][] edgeTo = new int[0][];
+    private int[][] edgeCost = new int[0][];
+    private int[] edgeCount = new int[0];
+    private int[] freeNodes = new int[16];
+    private int freeCount;
+    private int[][] clusterNodes;
+    private int[] clusterNodeCount;
+
+    // cached refinements per cluster, key = (from node << 32) | to node
+    private final HashMap<Long, int[]>[] refineCache;
+    private long cacheHits;
+    private long cacheMisses;
+
+    // low-level search scratch over cells (stamped, so only touched cells are reset)
+    private final int[] cellCost;
+    private final int[] cellParent;
+    private final int[] cellStamp;
+    private int stamp;
+    private final LongHeap heap = new LongHeap();
+
+    // abstract search scratch; ids capacity and capacity + 1 are the query's start and goal
+    private int[] aCost = new int[2];
+    private int[] aParent = new int[2];
+    private int[] aStamp = new int[2];
+    private int[] goalCost = new int[2];
+    private int[] goalStamp = new int[2];
+    private int aStampCur;
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public HierarchicalPathfinder(boolean[][] maze, boolean[][] pits, int clusterSize) {
+        this.maze = maze;
+        this.pits = pits;
+        this.w = maze.length;
+        this.h = maze[0].length;
+        this.clusterSize = clusterSize;
+        this.clustersX = (w + clusterSize - 1) / clusterSize;
+        this.clustersZ = (h + clusterSize - 1) / clusterSize;
+        int clusters = clustersX * clustersZ;
+        this.clusterNodes = new int[clusters][4];
+        this.clusterNodeCount = new int[clusters];
+        this.refineCache = new HashMap[clusters];
+        for (int i = 0; i < clusters; i++) refineCache[i] = new HashMap<>();
+        this.cellCost = new int[w * h];
+        this.cellParent = new int[w * h];
+        this.cellStamp = new int[w * h];
+
+        for (int cz = 0; cz < clustersZ; cz++) {
+            for (int cx = 0; cx < clustersX; cx++) {
+                if (cx + 1 < clustersX) buildBorder(cx, cz, cx + 1, cz);
+                if (cz + 1 < clustersZ) buildBorder(cx, cz, cx, cz + 1);
+            }
+        }
+        for (int c = 0; c < clusters; c++) rebuildEdges(c);
+    }
+
+    // --- Queries ---
+
+    /**
+     * Returns the cells of a path from (sx, sz) to (tx, tz), both inclusive, or null if there is none.
+     */
+    public int[] findPath(int sx, int sz, int tx, int tz) {
+        if (!passable(sx, sz) || !passable(tx, tz)) return null;
+        int src = sz * w + sx;
+        int dst = tz * w + tx;
+        if (src == dst) return new int[]{src};
+        int sc = clusterOf(src);
+        int gc = clusterOf(dst);
+        if (sc == gc) {
+            int[] direct = pathInCluster(src, dst, sc);
+            if (direct != null) return direct;
+        }
+
+        int start = capacity;
+        int goal = capacity + 1;
+        aStampCur++;
+        // goal side: cost from each node of the goal cluster to the goal (reverse search, see goalCostFrom)
+        search(dst, gc, -1);
+        for (int k = 0; k < clusterNodeCount[gc]; k++) {
+            int n = clusterNodes[gc][k];
+            int cell = nodeCell[n];
+            if (cellStamp[cell] != stamp) continue;
+            goalCost[n] = cellCost[cell] - enterCost(cell) + enterCost(dst);
+            goalStamp[n] = aStampCur;
+        }
+        // start side: cost from the start to each node of its cluster
+        search(src, sc, -1);
+        relax(start, 0, -1);
+        for (int k = 0; k < clusterNodeCount[sc]; k++) {
+            int n = clusterNodes[sc][k];
+            int cell = nodeCell[n];
+            if (cellStamp[cell] == stamp) relax(n, cellCost[cell], start);
+        }
+        heap.clear();
+        for (int k = 0; k < clusterNodeCount[sc]; k++) {
+            int n = clusterNodes[sc][k];
+            if (aStamp[n] == aStampCur) heap.push(aCost[n] + heuristic(nodeCell[n], dst), n);
+        }
+
+        // A* on the abstract graph
+        boolean found = false;
+        while (!heap.isEmpty()) {
+            long top = heap.pop();
+            int n = LongHeap.value(top);
+            if (n == goal) {
+                found = true;
+                break;
+            }
+            int f = LongHeap.priority(top);
+            if (f > aCost[n] + heuristic(nodeCell[n], dst)) continue; // stale entry
+            int g = aCost[n];
+            for (int e = 0; e < edgeCount[n]; e++) {
+                int m = edgeTo[n][e];
+                if (relax(m, g + edgeCost[n][e], n)) heap.push(aCost[m] + heuristic(nodeCell[m], dst), m);
+            }
+            if (goalStamp[n] == aStampCur && relax(goal, g + goalCost[n], n)) {
+                heap.push(aCost[goal], goal);
+            }
+        }
+        if (!found) return null;
+
+        // walk back to the start: start, n1, ..., nk, goal
+        int len = 0;
+        for (int n = goal; n != -1; n = aParent[n]) len++;
+        int[] chain = new int[len];
+        for (int n = goal, i = len - 1; n != -1; n = aParent[n], i--) chain[i] = n;
+
+        // refine each abstract edge into cells
+        IntList out = new IntList(64);
+        for (int i = 0; i + 1 < chain.length; i++) {
+            int a = chain[i];
+            int b = chain[i + 1];
+            int[] seg;
+            if (a == start) {
+                seg = pathInCluster(src, nodeCell[b], sc);
+            } else if (b == goal) {
+                seg = pathInCluster(nodeCell[a], dst, gc);
+            } else if (partner[a] == b) {
+                seg = new int[]{nodeCell[a], nodeCell[b]};
+            } else {
+                seg = refineCached(a, b);
+            }
+            if (seg == null) return null; // shouldn't happen: the edge came from the same search
+            out.addAll(seg, out.size() == 0 ? 0 : 1);
+        }
+        return out.toArray();
+    }
+
+    // Records a cheaper abstract cost for node n; returns false if n already has one at least as good
+    private boolean relax(int n, int cost, int parent) {
+        if (aStamp[n] == aStampCur && aCost[n] <= cost) return false;
+        aStamp[n] = aStampCur;
+        aCost[n] = cost;
+        aParent[n] = parent;
+        return true;
+    }
+
+    private int[] refineCached(int a, int b) {
+        int c = nodeCluster[a];
+        Long key = ((long) a << 32) | (b & 0xFFFFFFFFL);
+        int[] seg = refineCache[c].get(key);
+        if (seg != null) {
+            cacheHits++;
+            return seg;
+        }
+        cacheMisses++;
+        seg = pathInCluster(nodeCell[a], nodeCell[b], c);
+        if (seg != null) refineCache[c].put(key, seg);
+        return seg;
+    }
+
+    // --- Incremental repair ---
+
+    /**
+     * Call after a cell of the grids changed (wall or pit added or removed). Rebuilds the entrances of the
+     * cluster holding the cell and the edges of it and its neighbours, and drops their cached refinements.
+     */
+    public void cellChanged(int gx, int gz) {
+        if (gx < 0 || gz < 0 || gx >= w || gz >= h) return;
+        int cx = gx / clusterSize;
+        int cz = gz / clusterSize;
+        int c = cz * clustersX + cx;
+
+        // drop the cluster's entrances and their partners across the borders
+        while (clusterNodeCount[c] > 0) {
+            int n = clusterNodes[c][clusterNodeCount[c] - 1];
+            if (partner[n] >= 0) killNode(partner[n]);
+            killNode(n);
+        }
+        if (cx > 0) buildBorder(cx - 1, cz, cx, cz);
+        if (cx + 1 < clustersX) buildBorder(cx, cz, cx + 1, cz);
+        if (cz > 0) buildBorder(cx, cz - 1, cx, cz);
+        if (cz + 1 < clustersZ) buildBorder(cx, cz, cx, cz + 1);
+
+        rebuildEdges(c);
+        if (cx > 0) rebuildEdges(c - 1);
+        if (cx + 1 < clustersX) rebuildEdges(c + 1);
+        if (cz > 0) rebuildEdges(c - clustersX);
+        if (cz + 1 < clustersZ) rebuildEdges(c + clustersX);
+    }
+
+    // --- Abstract graph construction ---
+
+    // Entrances along the shared border of two adjacent clusters (a is left of or above b)
+    private void buildBorder(int ax, int az, int bx, int bz) {
+        boolean vertical = bx != ax; // border between columns
+        int from = vertical ? az * clusterSize : ax * clusterSize;
+        int to = Math.min(vertical ? h : w, from + clusterSize);
+        int lineA = vertical ? bx * clusterSize - 1 : bz * clusterSize - 1; // last column/row of a
+        int run = -1;
+        for (int i = from; i <= to; i++) {
+            boolean open = i < to && (vertical
+                    ? passable(lineA, i) && passable(lineA + 1, i)
+                    : passable(i, lineA) && passable(i, lineA + 1));
+            if (open && run < 0) run = i;
+            if (!open && run >= 0) {
+                int last = i - 1;
+                if (last - run + 1 >= LONG_ENTRANCE) {
+                    addEntrance(vertical, lineA, run);
+                    addEntrance(vertical, lineA, last);
+                } else {
+                    addEntrance(vertical, lineA, (run + last) / 2);
+                }
+                run = -1;
+            }
+        }
+    }
+
+    private void addEntrance(boolean vertical, int lineA, int i) {
+        int cellA = vertical ? i * w + lineA : lineA * w + i;
+        int cellB = vertical ? i * w + lineA + 1 : (lineA + 1) * w + i;
+        int a = newNode(cellA);
+        int b = newNode(cellB);
+        partner[a] = b;
+        partner[b] = a;
+    }
+
+    // Recomputes all edges of the nodes in cluster c: the inter edge to the partner and intra edges by search
+    private void rebuildEdges(int c) {
+        refineCache[c].clear();
+        int count = clusterNodeCount[c];
+        int[] nodes = clusterNodes[c];
+        for (int k = 0; k < count; k++) {
+            int n = nodes[k];
+            edgeCount[n] = 0;
+            if (partner[n] >= 0) addEdge(n, partner[n], enterCost(nodeCell[partner[n]]));
+            search(nodeCell[n], c, -1);
+            for (int j = 0; j < count; j++) {
+                int m = nodes[j];
+                if (m == n) continue;
+                int cell = nodeCell[m];
+                if (cellStamp[cell] == stamp) addEdge(n, m, cellCost[cell]);
+            }
+        }
+    }
+
+    private int newNode(int cell) {
+        int n;
+        if (freeCount > 0) {
+            n = freeNodes[--freeCount];
+        } else {
+            n = capacity;
+            growNodes(capacity + 1);
+        }
+        int c = clusterOf(cell);
+        nodeCell[n] = cell;
+        nodeCluster[n] = c;
+        partner[n] = -1;
+        alive[n] = true;
+        edgeCount[n] = 0;
+        if (clusterNodeCount[c] == clusterNodes[c].length) {
+            clusterNodes[c] = java.util.Arrays.copyOf(clusterNodes[c], clusterNodes[c].length * 2);
+        }
+        clusterNodes[c][clusterNodeCount[c]++] = n;
+        return n;
+    }
+
+    private void killNode(int n) {
+        if (!alive[n]) return;
+        alive[n] = false;
+        int c = nodeCluster[n];
+        int[] nodes = clusterNodes[c];
+        for (int k = 0; k < clusterNodeCount[c]; k++) {
+            if (nodes[k] == n) {
+                nodes[k] = nodes[--clusterNodeCount[c]];
+                break;
+            }
+        }
+        edgeCount[n] = 0;
+        partner[n] = -1;
+        if (freeCount == freeNodes.length) freeNodes = java.util.Arrays.copyOf(freeNodes, freeCount * 2);
+        freeNodes[freeCount++] = n;
+    }
+
+    private void addEdge(int from, int to, int cost) {
+        if (edgeCount[from] == edgeTo[from].length) {
+            int size = Math.max(4, edgeTo[from].length * 2);
+            edgeTo[from] = java.util.Arrays.copyOf(edgeTo[from], size);
+            edgeCost[from] = java.util.Arrays.copyOf(edgeCost[from], size);
+        }
+        edgeTo[from][edgeCount[from]] = to;
+        edgeCost[from][edgeCount[from]] = cost;
+        edgeCount[from]++;
+    }
+
+    private void growNodes(int min) {
+        int size = Math.max(min, Math.max(16, capacity * 2));
+        int old = nodeCell.length;
+        nodeCell = java.util.Arrays.copyOf(nodeCell, size);
+        nodeCluster = java.util.Arrays.copyOf(nodeCluster, size);
+        partner = java.util.Arrays.copyOf(partner, size);
+        alive = java.util.Arrays.copyOf(alive, size);
+        edgeTo = java.util.Arrays.copyOf(edgeTo, size);
+        edgeCost = java.util.Arrays.copyOf(edgeCost, size);
+        edgeCount = java.util.Arrays.copyOf(edgeCount, size);
+        for (int i = old; i < size; i++) {
+            edgeTo[i] = new int[4];
+            edgeCost[i] = new int[4];
+        }
+        // abstract search scratch has two extra slots for the query's start and goal
+        aCost = new int[size + 2];
+        aParent = new int[size + 2];
+        aStamp = new int[size + 2];
+        goalCost = new int[size + 2];
+        goalStamp = new int[size + 2];
+        aStampCur = 0;
+        capacity = size;
+        // newly added slots go on the free list except the one being allocated now
+        for (int i = size - 1; i > min - 1; i--) {
+            if (freeCount == freeNodes.length) freeNodes = java.util.Arrays.copyOf(freeNodes, freeCount * 2);
+            freeNodes[freeCount++] = i;
+        }
+    }
+
+    // --- Low-level search ---
+
+    /**
+     * Dijkstra (dst < 0) or A* (dst >= 0) from src over the cells of cluster c. Results are left in
+     * cellCost/cellParent for cells whose cellStamp equals stamp. Returns the cost to dst, or -1.
+     */
+    private int search(int src, int c, int dst) {
+        stamp++;
+        int cx0 = (c % clustersX) * clusterSize;
+        int cz0 = (c / clustersX) * clusterSize;
+        int cx1 = Math.min(w, cx0 + clusterSize);
+        int cz1 = Math.min(h, cz0 + clusterSize);
+        LongHeap q = heap;
+        q.clear();
+        cellStamp[src] = stamp;
+        cellCost[src] = 0;
+        cellParent[src] = -1;
+        q.push(dst >= 0 ? heuristic(src, dst) : 0, src);
+        while (!q.isEmpty()) {
+            long top = q.pop();
+            int cell = LongHeap.value(top);
+            int g = cellCost[cell];
+            if (LongHeap.priority(top) > g + (dst >= 0 ? heuristic(cell, dst) : 0)) continue; // stale
+            if (cell == dst) return g;
+            int gx = cell % w;
+            int gz = cell / w;
+            for (int d = 0; d < 4; d++) {
+                int nx = gx + (d == 0 ? 1 : d == 1 ? -1 : 0);
+                int nz = gz + (d == 2 ? 1 : d == 3 ? -1 : 0);
+                if (nx < cx0 || nz < cz0 || nx >= cx1 || nz >= cz1 || maze[nx][nz]) continue;
+                int n = nz * w + nx;
+                int ng = g + enterCost(n);
+                if (cellStamp[n] == stamp && cellCost[n] <= ng) continue;
+                cellStamp[n] = stamp;
+                cellCost[n] = ng;
+                cellParent[n] = cell;
+                q.push(ng + (dst >= 0 ? heuristic(n, dst) : 0), n);
+            }
+        }
+        return -1;
+    }
+
+    private int[] pathInCluster(int src, int dst, int c) {
+        if (src == dst) return new int[]{src};
+        if (search(src, c, dst) < 0) return null;
+        int len = 0;
+        for (int cell = dst; cell != -1; cell = cellParent[cell]) len++;
+        int[] path = new int[len];
+        for (int cell = dst, i = len - 1; cell != -1; cell = cellParent[cell], i--) path[i] = cell;
+        return path;
+    }
+
+    private int heuristic(int cell, int dst) {
+        return (Math.abs(cell % w - dst % w) + Math.abs(cell / w - dst / w)) * STEP_COST;
+    }
+
+    private int enterCost(int cell) {
+        return pits != null && pits[cell % w][cell / w] ? PIT_COST : STEP_COST;
+    }
+
+    private boolean passable(int gx, int gz) {
+        return gx >= 0 && gz >= 0 && gx < w && gz < h && !maze[gx][gz];
+    }
+
+    private int clusterOf(int cell) {
+        return (cell / w / clusterSize) * clustersX + (cell % w) / clusterSize;
+    }
+
+    // --- Stats ---
+
+    public int getNodeCount() {
+        int n = 0;
+        for (int c = 0; c < clusterNodeCount.length; c++) n += clusterNodeCount[c];
+        return n;
+    }
+
+    public long getCacheHits() {
+        return cacheHits;
+    }
+
+    public long getCacheMisses() {
+        return cacheMisses;
+    }
+
+    public int getWidth() {
+        return w;
+    }
+
+    // Growable int list for assembling paths
+    private static final class IntList {
+        private int[] data;
+        private int size;
+
+        IntList(int capacity) {
+            data = new int[capacity];
+        }
+
+        void addAll(int[] values, int from) {
+            int n = values.length - from;
+            if (size + n > data.length) data = java.util.Arrays.copyOf(data, Math.max(data.length * 2, size + n));
+            System.arraycopy(values, from, data, size, n);
+            size += n;
+        }
+
+        int size() {
+            return size;
+        }
+
+        int[] toArray() {
+            return java.util.Arrays.copyOf(data, size);
+        }
+    }
+}
@@ -0,0 +1,246 @@
+package com.kayar.yetanotherlabyrinth;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Input of one level as the simulation consumed it: the level parameters (level, seed, hazards, enemy
+ * override, tile, step) and every command applied to the {@link World}, keyed by the tick it came before.
+ * Since the world only depends on its layout and these commands, playing them back reproduces the run
+ * exactly; the hash of the final state is stored to prove it.
+ * <p>
+ * Commands are a byte stream of varints: {@code (ticks since the previous command << 2) | kind}, then
+ * the held-input bits for INPUT or the zigzag angle in {@link #ANGLE_UNIT}s for YAW/PITCH. An idle
+ * stretch costs nothing and a mouse move typically 3-4 bytes.
+ */
+public final class InputRecording {
+
+    // Command kinds
+    public static final int INPUT = 0;
+    public static final int YAW = 1;
+    public static final int PITCH = 2;
+    public static final int JUMP = 3;
+
+    /** Mouse look is applied in whole multiples of this many degrees, so it can be recorded exactly. */
+    public static final double ANGLE_UNIT = 1.0 / 1024.0;
+
+    private static final int MAGIC = 0x4C525031; // "LRP1"
+
+    public final int level;
+    public final long seed;
+    public final boolean hazards;
+    public final int enemyOverride;
+    public final int tile;
+    public final double step;
+
+    private byte[] data = new byte[256];
+    private int size;
+    private long lastTick;   // tick of the last command written
+    private long ticks = -1; // ticks simulated when recording finished, -1 while recording
+    private long stateHash;
+
+    public InputRecording(int level, long seed, boolean hazards, int enemyOverride, int tile, double step) {
+        this.level = level;
+        this.seed = seed;
+        this.hazards = hazards;
+        this.enemyOverride = enemyOverride;
+        this.tile = tile;
+        this.step = step;
+    }
+
+    /** Generates the recorded level and a world on it, ready for playback. */
+    public World newWorld() {
+        return new World(LevelLayout.generate(level, hazards, seed, enemyOverride), tile);
+    }
+
+    public static long angleUnits(double degrees) {
+        return Math.round(degrees / ANGLE_UNIT);
+    }
+
+    /** Applies a command to the world; the arg is as passed to {@link #add(long, int, long)}. */
+    public static void apply(World world, int kind, long arg) {
+        switch (kind) {
+            case INPUT -> world.setInput((int) arg);
+            case YAW -> world.addYaw(arg * ANGLE_UNIT);
+            case PITCH -> world.addPitch(arg * ANGLE_UNIT);
+            case JUMP -> world.jump();
+            default -> throw new IllegalArgumentException("Unknown command kind: " + kind);
+        }
+    }
+
+    /**
+     * Appends a command applied before the given tick (the world's tick count at that moment).
+     * Ticks must not decrease.
+     */
+    public void add(long tick, int kind, long arg) {
+        if (ticks >= 0) throw new IllegalStateException("Recording already finished");
+        if (tick < lastTick) throw new IllegalArgumentException("Tick " + tick + " before " + lastTick);
+        ensure(21);
+        writeVarLong(((tick - lastTick) << 2) | kind);
+        lastTick = tick;
+        if (kind == INPUT) writeVarLong(arg);
+        else if (kind == YAW || kind == PITCH) writeVarLong((arg << 1) ^ (arg >> 63));
+    }
+
+    /** Ends the recording at the world's current state. */
+    public void finish(World world) {
+        this.ticks = world.getTicks();
+        this.stateHash = stateHash(world);
+    }
+
+    public boolean isFinished() {
+        return ticks >= 0;
+    }
+
+    /** Ticks simulated when the recording finished. */
+    public long getTicks() {
+        return ticks;
+    }
+
+    public long getStateHash() {
+        return stateHash;
+    }
+
+    /** Bytes used by the command stream. */
+    public int getCommandBytes() {
+        return size;
+    }
+
+    /**
+     * Hash of the simulated state: player pose, health and flags, tick count and every enemy position.
+     * Equal hashes after the same ticks mean the runs didn't diverge.
+     */
+    public static long stateHash(World world) {
+        long h = world.getTicks();
+        h = mix(h, Double.doubleToLongBits(world.getX()));
+        h = mix(h, Double.doubleToLongBits(world.getZ()));
+        h = mix(h, Double.doubleToLongBits(world.getYaw()));
+        h = mix(h, Double.doubleToLongBits(world.getPitch()));
+        h = mix(h, Double.doubleToLongBits(world.getYOffset()));
+        h = mix(h, world.getHealth());
+        h = mix(h, (world.isDead() ? 1 : 0) | (world.hasKey() ? 2 : 0) | (world.isExitReached() ? 4 : 0));
+        EnemySystem es = world.getEnemies();
+        for (int i = 0; i < es.getCount(); i++) {
+            h = mix(h, Double.doubleToLongBits(es.getX(i)));
+            h = mix(h, Double.doubleToLongBits(es.getZ(i)));
+        }
+        return h;
+    }
+
+    private static long mix(long h, long v) {
+        long z = h * 0x9E3779B97F4A7C15L + v;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /** Starts a playback cursor over the commands. */
+    public Playback playback() {
+        if (ticks < 0) throw new IllegalStateException("Recording not finished");
+        return new Playback();
+    }
+
+    /** Reads the commands back in order; allocation-free, one cursor per playback. */
+    public final class Playback {
+        private int pos;
+        private long nextTick;
+        private int nextKind = -1; // -1: not decoded yet or no more commands
+        private long nextArg;
+
+        private Playback() {
+            decode(0);
+        }
+
+        /** Applies the commands recorded for the world's current tick; call right before each tick. */
+        public void applyDue(World world) {
+            long now = world.getTicks();
+            while (nextKind >= 0 && nextTick <= now) {
+                apply(world, nextKind, nextArg);
+                decode(nextTick);
+            }
+        }
+
+        /** Whether the world has simulated every recorded tick. */
+        public boolean isFinished(World world) {
+            return world.getTicks() >= ticks;
+        }
+
+        private void decode(long after) {
+            if (pos >= size) {
+                nextKind = -1;
+                return;
+            }
+            long head = readVarLong();
+            nextTick = after + (head >>> 2);
+            nextKind = (int) (head & 3);
+            if (nextKind == INPUT) {
+                nextArg = readVarLong();
+            } else if (nextKind == YAW || nextKind == PITCH) {
+                long zz = readVarLong();
+                nextArg = (zz >>> 1) ^ -(zz & 1);
+            } else {
+                nextArg = 0;
+            }
+        }
+
+        private long readVarLong() {
+            long v = 0;
+            for (int shift = 0; ; shift += 7) {
+                byte b = data[pos++];
+                v |= (long) (b & 0x7F) << shift;
+                if (b >= 0) return v;
+            }
+        }
+    }
+
+    // --- file format: header fields, then the command stream ---
+
+    public void write(Path file) throws IOException {
+        if (ticks < 0) throw new IllegalStateException("Recording not finished");
+        try (DataOutputStream out = new DataOutputStream(new java.io.BufferedOutputStream(Files.newOutputStream(file)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(level);
+            out.writeLong(seed);
+            out.writeBoolean(hazards);
+            out.writeInt(enemyOverride);
+            out.writeInt(tile);
+            out.writeDouble(step);
+            out.writeLong(ticks);
+            out.writeLong(stateHash);
+            out.writeInt(size);
+            out.write(data, 0, size);
+        }
+    }
+
+    public static InputRecording read(Path file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new java.io.BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC) throw new IOException("Not an input recording: " + file);
+            InputRecording r = new InputRecording(in.readInt(), in.readLong(), in.readBoolean(), in.readInt(), in.readInt(), in.readDouble());
+            long ticks = in.readLong();
+            long hash = in.readLong();
+            int size = in.readInt();
+            if (size < 0) throw new IOException("Corrupt input recording: " + file);
+            r.data = new byte[Math.max(1, size)];
+            in.readFully(r.data, 0, size);
+            r.size = size;
+            r.ticks = ticks;
+            r.stateHash = hash;
+            return r;
+        }
+    }
+
+    private void ensure(int extra) {
+        if (size + extra > data.length) data = java.util.Arrays.copyOf(data, Math.max(size + extra, data.length * 2));
+    }
+
+    private void writeVarLong(long v) {
+        while ((v & ~0x7FL) != 0) {
+            data[size++] = (byte) ((v & 0x7F) | 0x80);
+            v >>>= 7;
+        }
+        data[size++] = (byte) v;
+    }
+}
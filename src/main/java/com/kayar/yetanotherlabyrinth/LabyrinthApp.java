@@ -33,7 +33,6 @@ import javafx.scene.image.Image;
 import javafx.scene.image.PixelReader;
 import javafx.scene.image.WritableImage;
 import javafx.scene.image.ImageView;
-import javafx.scene.layout.StackPane;
 import javafx.scene.canvas.Canvas;
 import javafx.scene.canvas.GraphicsContext;
 import javafx.scene.control.CheckBox;
@@ -62,27 +61,37 @@ public class LabyrinthApp extends GameApplication {
     private static final int TILE = 64;
     private static final int W = 11; // must be odd
     private static final int H = 11; // must be odd
+    // Walls stay a collision radius (0.3 tiles) and the ceiling 4 units away from the eye, so the near plane
+    // can sit at 1; depth precision goes with the far/near ratio
+    private static final double NEAR_CLIP = 1.0;
 
-    private boolean[][] maze;
+    private boolean[][] maze; // FX thread's copy in first-person levels; the World shifts its own on the simulation thread
+    private WallChunks wallChunks; // 3D walls, re-meshed per block as walls shift
     private boolean[][] pits;
+    private LevelLayout layout;
+    private World world; // headless simulation of the current first-person level (null in 2D mode)
     private FirstPerson3DControl fpControl;
     private PerspectiveCamera camera;
 
     // Mouse capture state for pointer-lock behavior
     private Robot robot;
     private boolean captureMouse = true;
-    private boolean isRecentering = false;
-    private SubScene subScene3D;
+    private boolean warpPending = false; // a recentering warp was issued and no event has landed near the centre yet
+    // Node showing the level (3D SubScene or raycaster image); receives mouse look events
+    private javafx.scene.Node viewNode;
+
+    // Renderer selection; the raycaster is only set in RAYCAST mode
+    private RenderMode renderMode;
+    private RaycastRenderer raycaster;
+    // 2D top-down mode (TOP_DOWN) state
+    private TopDownMap topDownMap;
+    private PlayerControl playerControl;
+    private static final double RAYCAST_RESOLUTION = 0.5; // fraction of screen size rendered by the raycaster
 
     // Minimap
-    private Canvas minimapStatic;
-    private Canvas minimapOverlay;
-    private StackPane minimapNode;
+    private Minimap minimap;
     private int gridW;
     private int gridH;
-    private double cellPx;
-    private double minimapW;
-    private double minimapH;
     private int exitGX;
     private int exitGY;
 
@@ -93,6 +102,7 @@ public class LabyrinthApp extends GameApplication {
     private int keyFrameIndex = 0;
     private Box keyBox3D;
     private ImageView keyIconView;
+    private javafx.scene.shape.Polygon compassArrow; // HUD hint towards the key, then the exit (3D mode)
     private Image keyFrameImage;
 
     // Media player for main menu background music
@@ -103,127 +113,80 @@ public class LabyrinthApp extends GameApplication {
 
     // Timeline for exit animation
     private Timeline exitAnim;
+    private WritableImage[] exitFrames;
+    private int exitFrameIdx = 0;
+    private double exitHeight;
     // Timeline for key bobbing animation
     private Timeline keyHoverAnim;
 
-    private double lastMouseX = Double.NaN;
+    private double lastMouseX = Double.NaN; // cursor position the next event's delta is measured from
     private double lastMouseY = Double.NaN;
+    private double preWarpX;                // last position before a pending warp, for events still queued from before it
+    private double preWarpY;
+    private int warpAge;                    // frames since the pending warp was issued
+    private double pendingLookX;            // mouse movement since the last frame, applied once per frame
+    private double pendingLookY;
     private final double mouseSensitivity = 0.2; // degrees per pixel (both axes)
+    private static final double RECENTER_MARGIN = 0.25; // warp back once the cursor is this share of the view from an edge
+    private static final int WARP_LOST_FRAMES = 2;      // events still near the old position after this many frames: the warp never landed
 
     // Level counter for roguelike progression
     private int currentLevel = 0;
     // Timestamp when current level started
     private long levelStartMillis = 0;
 
-    // Player health system
-    private int playerHealth = 100; // percent
-    private boolean playerDead = false;
+    // Player health bar (health itself lives in the World)
     private Canvas healthBarCanvas;
     private double healthBarWidth = 14;
     private double healthBarHeight = 240;
 
-    // Enemies
-    private java.util.List<Enemy> enemies = new java.util.ArrayList<>();
+    // Enemies: simulated in the World's EnemySystem; these are the 3D views, indexed by enemy id
+    private Box[] enemyNodes = new Box[0];
+    private PhongMaterial[] enemyMats = new PhongMaterial[0];
+    private int[] enemyShownSprite = new int[0]; // dirRow * 7 + frame currently set as diffuse map, -1 = none
+    private static final double ENEMY_W = TILE * 0.9;
+    private static final double ENEMY_H = TILE * 1.25;
     private WritableImage[][] enemyFrames; // [row][col] 4x7
-    private static final long ENEMY_DAMAGE_INTERVAL_MS = 300;
-    private static final int ENEMY_DAMAGE = 10;
-
-    // --- Enemy inner class ---
-    private class Enemy {
-        double x, z;
-        double speed;
-        Box node;
-        PhongMaterial material;
-        // Patrol between two points
-        double x1, z1, x2, z2;
-        int target = 1; // 1 -> (x2,z2), 0 -> (x1,z1)
-        // Animation
-        double animAccum = 0;
-        int frame = 0;
-        int dirRow = 2; // 0=back,1=left,2=front,3=right
-        long lastDamageMs = 0;
-
-        Enemy(double x, double z, double x1, double z1, double x2, double z2, double speed, double width, double height, double depth) {
-            this.x = x;
-            this.z = z;
-            this.x1 = x1; this.z1 = z1; this.x2 = x2; this.z2 = z2;
-            this.speed = speed;
-            this.material = new PhongMaterial();
-            if (enemyFrames != null) {
-                this.material.setDiffuseMap(enemyFrames[dirRow][0]);
-            }
-            this.node = new Box(width, height, depth);
-            this.node.setMaterial(material);
-            // Place on floor so bottom touches y=0
-            this.node.setTranslateX(x);
-            this.node.setTranslateY(-height / 2.0);
-            this.node.setTranslateZ(z);
-        }
 
-        void update(double tpf, double playerX, double playerZ) {
-            if (isPlayerDead()) return;
-            // Move towards current target
-            double tx = (target == 1 ? x2 : x1);
-            double tz = (target == 1 ? z2 : z1);
-            double dx = tx - x;
-            double dz = tz - z;
-            double dist = Math.hypot(dx, dz);
-            double move = speed * tpf;
-            double nx = 0;
-            double nz = 0;
-            if (dist > 1e-4) {
-                nx = dx / dist;
-                nz = dz / dist;
-                double step = Math.min(move, dist);
-                x += nx * step;
-                z += nz * step;
-                // choose row by movement direction
-                if (Math.abs(nx) > Math.abs(nz)) {
-                    dirRow = nx > 0 ? 3 : 1; // right : left
-                } else {
-                    dirRow = nz > 0 ? 2 : 0; // front : back
-                }
-            } else {
-                // Switch target when reached
-                target = 1 - target;
-            }
-            node.setTranslateX(x);
-            node.setTranslateZ(z);
-            // Face movement direction if any
-            if (Math.abs(nx) + Math.abs(nz) > 1e-6) {
-                double angleY = Math.toDegrees(Math.atan2(nx, nz));
-                node.setRotationAxis(javafx.scene.transform.Rotate.Y_AXIS);
-                node.setRotate(angleY);
-            }
+    // Adaptive quality (starts at the full settings and steps down if frame time suffers)
+    private final QualityGovernor qualityGovernor = new QualityGovernor(QualityGovernor.targetFpsFromSystemProperty(), QualityGovernor.Tier.ULTRA);
+    // Gameplay runs at a fixed rate (-Dlabyrinth.simHz) independent of the frame rate
+    private final FixedTimestep defaultClock = new FixedTimestep(FixedTimestep.hzFromSystemProperty(), 12);
+    private FixedTimestep simClock = defaultClock; // a replay runs at its recording's rate for its level only
+    private static final double MINIMAP_MAX_HZ = Minimap.maxRefreshHzFromSystemProperty();
+    private double[] enemyMarkX = new double[16]; // enemy positions handed to the minimap
+    private double[] enemyMarkZ = new double[16];
+    // Input recording: -Dlabyrinth.record=prefix writes prefix-<level>.lrp when a 3D level ends;
+    // -Dlabyrinth.replay=file plays a recording back on the first level and reports frame times
+    private static final String RECORD_PREFIX = System.getProperty("labyrinth.record");
+    private String replayFile = System.getProperty("labyrinth.replay");
+    private InputRecording recording; // current level's recording or replay
+    private boolean replaying;
+    private boolean replayReported;
+    private final FrameTimeStats replayFrames = new FrameTimeStats();
+    // Quick save (F5) and quick load (F9) of the 3D level in progress; -Dlabyrinth.saveFile overrides the file
+    private static final java.nio.file.Path SAVE_FILE = java.nio.file.Path.of(System.getProperty("labyrinth.saveFile", "labyrinth.sav"));
+    private boolean saveRequested;
+    private World loadedWorld; // restored by the next initGame() instead of generating a level
+    private static final boolean ENDLESS = Boolean.getBoolean("labyrinth.endless");
+    private EndlessControl endlessControl; // endless mode instead of levels (3D scene only)
 
-            // Animate: advance frame every ~120ms
-            animAccum += tpf;
-            double frameTime = 0.12;
-            if (animAccum >= frameTime) {
-                int steps = (int) Math.floor(animAccum / frameTime);
-                animAccum -= steps * frameTime;
-                frame = (frame + steps) % 7;
-                if (enemyFrames != null) {
-                    material.setDiffuseMap(enemyFrames[dirRow][frame]);
-                }
-            }
+    private Point2D cellCenter(int gx, int gy) {
+        return new Point2D(gx * TILE + TILE / 2.0, gy * TILE + TILE / 2.0);
+    }
 
-            // Contact damage every 300ms
-            double cdx = playerX - x;
-            double cdz = playerZ - z;
-            double contactR = TILE * 0.45;
-            if (cdx * cdx + cdz * cdz <= contactR * contactR) {
-                long now = System.currentTimeMillis();
-                if (now - lastDamageMs >= ENEMY_DAMAGE_INTERVAL_MS) {
-                    lastDamageMs = now;
-                    damagePlayer(ENEMY_DAMAGE);
-                }
-            }
-        }
+    // Loads a level texture downsampled to the current quality tier's texture scale
+    private Image levelImage(String name) {
+        Image src = image(name);
+        double scale = qualityGovernor.getTier().textureScale();
+        if (scale >= 1.0) return src;
+        var url = getClass().getResource("/assets/textures/" + name);
+        if (url == null) return src;
+        return new Image(url.toExternalForm(), Math.max(1, Math.round(src.getWidth() * scale)), Math.max(1, Math.round(src.getHeight() * scale)), false, true);
     }
 
-    private Point2D cellCenter(int gx, int gy) {
-        return new Point2D(gx * TILE + TILE / 2.0, gy * TILE + TILE / 2.0);
+    public QualityGovernor.Tier getQualityTier() {
+        return qualityGovernor.getTier();
     }
 
     @Override
@@ -410,65 +373,58 @@ public class LabyrinthApp extends GameApplication {
         getGameScene().clearUINodes();
         currentLevel++;
         levelStartMillis = System.currentTimeMillis();
-        // reset enemies for new level
-        enemies = new java.util.ArrayList<>();
-
-        // Compute labyrinth size for this level: starting at 10x10 blocks, +2 each level
-        int blocks = 4 + 2 * (currentLevel - 1);
-        int W = blocks * 2 + 1; // generator grid must be odd
-        int H = blocks * 2 + 1;
-
-        // Select maze algorithm rotating each level
-        MazeGenerator.Algorithm[] algOrder = new MazeGenerator.Algorithm[] {
-                MazeGenerator.Algorithm.BACKTRACKER,
-                MazeGenerator.Algorithm.WILSON,
-                MazeGenerator.Algorithm.KRUSKAL,
-                MazeGenerator.Algorithm.PRIM,
-                MazeGenerator.Algorithm.ALDOUS_BRODER,
-                MazeGenerator.Algorithm.ELLER
-        };
-        MazeGenerator.Algorithm alg = algOrder[(currentLevel - 1) % algOrder.length];
+        if (renderMode == null) {
+            renderMode = RenderMode.fromSystemProperty();
+            System.out.println("[DEBUG_LOG] Render mode: " + renderMode);
+            if (ENDLESS && renderMode != RenderMode.SCENE_3D) System.out.println("[DEBUG_LOG] Endless mode needs the 3D scene; playing levels");
+        }
+        boolean use3D = renderMode == RenderMode.SCENE_3D;
+        boolean topDown = renderMode == RenderMode.TOP_DOWN;
+
+        endLevelSimulation();
+        simClock = defaultClock;
+        endlessControl = null;
+        if (ENDLESS && use3D) {
+            initEndless();
+            return;
+        }
+
+        // Generate the level grid (maze, pits, key and enemy routes); 2D mode has walls and the exit only.
+        // -Dlabyrinth.enemies=N overrides the enemy count for stress testing
+        long levelSeed = new java.util.Random().nextLong();
+        int enemyOverride = Integer.getInteger("labyrinth.enemies", -1);
+        World restored = topDown ? null : loadedWorld;
+        loadedWorld = null;
+        saveRequested = false;
+        InputRecording toReplay = topDown || restored != null ? null : loadReplay();
+        if (restored != null) {
+            currentLevel = restored.getLayout().level;
+            levelSeed = restored.getLayout().seed;
+            levelStartMillis -= (long) (restored.getTime() * 1000);
+        }
+        if (toReplay != null) {
+            currentLevel = toReplay.level;
+            levelSeed = toReplay.seed;
+            enemyOverride = toReplay.enemyOverride;
+            if (simClock.getStep() != toReplay.step) simClock = new FixedTimestep(1.0 / toReplay.step, 12);
+        }
+        layout = restored != null ? restored.getLayout() : LevelLayout.generate(currentLevel, !topDown, levelSeed, enemyOverride);
+        replaying = toReplay != null;
+        recording = replaying ? toReplay
+                : (RECORD_PREFIX != null && !topDown && restored == null ? new InputRecording(currentLevel, levelSeed, true, enemyOverride, TILE, simClock.getStep()) : null);
+        replayReported = false;
+        replayFrames.clear();
+        MazeGenerator.Algorithm alg = layout.algorithm;
         System.out.println("[DEBUG_LOG] Generating maze with algorithm: " + alg + " for level " + currentLevel);
-        // Generate maze
-        maze = MazeGenerator.generate(W, H, 0, alg);
+        pits = layout.pits;
+        int W = layout.width;
+        int H = layout.height;
         // store grid size for minimap
         this.gridW = W;
         this.gridH = H;
-
-        // Generate pits on walkable cells (exclude spawn and exit)
-        pits = new boolean[W][H];
-        double pitChance = Math.min(0.06 + (currentLevel - 1) * 0.01, 0.12); // scale slightly with level
-        pitChance *= 0.5; // decrease counts of pits by half
-        int spawnGX = 1, spawnGY = 1;
-        int exitGXLocal = W - 2, exitGYLocal = H - 2;
-        for (int x = 0; x < W; x++) {
-            for (int y = 0; y < H; y++) {
-                if (maze[x][y]) continue; // no pits in walls
-
-                // Exclude spawn, exit and the other two walkable corner cells of the labyrinth
-                boolean isCornerCell = (x == 1 && y == 1) || (x == W - 2 && y == H - 2) ||
-                        (x == W - 2 && y == 1) || (x == 1 && y == H - 2);
-                if (isCornerCell) continue;
-
-                if (Math.random() < pitChance) {
-                    boolean nearby = false;
-                    for (int dx = -1; dx <= 1 && !nearby; dx++) {
-                        for (int dy = -1; dy <= 1 && !nearby; dy++) {
-                            if (dx == 0 && dy == 0) continue;
-                            int nx = x + dx;
-                            int ny = y + dy;
-                            if (nx < 0 || ny < 0 || nx >= W || ny >= H) continue;
-                            if (pits[nx][ny]) {
-                                nearby = true; // prevent pits from being placed near each other (8-neighborhood)
-                            }
-                        }
-                    }
-                    if (!nearby) {
-                        pits[x][y] = true;
-                    }
-                }
-            }
-        }
+        world = topDown ? null : restored != null ? restored : new World(layout, TILE);
+        // copied before the simulation thread starts; World.Listener.onWallChanged keeps it in step
+        maze = world != null ? copyGrid(layout.maze) : layout.maze;
 
         int worldW = W * TILE;
         int worldH = H * TILE;
@@ -478,11 +434,8 @@ public class LabyrinthApp extends GameApplication {
 
         double floorThickness = 4;
         PhongMaterial floorMat = new PhongMaterial();
-        if (currentLevel % 2 == 1) {
-            floorMat.setDiffuseMap(image("floor-1.png"));
-        } else {
-            floorMat.setDiffuseMap(image("floor-2.png"));
-        }
+        Image floorImg = levelImage(currentLevel % 2 == 1 ? "floor-1.png" : "floor-2.png");
+        floorMat.setDiffuseMap(floorImg);
         Box floor = new Box(worldW, floorThickness, worldH);
         floor.setMaterial(floorMat);
         floor.setTranslateX(worldW / 2.0);
@@ -491,11 +444,13 @@ public class LabyrinthApp extends GameApplication {
         root3D.getChildren().add(floor);
 
         // Add pit overlays on the floor with random textures (pit1 or pit2)
-        if (pits != null) {
+        Image pitImg1 = levelImage("pit1.png");
+        Image pitImg2 = levelImage("pit2.png");
+        if (pits != null && use3D) {
             PhongMaterial pitMat1 = new PhongMaterial();
-            pitMat1.setDiffuseMap(image("pit1.png"));
+            pitMat1.setDiffuseMap(pitImg1);
             PhongMaterial pitMat2 = new PhongMaterial();
-            pitMat2.setDiffuseMap(image("pit2.png"));
+            pitMat2.setDiffuseMap(pitImg2);
 
             double overlayH = 0.2; // very thin so it looks like drawn on the floor
             double epsilon = 0.02; // avoid z-fighting by moving slightly above floor top (negative Y is up)
@@ -523,7 +478,8 @@ public class LabyrinthApp extends GameApplication {
 
         // Ceiling with sky texture
         PhongMaterial skyMat = new PhongMaterial();
-        skyMat.setDiffuseMap(image("sky-3.png"));
+        Image skyImg = levelImage("sky-3.png");
+        skyMat.setDiffuseMap(skyImg);
         double ceilingThickness = 4;
         Box ceiling = new Box(worldW, ceilingThickness, worldH);
         ceiling.setMaterial(skyMat);
@@ -534,33 +490,21 @@ public class LabyrinthApp extends GameApplication {
 
         // Wall materials
         String[] wallTextures = {"wall-1.png", "wall-2.png", "wall-3.png", "wall-4.png", "wall-5.png"};
-        PhongMaterial[] wallMats = new PhongMaterial[wallTextures.length];
-        for (int i = 0; i < wallMats.length; i++) {
-            wallMats[i] = new PhongMaterial();
-            wallMats[i].setDiffuseMap(image(wallTextures[i]));
-        }
-        int wallIndex = (currentLevel-1) % wallMats.length;
-
-        var thisLevelWall = wallMats[wallIndex];
-        for (int x = 0; x < W; x++) {
-            for (int y = 0; y < H; y++) {
-                if (maze[x][y]) {
-                    Box wall = new Box(TILE, wallHeight, TILE);
-                    wall.setMaterial(thisLevelWall);
-                    wall.setTranslateX(x * TILE + TILE / 2.0);
-                    wall.setTranslateY(-wallHeight / 2.0);
-                    wall.setTranslateZ(y * TILE + TILE / 2.0);
-                    root3D.getChildren().add(wall);
-                }
-            }
-        }
+        int wallIndex = (currentLevel-1) % wallTextures.length;
+        Image wallImg = levelImage(wallTextures[wallIndex]);
+
+        var thisLevelWall = new PhongMaterial();
+        thisLevelWall.setDiffuseMap(wallImg);
+        wallChunks = use3D ? new WallChunks(maze, TILE, wallHeight, thisLevelWall) : null;
+        if (wallChunks != null) root3D.getChildren().add(wallChunks.getNode());
 
         // Exit marker with animated texture
-        this.exitGX = W - 2;
-        this.exitGY = H - 2;
+        this.exitGX = layout.exitGX;
+        this.exitGY = layout.exitGY;
         Point2D exitCenter = cellCenter(this.exitGX, this.exitGY);
 
         double exitH = wallHeight * 0.6;
+        this.exitHeight = exitH;
         Box exitBox = new Box(TILE * 0.8, exitH, TILE * 0.8);
 
         // Load spritesheet and slice into 5 frames (40x40) horizontally
@@ -571,6 +515,8 @@ public class LabyrinthApp extends GameApplication {
         for (int i = 0; i < framesCount; i++) {
             frames[i] = new WritableImage(pr, i * frameW, 0, frameW, frameH);
         }
+        exitFrames = frames;
+        exitFrameIdx = 0;
         PhongMaterial exitMat = new PhongMaterial();
         exitMat.setDiffuseMap(frames[0]);
         exitMat.setSpecularColor(Color.WHITE);
@@ -580,6 +526,7 @@ public class LabyrinthApp extends GameApplication {
         final int[] idx = {0};
         exitAnim = new Timeline(new KeyFrame(Duration.millis(150), e2 -> {
             idx[0] = (idx[0] + 1) % framesCount;
+            exitFrameIdx = idx[0];
             exitMat.setDiffuseMap(frames[idx[0]]);
         }));
         exitAnim.setCycleCount(Timeline.INDEFINITE);
@@ -600,23 +547,9 @@ public class LabyrinthApp extends GameApplication {
         int kFrameW = 32, kFrameH = 32;
         keyFrameImage = new WritableImage(kpr, keyFrameIndex * kFrameW, 0, kFrameW, kFrameH);
 
-        // pick a random walkable, non-pit tile that isn't spawn or exit or other corners
-        java.util.List<int[]> candidates = new java.util.ArrayList<>();
-        for (int gx = 0; gx < W; gx++) {
-            for (int gy = 0; gy < H; gy++) {
-                if (maze[gx][gy]) continue; // wall
-                if (pits[gx][gy]) continue; // avoid pits
-                boolean isCorner = (gx == 1 && gy == 1) || (gx == W-2 && gy == H-2) || (gx == W-2 && gy == 1) || (gx == 1 && gy == H-2);
-                if (isCorner) continue;
-                if ((gx == 1 && gy == 1) || (gx == exitGX && gy == exitGY)) continue;
-                candidates.add(new int[]{gx, gy});
-            }
-        }
-        if (!candidates.isEmpty()) {
-            int idxC = (int) Math.floor(Math.random() * candidates.size());
-            int[] pick = candidates.get(idxC);
-            keyGX = pick[0];
-            keyGY = pick[1];
+        keyGX = layout.keyGX;
+        keyGY = layout.keyGY;
+        if (keyGX >= 0) {
             Point2D keyCenter = cellCenter(keyGX, keyGY);
 
             // Create an upright key billboard and position it mid-air with bobbing animation
@@ -627,6 +560,7 @@ public class LabyrinthApp extends GameApplication {
             PhongMaterial keyMat = new PhongMaterial();
             keyMat.setDiffuseMap(keyFrameImage);
             keyBox3D.setMaterial(keyMat);
+            keyBox3D.setRotationAxis(javafx.scene.transform.Rotate.Y_AXIS); // faces the camera by yaw only
             keyBox3D.setTranslateX(keyCenter.getX());
             // Place key near the floor and keep gentle bobbing without intersecting the floor
             double floorTopY = -floorThickness / 2.0;
@@ -643,8 +577,6 @@ public class LabyrinthApp extends GameApplication {
             keyHoverAnim.setAutoReverse(true);
             keyHoverAnim.setCycleCount(Timeline.INDEFINITE);
             keyHoverAnim.play();
-        } else {
-            keyGX = -1; keyGY = -1;
         }
 
         // Load enemy sprite frames (4 rows x 7 cols)
@@ -666,114 +598,58 @@ public class LabyrinthApp extends GameApplication {
             enemyFrames = null;
         }
 
-        // Spawn enemies from level 3 onwards
-        int enemyCount = Math.max(0, currentLevel - 1);
-        if (enemyCount > 0) {
-            java.util.List<int[]> walkables = new java.util.ArrayList<>();
-            for (int gx = 0; gx < W; gx++) {
-                for (int gy = 0; gy < H; gy++) {
-                    if (maze[gx][gy]) continue; // wall
-                    if (pits[gx][gy]) continue; // avoid pits
-                    boolean isCorner = (gx == 1 && gy == 1) || (gx == W-2 && gy == H-2) || (gx == W-2 && gy == 1) || (gx == 1 && gy == H-2);
-                    if (isCorner) continue;
-                    if ((gx == 1 && gy == 1) || (gx == exitGX && gy == exitGY)) continue; // spawn/exit
-                    if (gx == keyGX && gy == keyGY) continue; // not on key
-                    walkables.add(new int[]{gx, gy});
-                }
-            }
-            java.util.Collections.shuffle(walkables);
-            int toSpawn = Math.min(enemyCount, walkables.size());
-            for (int i = 0; i < toSpawn; i++) {
-                int[] cell = walkables.get(i);
-                int sx = cell[0];
-                int sy = cell[1];
-
-                // find corridor endpoints horizontally
-                int left = sx;
-                while (left - 1 >= 0 && !maze[left - 1][sy] && !pits[left - 1][sy]) left--;
-                int right = sx;
-                while (right + 1 < W && !maze[right + 1][sy] && !pits[right + 1][sy]) right++;
-                // vertically
-                int up = sy;
-                while (up - 1 >= 0 && !maze[sx][up - 1] && !pits[sx][up - 1]) up--;
-                int down = sy;
-                while (down + 1 < H && !maze[sx][down + 1] && !pits[sx][down + 1]) down++;
-
-                int spanH = right - left;
-                int spanV = down - up;
-                int gx1, gy1, gx2, gy2;
-                if (spanH >= spanV) {
-                    gx1 = left; gy1 = sy; gx2 = right; gy2 = sy;
-                } else {
-                    gx1 = sx; gy1 = up; gx2 = sx; gy2 = down;
-                }
-
-                Point2D pStart = cellCenter(sx, sy);
-                Point2D p1 = cellCenter(gx1, gy1);
-                Point2D p2 = cellCenter(gx2, gy2);
-
-                double width = TILE * 0.9;
-                double height = TILE * 1.25;
-                double depth = TILE * 0.12;
-                double espeed = TILE * (1.1 + Math.min(0.9, currentLevel * 0.08));
-
-                Enemy enemy = new Enemy(pStart.getX(), pStart.getY(), p1.getX(), p1.getY(), p2.getX(), p2.getY(), espeed, width, height, depth);
-                enemies.add(enemy);
-                root3D.getChildren().add(enemy.node);
-            }
+        // Enemy views for the World's enemies (the raycaster draws them as sprites instead)
+        int enemyCount = use3D && world != null ? world.getEnemies().getCount() : 0;
+        enemyNodes = new Box[enemyCount];
+        enemyMats = new PhongMaterial[enemyCount];
+        enemyShownSprite = new int[enemyCount];
+        for (int i = 0; i < enemyCount; i++) {
+            PhongMaterial mat = new PhongMaterial();
+            Box node = new Box(ENEMY_W, ENEMY_H, TILE * 0.12);
+            node.setMaterial(mat);
+            // Place on floor so bottom touches y=0
+            node.setTranslateY(-ENEMY_H / 2.0);
+            node.setRotationAxis(javafx.scene.transform.Rotate.Y_AXIS);
+            enemyNodes[i] = node;
+            enemyMats[i] = mat;
+            enemyShownSprite[i] = -1;
+            root3D.getChildren().add(node);
         }
 
-        // Camera and 3D subscene
-        camera = new PerspectiveCamera(true);
-        camera.setNearClip(0.1);
-        camera.setFarClip(10000);
-        camera.setFieldOfView(65);
-
-        SubScene subScene = new SubScene(root3D, getAppWidth(), getAppHeight(), true, SceneAntialiasing.BALANCED);
-        subScene.setFill(Color.BLACK);
-        subScene.setCamera(camera);
-        subScene.setCursor(Cursor.NONE); // hide cursor for FPS feel
-        subScene.setFocusTraversable(true);
-        getGameScene().addUINode(subScene);
-        this.subScene3D = subScene;
-
-        // Controller entity (no visual)
-        Point2D spawn = cellCenter(1, 1);
-        Point2D keyCenterAll = (keyGX >= 0 ? cellCenter(keyGX, keyGY) : null);
-        fpControl = new FirstPerson3DControl(maze, pits, TILE, camera, spawn, exitCenter, keyCenterAll);
-        entityBuilder()
-                .type(EntityType.PLAYER)
-                .with(fpControl)
-                .buildAndAttach();
-
-        // Mouse look: adjust yaw (X) and pitch (Y) based on mouse movement over the 3D subscene
-        subScene.setOnMouseEntered(e -> {
-            subScene.requestFocus();
-            if (captureMouse) {
-                centerCursor();
-            } else {
-                lastMouseX = e.getX();
-                lastMouseY = e.getY();
-            }
-        });
-        subScene.setOnMouseExited(e -> { lastMouseX = Double.NaN; lastMouseY = Double.NaN; });
-        if(System.getProperty("os.name", "generic").toLowerCase().contains("mac")) {
-            subScene.setOnMouseMoved(e -> handleMouseMac(e.getX(), e.getY()));
-            subScene.setOnMouseDragged(e -> handleMouseMac(e.getX(), e.getY()));
+        fpControl = null;
+        playerControl = null;
+        if (topDown) {
+            buildTopDownView(wallImg, floorImg, pitImg1);
         } else {
-            subScene.setOnMouseMoved(e -> handleMouse(e.getX(), e.getY()));
-            subScene.setOnMouseDragged(e -> handleMouse(e.getX(), e.getY()));
+            buildFirstPersonView(root3D, wallHeight, exitCenter, wallImg, floorImg, skyImg, pitImg1, pitImg2);
         }
 
         // UI hint
-        var hint = FXGL.getUIFactoryService().newText("WASD to move, Q/E to turn, Space to jump. Mouse to look. Avoid pits: jump over or fall! Find the exit.", Color.WHITE, 18);
+        String hintText = topDown
+                ? "WASD to move, mouse to aim. Find the exit."
+                : "WASD to move, Q/E to turn, Space to jump. Mouse to look. Avoid pits: jump over or fall! Find the exit. F5 saves, F9 loads.";
+        var hint = FXGL.getUIFactoryService().newText(hintText, Color.WHITE, 18);
         hint.setTranslateX(20);
         hint.setTranslateY(30);
         getGameScene().addUINode(hint);
 
-        // Init health system
-        playerDead = false;
-        playerHealth = 100;
+        // Compass hint: points up when the way to go is straight ahead
+        compassArrow = null;
+        if (!topDown) {
+            compassArrow = new javafx.scene.shape.Polygon(0, -14, 9, 10, 0, 4, -9, 10);
+            compassArrow.setFill(Color.color(1, 0.85, 0.2, 0.85));
+            compassArrow.setStroke(Color.color(0, 0, 0, 0.6));
+            compassArrow.setMouseTransparent(true);
+            compassArrow.setTranslateX(getAppWidth() / 2.0);
+            compassArrow.setTranslateY(70);
+            compassArrow.setVisible(false);
+            getGameScene().addUINode(compassArrow);
+        }
+
+        // A restored level may have its key picked up already
+        if (world != null && world.hasKey()) onKeyPicked();
+
+        // Init health bar
         initHealthUI();
         drawHealthBar();
 
@@ -792,6 +668,10 @@ public class LabyrinthApp extends GameApplication {
             buildMinimap();
         }
 
+        // Don't let the level build hitch count against the quality governor
+        qualityGovernor.reset();
+        simClock.reset();
+
         // Display level start message and ensure focus
         Platform.runLater(() -> {
             getNotificationService().pushNotification("Level " + currentLevel + ": " + alg);
@@ -800,73 +680,182 @@ public class LabyrinthApp extends GameApplication {
         });
     }
 
+    private void buildFirstPersonView(Group root3D, double wallHeight, Point2D exitCenter,
+                                      Image wallImg, Image floorImg, Image skyImg, Image pitImg1, Image pitImg2) {
+        getGameScene().getViewport().unbind();
+        getGameScene().getViewport().setX(0);
+        getGameScene().getViewport().setY(0);
+        topDownMap = null;
+
+        // Camera and 3D subscene
+        camera = new PerspectiveCamera(true);
+        camera.setNearClip(NEAR_CLIP);
+        QualityGovernor.Tier tier = qualityGovernor.getTier();
+        camera.setFarClip(tier.farClip());
+        camera.setFieldOfView(65);
+
+        if (renderMode == RenderMode.SCENE_3D) {
+            SceneAntialiasing aa = tier.antialiasing() ? SceneAntialiasing.BALANCED : SceneAntialiasing.DISABLED;
+            SubScene subScene = new SubScene(root3D, getAppWidth(), getAppHeight(), true, aa);
+            subScene.setFill(Color.BLACK);
+            subScene.setCamera(camera);
+            viewNode = subScene;
+            raycaster = null;
+        } else {
+            // CPU raycaster: same camera parameters, drawn into an image scaled up to the screen
+            raycaster = new RaycastRenderer(maze, pits, TILE, wallHeight,
+                    (int) (getAppWidth() * RAYCAST_RESOLUTION), (int) (getAppHeight() * RAYCAST_RESOLUTION),
+                    wallImg, floorImg, skyImg, pitImg1, pitImg2);
+            raycaster.setFarClip(tier.farClip());
+            raycaster.setFieldOfView(camera.getFieldOfView());
+            ImageView view = new ImageView(raycaster.getImage());
+            view.setFitWidth(getAppWidth());
+            view.setFitHeight(getAppHeight());
+            view.setSmooth(false);
+            viewNode = view;
+        }
+        viewNode.setCursor(Cursor.NONE); // hide cursor for FPS feel
+        viewNode.setFocusTraversable(true);
+        getGameScene().addUINode(viewNode);
+
+        // Controller entity (no visual)
+        fpControl = new FirstPerson3DControl(world, camera, raycaster == null ? root3D : null, simClock.getStep(),
+                recording, replaying);
+        entityBuilder()
+                .type(EntityType.PLAYER)
+                .with(fpControl)
+                .buildAndAttach();
+        installMouseLook();
+    }
+
+    // -Dlabyrinth.endless: one unbounded maze streamed in chunks around the player; no key, exit, pits or enemies
+    private void initEndless() {
+        long seed = new java.util.Random().nextLong();
+        System.out.println("[DEBUG_LOG] Endless mode, seed " + seed);
+        world = null;
+        layout = null;
+        maze = null;
+        wallChunks = null;
+        pits = null;
+        fpControl = null;
+        playerControl = null;
+        raycaster = null;
+        topDownMap = null;
+        compassArrow = null;
+        keyBox3D = null;
+        removeMinimap();
+        enemyNodes = new Box[0];
+        getGameScene().getViewport().unbind();
+        getGameScene().getViewport().setX(0);
+        getGameScene().getViewport().setY(0);
+
+        Group root3D = new Group();
+        root3D.getChildren().add(new AmbientLight(Color.color(0.6, 0.6, 0.6)));
+        String[] wallTextures = {"wall-1.png", "wall-2.png", "wall-3.png", "wall-4.png", "wall-5.png"};
+        PhongMaterial wallMat = new PhongMaterial();
+        wallMat.setDiffuseMap(levelImage(wallTextures[Math.floorMod(seed, wallTextures.length)]));
+        PhongMaterial floorMat = new PhongMaterial();
+        floorMat.setDiffuseMap(levelImage("floor-1.png"));
+        PhongMaterial skyMat = new PhongMaterial();
+        skyMat.setDiffuseMap(levelImage("sky-3.png"));
+
+        camera = new PerspectiveCamera(true);
+        camera.setNearClip(NEAR_CLIP);
+        QualityGovernor.Tier tier = qualityGovernor.getTier();
+        camera.setFarClip(tier.farClip());
+        camera.setFieldOfView(65);
+        SceneAntialiasing aa = tier.antialiasing() ? SceneAntialiasing.BALANCED : SceneAntialiasing.DISABLED;
+        SubScene subScene = new SubScene(root3D, getAppWidth(), getAppHeight(), true, aa);
+        subScene.setFill(Color.BLACK);
+        subScene.setCamera(camera);
+        viewNode = subScene;
+        viewNode.setCursor(Cursor.NONE);
+        viewNode.setFocusTraversable(true);
+        getGameScene().addUINode(viewNode);
+
+        endlessControl = new EndlessControl(new EndlessWorld(seed, TILE), camera, simClock.getStep(), root3D,
+                TILE * 1.8, wallMat, floorMat, skyMat);
+        entityBuilder()
+                .type(EntityType.PLAYER)
+                .with(endlessControl)
+                .buildAndAttach();
+        installMouseLook();
+
+        var hint = FXGL.getUIFactoryService().newText("Endless maze: WASD to move, Q/E to turn, Space to jump. Mouse to look.", Color.WHITE, 18);
+        hint.setTranslateX(20);
+        hint.setTranslateY(30);
+        getGameScene().addUINode(hint);
+
+        qualityGovernor.reset();
+        simClock.reset();
+        Platform.runLater(() -> {
+            getNotificationService().pushNotification("Endless maze");
+            getGameScene().getRoot().requestFocus();
+        });
+    }
+
+    private void installMouseLook() {
+        // Mouse look: adjust yaw (X) and pitch (Y) based on mouse movement over the 3D subscene
+        viewNode.setOnMouseEntered(e -> {
+            viewNode.requestFocus();
+            lastMouseX = e.getX();
+            lastMouseY = e.getY();
+            warpPending = false;
+            if (captureMouse) centerCursor();
+        });
+        viewNode.setOnMouseExited(e -> { lastMouseX = Double.NaN; lastMouseY = Double.NaN; warpPending = false; });
+        viewNode.setOnMouseMoved(e -> handleMouse(e.getX(), e.getY()));
+        viewNode.setOnMouseDragged(e -> handleMouse(e.getX(), e.getY()));
+    }
+
+    // 2D top-down mode: pre-rendered chunk images in the game world, a PlayerControl entity and a following viewport
+    private void buildTopDownView(Image wallImg, Image floorImg, Image pitImg) {
+        viewNode = null;
+        raycaster = null;
+        camera = null;
+        topDownMap = new TopDownMap(maze, pits, exitGX, exitGY, TILE, wallImg, floorImg, pitImg, exitFrames[0]);
+        entityBuilder()
+                .at(0, 0)
+                .view(topDownMap.getNode())
+                .zIndex(-1)
+                .buildAndAttach();
+
+        double size = TILE * 0.6;
+        javafx.scene.shape.Polygon arrow = new javafx.scene.shape.Polygon(0, 0, size, size / 2.0, 0, size);
+        arrow.setFill(Color.RED);
+        TriggerGrid triggers = new TriggerGrid(gridW, gridH, TILE);
+        triggers.add(exitGX, exitGY, TriggerGrid.EXIT);
+        playerControl = new PlayerControl(new CollisionField(maze, pits, TILE), triggers);
+        Point2D spawn = cellCenter(1, 1);
+        Entity player = entityBuilder()
+                .type(EntityType.PLAYER)
+                .at(spawn.getX() - size / 2.0, spawn.getY() - size / 2.0)
+                .viewWithBBox(arrow)
+                .rotationOrigin(size / 2.0, size / 2.0)
+                .with(playerControl)
+                .buildAndAttach();
+
+        var viewport = getGameScene().getViewport();
+        viewport.setBounds(0, 0, gridW * TILE, gridH * TILE);
+        viewport.bindToEntity(player, getAppWidth() / 2.0 - size / 2.0, getAppHeight() / 2.0 - size / 2.0);
+    }
+
     private void buildMinimap() {
         try {
             // Remove previous minimap if exists
-            if (minimapNode != null) {
-                getGameScene().removeUINode(minimapNode);
-                minimapNode = null;
-            }
+            removeMinimap();
 
             if (maze == null || gridW <= 0 || gridH <= 0) return;
 
-            double screenArea = getAppWidth() * getAppHeight();
-            double maxArea = screenArea / 48.0; // must not exceed 1/12 of screen
-            // Derive pixels per cell from area constraint
-            cellPx = Math.sqrt(Math.max(1.0, maxArea) / (gridW * gridH));
-            // Avoid too tiny rendering
-            if (cellPx < 1.0) cellPx = 1.0;
-
-            minimapW = gridW * cellPx;
-            minimapH = gridH * cellPx;
-
-            minimapStatic = new Canvas(minimapW, minimapH);
-            minimapOverlay = new Canvas(minimapW, minimapH);
-
-            // Draw static background and walls
-            GraphicsContext gs = minimapStatic.getGraphicsContext2D();
-            gs.setFill(Color.color(0, 0, 0, 0.45));
-            gs.fillRect(0, 0, minimapW, minimapH);
-
-            // draw walls
-            gs.setFill(Color.LIGHTGRAY);
-            for (int x = 0; x < gridW; x++) {
-                for (int y = 0; y < gridH; y++) {
-                    if (maze[x][y]) {
-                        gs.fillRect(x * cellPx, y * cellPx, cellPx, cellPx);
-                    }
-                }
-            }
-            // draw pits on walkable tiles
-            if (pits != null) {
-                gs.setFill(Color.DARKRED);
-                for (int x = 0; x < gridW; x++) {
-                    for (int y = 0; y < gridH; y++) {
-                        if (!maze[x][y] && pits[x][y]) {
-                            gs.fillRect(x * cellPx, y * cellPx, cellPx, cellPx);
-                        }
-                    }
-                }
-            }
-            // Highlight exit cell
-            if (exitGX >= 0 && exitGY >= 0) {
-                gs.setFill(Color.LIMEGREEN);
-                gs.fillRect(exitGX * cellPx, exitGY * cellPx, cellPx, cellPx);
-            }
-            // Border
-            gs.setStroke(Color.color(1,1,1,0.8));
-            gs.setLineWidth(Math.max(1.0, cellPx * 0.08));
-            gs.strokeRect(0.5, 0.5, minimapW - 1, minimapH - 1);
-
-            minimapNode = new StackPane(minimapStatic, minimapOverlay);
-            minimapNode.setMouseTransparent(true);
-            minimapNode.setPickOnBounds(false);
+            // Static layer is rasterized in the background; the node shows up empty for a frame or two
+            minimap = new Minimap(maze, pits, exitGX, exitGY, TILE, getAppWidth(), getAppHeight());
+            if (fpControl != null) minimap.follow(fpControl.getX(), fpControl.getZ());
 
             double margin = 10;
-            minimapNode.setTranslateX(getAppWidth() - minimapW - margin);
-            minimapNode.setTranslateY(margin);
+            minimap.getNode().setTranslateX(getAppWidth() - minimap.getWidth() - margin);
+            minimap.getNode().setTranslateY(margin);
 
-            getGameScene().addUINode(minimapNode);
+            getGameScene().addUINode(minimap.getNode());
         } catch (Exception ex) {
             System.out.println("[DEBUG_LOG] Failed to build minimap: " + ex.getMessage());
         }
@@ -874,91 +863,257 @@ public class LabyrinthApp extends GameApplication {
 
     private void removeMinimap() {
         try {
-            if (minimapNode != null) {
-                getGameScene().removeUINode(minimapNode);
+            if (minimap != null) {
+                minimap.dispose();
+                getGameScene().removeUINode(minimap.getNode());
             }
         } catch (Exception ignored) {}
-        minimapNode = null;
-        minimapOverlay = null;
-        minimapStatic = null;
+        minimap = null;
     }
 
     @Override
     protected void onUpdate(double tpf) {
-        // Make the key billboard always face the player (camera)
-        if (keyBox3D != null && camera != null) {
-            double dx = camera.getTranslateX() - keyBox3D.getTranslateX();
-            double dz = camera.getTranslateZ() - keyBox3D.getTranslateZ();
+        long now = System.nanoTime();
+        if (qualityGovernor.onFrame(now) && camera != null) {
+            // Live settings; antialiasing and texture resolution follow on the next level build
+            camera.setFarClip(qualityGovernor.getTier().farClip());
+            if (raycaster != null) raycaster.setFarClip(qualityGovernor.getTier().farClip());
+        }
+
+        applyMouseLook();
+
+        // Fixed-rate simulation: the simulation thread runs the whole steps for the elapsed frame time,
+        // then we draw its latest state in between them
+        int steps = simClock.advance(tpf);
+        double alpha = simClock.alpha();
+        if (fpControl != null) {
+            // enemy animation speed follows the quality tier
+            fpControl.setAnimFrameTime(0.12 / qualityGovernor.getTier().enemyAnimRate());
+            fpControl.advance(steps);
+            fpControl.render(alpha);
+            renderEnemies(fpControl.getRenderAlpha()); // enemies at the same point of the snapshot as the camera
+        }
+
+        if (endlessControl != null) {
+            endlessControl.advance(steps);
+            endlessControl.render(alpha);
+        }
+
+        if (saveRequested && fpControl != null) {
+            byte[] save = fpControl.takeSave();
+            if (save != null) {
+                saveRequested = false;
+                writeSave(save);
+            }
+        }
+
+        if (replaying && fpControl != null && !replayReported) {
+            if (fpControl.isReplayFinished()) {
+                replayReported = true;
+                boolean same = fpControl.getReplayHash() == recording.getStateHash();
+                System.out.println("[DEBUG_LOG] Replay finished after " + recording.getTicks() + " ticks, frame times: "
+                        + replayFrames.summary(1_000_000, "ms") + (same ? ", state matches the recording" : ", state DIVERGED from the recording"));
+            } else {
+                replayFrames.add((long) (tpf * 1e9));
+            }
+        }
+
+        if (compassArrow != null && fpControl != null) {
+            byte dir = fpControl.getSnapshot().getHintDirection();
+            boolean show = dir != FlowField.DIR_NONE;
+            if (compassArrow.isVisible() != show) compassArrow.setVisible(show);
+            if (show) {
+                // same heading convention as yaw: 0 faces +Z, positive turns towards +X (right on screen)
+                double heading = Math.toDegrees(Math.atan2(FlowField.dx(dir), FlowField.dz(dir)));
+                compassArrow.setRotate(heading - fpControl.getYaw());
+            }
+        }
+
+        // Make the key billboard always face the player (camera); both in world coordinates, the camera's
+        // translate is relative to the floating origin
+        if (keyBox3D != null && fpControl != null) {
+            double dx = fpControl.getRenderX() - keyBox3D.getTranslateX();
+            double dz = fpControl.getRenderZ() - keyBox3D.getTranslateZ();
             double angleY = Math.toDegrees(Math.atan2(dx, dz));
-            keyBox3D.setRotationAxis(javafx.scene.transform.Rotate.Y_AXIS);
             keyBox3D.setRotate(angleY);
         }
 
-        // Draw dynamic markers on the minimap
-        if (minimapOverlay != null && fpControl != null) {
-            GraphicsContext go = minimapOverlay.getGraphicsContext2D();
-            go.clearRect(0, 0, minimapOverlay.getWidth(), minimapOverlay.getHeight());
+        // Refresh dynamic minimap markers (dirty rects only), capped by the configured rate and the quality tier
+        if (minimap != null && fpControl != null) {
+            double tierHz = qualityGovernor.getTier().minimapHz();
+            minimap.setRefreshRate(tierHz <= 0 ? MINIMAP_MAX_HZ : (MINIMAP_MAX_HZ <= 0 ? tierHz : Math.min(tierHz, MINIMAP_MAX_HZ)));
+            WorldSnapshot snap = fpControl.getSnapshot();
+            int n = snap.getEnemyCount();
+            if (enemyMarkX.length < n) {
+                enemyMarkX = new double[Math.max(n, enemyMarkX.length * 2)];
+                enemyMarkZ = new double[enemyMarkX.length];
+            }
+            for (int i = 0; i < n; i++) {
+                enemyMarkX[i] = snap.enemyRenderX(i, fpControl.getRenderAlpha());
+                enemyMarkZ[i] = snap.enemyRenderZ(i, fpControl.getRenderAlpha());
+            }
+            minimap.updateMarkers(now, fpControl.getRenderX(), fpControl.getRenderZ(), fpControl.getYaw(),
+                    !keyTaken, keyGX, keyGY, enemyMarkX, enemyMarkZ, n);
+        }
+
+        if (raycaster != null && fpControl != null) {
+            renderRaycast(fpControl.getRenderAlpha());
+        }
+
+        if (topDownMap != null && playerControl != null) {
+            var viewport = getGameScene().getViewport();
+            topDownMap.updateViewport(viewport.getX(), viewport.getY(), getAppWidth(), getAppHeight());
+        }
+    }
+
+    // Pushes enemy state to the 3D nodes; only nodes within view distance and not behind the camera are touched
+    private void renderEnemies(double alpha) {
+        WorldSnapshot snap = fpControl.getSnapshot();
+        int n = enemyNodes.length;
+        if (n == 0) return;
+        double camX = fpControl.getRenderX();
+        double camZ = fpControl.getRenderZ();
+        double yawRad = Math.toRadians(fpControl.getYaw());
+        double fwdX = Math.sin(yawRad);
+        double fwdZ = Math.cos(yawRad);
+        double far = qualityGovernor.getTier().farClip();
+        double far2 = far * far;
+        for (int i = 0; i < n; i++) {
+            Box node = enemyNodes[i];
+            double x = snap.enemyRenderX(i, alpha);
+            double z = snap.enemyRenderZ(i, alpha);
+            double dx = x - camX;
+            double dz = z - camZ;
+            boolean visible = dx * dx + dz * dz <= far2 && dx * fwdX + dz * fwdZ > -TILE;
+            if (node.isVisible() != visible) node.setVisible(visible);
+            if (!visible) continue;
+
+            node.setTranslateX(x);
+            node.setTranslateZ(z);
+            // Face movement direction if any
+            double nx = snap.enemyDirX(i);
+            double nz = snap.enemyDirZ(i);
+            if (Math.abs(nx) + Math.abs(nz) > 1e-6) {
+                double angleY = Math.toDegrees(Math.atan2(nx, nz));
+                if (node.getRotate() != angleY) node.setRotate(angleY);
+            }
+            int row = snap.enemyDirRow(i);
+            int frame = snap.enemyFrame(i);
+            int sprite = row * EnemySystem.ANIM_FRAMES + frame;
+            if (enemyFrames != null && enemyShownSprite[i] != sprite) {
+                enemyShownSprite[i] = sprite;
+                enemyMats[i].setDiffuseMap(enemyFrames[row][frame]);
+            }
+        }
+    }
 
-            // draw key marker if not yet taken
-            if (!keyTaken && keyGX >= 0 && keyGY >= 0) {
-                go.setFill(Color.BLUE);
-                go.fillRect(keyGX * cellPx, keyGY * cellPx, cellPx, cellPx);
+    private void renderRaycast(double alpha) {
+        raycaster.clearSprites();
+        if (!keyTaken && keyBox3D != null) {
+            double keyH = keyBox3D.getHeight();
+            // translateY is negative-up and centred on the box
+            raycaster.addSprite(keyBox3D.getTranslateX(), keyBox3D.getTranslateZ(), keyBox3D.getWidth(),
+                    -keyBox3D.getTranslateY() - keyH / 2.0, keyH, keyFrameImage);
+        }
+        if (exitFrames != null) {
+            raycaster.addSprite(exitGX * TILE + TILE / 2.0, exitGY * TILE + TILE / 2.0, TILE * 0.8, 0, exitHeight, exitFrames[exitFrameIdx]);
+        }
+        if (enemyFrames != null) {
+            WorldSnapshot snap = fpControl.getSnapshot();
+            double camX = fpControl.getRenderX();
+            double camZ = fpControl.getRenderZ();
+            double far = qualityGovernor.getTier().farClip();
+            for (int i = 0; i < snap.getEnemyCount(); i++) {
+                double x = snap.enemyRenderX(i, alpha);
+                double z = snap.enemyRenderZ(i, alpha);
+                if ((x - camX) * (x - camX) + (z - camZ) * (z - camZ) > far * far) continue;
+                raycaster.addSprite(x, z, ENEMY_W, 0, ENEMY_H, enemyFrames[snap.enemyDirRow(i)][snap.enemyFrame(i)]);
             }
+        }
+        raycaster.render(fpControl.getRenderX(), fpControl.getRenderZ(), fpControl.getEyeHeight(), fpControl.getYaw(), fpControl.getPitch());
+    }
 
-            // draw player marker as an oriented arrow (triangle) showing facing direction
-            double px = (fpControl.getX() / TILE) * cellPx;
-            double py = (fpControl.getZ() / TILE) * cellPx;
-            double yaw = fpControl.getYaw();
-            double yawRad = Math.toRadians(yaw);
-            double dirX = Math.sin(yawRad);
-            double dirY = Math.cos(yawRad); // map world Z to minimap Y
-            double lenDir = Math.hypot(dirX, dirY);
-            if (lenDir < 1e-6) { dirX = 0; dirY = -1; lenDir = 1; }
-            dirX /= lenDir; dirY /= lenDir;
-
-            double L = Math.max(6.0, cellPx * 0.9);  // arrow length
-            double W = Math.max(3.0, cellPx * 0.55); // arrow width
-
-            // tip point (forward)
-            double tipX = px + dirX * (L * 0.6);
-            double tipY = py + dirY * (L * 0.6);
-            // base center behind
-            double baseCX = px - dirX * (L * 0.35);
-            double baseCY = py - dirY * (L * 0.35);
-            double halfW = W / 2.0;
-            // perpendicular vector
-            double perpX = -dirY;
-            double perpY = dirX;
-            double leftX = baseCX + perpX * halfW;
-            double leftY = baseCY + perpY * halfW;
-            double rightX = baseCX - perpX * halfW;
-            double rightY = baseCY - perpY * halfW;
-
-            go.setFill(Color.RED);
-            go.fillPolygon(new double[]{tipX, rightX, leftX}, new double[]{tipY, rightY, leftY}, 3);
-
-            // draw enemies as orange squares
-            if (enemies != null && !enemies.isEmpty()) {
-                go.setFill(Color.ORANGE);
-                double er = Math.max(2.0, cellPx * 0.28);
-                for (Enemy e : enemies) {
-                    double ex = (e.x / TILE) * cellPx;
-                    double ey = (e.z / TILE) * cellPx;
-                    go.fillRect(ex - er / 2.0, ey - er / 2.0, er, er);
+    // Stops the previous level's simulation thread and saves its input recording, if any
+    private void endLevelSimulation() {
+        if (fpControl != null) fpControl.stop();
+        if (recording != null && !replaying) {
+            if (recording.isFinished()) {
+                java.nio.file.Path file = java.nio.file.Path.of(RECORD_PREFIX + "-" + recording.level + ".lrp");
+                try {
+                    recording.write(file);
+                    System.out.println("[DEBUG_LOG] Input recording saved: " + file + " (" + recording.getTicks() + " ticks)");
+                } catch (java.io.IOException e) {
+                    System.out.println("[DEBUG_LOG] Could not save input recording " + file + ": " + e.getMessage());
                 }
             }
         }
+        recording = null;
+    }
 
-        // Update enemies
-        if (fpControl != null && enemies != null && !enemies.isEmpty()) {
-            double pxWorld = fpControl.getX();
-            double pzWorld = fpControl.getZ();
-            for (Enemy e : enemies) {
-                e.update(tpf, pxWorld, pzWorld);
+    // The -Dlabyrinth.replay recording, once (later levels play normally)
+    private InputRecording loadReplay() {
+        if (replayFile == null) return null;
+        String file = replayFile;
+        replayFile = null;
+        try {
+            InputRecording r = InputRecording.read(java.nio.file.Path.of(file));
+            if (r.tile != TILE) {
+                System.out.println("[DEBUG_LOG] Replay " + file + " uses tile " + r.tile + ", expected " + TILE + "; ignored");
+                return null;
             }
+            System.out.println("[DEBUG_LOG] Replaying " + file + ": level " + r.level + ", " + r.getTicks() + " ticks");
+            return r;
+        } catch (java.io.IOException e) {
+            System.out.println("[DEBUG_LOG] Could not read replay " + file + ": " + e.getMessage());
+            return null;
         }
     }
 
+    // F5: the simulation encodes its state between two steps; onUpdate writes it once it's there
+    private void quickSave() {
+        if (fpControl == null || saveRequested || replaying || fpControl.isDead()) return;
+        saveRequested = fpControl.requestSave();
+    }
+
+    private void writeSave(byte[] data) {
+        long t0 = System.nanoTime();
+        try {
+            SaveGame.write(SAVE_FILE, data);
+            System.out.println("[DEBUG_LOG] Saved " + SAVE_FILE + ": " + data.length + " bytes in "
+                    + String.format("%.1f", (System.nanoTime() - t0) / 1e6) + " ms");
+            getNotificationService().pushNotification("Game saved");
+        } catch (java.io.IOException e) {
+            System.out.println("[DEBUG_LOG] Could not save " + SAVE_FILE + ": " + e.getMessage());
+            getNotificationService().pushNotification("Could not save the game");
+        }
+    }
+
+    // F9: restores the saved level in place of the current one
+    private void quickLoad() {
+        if (renderMode == RenderMode.TOP_DOWN || endlessControl != null) return;
+        if (!java.nio.file.Files.exists(SAVE_FILE)) {
+            getNotificationService().pushNotification("No saved game");
+            return;
+        }
+        long t0 = System.nanoTime();
+        World w;
+        try {
+            w = SaveGame.read(SAVE_FILE);
+        } catch (java.io.IOException e) {
+            System.out.println("[DEBUG_LOG] Could not load " + SAVE_FILE + ": " + e.getMessage());
+            getNotificationService().pushNotification("Could not load the saved game");
+            return;
+        }
+        if (w.getTile() != TILE) {
+            System.out.println("[DEBUG_LOG] Save " + SAVE_FILE + " uses tile " + w.getTile() + ", expected " + TILE + "; ignored");
+            return;
+        }
+        System.out.println("[DEBUG_LOG] Loaded " + SAVE_FILE + ": level " + w.getLayout().level + " in "
+                + String.format("%.1f", (System.nanoTime() - t0) / 1e6) + " ms");
+        loadedWorld = w;
+        getGameController().startNewGame();
+    }
+
     public void onKeyPicked() {
         keyTaken = true;
         // Stop key hover animation before removing the node
@@ -988,97 +1143,72 @@ public class LabyrinthApp extends GameApplication {
         }
     }
 
+    // Only accumulates the movement; applyMouseLook() turns the camera and recenters once per frame.
+    // After a warp, deltas are measured from the centre, or from the old position for events that were
+    // still queued from before it; no synthetic event is needed, so a dropped one costs nothing.
     private void handleMouse(double x, double y) {
-        if (captureMouse) {
-            if (subScene3D == null) return;
-            if (isRecentering) {
-                // Ignore the synthetic event caused by Robot.mouseMove
-                isRecentering = false;
-                return;
-            }
-            double centerX = subScene3D.getWidth() / 2.0;
-            double centerY = subScene3D.getHeight() / 2.0;
-            double dx = x - centerX;
-            double dy = y - centerY;
-            if (fpControl != null) {
-                fpControl.addYaw(dx * mouseSensitivity);
-                fpControl.addPitch(-dy * mouseSensitivity); // invert Y for natural look
-            }
-            centerCursor();
-            return;
-        }
-
-        // Non-capture mode: use relative movement based on last mouse position
         if (Double.isNaN(lastMouseX) || Double.isNaN(lastMouseY)) {
             lastMouseX = x;
             lastMouseY = y;
             return;
         }
-        double dx = x - lastMouseX;
-        double dy = y - lastMouseY;
+        if (warpPending) {
+            double toCenter = (x - lastMouseX) * (x - lastMouseX) + (y - lastMouseY) * (y - lastMouseY);
+            double toOld = (x - preWarpX) * (x - preWarpX) + (y - preWarpY) * (y - preWarpY);
+            if (toOld < toCenter) {
+                pendingLookX += x - preWarpX;
+                pendingLookY += y - preWarpY;
+                preWarpX = x;
+                preWarpY = y;
+                if (warpAge > WARP_LOST_FRAMES) {
+                    // the warp was lost; carry on from here, applyMouseLook() issues another if needed
+                    warpPending = false;
+                    lastMouseX = x;
+                    lastMouseY = y;
+                }
+                return;
+            }
+            warpPending = false;
+        }
+        pendingLookX += x - lastMouseX;
+        pendingLookY += y - lastMouseY;
         lastMouseX = x;
         lastMouseY = y;
-        if (fpControl != null) {
-            fpControl.addYaw(dx * mouseSensitivity);
-            fpControl.addPitch(-dy * mouseSensitivity); // invert Y for natural look
-        }
     }
 
-    private void handleMouseMac(double x, double y) {
-        if (captureMouse) {
-            if (subScene3D == null) return;
-
-            if (isRecentering) {
-                // Synthetic event from Robot, ignore movement, update last known pos
-                isRecentering = false;
-                lastMouseX = x;
-                lastMouseY = y;
-                return;
-            }
-
-            // Standard relative mouse movement calculation
-            if (Double.isNaN(lastMouseX) || Double.isNaN(lastMouseY)) {
-                lastMouseX = x;
-                lastMouseY = y;
-                return;
-            }
-            double dx = x - lastMouseX;
-            double dy = y - lastMouseY;
-            lastMouseX = x;
-            lastMouseY = y;
-
-            if (fpControl != null) {
-                fpControl.addYaw(dx * mouseSensitivity);
-                fpControl.addPitch(-dy * mouseSensitivity); // invert Y for natural look
-            }
-
-            // Recenter cursor only if it's near the edge of the subscene
-            double margin = 10; // pixels from edge
-            if (x < margin || x > subScene3D.getWidth() - margin ||
-                    y < margin || y > subScene3D.getHeight() - margin) {
-                centerCursor();
-            }
-            return;
+    // Once per frame: applies the accumulated movement and, in capture mode, warps the cursor back to the
+    // centre if it got near the edge of the view
+    private void applyMouseLook() {
+        if (pendingLookX != 0 || pendingLookY != 0) {
+            look(pendingLookX, pendingLookY);
+            pendingLookX = 0;
+            pendingLookY = 0;
         }
-
-        // Non-capture mode: use relative movement based on last mouse position
-        if (Double.isNaN(lastMouseX) || Double.isNaN(lastMouseY)) {
-            lastMouseX = x;
-            lastMouseY = y;
-            return;
+        if (warpPending) warpAge++;
+        if (!captureMouse || viewNode == null || warpPending || Double.isNaN(lastMouseX)) return;
+        double width = viewNode.getLayoutBounds().getWidth();
+        double height = viewNode.getLayoutBounds().getHeight();
+        double margin = Math.min(width, height) * RECENTER_MARGIN;
+        if (lastMouseX < margin || lastMouseX > width - margin || lastMouseY < margin || lastMouseY > height - margin) {
+            centerCursor();
         }
-        double dx = x - lastMouseX;
-        double dy = y - lastMouseY;
-        lastMouseX = x;
-        lastMouseY = y;
-        if (fpControl != null) {
-            fpControl.addYaw(dx * mouseSensitivity);
-            fpControl.addPitch(-dy * mouseSensitivity); // invert Y for natural look
+    }
+
+    private void look(double dx, double dy) {
+        FirstPersonControl control = firstPerson();
+        if (control != null) {
+            control.addYaw(dx * mouseSensitivity);
+            control.addPitch(-dy * mouseSensitivity); // invert Y for natural look
         }
     }
 
+    // The first-person controller in use (level or endless mode), null in top-down mode
+    private FirstPersonControl firstPerson() {
+        return fpControl != null ? fpControl : endlessControl;
+    }
+
     private void centerCursor() {
-        if (subScene3D == null) return;
+        if (viewNode == null) return;
         if (robot == null) {
             try {
                 robot = new Robot();
@@ -1088,11 +1218,18 @@ public class LabyrinthApp extends GameApplication {
                 return;
             }
         }
-        double centerX = subScene3D.getWidth() / 2.0;
-        double centerY = subScene3D.getHeight() / 2.0;
-        javafx.geometry.Point2D p = subScene3D.localToScreen(centerX, centerY);
+        double centerX = viewNode.getLayoutBounds().getWidth() / 2.0;
+        double centerY = viewNode.getLayoutBounds().getHeight() / 2.0;
+        javafx.geometry.Point2D p = viewNode.localToScreen(centerX, centerY);
         if (p != null) {
-            isRecentering = true;
+            if (!Double.isNaN(lastMouseX)) {
+                preWarpX = lastMouseX;
+                preWarpY = lastMouseY;
+                warpPending = true;
+                warpAge = 0;
+            }
+            lastMouseX = centerX;
+            lastMouseY = centerY;
             robot.mouseMove(p.getX(), p.getY());
         }
     }
@@ -1101,38 +1238,38 @@ public class LabyrinthApp extends GameApplication {
     protected void initInput() {
         // Bind actions for WASD + Q/E
         getInput().addAction(new UserAction("Move Forward") {
-            @Override public void onActionBegin() { fpControl.setMoveForward(true); }
-            @Override public void onActionEnd() { fpControl.setMoveForward(false); }
+            @Override public void onActionBegin() { if (firstPerson() != null) firstPerson().setMoveForward(true); if (playerControl != null) playerControl.setMoveForward(true); }
+            @Override public void onActionEnd() { if (firstPerson() != null) firstPerson().setMoveForward(false); if (playerControl != null) playerControl.setMoveForward(false); }
         }, KeyCode.W);
 
         getInput().addAction(new UserAction("Move Backward") {
-            @Override public void onActionBegin() { fpControl.setMoveBackward(true); }
-            @Override public void onActionEnd() { fpControl.setMoveBackward(false); }
+            @Override public void onActionBegin() { if (firstPerson() != null) firstPerson().setMoveBackward(true); if (playerControl != null) playerControl.setMoveBackward(true); }
+            @Override public void onActionEnd() { if (firstPerson() != null) firstPerson().setMoveBackward(false); if (playerControl != null) playerControl.setMoveBackward(false); }
         }, KeyCode.S);
 
         getInput().addAction(new UserAction("Move Left") {
-            @Override public void onActionBegin() { fpControl.setMoveLeft(true); }
-            @Override public void onActionEnd() { fpControl.setMoveLeft(false); }
+            @Override public void onActionBegin() { if (firstPerson() != null) firstPerson().setMoveLeft(true); if (playerControl != null) playerControl.setMoveLeft(true); }
+            @Override public void onActionEnd() { if (firstPerson() != null) firstPerson().setMoveLeft(false); if (playerControl != null) playerControl.setMoveLeft(false); }
         }, KeyCode.A);
 
         getInput().addAction(new UserAction("Move Right") {
-            @Override public void onActionBegin() { fpControl.setMoveRight(true); }
-            @Override public void onActionEnd() { fpControl.setMoveRight(false); }
+            @Override public void onActionBegin() { if (firstPerson() != null) firstPerson().setMoveRight(true); if (playerControl != null) playerControl.setMoveRight(true); }
+            @Override public void onActionEnd() { if (firstPerson() != null) firstPerson().setMoveRight(false); if (playerControl != null) playerControl.setMoveRight(false); }
         }, KeyCode.D);
 
         getInput().addAction(new UserAction("Turn Left") {
-            @Override public void onActionBegin() { fpControl.setTurnLeft(true); }
-            @Override public void onActionEnd() { fpControl.setTurnLeft(false); }
+            @Override public void onActionBegin() { if (firstPerson() != null) firstPerson().setTurnLeft(true); }
+            @Override public void onActionEnd() { if (firstPerson() != null) firstPerson().setTurnLeft(false); }
         }, KeyCode.Q);
 
         getInput().addAction(new UserAction("Turn Right") {
-            @Override public void onActionBegin() { fpControl.setTurnRight(true); }
-            @Override public void onActionEnd() { fpControl.setTurnRight(false); }
+            @Override public void onActionBegin() { if (firstPerson() != null) firstPerson().setTurnRight(true); }
+            @Override public void onActionEnd() { if (firstPerson() != null) firstPerson().setTurnRight(false); }
         }, KeyCode.E);
 
         // Jump
         getInput().addAction(new UserAction("Jump") {
-            @Override public void onActionBegin() { if (fpControl != null) fpControl.jump(); }
+            @Override public void onActionBegin() { if (firstPerson() != null) firstPerson().jump(); }
         }, KeyCode.SPACE);
         getInput().addAction(new UserAction("Toggle Minimap") {
             @Override
@@ -1146,6 +1283,13 @@ public class LabyrinthApp extends GameApplication {
                 }
             }
         }, KeyCode.TAB);
+
+        getInput().addAction(new UserAction("Quick Save") {
+            @Override protected void onActionBegin() { quickSave(); }
+        }, KeyCode.F5);
+        getInput().addAction(new UserAction("Quick Load") {
+            @Override protected void onActionBegin() { quickLoad(); }
+        }, KeyCode.F9);
     }
 
     // ---- Health System ----
@@ -1177,7 +1321,8 @@ public class LabyrinthApp extends GameApplication {
         g.fillOval(0, 0, w, h);
 
         // красная заливка снизу вверх пропорционально здоровью (внутри овала)
-        double p = Math.max(0, Math.min(100, playerHealth)) / 100.0;
+        int health = fpControl != null ? fpControl.getHealth() : World.MAX_HEALTH;
+        double p = Math.max(0, Math.min(World.MAX_HEALTH, health)) / (double) World.MAX_HEALTH;
         double fh = h * p;
         g.setFill(Color.DARKRED);
         g.setStroke(Color.DARKVIOLET);
@@ -1197,23 +1342,29 @@ public class LabyrinthApp extends GameApplication {
         g.strokeOval(1, 1, w - 2, h - 2);
     }
 
-    public void damagePlayer(int amount) {
-        if (playerDead) return;
-        if (amount < 0) amount = 0;
-        playerHealth = Math.max(0, playerHealth - amount);
+    public void onPlayerDamaged() {
         drawHealthBar();
-        if (playerHealth <= 0) {
-            onPlayerDeath();
-        }
+    }
+
+    // A shifting wall moved: the raycaster reads the copy directly, meshes and minimap repaint the cell
+    public void onWallChanged(int gx, int gz, boolean wall) {
+        if (maze == null || gx >= maze.length || gz >= maze[0].length) return;
+        maze[gx][gz] = wall;
+        if (wallChunks != null) wallChunks.cellChanged(gx, gz);
+        if (minimap != null) minimap.cellChanged(gx, gz);
+    }
+
+    private static boolean[][] copyGrid(boolean[][] grid) {
+        boolean[][] copy = new boolean[grid.length][];
+        for (int x = 0; x < grid.length; x++) copy[x] = grid[x].clone();
+        return copy;
     }
 
     public boolean isPlayerDead() {
-        return playerDead;
+        return fpControl != null && fpControl.isDead();
     }
 
     public void onPlayerDeath() {
-        if (playerDead) return;
-        playerDead = true;
         getDialogService().showMessageBox("Game Over", () -> {
             LabyrinthApp.resetLevelCounter();
             getGameController().gotoMainMenu();
@@ -0,0 +1,322 @@
+package com.kayar.yetanotherlabyrinth;
+
+import java.util.Random;
+
+/**
+ * Grid content of one level: maze, pits, spawn/exit/key cells, enemy patrol routes, the maze topology and
+ * distance fields. Pure data with no JavaFX dependency; the same seed and level always give the same layout.
+ * Items are placed by one blue-noise {@link PlacementEngine} guided by the distance fields: no pits right
+ * at the spawn or the exit, the key at or above the {@link #KEY_PERCENTILE} of distance from both, and
+ * enemies spaced out of chase range of the spawn, a third of them near the solution path and the rest in
+ * the side branches.
+ * <p>
+ * From {@link #SHIFT_LEVEL} on, a few walls shift: each entry of {@link #shiftCells} pairs a wall with a
+ * floor cell on the only route around it, and the {@link World} swaps the two back and forth. The wall
+ * reconnects the two halves the closed floor cell cuts apart, and the routes of different pairs share no
+ * cell, so the maze stays connected in every combination of states. The layout's grids are the live
+ * grids of the level and change with the shifts; {@link #topology} and the spawn and path distances
+ * describe the level as generated.
+ */
+public final class LevelLayout {
+
+    // Maze algorithm rotates each level
+    public static final MazeGenerator.Algorithm[] ALGORITHM_ORDER = {
+            MazeGenerator.Algorithm.BACKTRACKER,
+            MazeGenerator.Algorithm.WILSON,
+            MazeGenerator.Algorithm.KRUSKAL,
+            MazeGenerator.Algorithm.PRIM,
+            MazeGenerator.Algorithm.ALDOUS_BRODER,
+            MazeGenerator.Algorithm.ELLER
+    };
+
+    public static final int ENEMY_STRIDE = 6; // enemyCells entries per enemy: startX, startY, x1, y1, x2, y2
+    public static final double KEY_PERCENTILE = 0.7; // key cells are at least this far (as a percentile) from spawn and exit
+    static final int PIT_CLEARANCE = 2;      // no pits within this many steps of the spawn or the exit
+    static final int ENEMY_PATH_CELLS = 2;   // enemies this close to the solution path count as on it
+    static final int ENEMY_SPACING = 3;      // enemies start more than this many cells apart while there's room
+    public static final int SHIFT_LEVEL = 3; // first level with shifting walls
+    static final int MAX_SHIFTS = 16;        // shifting wall pairs per level
+    static final int SHIFT_DETOUR = 24;      // longest route around a shifting wall, in cells
+
+    public final int level;
+    public final long seed;
+    public final MazeGenerator.Algorithm algorithm;
+    public final int width;
+    public final int height;
+    public final boolean[][] maze; // [w][h] true = wall
+    public final boolean[][] pits; // [w][h] true = pit on a walkable cell
+    public final MazeTopology topology; // junctions, corridors and straight runs of maze + pits
+    public final DistanceFields distances; // BFS distances from spawn, exit and solution path
+    public final int spawnGX;
+    public final int spawnGY;
+    public final int exitGX;
+    public final int exitGY;
+    public final int keyGX; // -1 when the level has no key
+    public final int keyGY;
+    public final int[] enemyCells;
+    public final int enemyCount;
+    public final double enemySpeed; // tiles per second
+    public final int[] shiftCells;  // pairs (wall cell, floor cell) as generated, index gz * width + gx
+    public final int shiftCount;
+
+    private LevelLayout(int level, long seed, MazeGenerator.Algorithm algorithm, boolean[][] maze, boolean[][] pits,
+                        MazeTopology topology, DistanceFields distances, int keyGX, int keyGY, int[] enemyCells, double enemySpeed,
+                        int[] shiftCells) {
+        this.level = level;
+        this.seed = seed;
+        this.algorithm = algorithm;
+        this.width = maze.length;
+        this.height = maze[0].length;
+        this.maze = maze;
+        this.pits = pits;
+        this.topology = topology;
+        this.distances = distances;
+        this.spawnGX = 1;
+        this.spawnGY = 1;
+        this.exitGX = width - 2;
+        this.exitGY = height - 2;
+        this.keyGX = keyGX;
+        this.keyGY = keyGY;
+        this.enemyCells = enemyCells;
+        this.enemyCount = enemyCells.length / ENEMY_STRIDE;
+        this.enemySpeed = enemySpeed;
+        this.shiftCells = shiftCells;
+        this.shiftCount = shiftCells.length / 2;
+    }
+
+    /**
+     * Rebuilds a level from its saved grid content ({@link SaveGame}) without generating it: only the
+     * topology and the distance fields are derived again.
+     */
+    static LevelLayout restore(int level, long seed, MazeGenerator.Algorithm algorithm, boolean[][] maze, boolean[][] pits,
+                               int keyGX, int keyGY, int[] enemyCells, double enemySpeed, int[] shiftCells) {
+        if (enemyCells.length % ENEMY_STRIDE != 0) throw new IllegalArgumentException("Enemy cells not a multiple of " + ENEMY_STRIDE);
+        int w = maze.length;
+        int h = maze[0].length;
+        if (shiftCells.length % 2 != 0) throw new IllegalArgumentException("Shift cells not in pairs");
+        for (int c : shiftCells) {
+            if (c < 0 || c >= w * h) throw new IllegalArgumentException("Shift cell out of range: " + c);
+        }
+        return new LevelLayout(level, seed, algorithm, maze, pits, new MazeTopology(maze, pits),
+                new DistanceFields(maze, 1, 1, w - 2, h - 2), keyGX, keyGY, enemyCells, enemySpeed, shiftCells);
+    }
+
+    /**
+     * Generates a level. Without hazards (2D mode) the level has only walls and the exit.
+     */
+    public static LevelLayout generate(int level, boolean hazards, long seed) {
+        return generate(level, hazards, seed, -1);
+    }
+
+    /**
+     * Generates a level with a fixed number of enemies (negative = the level's default), for stress runs.
+     * When there are more enemies than free cells, cells are shared.
+     */
+    public static LevelLayout generate(int level, boolean hazards, long seed, int enemyOverride) {
+        Random rnd = new Random(seed);
+
+        // Labyrinth size for this level: starting at 4x4 blocks, +2 each level
+        int blocks = 4 + 2 * (level - 1);
+        int W = blocks * 2 + 1; // generator grid must be odd
+        int H = blocks * 2 + 1;
+
+        MazeGenerator.Algorithm alg = ALGORITHM_ORDER[(level - 1) % ALGORITHM_ORDER.length];
+        long mazeSeed = rnd.nextLong();
+        boolean[][] maze = MazeGenerator.generate(W, H, mazeSeed == 0 ? 1 : mazeSeed, alg);
+
+        boolean[][] pits = new boolean[W][H];
+        DistanceFields distances = new DistanceFields(maze, 1, 1, W - 2, H - 2); // walls only, so pits can come later
+        if (!hazards) {
+            return new LevelLayout(level, seed, alg, maze, pits, new MazeTopology(maze, pits), distances, -1, -1, new int[0], 0, new int[0]);
+        }
+
+        // One blue-noise engine for all items: nothing on the corners (spawn and exit are two of them),
+        // pits never next to each other or on the approach to spawn and exit, key and enemies off pits
+        PlacementEngine placer = new PlacementEngine(maze, rnd);
+        placer.setMinDistance(PlacementEngine.PIT, PlacementEngine.PIT, 1);
+        placer.setMinDistance(PlacementEngine.PIT, PlacementEngine.KEY, 0);
+        placer.setMinDistance(PlacementEngine.PIT, PlacementEngine.ENEMY, 0);
+        placer.setMinDistance(PlacementEngine.KEY, PlacementEngine.ENEMY, 0);
+        placer.setMinDistance(PlacementEngine.ENEMY, PlacementEngine.ENEMY, ENEMY_SPACING);
+        placer.exclude(1, 1);
+        placer.exclude(W - 2, H - 2);
+        placer.exclude(W - 2, 1);
+        placer.exclude(1, H - 2);
+        for (int x = 0; x < W; x++) {
+            for (int y = 0; y < H; y++) {
+                if (distances.fromSpawn(x, y) <= PIT_CLEARANCE || distances.fromExit(x, y) <= PIT_CLEARANCE) {
+                    placer.exclude(PlacementEngine.PIT, x, y);
+                }
+            }
+        }
+
+        double pitChance = Math.min(0.06 + (level - 1) * 0.01, 0.12); // scale slightly with level
+        pitChance *= 0.5; // decrease counts of pits by half
+        int[] pitCells = new int[W * H];
+        int pitCount = placer.scatter(PlacementEngine.PIT, pitChance, null, pitCells);
+        for (int i = 0; i < pitCount; i++) {
+            pits[pitCells[i] % W][pitCells[i] / W] = true;
+        }
+
+        MazeTopology topology = new MazeTopology(maze, pits);
+
+        // Key on a random free tile that is far from both spawn and exit
+        int[] score = pitCells; // reused: one entry per free cell
+        int candidateCount = 0;
+        for (int y = 0; y < H; y++) {
+            for (int x = 0; x < W; x++) {
+                if (placer.isFree(PlacementEngine.KEY, x, y)) {
+                    score[candidateCount++] = Math.min(distances.fromSpawn(x, y), distances.fromExit(x, y));
+                }
+            }
+        }
+        int keyGX = -1;
+        int keyGY = -1;
+        if (candidateCount > 0) {
+            int threshold = DistanceFields.percentile(score, candidateCount, KEY_PERCENTILE);
+            long[] farFromBoth = placer.newMask();
+            for (int y = 0; y < H; y++) {
+                for (int x = 0; x < W; x++) {
+                    if (Math.min(distances.fromSpawn(x, y), distances.fromExit(x, y)) >= threshold) placer.allow(farFromBoth, x, y);
+                }
+            }
+            int key = placer.pickOne(PlacementEngine.KEY, farFromBoth);
+            keyGX = key % W;
+            keyGY = key / W;
+        }
+
+        // Enemies from level 2 onwards, out of chase range of the spawn, a third of them near the
+        // solution path and the rest in side branches, patrolling the longer straight run through their cell
+        int enemyCount = enemyOverride >= 0 ? enemyOverride : Math.max(0, level - 1);
+        long[] nearPath = placer.newMask();
+        long[] sideBranches = placer.newMask();
+        for (int y = 0; y < H; y++) {
+            for (int x = 0; x < W; x++) {
+                if (distances.fromSpawn(x, y) <= EnemySystem.AGGRO_CELLS) continue;
+                placer.allow(distances.fromPath(x, y) <= ENEMY_PATH_CELLS ? nearPath : sideBranches, x, y);
+            }
+        }
+        int[] spawnCells = new int[Math.max(0, enemyCount)];
+        int walkableCount = placer.sample(PlacementEngine.ENEMY, enemyCount / 3, nearPath, spawnCells, 0);
+        walkableCount += placer.sample(PlacementEngine.ENEMY, enemyCount - walkableCount, sideBranches, spawnCells, walkableCount);
+        walkableCount += placer.sample(PlacementEngine.ENEMY, enemyCount - walkableCount, nearPath, spawnCells, walkableCount);
+        if (walkableCount == 0) {
+            // tiny level: everything is in chase range
+            walkableCount = placer.sample(PlacementEngine.ENEMY, enemyCount, null, spawnCells, 0);
+        }
+        int toSpawn = walkableCount == 0 ? 0 : enemyCount;
+        int[] enemyCells = new int[toSpawn * ENEMY_STRIDE];
+        for (int i = 0; i < toSpawn; i++) {
+            int c = spawnCells[i % walkableCount]; // more enemies than cells: share
+            int sx = c % W;
+            int sy = c / W;
+            int o = i * ENEMY_STRIDE;
+            enemyCells[o] = sx;
+            enemyCells[o + 1] = sy;
+            if (topology.longerRunHorizontal(sx, sy)) {
+                enemyCells[o + 2] = topology.runMinX(sx, sy); enemyCells[o + 3] = sy;
+                enemyCells[o + 4] = topology.runMaxX(sx, sy); enemyCells[o + 5] = sy;
+            } else {
+                enemyCells[o + 2] = sx; enemyCells[o + 3] = topology.runMinZ(sx, sy);
+                enemyCells[o + 4] = sx; enemyCells[o + 5] = topology.runMaxZ(sx, sy);
+            }
+        }
+        double enemySpeed = 1.1 + Math.min(0.9, level * 0.08);
+
+        // Shifting walls last, so the rest of the level is the same with or without them
+        int shifts = level < SHIFT_LEVEL ? 0 : Math.min(level - SHIFT_LEVEL + 1, MAX_SHIFTS);
+        boolean[] fixed = new boolean[W * H]; // cells that must stay floor
+        fixed[W + 1] = true;
+        fixed[(H - 2) * W + W - 2] = true;
+        if (keyGX >= 0) fixed[keyGY * W + keyGX] = true;
+        for (int i = 0; i < toSpawn; i++) fixed[enemyCells[i * ENEMY_STRIDE + 1] * W + enemyCells[i * ENEMY_STRIDE]] = true;
+        int[] shiftCells = pickShifts(maze, pits, fixed, shifts, rnd);
+
+        return new LevelLayout(level, seed, alg, maze, pits, topology, distances, keyGX, keyGY, enemyCells, enemySpeed, shiftCells);
+    }
+
+    /**
+     * Up to count (wall, floor) pairs. The wall separates two floor cells A and B, neither a pit, whose
+     * route around it is at most {@link #SHIFT_DETOUR} cells; the floor cell is an inner corridor cell of that route (two
+     * open sides, no pit, not fixed). In a perfect maze the route is unique, so closing the floor cell
+     * splits it into an A side and a B side that the opened wall joins again. Routes and walls of
+     * different pairs are disjoint, so each pair's swap only ever cuts its own loop.
+     */
+    private static int[] pickShifts(boolean[][] maze, boolean[][] pits, boolean[] fixed, int count, Random rnd) {
+        int w = maze.length;
+        int h = maze[0].length;
+        int[] candidates = new int[w * h];
+        int n = 0;
+        for (int z = 1; z < h - 1; z++) {
+            for (int x = 1; x < w - 1; x++) {
+                if (!maze[x][z]) continue;
+                boolean acrossX = !maze[x - 1][z] && !maze[x + 1][z] && maze[x][z - 1] && maze[x][z + 1];
+                boolean acrossZ = !maze[x][z - 1] && !maze[x][z + 1] && maze[x - 1][z] && maze[x + 1][z];
+                if (acrossX || acrossZ) candidates[n++] = z * w + x;
+            }
+        }
+        int[] out = new int[2 * count];
+        int found = 0;
+        boolean[] used = new boolean[w * h];
+        int[] depth = new int[w * h];
+        int[] parent = new int[w * h];
+        int[] queue = new int[w * h];
+        int[] route = new int[SHIFT_DETOUR + 1];
+        int[] closable = new int[SHIFT_DETOUR + 1];
+        java.util.Arrays.fill(depth, -1);
+        for (int k = 0; k < n && found < count; k++) {
+            // random order: partial Fisher-Yates over the candidates
+            int j = k + rnd.nextInt(n - k);
+            int wall = candidates[j];
+            candidates[j] = candidates[k];
+            int wx = wall % w;
+            int wz = wall / w;
+            int a = maze[wx - 1][wz] ? (wz - 1) * w + wx : wz * w + wx - 1;
+            int b = maze[wx - 1][wz] ? (wz + 1) * w + wx : wz * w + wx + 1;
+            if (used[wall] || used[a] || used[b]) continue;
+            if (pits[a % w][a / w] || pits[b % w][b / w]) continue; // the opened wall must not lead into a pit
+
+            // bounded BFS from A to B over free floor
+            int tail = 0;
+            queue[tail++] = a;
+            depth[a] = 0;
+            parent[a] = -1;
+            for (int head = 0; head < tail && depth[b] < 0; head++) {
+                int c = queue[head];
+                if (depth[c] >= SHIFT_DETOUR) continue;
+                for (int d = 0; d < 4; d++) {
+                    int nx = c % w + (d == 0 ? 1 : d == 1 ? -1 : 0);
+                    int nz = c / w + (d == 2 ? 1 : d == 3 ? -1 : 0);
+                    int m = nz * w + nx;
+                    if (maze[nx][nz] || depth[m] >= 0 || used[m]) continue;
+                    depth[m] = depth[c] + 1;
+                    parent[m] = c;
+                    queue[tail++] = m;
+                }
+            }
+            int length = 0;
+            if (depth[b] >= 0) {
+                for (int c = b; c >= 0; c = parent[c]) route[length++] = c;
+            }
+            for (int i = 0; i < tail; i++) depth[queue[i]] = -1;
+
+            // the floor cell to close: inner route cells that are plain corridor
+            int options = 0;
+            for (int i = 1; i + 1 < length; i++) {
+                int c = route[i];
+                int cx = c % w;
+                int cz = c / w;
+                int open = (maze[cx - 1][cz] ? 0 : 1) + (maze[cx + 1][cz] ? 0 : 1) + (maze[cx][cz - 1] ? 0 : 1) + (maze[cx][cz + 1] ? 0 : 1);
+                if (open == 2 && !pits[cx][cz] && !fixed[c]) closable[options++] = c;
+            }
+            if (options == 0) continue;
+            int floor = closable[rnd.nextInt(options)];
+            for (int i = 0; i < length; i++) used[route[i]] = true;
+            used[wall] = true;
+            out[2 * found] = wall;
+            out[2 * found + 1] = floor;
+            found++;
+        }
+        return java.util.Arrays.copyOf(out, 2 * found);
+    }
+}
@@ -0,0 +1,155 @@
+package com.kayar.yetanotherlabyrinth;
+
+/**
+ * Line-of-sight queries over the maze: walks the cells a segment crosses (grid DDA) and reports whether
+ * any of them is a wall. Pits don't block sight. A segment passing exactly through a cell corner is
+ * blocked if either cell beside the corner is a wall, so there is no peeking between diagonal walls.
+ * <p>
+ * Cell-to-cell queries (centre to centre) are memoised in a fixed-size direct-mapped cache keyed by the
+ * unordered cell pair; a colliding pair simply overwrites the slot. One instance belongs to a level, and
+ * {@link #invalidate()} drops the cache in O(1) when walls change: entries carry the epoch they were
+ * computed in and older epochs miss. Queries don't allocate. Not thread-safe.
+ */
+public final class LineOfSight {
+
+    public static final int DEFAULT_CACHE_SLOTS = 1 << 14;
+
+    private final CollisionField collision;
+    private final int w;
+    private final int h;
+    private final int tile;
+
+    // direct-mapped cache: key = lo * cells + hi for cells lo <= hi, -1 when empty
+    private final long[] cacheKey;
+    private final boolean[] cacheVisible;
+    private final int[] cacheEpoch;
+    private final int cacheMask;
+    private int epoch;
+    private long cacheHits;
+    private long cacheMisses;
+
+    public LineOfSight(CollisionField collision, int w, int h, int cacheSlots) {
+        this.collision = collision;
+        this.w = w;
+        this.h = h;
+        this.tile = collision.getTile();
+        int slots = Integer.highestOneBit(Math.max(16, cacheSlots));
+        this.cacheKey = new long[slots];
+        this.cacheVisible = new boolean[slots];
+        this.cacheEpoch = new int[slots];
+        this.cacheMask = slots - 1;
+        java.util.Arrays.fill(cacheKey, -1);
+    }
+
+    /**
+     * True if nothing but open cells lie on the segment from (ax, az) to (bx, bz), in world units.
+     */
+    public boolean visible(double ax, double az, double bx, double bz) {
+        double x0 = ax / tile;
+        double z0 = az / tile;
+        double x1 = bx / tile;
+        double z1 = bz / tile;
+        int gx = (int) Math.floor(x0);
+        int gz = (int) Math.floor(z0);
+        int ex = (int) Math.floor(x1);
+        int ez = (int) Math.floor(z1);
+        if (collision.isWall(gx, gz) || collision.isWall(ex, ez)) return false;
+        double adx = Math.abs(x1 - x0);
+        double adz = Math.abs(z1 - z0);
+        int stepX = x1 < x0 ? -1 : 1;
+        int stepZ = z1 < z0 ? -1 : 1;
+        // distances from the start to the next cell border on each axis; the next border along the
+        // segment is the one with the smaller distance / |delta|, compared cross-multiplied so corner
+        // hits are exact for cell-centre endpoints
+        double nextX = stepX > 0 ? gx + 1 - x0 : x0 - gx;
+        double nextZ = stepZ > 0 ? gz + 1 - z0 : z0 - gz;
+        while (gx != ex || gz != ez) {
+            double crossX = nextX * adz;
+            double crossZ = nextZ * adx;
+            boolean moveX = gx != ex && (gz == ez || crossX < crossZ);
+            boolean moveZ = gz != ez && (gx == ex || crossZ < crossX);
+            if (!moveX && !moveZ) {
+                // through a corner: blocked if either side cell is a wall
+                if (collision.isWall(gx + stepX, gz) || collision.isWall(gx, gz + stepZ)) return false;
+                moveX = true;
+                moveZ = true;
+            }
+            if (moveX) {
+                gx += stepX;
+                nextX += 1;
+            }
+            if (moveZ) {
+                gz += stepZ;
+                nextZ += 1;
+            }
+            if (collision.isWall(gx, gz)) return false;
+        }
+        return true;
+    }
+
+    /**
+     * True if the centres of cells (ax, az) and (bx, bz) see each other. Cached.
+     */
+    public boolean cellsVisible(int ax, int az, int bx, int bz) {
+        if (ax < 0 || az < 0 || ax >= w || az >= h || bx < 0 || bz < 0 || bx >= w || bz >= h) return false;
+        return cellsVisible(az * w + ax, bz * w + bx);
+    }
+
+    private boolean cellsVisible(int a, int b) {
+        if (a == b) return !collision.isWall(a % w, a / w);
+        int lo = Math.min(a, b);
+        int hi = Math.max(a, b);
+        long key = (long) lo * (w * h) + hi;
+        int slot = (int) (mix(key) & cacheMask);
+        if (cacheKey[slot] == key && cacheEpoch[slot] == epoch) {
+            cacheHits++;
+            return cacheVisible[slot];
+        }
+        cacheMisses++;
+        double half = tile / 2.0;
+        boolean v = visible((lo % w) * tile + half, (lo / w) * tile + half, (hi % w) * tile + half, (hi / w) * tile + half);
+        cacheKey[slot] = key;
+        cacheVisible[slot] = v;
+        cacheEpoch[slot] = epoch;
+        return v;
+    }
+
+    /**
+     * Batched cell query: for each of the first count cells (indices {@code gz * width + gx}) writes into
+     * out whether its centre sees the centre of the target cell. Returns how many do.
+     */
+    public int cellsVisible(int[] cells, int count, int target, boolean[] out) {
+        int seen = 0;
+        boolean targetIn = target >= 0 && target < w * h;
+        for (int i = 0; i < count; i++) {
+            int c = cells[i];
+            boolean v = targetIn && c >= 0 && c < w * h && cellsVisible(c, target);
+            out[i] = v;
+            if (v) seen++;
+        }
+        return seen;
+    }
+
+    /** Forgets all cached answers; call after walls change. */
+    public void invalidate() {
+        if (++epoch == 0) {
+            // wrapped around: old entries could match again
+            java.util.Arrays.fill(cacheKey, -1);
+        }
+    }
+
+    // 64-bit finaliser (SplitMix64) so neighbouring pairs spread over the cache
+    private static long mix(long k) {
+        k = (k ^ (k >>> 30)) * 0xBF58476D1CE4E5B9L;
+        k = (k ^ (k >>> 27)) * 0x94D049BB133111EBL;
+        return k ^ (k >>> 31);
+    }
+
+    public long getCacheHits() {
+        return cacheHits;
+    }
+
+    public long getCacheMisses() {
+        return cacheMisses;
+    }
+}
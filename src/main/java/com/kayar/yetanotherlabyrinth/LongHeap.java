@@ -0,0 +1,57 @@
+package com.kayar.yetanotherlabyrinth;
+
+/**
+ * Min-heap of (priority, value) int pairs packed into longs, for Dijkstra and A* searches that must not
+ * allocate per entry. Grows by doubling and keeps its capacity across {@link #clear()}.
+ */
+final class LongHeap {
+
+    private long[] data = new long[64];
+    private int size;
+
+    void clear() {
+        size = 0;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    void push(int priority, int value) {
+        if (size == data.length) data = java.util.Arrays.copyOf(data, size * 2);
+        long e = ((long) priority << 32) | (value & 0xFFFFFFFFL);
+        int i = size++;
+        while (i > 0) {
+            int p = (i - 1) >>> 1;
+            if (data[p] <= e) break;
+            data[i] = data[p];
+            i = p;
+        }
+        data[i] = e;
+    }
+
+    long pop() {
+        long top = data[0];
+        long e = data[--size];
+        int i = 0;
+        while (true) {
+            int l = 2 * i + 1;
+            if (l >= size) break;
+            int r = l + 1;
+            int m = r < size && data[r] < data[l] ? r : l;
+            if (data[m] >= e) break;
+            data[i] = data[m];
+            i = m;
+        }
+        data[i] = e;
+        return top;
+    }
+
+    static int priority(long e) {
+        return (int) (e >>> 32);
+    }
+
+    static int value(long e) {
+        return (int) e;
+    }
+}
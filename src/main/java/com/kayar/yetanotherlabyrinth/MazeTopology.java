@@ -0,0 +1,337 @@
+package com.kayar.yetanotherlabyrinth;
+
+/**
+ * Topology index of one maze, built once per level in linear time and stored in primitive arrays.
+ * <p>
+ * Open cells with one or no open neighbour are dead ends, cells with three or more are junctions;
+ * together they are the nodes of a compressed graph. The remaining (corridor) cells are grouped into
+ * segments, each joining two nodes with its cells in walking order, its length in steps and the number
+ * of pits on it. A loop without any node gets one of its cells promoted to an anchor node.
+ * <p>
+ * For spawning and patrols it also keeps the free cells (open and no pit) and, per cell, the longest
+ * straight horizontal and vertical run of free cells through it. Cells are {@code gz * width + gx}.
+ */
+public final class MazeTopology {
+
+    // Cell kinds
+    public static final byte WALL = 0;
+    public static final byte CORRIDOR = 1;
+    public static final byte DEAD_END = 2;
+    public static final byte JUNCTION = 3;
+    public static final byte ANCHOR = 4; // corridor cell promoted to a node to break a node-less loop
+
+    private static final int[] DX = {1, -1, 0, 0};
+    private static final int[] DZ = {0, 0, 1, -1};
+
+    private final int w;
+    private final int h;
+    private final byte[] kind;
+
+    // nodes
+    private final int nodeCount;
+    private final int[] nodeCell;
+    private final int[] cellNode;        // node id per cell, -1 for non-nodes
+    private final int[] nodeSegStart;    // CSR: segments touching node n are nodeSegs[nodeSegStart[n] .. nodeSegStart[n + 1])
+    private final int[] nodeSegs;
+
+    // segments
+    private final int segmentCount;
+    private final int[] segFrom;         // node ids at both ends
+    private final int[] segTo;
+    private final int[] segLength;       // steps from segFrom to segTo
+    private final int[] segPits;         // pit cells between (and including) both ends
+    private final int[] segCellStart;    // CSR: corridor cells of s, from segFrom's side, are segCells[segCellStart[s] .. segCellStart[s + 1])
+    private final int[] segCells;
+    private final int[] cellSegment;     // segment id per corridor cell, -1 otherwise
+
+    // placement and patrols
+    private final int[] freeCells;       // open cells without a pit, column by column
+    private final int[] runMinX;         // straight runs of free cells through each free cell
+    private final int[] runMaxX;
+    private final int[] runMinZ;
+    private final int[] runMaxZ;
+
+    public MazeTopology(boolean[][] maze, boolean[][] pits) {
+        this.w = maze.length;
+        this.h = maze[0].length;
+        int cells = w * h;
+        this.kind = new byte[cells];
+        this.cellNode = new int[cells];
+        this.cellSegment = new int[cells];
+        java.util.Arrays.fill(cellNode, -1);
+        java.util.Arrays.fill(cellSegment, -1);
+
+        // Classify cells and collect nodes and free cells in one pass
+        int[] nodes = new int[16];
+        int nodes0 = 0;
+        int[] free = new int[cells];
+        int freeN = 0;
+        int open = 0;
+        for (int gx = 0; gx < w; gx++) {
+            for (int gz = 0; gz < h; gz++) {
+                if (maze[gx][gz]) continue;
+                open++;
+                int c = gz * w + gx;
+                if (!pits[gx][gz]) free[freeN++] = c;
+                int degree = 0;
+                for (int d = 0; d < 4; d++) {
+                    if (isOpen(maze, gx + DX[d], gz + DZ[d])) degree++;
+                }
+                if (degree == 2) {
+                    kind[c] = CORRIDOR;
+                    continue;
+                }
+                kind[c] = degree < 2 ? DEAD_END : JUNCTION;
+                if (nodes0 == nodes.length) nodes = java.util.Arrays.copyOf(nodes, nodes0 * 2);
+                cellNode[c] = nodes0;
+                nodes[nodes0++] = c;
+            }
+        }
+        this.freeCells = java.util.Arrays.copyOf(free, freeN);
+
+        // Walk segments out of every node; each corridor cell is visited once. Loops without a node get an anchor.
+        int[] from = new int[16];
+        int[] to = new int[16];
+        int[] length = new int[16];
+        int[] pitCount = new int[16];
+        int[] cellStart = new int[17];
+        int[] segCellsBuf = new int[Math.max(1, open - nodes0)];
+        int segs = 0;
+        int segCellsN = 0;
+        int scan = 0; // cursor for corridor cells not reached from any node
+        for (int n = 0; ; n++) {
+            if (n == nodes0) {
+                // all nodes walked: what is left are loops without a node; anchor one and walk it
+                while (scan < cells && (kind[scan] != CORRIDOR || cellSegment[scan] >= 0)) scan++;
+                if (scan == cells) break;
+                kind[scan] = ANCHOR;
+                if (nodes0 == nodes.length) nodes = java.util.Arrays.copyOf(nodes, nodes0 * 2);
+                cellNode[scan] = nodes0;
+                nodes[nodes0++] = scan;
+            }
+            int start = nodes[n];
+            int sx = start % w;
+            int sz = start / w;
+            for (int d = 0; d < 4; d++) {
+                int nx = sx + DX[d];
+                int nz = sz + DZ[d];
+                if (!isOpen(maze, nx, nz)) continue;
+                int next = nz * w + nx;
+                if (cellSegment[next] >= 0) continue;       // walked from the other end already
+                if (cellNode[next] >= 0 && cellNode[next] < n) continue; // direct node link, added from the lower id
+                if (segs == from.length) {
+                    from = java.util.Arrays.copyOf(from, segs * 2);
+                    to = java.util.Arrays.copyOf(to, segs * 2);
+                    length = java.util.Arrays.copyOf(length, segs * 2);
+                    pitCount = java.util.Arrays.copyOf(pitCount, segs * 2);
+                    cellStart = java.util.Arrays.copyOf(cellStart, segs * 2 + 1);
+                }
+                cellStart[segs] = segCellsN;
+                int steps = 1;
+                int pitsOn = pits[sx][sz] ? 1 : 0;
+                int prev = start;
+                int cur = next;
+                while (cellNode[cur] < 0) {
+                    cellSegment[cur] = segs;
+                    segCellsBuf[segCellsN++] = cur;
+                    int cx = cur % w;
+                    int cz = cur / w;
+                    if (pits[cx][cz]) pitsOn++;
+                    int step = -1;
+                    for (int e = 0; e < 4 && step < 0; e++) {
+                        int mx = cx + DX[e];
+                        int mz = cz + DZ[e];
+                        if (!isOpen(maze, mx, mz)) continue;
+                        int m = mz * w + mx;
+                        if (m != prev) step = m;
+                    }
+                    prev = cur;
+                    cur = step;
+                    steps++;
+                }
+                if (cur != start) pitsOn += pits[cur % w][cur / w] ? 1 : 0;
+                from[segs] = n;
+                to[segs] = cellNode[cur];
+                length[segs] = steps;
+                pitCount[segs] = pitsOn;
+                segs++;
+            }
+        }
+        cellStart[segs] = segCellsN;
+        this.nodeCount = nodes0;
+        this.nodeCell = java.util.Arrays.copyOf(nodes, nodes0);
+        this.segmentCount = segs;
+        this.segFrom = java.util.Arrays.copyOf(from, segs);
+        this.segTo = java.util.Arrays.copyOf(to, segs);
+        this.segLength = java.util.Arrays.copyOf(length, segs);
+        this.segPits = java.util.Arrays.copyOf(pitCount, segs);
+        this.segCellStart = java.util.Arrays.copyOf(cellStart, segs + 1);
+        this.segCells = java.util.Arrays.copyOf(segCellsBuf, segCellsN);
+
+        // Node adjacency (a self-loop is listed twice at its node)
+        this.nodeSegStart = new int[nodes0 + 1];
+        for (int s = 0; s < segs; s++) {
+            nodeSegStart[segFrom[s] + 1]++;
+            nodeSegStart[segTo[s] + 1]++;
+        }
+        for (int n = 0; n < nodes0; n++) nodeSegStart[n + 1] += nodeSegStart[n];
+        this.nodeSegs = new int[segs * 2];
+        int[] fill = java.util.Arrays.copyOf(nodeSegStart, nodes0);
+        for (int s = 0; s < segs; s++) {
+            nodeSegs[fill[segFrom[s]]++] = s;
+            nodeSegs[fill[segTo[s]]++] = s;
+        }
+
+        // Straight runs of free cells: rows then columns, each cell written once per direction
+        this.runMinX = new int[cells];
+        this.runMaxX = new int[cells];
+        this.runMinZ = new int[cells];
+        this.runMaxZ = new int[cells];
+        for (int gz = 0; gz < h; gz++) {
+            int gx = 0;
+            while (gx < w) {
+                if (maze[gx][gz] || pits[gx][gz]) {
+                    gx++;
+                    continue;
+                }
+                int end = gx;
+                while (end + 1 < w && !maze[end + 1][gz] && !pits[end + 1][gz]) end++;
+                for (int x = gx; x <= end; x++) {
+                    runMinX[gz * w + x] = gx;
+                    runMaxX[gz * w + x] = end;
+                }
+                gx = end + 1;
+            }
+        }
+        for (int gx = 0; gx < w; gx++) {
+            int gz = 0;
+            while (gz < h) {
+                if (maze[gx][gz] || pits[gx][gz]) {
+                    gz++;
+                    continue;
+                }
+                int end = gz;
+                while (end + 1 < h && !maze[gx][end + 1] && !pits[gx][end + 1]) end++;
+                for (int z = gz; z <= end; z++) {
+                    runMinZ[z * w + gx] = gz;
+                    runMaxZ[z * w + gx] = end;
+                }
+                gz = end + 1;
+            }
+        }
+    }
+
+    private boolean isOpen(boolean[][] maze, int gx, int gz) {
+        return gx >= 0 && gz >= 0 && gx < w && gz < h && !maze[gx][gz];
+    }
+
+    // --- Cells ---
+
+    public byte kind(int gx, int gz) {
+        return kind[gz * w + gx];
+    }
+
+    /** Node id of the cell, or -1 if it is not a junction, dead end or anchor. */
+    public int nodeAt(int gx, int gz) {
+        return cellNode[gz * w + gx];
+    }
+
+    /** Segment id of a corridor cell, or -1 for nodes and walls. */
+    public int segmentAt(int gx, int gz) {
+        return cellSegment[gz * w + gx];
+    }
+
+    /** Free cells (open, no pit) in column order; shared, do not modify. */
+    public int[] getFreeCells() {
+        return freeCells;
+    }
+
+    /** Whether the horizontal straight run through a free cell is at least as long as the vertical one. */
+    public boolean longerRunHorizontal(int gx, int gz) {
+        int c = gz * w + gx;
+        return runMaxX[c] - runMinX[c] >= runMaxZ[c] - runMinZ[c];
+    }
+
+    /** First column of the horizontal straight run of free cells through (gx, gz). */
+    public int runMinX(int gx, int gz) {
+        return runMinX[gz * w + gx];
+    }
+
+    /** Last column of the horizontal straight run of free cells through (gx, gz). */
+    public int runMaxX(int gx, int gz) {
+        return runMaxX[gz * w + gx];
+    }
+
+    /** First row of the vertical straight run of free cells through (gx, gz). */
+    public int runMinZ(int gx, int gz) {
+        return runMinZ[gz * w + gx];
+    }
+
+    /** Last row of the vertical straight run of free cells through (gx, gz). */
+    public int runMaxZ(int gx, int gz) {
+        return runMaxZ[gz * w + gx];
+    }
+
+    // --- Compressed graph ---
+
+    public int getNodeCount() {
+        return nodeCount;
+    }
+
+    public int nodeCell(int n) {
+        return nodeCell[n];
+    }
+
+    public int degree(int n) {
+        return nodeSegStart[n + 1] - nodeSegStart[n];
+    }
+
+    /** The k-th segment touching node n, 0 <= k < degree(n). */
+    public int nodeSegment(int n, int k) {
+        return nodeSegs[nodeSegStart[n] + k];
+    }
+
+    public int getSegmentCount() {
+        return segmentCount;
+    }
+
+    public int segmentFrom(int s) {
+        return segFrom[s];
+    }
+
+    public int segmentTo(int s) {
+        return segTo[s];
+    }
+
+    /** The node at the other end of segment s seen from node n. */
+    public int otherEnd(int s, int n) {
+        return segFrom[s] == n ? segTo[s] : segFrom[s];
+    }
+
+    /** Steps along segment s from one end node to the other. */
+    public int segmentLength(int s) {
+        return segLength[s];
+    }
+
+    public int segmentPits(int s) {
+        return segPits[s];
+    }
+
+    /** Number of corridor cells between the two end nodes of segment s. */
+    public int segmentCellCount(int s) {
+        return segCellStart[s + 1] - segCellStart[s];
+    }
+
+    /** The k-th corridor cell of segment s, counted from segmentFrom(s). */
+    public int segmentCell(int s, int k) {
+        return segCells[segCellStart[s] + k];
+    }
+
+    public int getWidth() {
+        return w;
+    }
+
+    public int getHeight() {
+        return h;
+    }
+}
@@ -0,0 +1,552 @@
+package com.kayar.yetanotherlabyrinth;
+
+import javafx.application.Platform;
+import javafx.scene.Node;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.image.ImageView;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
+import javafx.scene.layout.Pane;
+import javafx.scene.paint.Color;
+import javafx.scene.shape.Rectangle;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Minimap with a static layer rasterized straight into a WritableImage in one pass over the grid,
+ * off the FX thread, and an overlay canvas for the dynamic markers.
+ * When the whole maze doesn't fit the screen budget at a readable scale, the minimap becomes a
+ * player-centred scrolling window over the full-resolution layer plus a small downsampled overview.
+ * The overlay is updated with dirty rects: only markers that crossed a pixel (or turned) are cleared
+ * and redrawn, along with markers overlapping what was cleared, at a capped refresh rate.
+ * A cell that changes later ({@link #cellChanged(int, int)}) repaints only its own pixels of the static
+ * layer and its pixel of the overview.
+ */
+public final class Minimap {
+
+    private static final double MIN_CELL_PX = 3.0; // below this the whole-maze view is unreadable
+    private static final int BACKGROUND = 0x73000000; // black, alpha 0.45
+    private static final int WALL = 0xFFD3D3D3;       // light gray
+    private static final int PIT = 0xFF8B0000;        // dark red
+    private static final int EXIT = 0xFF32CD32;       // lime green
+
+    // Dynamic markers: fixed slots for the key and the player, enemies after them
+    private static final int KEY = 0;
+    private static final int PLAYER = 1;
+    private static final int FIRST_ENEMY = 2;
+    private static final long HIDDEN = Long.MIN_VALUE;
+    private static final int ARROW_STEPS = 64; // heading resolution of the player arrow
+    private static final int DIRTY_TILE = 16;  // pixels per tile of the cleared-area map
+
+    private final boolean[][] maze;
+    private final boolean[][] pits;
+    private final int exitGX;
+    private final int exitGY;
+    private final int gridW;
+    private final int gridH;
+    private final int tile;
+    private final double cellPx;   // display pixels per cell
+    private final boolean scrolling;
+    private final double viewW;
+    private final double viewH;
+
+    private final Pane root = new Pane();
+    private final ImageView staticView = new ImageView();
+    private final Canvas overlay;
+    private final ImageView overview;
+    private final Rectangle overviewFrame;
+    private final double overviewScale; // overview pixels per cell
+    private final int k;                // static layer pixels per cell side
+    private final int[] cellPixels;     // one cell's k x k pixels
+    private int[] pendingCells = new int[8]; // changed before the raster was uploaded, repainted after it
+    private int pendingCount = 0;
+
+    private double originX = 0; // top-left of the visible window, in display pixels of the full map
+    private double originY = 0;
+    private volatile boolean disposed = false;
+
+    // Marker state: quantized view-space position (and heading) last drawn, and the rect it covered
+    private int markerCount = 0;
+    private long[] markerState = new long[16];
+    private double[] prevX = new double[16];
+    private double[] prevY = new double[16];
+    private double[] prevW = new double[16];
+    private double[] prevH = new double[16];
+    private double[] curX = new double[16];
+    private double[] curY = new double[16];
+    private double[] curW = new double[16];
+    private double[] curH = new double[16];
+    private boolean[] dirty = new boolean[16];
+    private final double[] arrowX = new double[3];
+    private final double[] arrowY = new double[3];
+    private final int tilesX;
+    private final int tilesY;
+    private final int[] tileStamp; // tiles stamped with the current pass were cleared or repainted
+    private int stamp = 0;
+    private double maxHz = 0;
+    private long lastRefreshNanos = 0;
+
+    /**
+     * @param maze read again for {@link #cellChanged(int, int)}; owned by the FX thread
+     */
+    public Minimap(boolean[][] maze, boolean[][] pits, int exitGX, int exitGY, int tile, double appW, double appH) {
+        this.maze = maze;
+        this.pits = pits;
+        this.exitGX = exitGX;
+        this.exitGY = exitGY;
+        this.gridW = maze.length;
+        this.gridH = maze[0].length;
+        this.tile = tile;
+
+        double maxArea = Math.max(1.0, appW * appH / 48.0); // screen budget for the minimap
+        double fitPx = Math.sqrt(maxArea / (gridW * gridH));
+        this.scrolling = fitPx < MIN_CELL_PX;
+        this.cellPx = scrolling ? MIN_CELL_PX : fitPx;
+        if (scrolling) {
+            double side = Math.sqrt(maxArea);
+            this.viewW = Math.min(side, gridW * cellPx);
+            this.viewH = Math.min(side, gridH * cellPx);
+        } else {
+            this.viewW = gridW * cellPx;
+            this.viewH = gridH * cellPx;
+        }
+
+        root.setPrefSize(viewW, viewH);
+        root.setMinSize(viewW, viewH);
+        root.setMaxSize(viewW, viewH);
+        root.setClip(new Rectangle(viewW, viewH));
+        root.setMouseTransparent(true);
+        root.setPickOnBounds(false);
+
+        staticView.setSmooth(false);
+        staticView.setFitWidth(gridW * cellPx);
+        staticView.setFitHeight(gridH * cellPx);
+        root.getChildren().add(staticView);
+
+        overlay = new Canvas(viewW, viewH);
+        root.getChildren().add(overlay);
+        tilesX = (int) Math.ceil(viewW / DIRTY_TILE) + 1;
+        tilesY = (int) Math.ceil(viewH / DIRTY_TILE) + 1;
+        tileStamp = new int[tilesX * tilesY];
+        java.util.Arrays.fill(markerState, HIDDEN);
+
+        if (scrolling) {
+            double ovSide = Math.max(16, Math.floor(Math.min(viewW, viewH) / 3.0));
+            overviewScale = ovSide / Math.max(gridW, gridH);
+            overview = new ImageView();
+            overview.setSmooth(true);
+            overview.setTranslateX(2);
+            overview.setTranslateY(viewH - gridH * overviewScale - 2);
+            overview.setOpacity(0.85);
+            overviewFrame = new Rectangle(viewW / cellPx * overviewScale, viewH / cellPx * overviewScale);
+            overviewFrame.setFill(Color.TRANSPARENT);
+            overviewFrame.setStroke(Color.YELLOW);
+            overviewFrame.setStrokeWidth(1);
+            root.getChildren().addAll(overview, overviewFrame);
+        } else {
+            overviewScale = 0;
+            overview = null;
+            overviewFrame = null;
+        }
+
+        Rectangle border = new Rectangle(0.5, 0.5, viewW - 1, viewH - 1);
+        border.setFill(Color.TRANSPARENT);
+        border.setStroke(Color.color(1, 1, 1, 0.8));
+        border.setStrokeWidth(Math.max(1.0, cellPx * 0.08));
+        root.getChildren().add(border);
+
+        // Rasterize off the FX thread, then upload on it
+        this.k = (int) Math.ceil(cellPx);
+        this.cellPixels = new int[k * k];
+        int ovW = scrolling ? Math.max(1, (int) Math.round(gridW * overviewScale)) : 0;
+        int ovH = scrolling ? Math.max(1, (int) Math.round(gridH * overviewScale)) : 0;
+        CompletableFuture.runAsync(() -> {
+            int[] detail = rasterize(maze, pits, exitGX, exitGY, k);
+            int[] small = scrolling ? downsample(maze, ovW, ovH) : null;
+            Platform.runLater(() -> {
+                if (disposed) return;
+                staticView.setImage(toImage(detail, gridW * k, gridH * k));
+                if (small != null) overview.setImage(toImage(small, ovW, ovH));
+                for (int i = 0; i < pendingCount; i++) cellChanged(pendingCells[i] % gridW, pendingCells[i] / gridW);
+                pendingCount = 0;
+            });
+        }).exceptionally(ex -> {
+            System.out.println("[DEBUG_LOG] Failed to rasterize minimap: " + ex.getMessage());
+            return null;
+        });
+    }
+
+    public Node getNode() {
+        return root;
+    }
+
+    public Canvas getOverlay() {
+        return overlay;
+    }
+
+    public double getWidth() {
+        return viewW;
+    }
+
+    public double getHeight() {
+        return viewH;
+    }
+
+    public double getCellPx() {
+        return cellPx;
+    }
+
+    public double getOriginX() {
+        return originX;
+    }
+
+    public double getOriginY() {
+        return originY;
+    }
+
+    /**
+     * Scrolls the window so the player stays centred (no-op when the whole maze fits).
+     *
+     * @return true if the visible window moved
+     */
+    public boolean follow(double playerX, double playerZ) {
+        if (!scrolling) return false;
+        double ox = Math.floor(clamp(playerX / tile * cellPx - viewW / 2.0, 0, gridW * cellPx - viewW));
+        double oy = Math.floor(clamp(playerZ / tile * cellPx - viewH / 2.0, 0, gridH * cellPx - viewH));
+        if (ox == originX && oy == originY) return false;
+        originX = ox;
+        originY = oy;
+        staticView.setTranslateX(-ox);
+        staticView.setTranslateY(-oy);
+        overviewFrame.setTranslateX(overview.getTranslateX() + ox / cellPx * overviewScale);
+        overviewFrame.setTranslateY(overview.getTranslateY() + oy / cellPx * overviewScale);
+        return true;
+    }
+
+    /**
+     * Upper bound for overlay refreshes from -Dlabyrinth.minimapHz (default 30, 0 = every frame).
+     */
+    public static double maxRefreshHzFromSystemProperty() {
+        try {
+            return Double.parseDouble(System.getProperty("labyrinth.minimapHz", "30"));
+        } catch (NumberFormatException e) {
+            return 30;
+        }
+    }
+
+    /** Caps overlay refreshes per second; 0 refreshes on every call. */
+    public void setRefreshRate(double hz) {
+        this.maxHz = hz;
+    }
+
+    /**
+     * Refreshes the dynamic markers. A marker is redrawn only if its quantized position or heading
+     * changed, the window scrolled, or it overlaps an area that was cleared or repainted this pass.
+     *
+     * @param enemyX world X of each enemy (first {@code enemyCount} entries are used)
+     * @param enemyZ world Z of each enemy
+     */
+    public void updateMarkers(long nowNanos, double playerX, double playerZ, double yawDeg,
+                              boolean keyVisible, int keyGX, int keyGY,
+                              double[] enemyX, double[] enemyZ, int enemyCount) {
+        if (maxHz > 0 && nowNanos - lastRefreshNanos < (long) (1_000_000_000L / maxHz)) return;
+        lastRefreshNanos = nowNanos;
+
+        boolean scrolled = follow(playerX, playerZ);
+        int total = FIRST_ENEMY + enemyCount;
+        int span = Math.max(total, markerCount);
+        ensureCapacity(span);
+        if (++stamp == 0) {
+            java.util.Arrays.fill(tileStamp, 0);
+            stamp = 1;
+        }
+        GraphicsContext g = overlay.getGraphicsContext2D();
+
+        // Pass 1: work out new geometry, clear the old rects of markers that changed
+        for (int i = 0; i < span; i++) {
+            long next;
+            if (i >= total) next = HIDDEN;
+            else if (i == KEY) next = keyVisible && keyGX >= 0 ? keyGeometry(keyGX, keyGY) : HIDDEN;
+            else if (i == PLAYER) next = playerGeometry(playerX, playerZ, yawDeg);
+            else next = enemyGeometry(i, enemyX[i - FIRST_ENEMY], enemyZ[i - FIRST_ENEMY]);
+            if (next != HIDDEN && !inView(i)) next = HIDDEN;
+
+            dirty[i] = scrolled || next != markerState[i];
+            if (dirty[i]) {
+                if (prevW[i] > 0) {
+                    g.clearRect(prevX[i], prevY[i], prevW[i], prevH[i]);
+                    stampTiles(prevX[i], prevY[i], prevW[i], prevH[i]);
+                    prevW[i] = 0;
+                }
+                if (next != HIDDEN) stampTiles(curX[i], curY[i], curW[i], curH[i]);
+            }
+            markerState[i] = next;
+        }
+
+        // Pass 2: redraw in z-order (key, enemies, player on top)
+        double cellPx = this.cellPx;
+        if (needsDraw(KEY)) {
+            g.setFill(Color.BLUE);
+            g.fillRect(keyGX * cellPx - originX, keyGY * cellPx - originY, cellPx, cellPx);
+            commit(KEY);
+        }
+        g.setFill(Color.ORANGE);
+        double er = enemySize();
+        for (int i = FIRST_ENEMY; i < total; i++) {
+            if (needsDraw(i)) {
+                double ex = enemyX[i - FIRST_ENEMY] / tile * cellPx - originX;
+                double ey = enemyZ[i - FIRST_ENEMY] / tile * cellPx - originY;
+                g.fillRect(ex - er / 2.0, ey - er / 2.0, er, er);
+                commit(i);
+            }
+        }
+        if (needsDraw(PLAYER)) {
+            g.setFill(Color.RED);
+            g.fillPolygon(arrowX, arrowY, 3);
+            commit(PLAYER);
+        }
+        markerCount = total;
+    }
+
+    private long keyGeometry(int keyGX, int keyGY) {
+        double x = keyGX * cellPx - originX;
+        double y = keyGY * cellPx - originY;
+        setRect(KEY, x, y, cellPx, cellPx);
+        return quantize(x, y, 0);
+    }
+
+    private long playerGeometry(double playerX, double playerZ, double yawDeg) {
+        double px = playerX / tile * cellPx - originX;
+        double py = playerZ / tile * cellPx - originY;
+        int heading = Math.floorMod((int) Math.round(yawDeg / 360.0 * ARROW_STEPS), ARROW_STEPS);
+        double yawRad = heading * (2 * Math.PI / ARROW_STEPS);
+        double dirX = Math.sin(yawRad);
+        double dirY = Math.cos(yawRad); // map world Z to minimap Y
+
+        double len = Math.max(6.0, cellPx * 0.9);       // arrow length
+        double halfW = Math.max(3.0, cellPx * 0.55) / 2; // arrow half width
+        double baseCX = px - dirX * (len * 0.35);
+        double baseCY = py - dirY * (len * 0.35);
+        arrowX[0] = px + dirX * (len * 0.6);
+        arrowY[0] = py + dirY * (len * 0.6);
+        arrowX[1] = baseCX + dirY * halfW;
+        arrowY[1] = baseCY - dirX * halfW;
+        arrowX[2] = baseCX - dirY * halfW;
+        arrowY[2] = baseCY + dirX * halfW;
+
+        double minX = Math.min(arrowX[0], Math.min(arrowX[1], arrowX[2]));
+        double maxX = Math.max(arrowX[0], Math.max(arrowX[1], arrowX[2]));
+        double minY = Math.min(arrowY[0], Math.min(arrowY[1], arrowY[2]));
+        double maxY = Math.max(arrowY[0], Math.max(arrowY[1], arrowY[2]));
+        setRect(PLAYER, minX, minY, maxX - minX, maxY - minY);
+        return quantize(px, py, heading + 1);
+    }
+
+    private long enemyGeometry(int i, double x, double z) {
+        double er = enemySize();
+        double ex = x / tile * cellPx - originX;
+        double ey = z / tile * cellPx - originY;
+        setRect(i, ex - er / 2.0, ey - er / 2.0, er, er);
+        return quantize(ex, ey, 0);
+    }
+
+    private double enemySize() {
+        return Math.max(2.0, cellPx * 0.28);
+    }
+
+    // Whole-pixel rect that covers the given one plus a pixel of antialiasing
+    private void setRect(int i, double x, double y, double w, double h) {
+        double x0 = Math.floor(x) - 1;
+        double y0 = Math.floor(y) - 1;
+        curX[i] = x0;
+        curY[i] = y0;
+        curW[i] = Math.ceil(x + w) + 1 - x0;
+        curH[i] = Math.ceil(y + h) + 1 - y0;
+    }
+
+    private boolean inView(int i) {
+        return curX[i] + curW[i] > 0 && curY[i] + curH[i] > 0 && curX[i] < viewW && curY[i] < viewH;
+    }
+
+    private static long quantize(double x, double y, int extra) {
+        long qx = Math.round(x) & 0xFFFFFL;
+        long qy = Math.round(y) & 0xFFFFFL;
+        return qx | (qy << 20) | ((long) extra << 40);
+    }
+
+    private boolean needsDraw(int i) {
+        if (markerState[i] == HIDDEN) return false;
+        return dirty[i] || touchesStamped(prevW[i] > 0 ? prevX[i] : curX[i], prevW[i] > 0 ? prevY[i] : curY[i],
+                prevW[i] > 0 ? prevW[i] : curW[i], prevW[i] > 0 ? prevH[i] : curH[i]);
+    }
+
+    // Records what was drawn; a repaint also forces later overlapping markers to repaint on top
+    private void commit(int i) {
+        if (!dirty[i] && prevW[i] > 0) {
+            // repainted in place: keep the old rect, it is what is on the canvas
+            stampTiles(prevX[i], prevY[i], prevW[i], prevH[i]);
+            return;
+        }
+        prevX[i] = curX[i];
+        prevY[i] = curY[i];
+        prevW[i] = curW[i];
+        prevH[i] = curH[i];
+    }
+
+    private void stampTiles(double x, double y, double w, double h) {
+        int tx0 = Math.max(0, (int) Math.floor(x / DIRTY_TILE));
+        int ty0 = Math.max(0, (int) Math.floor(y / DIRTY_TILE));
+        int tx1 = Math.min(tilesX - 1, (int) Math.floor((x + w) / DIRTY_TILE));
+        int ty1 = Math.min(tilesY - 1, (int) Math.floor((y + h) / DIRTY_TILE));
+        for (int ty = ty0; ty <= ty1; ty++) {
+            for (int tx = tx0; tx <= tx1; tx++) {
+                tileStamp[ty * tilesX + tx] = stamp;
+            }
+        }
+    }
+
+    private boolean touchesStamped(double x, double y, double w, double h) {
+        int tx0 = Math.max(0, (int) Math.floor(x / DIRTY_TILE));
+        int ty0 = Math.max(0, (int) Math.floor(y / DIRTY_TILE));
+        int tx1 = Math.min(tilesX - 1, (int) Math.floor((x + w) / DIRTY_TILE));
+        int ty1 = Math.min(tilesY - 1, (int) Math.floor((y + h) / DIRTY_TILE));
+        for (int ty = ty0; ty <= ty1; ty++) {
+            for (int tx = tx0; tx <= tx1; tx++) {
+                if (tileStamp[ty * tilesX + tx] == stamp) return true;
+            }
+        }
+        return false;
+    }
+
+    private void ensureCapacity(int n) {
+        if (n <= markerState.length) return;
+        int cap = Math.max(n, markerState.length * 2);
+        int old = markerState.length;
+        markerState = java.util.Arrays.copyOf(markerState, cap);
+        java.util.Arrays.fill(markerState, old, cap, HIDDEN);
+        prevX = java.util.Arrays.copyOf(prevX, cap);
+        prevY = java.util.Arrays.copyOf(prevY, cap);
+        prevW = java.util.Arrays.copyOf(prevW, cap);
+        prevH = java.util.Arrays.copyOf(prevH, cap);
+        curX = java.util.Arrays.copyOf(curX, cap);
+        curY = java.util.Arrays.copyOf(curY, cap);
+        curW = java.util.Arrays.copyOf(curW, cap);
+        curH = java.util.Arrays.copyOf(curH, cap);
+        dirty = java.util.Arrays.copyOf(dirty, cap);
+    }
+
+    /**
+     * Repaints cell (gx, gz) after it changed in the maze: its k x k pixels of the static layer and the
+     * overview pixel covering it. Before the background raster is shown the cell is queued instead, since
+     * the raster may have read it before the change.
+     */
+    public void cellChanged(int gx, int gz) {
+        if (gx < 0 || gz < 0 || gx >= gridW || gz >= gridH) return;
+        if (!(staticView.getImage() instanceof WritableImage detail)) {
+            if (pendingCount == pendingCells.length) pendingCells = java.util.Arrays.copyOf(pendingCells, pendingCount * 2);
+            pendingCells[pendingCount++] = gz * gridW + gx;
+            return;
+        }
+        java.util.Arrays.fill(cellPixels, color(maze, pits, exitGX, exitGY, gx, gz));
+        detail.getPixelWriter().setPixels(gx * k, gz * k, k, k, PixelFormat.getIntArgbInstance(), cellPixels, 0, k);
+        if (overview != null && overview.getImage() instanceof WritableImage small) {
+            int ovW = (int) small.getWidth();
+            int ovH = (int) small.getHeight();
+            int ox = Math.min(ovW - 1, (int) ((long) gx * ovW / gridW));
+            int oy = Math.min(ovH - 1, (int) ((long) gz * ovH / gridH));
+            small.getPixelWriter().setArgb(ox, oy, overviewPixel(maze, ovW, ovH, ox, oy));
+        }
+    }
+
+    /** Drops a pending background raster so it doesn't touch a minimap that was replaced. */
+    public void dispose() {
+        disposed = true;
+    }
+
+    // One pass over the grid, k x k pixels per cell
+    static int[] rasterize(boolean[][] maze, boolean[][] pits, int exitGX, int exitGY, int k) {
+        int w = maze.length;
+        int h = maze[0].length;
+        int stride = w * k;
+        int[] px = new int[stride * h * k];
+        for (int y = 0; y < h; y++) {
+            int rowBase = y * k * stride;
+            for (int x = 0; x < w; x++) {
+                int c = color(maze, pits, exitGX, exitGY, x, y);
+                int base = rowBase + x * k;
+                for (int i = 0; i < k; i++) {
+                    px[base + i] = c;
+                }
+            }
+            // replicate the first pixel row of this cell row
+            for (int r = 1; r < k; r++) {
+                System.arraycopy(px, rowBase, px, rowBase + r * stride, stride);
+            }
+        }
+        return px;
+    }
+
+    private static int color(boolean[][] maze, boolean[][] pits, int exitGX, int exitGY, int x, int y) {
+        if (x == exitGX && y == exitGY) return EXIT;
+        if (maze[x][y]) return WALL;
+        if (pits != null && pits[x][y]) return PIT;
+        return BACKGROUND;
+    }
+
+    // Overview: each pixel shades by the fraction of wall cells it covers
+    static int[] downsample(boolean[][] maze, int ovW, int ovH) {
+        int w = maze.length;
+        int h = maze[0].length;
+        int[] walls = new int[ovW * ovH];
+        int[] totals = new int[ovW * ovH];
+        for (int x = 0; x < w; x++) {
+            int ox = Math.min(ovW - 1, (int) ((long) x * ovW / w));
+            for (int y = 0; y < h; y++) {
+                int i = Math.min(ovH - 1, (int) ((long) y * ovH / h)) * ovW + ox;
+                totals[i]++;
+                if (maze[x][y]) walls[i]++;
+            }
+        }
+        int[] px = new int[ovW * ovH];
+        for (int i = 0; i < px.length; i++) px[i] = shade(walls[i], totals[i]);
+        return px;
+    }
+
+    // One overview pixel counted again over just the cells it covers
+    private static int overviewPixel(boolean[][] maze, int ovW, int ovH, int ox, int oy) {
+        int w = maze.length;
+        int h = maze[0].length;
+        int walls = 0;
+        int total = 0;
+        // the cells mapping to (ox, oy) start at or after (ox * w / ovW, oy * h / ovH)
+        for (int x = (int) ((long) ox * w / ovW); x < w; x++) {
+            int cx = Math.min(ovW - 1, (int) ((long) x * ovW / w));
+            if (cx < ox) continue;
+            if (cx > ox) break;
+            for (int y = (int) ((long) oy * h / ovH); y < h; y++) {
+                int cy = Math.min(ovH - 1, (int) ((long) y * ovH / h));
+                if (cy < oy) continue;
+                if (cy > oy) break;
+                total++;
+                if (maze[x][y]) walls++;
+            }
+        }
+        return shade(walls, total);
+    }
+
+    private static int shade(int walls, int total) {
+        int g = total == 0 ? 0 : 40 + 170 * walls / total;
+        return 0xC0000000 | (g << 16) | (g << 8) | g;
+    }
+
+    private static WritableImage toImage(int[] argb, int w, int h) {
+        WritableImage img = new WritableImage(w, h);
+        img.getPixelWriter().setPixels(0, 0, w, h, PixelFormat.getIntArgbInstance(), argb, 0, w);
+        return img;
+    }
+
+    private static double clamp(double v, double min, double max) {
+        return Math.max(min, Math.min(max, v));
+    }
+}
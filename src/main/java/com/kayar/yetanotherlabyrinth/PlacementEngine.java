@@ -0,0 +1,231 @@
+package com.kayar.yetanotherlabyrinth;
+
+import java.util.Random;
+
+/**
+ * Blue-noise placement of level items (pits, key, enemies) on the maze's floor cells.
+ * <p>
+ * All state is bitsets over the grid (bit {@code gz * width + gx}): the floor, per-type blocked cells
+ * (exclusion masks and cells too close to items of other types), per-type spacing (cells too close to
+ * an item of the same type) and per-type occupied cells. Placing an item stamps a square of each type's
+ * minimum distance (Chebyshev, in cells) into the other types' masks, so an item is accepted with one
+ * bit test and every pass is linear in the cell count. Given the same {@link Random} the results are
+ * the same.
+ * <ul>
+ *   <li>{@link #scatter(int, double, long[], int[])}: dart throwing in scan order, one pass;</li>
+ *   <li>{@link #pickOne(int, long[])}: a uniform pick among the free cells;</li>
+ *   <li>{@link #sample(int, int, long[], int[], int)}: a fixed number of items in random order, spaced
+ *       while there's room and packed into the remaining free cells after that.</li>
+ * </ul>
+ */
+public final class PlacementEngine {
+
+    // Item types
+    public static final int PIT = 0;
+    public static final int KEY = 1;
+    public static final int ENEMY = 2;
+    static final int TYPES = 3;
+
+    private final int w;
+    private final int h;
+    private final int words;
+    private final long[] floor;
+    private final long[][] blocked = new long[TYPES][];
+    private final long[][] spacing = new long[TYPES][];
+    private final long[][] occupied = new long[TYPES][];
+    private final int[][] minDistance = new int[TYPES][TYPES]; // -1 = no constraint, 0 = not the same cell
+    private final Random rnd;
+    private int[] scratch;
+
+    public PlacementEngine(boolean[][] maze, Random rnd) {
+        this.w = maze.length;
+        this.h = maze[0].length;
+        this.words = (w * h + 63) >>> 6;
+        this.rnd = rnd;
+        this.floor = new long[words];
+        for (int gz = 0; gz < h; gz++) {
+            for (int gx = 0; gx < w; gx++) {
+                if (!maze[gx][gz]) set(floor, gz * w + gx);
+            }
+        }
+        for (int t = 0; t < TYPES; t++) {
+            blocked[t] = new long[words];
+            spacing[t] = new long[words];
+            occupied[t] = new long[words];
+            java.util.Arrays.fill(minDistance[t], -1);
+        }
+    }
+
+    /**
+     * Items of type a and b keep more than {@code cells} apart (Chebyshev distance); 0 keeps them off
+     * each other's cell, negative removes the constraint. Set before placing.
+     */
+    public void setMinDistance(int a, int b, int cells) {
+        minDistance[a][b] = cells;
+        minDistance[b][a] = cells;
+    }
+
+    /** Keeps every item type off the cell. */
+    public void exclude(int gx, int gz) {
+        for (int t = 0; t < TYPES; t++) exclude(t, gx, gz);
+    }
+
+    /** Keeps items of the type off the cell. */
+    public void exclude(int type, int gx, int gz) {
+        if (gx < 0 || gz < 0 || gx >= w || gz >= h) return;
+        set(blocked[type], gz * w + gx);
+    }
+
+    /** Whether an item of the type can go on the cell now (floor, not excluded, not too close to others). */
+    public boolean isFree(int type, int gx, int gz) {
+        if (gx < 0 || gz < 0 || gx >= w || gz >= h) return false;
+        int c = gz * w + gx;
+        return get(floor, c) && !get(blocked[type], c) && !get(spacing[type], c);
+    }
+
+    /** An empty cell mask for the {@code allow} parameters. */
+    public long[] newMask() {
+        return new long[words];
+    }
+
+    public void allow(long[] mask, int gx, int gz) {
+        set(mask, gz * w + gx);
+    }
+
+    /**
+     * One pass in cell order: every free cell (within {@code allow}, null = all) gets an item with the
+     * given probability. The spacing grows as items land, which gives the blue-noise distribution.
+     *
+     * @return number of items placed, their cells in {@code out} (which may be null)
+     */
+    public int scatter(int type, double chance, long[] allow, int[] out) {
+        int count = 0;
+        long[] b = blocked[type];
+        long[] s = spacing[type];
+        for (int i = 0; i < words; i++) {
+            long bits = floor[i] & ~b[i] & ~s[i];
+            if (allow != null) bits &= allow[i];
+            while (bits != 0) {
+                int c = (i << 6) + Long.numberOfTrailingZeros(bits);
+                bits &= bits - 1;
+                if (rnd.nextDouble() >= chance) continue;
+                place(type, c);
+                if (out != null) out[count] = c;
+                count++;
+                bits &= ~b[i] & ~s[i]; // this word may now hold cells too close to the new item
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Places one item on a uniformly chosen free cell within {@code allow} (null = all).
+     *
+     * @return the cell index, or -1 when no cell is free
+     */
+    public int pickOne(int type, long[] allow) {
+        int n = collectFree(type, allow);
+        if (n == 0) return -1;
+        int c = scratch[rnd.nextInt(n)];
+        place(type, c);
+        return c;
+    }
+
+    /**
+     * Places up to {@code count} items on free cells within {@code allow} (null = all), visited in a
+     * random order: first keeping the type's own spacing, then, if that runs out of room, on any free
+     * cell not holding one already. Cells go to {@code out} from {@code offset} on.
+     *
+     * @return number of items placed
+     */
+    public int sample(int type, int count, long[] allow, int[] out, int offset) {
+        if (count <= 0) return 0;
+        int n = collectFree(type, allow, false);
+        int[] order = scratch;
+        for (int i = n; i > 1; i--) {
+            int j = rnd.nextInt(i);
+            int t = order[i - 1];
+            order[i - 1] = order[j];
+            order[j] = t;
+        }
+        int placed = 0;
+        long[] s = spacing[type];
+        long[] o = occupied[type];
+        for (int i = 0; i < n && placed < count; i++) {
+            int c = order[i];
+            if (get(s, c) || get(o, c)) continue;
+            place(type, c);
+            out[offset + placed++] = c;
+        }
+        for (int i = 0; i < n && placed < count; i++) {
+            int c = order[i];
+            if (get(o, c)) continue;
+            place(type, c);
+            out[offset + placed++] = c;
+        }
+        return placed;
+    }
+
+    private int collectFree(int type, long[] allow) {
+        return collectFree(type, allow, true);
+    }
+
+    // Cells in order that are floor, not blocked for the type and (with spaced) not within its spacing
+    private int collectFree(int type, long[] allow, boolean spaced) {
+        if (scratch == null) scratch = new int[w * h];
+        int n = 0;
+        long[] b = blocked[type];
+        long[] s = spacing[type];
+        for (int i = 0; i < words; i++) {
+            long bits = floor[i] & ~b[i];
+            if (spaced) bits &= ~s[i];
+            if (allow != null) bits &= allow[i];
+            while (bits != 0) {
+                scratch[n++] = (i << 6) + Long.numberOfTrailingZeros(bits);
+                bits &= bits - 1;
+            }
+        }
+        return n;
+    }
+
+    private void place(int type, int c) {
+        set(occupied[type], c);
+        int gx = c % w;
+        int gz = c / w;
+        for (int t = 0; t < TYPES; t++) {
+            int r = minDistance[type][t];
+            if (r >= 0) stamp(t == type ? spacing[t] : blocked[t], gx, gz, r);
+        }
+    }
+
+    // Sets the square of cells within Chebyshev distance r, one bit range per row
+    private void stamp(long[] bits, int gx, int gz, int r) {
+        int x0 = Math.max(0, gx - r);
+        int x1 = Math.min(w - 1, gx + r);
+        for (int z = Math.max(0, gz - r); z <= Math.min(h - 1, gz + r); z++) {
+            setRange(bits, z * w + x0, z * w + x1 + 1);
+        }
+    }
+
+    private static void setRange(long[] bits, int from, int to) {
+        int fw = from >>> 6;
+        int tw = (to - 1) >>> 6;
+        long first = -1L << from;        // shifts use the low 6 bits
+        long last = -1L >>> -to;
+        if (fw == tw) {
+            bits[fw] |= first & last;
+            return;
+        }
+        bits[fw] |= first;
+        for (int i = fw + 1; i < tw; i++) bits[i] = -1L;
+        bits[tw] |= last;
+    }
+
+    private static void set(long[] bits, int c) {
+        bits[c >>> 6] |= 1L << c;
+    }
+
+    private static boolean get(long[] bits, int c) {
+        return (bits[c >>> 6] & (1L << c)) != 0;
+    }
+}
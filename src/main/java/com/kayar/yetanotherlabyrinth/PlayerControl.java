@@ -2,20 +2,17 @@ package com.kayar.yetanotherlabyrinth;
 
 import com.almasb.fxgl.dsl.FXGL;
 import com.almasb.fxgl.entity.component.Component;
-import javafx.geometry.Point2D;
 
 /**
  * Handles top-down "FPS-style" movement with mouse look and WASD controls.
- * Collision is handled against the maze grid (true = wall).
+ * Collision is handled against the level's {@link CollisionField}; the exit is a {@link TriggerGrid} zone.
  */
-public class PlayerControl extends Component {
+public class PlayerControl extends Component implements TriggerGrid.Listener {
 
-    private final boolean[][] maze; // [w][h] true=wall
-    private final int gridW;
-    private final int gridH;
+    private final CollisionField collision;
     private final int tile;
     private final double radius;
-    private final Point2D exitCenter;
+    private final TriggerGrid triggers;
 
     private double speed = 160; // units per second
 
@@ -28,52 +25,53 @@ public class PlayerControl extends Component {
     private boolean moveLeft;
     private boolean moveRight;
 
-    public PlayerControl(boolean[][] maze, int tile, Point2D exitCenter) {
-        this.maze = maze;
-        this.gridW = maze.length;
-        this.gridH = maze[0].length;
-        this.tile = tile;
+    public PlayerControl(CollisionField collision, TriggerGrid triggers) {
+        this.collision = collision;
+        this.tile = collision.getTile();
         this.radius = tile * 0.30;
-        this.exitCenter = exitCenter;
+        this.triggers = triggers;
     }
 
     @Override
     public void onUpdate(double tpf) {
-        // Look direction via mouse position
-        Point2D mouse = FXGL.getInput().getMousePositionWorld();
-        Point2D center = entity.getCenter();
-        double angle = Math.toDegrees(Math.atan2(mouse.getY() - center.getY(), mouse.getX() - center.getX()));
+        // Look direction via mouse position (primitives only: this runs every frame)
+        double cx = entity.getX() + entity.getWidth() / 2.0;
+        double cy = entity.getY() + entity.getHeight() / 2.0;
+        double angle = Math.toDegrees(Math.atan2(FXGL.getInput().getMouseYWorld() - cy, FXGL.getInput().getMouseXWorld() - cx));
         entity.setRotation(angle);
 
-        // Movement vector based on keys and facing direction
-        Point2D forward = new Point2D(Math.cos(Math.toRadians(angle)), Math.sin(Math.toRadians(angle)));
-        Point2D right = new Point2D(-forward.getY(), forward.getX());
-
-        Point2D dir = Point2D.ZERO;
-        if (moveForward) dir = dir.add(forward);
-        if (moveBackward) dir = dir.subtract(forward);
-        if (moveLeft) dir = dir.subtract(right);
-        if (moveRight) dir = dir.add(right);
+        // Movement vector based on keys and facing direction; right is forward rotated by +90 degrees
+        double fwdX = Math.cos(Math.toRadians(angle));
+        double fwdY = Math.sin(Math.toRadians(angle));
+        double dx = 0;
+        double dy = 0;
+        if (moveForward) { dx += fwdX; dy += fwdY; }
+        if (moveBackward) { dx -= fwdX; dy -= fwdY; }
+        if (moveLeft) { dx += fwdY; dy -= fwdX; }
+        if (moveRight) { dx -= fwdY; dy += fwdX; }
 
         boolean moving = false;
-        if (dir.magnitude() > 0) {
-            dir = dir.normalize().multiply(speed * tpf);
+        double len = Math.hypot(dx, dy);
+        if (len > 0) {
+            dx = dx / len * speed * tpf;
+            dy = dy / len * speed * tpf;
             moving = true;
         }
 
         // Move with simple grid collision, axis-separated for sliding
-        if (dir != Point2D.ZERO) {
-            tryMove(dir.getX(), 0);
-            tryMove(0, dir.getY());
+        if (moving) {
+            tryMove(dx, 0);
+            tryMove(0, dy);
+            maybePlayStep();
         }
 
-        if (moving) maybePlayStep();
-
-        // recompute center after movement
-        center = entity.getCenter();
+        // centre after movement; entering the exit zone fires onEnter once
+        triggers.update(entity.getX() + entity.getWidth() / 2.0, entity.getY() + entity.getHeight() / 2.0, radius, this);
+    }
 
-        // Win condition: reach the exit center within radius
-        if (center.distance(exitCenter) < Math.max(radius, tile * 0.45)) {
+    @Override
+    public void onEnter(int id, byte kind) {
+        if (kind == TriggerGrid.EXIT) {
             FXGL.getDialogService().showMessageBox(LabyrinthApp.buildExitMessage(), () -> FXGL.getGameController().startNewGame());
         }
     }
@@ -102,31 +100,6 @@ public class PlayerControl extends Component {
     }
 
     private boolean collidesWithWalls(double cx, double cy) {
-        int minX = (int) Math.floor((cx - radius) / tile);
-        int maxX = (int) Math.floor((cx + radius) / tile);
-        int minY = (int) Math.floor((cy - radius) / tile);
-        int maxY = (int) Math.floor((cy + radius) / tile);
-
-        for (int gx = minX; gx <= maxX; gx++) {
-            for (int gy = minY; gy <= maxY; gy++) {
-                if (gx < 0 || gy < 0 || gx >= gridW || gy >= gridH) return true; // treat outside as walls
-                if (maze[gx][gy]) {
-                    // precise circle vs AABB check
-                    double tileCenterX = gx * tile + tile / 2.0;
-                    double tileCenterY = gy * tile + tile / 2.0;
-                    double nearestX = clamp(cx, tileCenterX - tile / 2.0, tileCenterX + tile / 2.0);
-                    double nearestY = clamp(cy, tileCenterY - tile / 2.0, tileCenterY + tile / 2.0);
-                    double dx = cx - nearestX;
-                    double dy = cy - nearestY;
-                    if (dx * dx + dy * dy <= radius * radius)
-                        return true;
-                }
-            }
-        }
-        return false;
-    }
-
-    private static double clamp(double v, double min, double max) {
-        return Math.max(min, Math.min(max, v));
+        return collision.collidesWithWalls(cx, cy, radius);
     }
 }
@@ -0,0 +1,17 @@
+package com.kayar.yetanotherlabyrinth;
+
+/**
+ * Gameplay input of a first-person player: held movement bits ({@code World.INPUT_*}), jump requests
+ * and mouse look. Implemented by the simulations and by {@link SimulationLoop}, which forwards to its thread.
+ */
+public interface PlayerInput {
+
+    void setInput(int bit, boolean on);
+
+    /** Jumps on the next step if the player is on the floor. */
+    void jump();
+
+    void addYaw(double deltaDegrees);
+
+    void addPitch(double deltaDegrees);
+}
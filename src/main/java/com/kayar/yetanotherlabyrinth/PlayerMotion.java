@@ -0,0 +1,171 @@
+package com.kayar.yetanotherlabyrinth;
+
+/**
+ * Player movement shared by {@link World} and {@link EndlessWorld}: turning and walking from the held
+ * input bits, axis-separated moves in substeps against the walls, jumping with gravity under the ceiling
+ * and footstep timing. The worlds read, interpolate and save the pose fields directly.
+ * Tuning is in world units, scaled from the tile size.
+ */
+final class PlayerMotion {
+
+    /** Collision test of the player's circle at (px, pz). */
+    interface Walls {
+        boolean collides(double px, double pz, double radius);
+    }
+
+    final double radius;          // collision radius
+    final double cameraHeight;    // eye height above the floor
+    final double gravity;         // units/s^2 (acts downward)
+    final double jumpSpeed;       // initial upward speed
+    final double maxHeadroom;     // highest jump offset before the head hits the ceiling
+    private final Walls walls;
+
+    int input;
+    boolean jumpRequested;
+
+    double x;
+    double z;
+    double prevX;
+    double prevZ;
+    double yaw;   // degrees, 0 means facing +Z
+    double pitch; // degrees, 0 means level; positive = look up
+    double yOffset;
+    double prevYOffset;
+    double yVelocity;
+    boolean grounded = true;
+    double stepCooldown; // simulated seconds until the next footstep may sound
+
+    PlayerMotion(int tile, double x, double z, Walls walls) {
+        this.radius = tile * 0.30;
+        this.cameraHeight = tile * 0.85;
+        this.gravity = tile * 7.0;      // tuned for feel, not real gravity
+        this.jumpSpeed = tile * 3.2;    // enough to clear small bumps, below ceiling
+        this.maxHeadroom = Math.max(0, tile * 1.8 - cameraHeight - 4); // small margin under the ceiling
+        this.walls = walls;
+        this.x = this.prevX = x;
+        this.z = this.prevZ = z;
+    }
+
+    /**
+     * Advances one fixed step of dt seconds from the held input, keeping the previous pose for
+     * interpolation. Jumps and footsteps are reported to the listener.
+     */
+    void step(double dt, World.Listener listener) {
+        prevX = x;
+        prevZ = z;
+        prevYOffset = yOffset;
+        if (stepCooldown > 0) stepCooldown -= dt;
+
+        // turning with Q/E (or mapped keys)
+        boolean turnLeft = (input & World.INPUT_TURN_LEFT) != 0;
+        boolean turnRight = (input & World.INPUT_TURN_RIGHT) != 0;
+        if (turnLeft && !turnRight) yaw -= World.TURN_SPEED * dt;
+        if (turnRight && !turnLeft) yaw += World.TURN_SPEED * dt;
+
+        // forward is (sin yaw, cos yaw), right is (cos yaw, -sin yaw)
+        double yawRad = Math.toRadians(yaw);
+        double fwdX = Math.sin(yawRad);
+        double fwdZ = Math.cos(yawRad);
+        double rightX = Math.cos(yawRad);
+        double rightZ = -Math.sin(yawRad);
+
+        double vx = 0;
+        double vz = 0;
+        if ((input & World.INPUT_FORWARD) != 0) {
+            vx += fwdX;
+            vz += fwdZ;
+        }
+        if ((input & World.INPUT_BACKWARD) != 0) {
+            vx -= fwdX;
+            vz -= fwdZ;
+        }
+        if ((input & World.INPUT_LEFT) != 0) {
+            vx -= rightX;
+            vz -= rightZ;
+        }
+        if ((input & World.INPUT_RIGHT) != 0) {
+            vx += rightX;
+            vz += rightZ;
+        }
+
+        boolean moving = false;
+        double len = Math.hypot(vx, vz);
+        if (len > 1e-6) {
+            vx = (vx / len) * World.PLAYER_SPEED * dt;
+            vz = (vz / len) * World.PLAYER_SPEED * dt;
+            moving = true;
+        }
+
+        // axis-separated movement for sliding along walls
+        if (Math.abs(vx) > 1e-9) tryMove(vx, 0);
+        if (Math.abs(vz) > 1e-9) tryMove(0, vz);
+
+        // jump requested since the last step
+        if (jumpRequested) {
+            jumpRequested = false;
+            if (grounded) {
+                yVelocity = jumpSpeed;
+                grounded = false;
+                listener.onJump();
+            }
+        }
+
+        // vertical motion (apply gravity and clamp to ceiling)
+        if (!grounded || yVelocity != 0) {
+            yVelocity -= gravity * dt; // gravity pulls down
+            yOffset += yVelocity * dt;
+
+            // ceiling clamp
+            if (yOffset > maxHeadroom) {
+                yOffset = maxHeadroom;
+                if (yVelocity > 0) yVelocity = 0;
+            }
+
+            // floor collision
+            if (yOffset <= 0) {
+                yOffset = 0;
+                yVelocity = 0;
+                grounded = true;
+            } else {
+                grounded = false;
+            }
+        }
+
+        if (moving && stepCooldown <= 0) {
+            stepCooldown = World.STEP_INTERVAL;
+            listener.onFootstep();
+        }
+    }
+
+    // Moves in substeps no longer than half the collision radius so a long step can't tunnel through a wall
+    private void tryMove(double dx, double dz) {
+        double maxStep = radius * 0.5;
+        int n = (int) Math.ceil(Math.max(Math.abs(dx), Math.abs(dz)) / maxStep);
+        if (n < 1) n = 1;
+        double sx = dx / n;
+        double sz = dz / n;
+        for (int i = 0; i < n; i++) {
+            double nx = x + sx;
+            double nz = z + sz;
+            if (walls.collides(nx, nz, radius)) break;
+            x = nx;
+            z = nz;
+        }
+    }
+
+    void setInput(int bit, boolean on) {
+        input = on ? (input | bit) : (input & ~bit);
+    }
+
+    double renderX(double alpha) {
+        return prevX + (x - prevX) * alpha;
+    }
+
+    double renderZ(double alpha) {
+        return prevZ + (z - prevZ) * alpha;
+    }
+
+    double renderYOffset(double alpha) {
+        return prevYOffset + (yOffset - prevYOffset) * alpha;
+    }
+}
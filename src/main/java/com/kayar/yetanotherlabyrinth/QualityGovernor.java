@@ -0,0 +1,163 @@
+package com.kayar.yetanotherlabyrinth;
+
+import java.util.Arrays;
+
+/**
+ * Adaptive quality governor driven by frame time.
+ * Keeps a rolling window of frame times and periodically evaluates a high percentile of it.
+ * When the percentile misses the frame budget the tier is stepped down, when there is clear
+ * headroom it is stepped back up. Hysteresis: separate down/up thresholds, a number of
+ * consecutive evaluations required before acting, and a cooldown after every change.
+ */
+public final class QualityGovernor {
+
+    /**
+     * Quality tiers, lowest first. Antialiasing and texture scale are applied when the next
+     * level is built (the 3D SubScene fixes antialiasing at construction); the rest is applied live.
+     */
+    public enum Tier {
+        LOW(false, 1600, 0.5, 5, 0.25),
+        MEDIUM(false, 3000, 0.75, 10, 0.5),
+        HIGH(true, 6000, 1.0, 20, 1.0),
+        ULTRA(true, 10000, 1.0, 0, 1.0);
+
+        private final boolean antialiasing;
+        private final double farClip;
+        private final double enemyAnimRate; // fraction of full sprite animation rate
+        private final double minimapHz;     // 0 = refresh every frame
+        private final double textureScale;  // fraction of source texture resolution
+
+        Tier(boolean antialiasing, double farClip, double enemyAnimRate, double minimapHz, double textureScale) {
+            this.antialiasing = antialiasing;
+            this.farClip = farClip;
+            this.enemyAnimRate = enemyAnimRate;
+            this.minimapHz = minimapHz;
+            this.textureScale = textureScale;
+        }
+
+        public boolean antialiasing() { return antialiasing; }
+        public double farClip() { return farClip; }
+        public double enemyAnimRate() { return enemyAnimRate; }
+        public double minimapHz() { return minimapHz; }
+        public double textureScale() { return textureScale; }
+
+        Tier lower() { return ordinal() == 0 ? this : values()[ordinal() - 1]; }
+        Tier higher() { return ordinal() == values().length - 1 ? this : values()[ordinal() + 1]; }
+    }
+
+    private static final int WINDOW = 120;             // frames in the rolling window
+    private static final int EVAL_EVERY = 30;          // frames between evaluations
+    private static final double PERCENTILE = 0.95;
+    private static final double DOWN_RATIO = 1.10;     // step down when p95 > budget * 1.10
+    private static final double UP_RATIO = 0.70;       // step up when p95 < budget * 0.70
+    private static final int DOWN_STREAK = 2;          // consecutive bad evaluations before stepping down
+    private static final int UP_STREAK = 6;            // consecutive good evaluations before stepping up
+    private static final long COOLDOWN_NANOS = 3_000_000_000L;
+    private static final long HITCH_NANOS = 250_000_000L; // single frames this long are level loads/GC, not load
+
+    private final double budgetNanos;
+    private final long[] samples = new long[WINDOW];
+    private final long[] scratch = new long[WINDOW];
+    private int sampleCount = 0;
+    private int sampleIndex = 0;
+    private int framesSinceEval = 0;
+    private int downStreak = 0;
+    private int upStreak = 0;
+    private long lastFrameNanos = 0;
+    private long lastChangeNanos = 0;
+    private long lastPercentileNanos = 0;
+
+    private Tier tier;
+
+    public QualityGovernor(double targetFps, Tier initialTier) {
+        this.budgetNanos = 1_000_000_000.0 / Math.max(1.0, targetFps);
+        this.tier = initialTier;
+    }
+
+    /**
+     * Target frame rate from -Dlabyrinth.targetFps (default 60).
+     */
+    public static double targetFpsFromSystemProperty() {
+        try {
+            return Double.parseDouble(System.getProperty("labyrinth.targetFps", "60"));
+        } catch (NumberFormatException e) {
+            return 60;
+        }
+    }
+
+    /**
+     * Records a frame ending at the given timestamp.
+     *
+     * @return true if the tier changed as a result of this frame
+     */
+    public boolean onFrame(long nowNanos) {
+        if (lastFrameNanos == 0) {
+            lastFrameNanos = nowNanos;
+            return false;
+        }
+        long frame = nowNanos - lastFrameNanos;
+        lastFrameNanos = nowNanos;
+        if (frame <= 0 || frame > HITCH_NANOS) return false;
+
+        samples[sampleIndex] = frame;
+        sampleIndex = (sampleIndex + 1) % WINDOW;
+        if (sampleCount < WINDOW) sampleCount++;
+
+        if (++framesSinceEval < EVAL_EVERY || sampleCount < WINDOW) return false;
+        framesSinceEval = 0;
+
+        System.arraycopy(samples, 0, scratch, 0, sampleCount);
+        Arrays.sort(scratch, 0, sampleCount);
+        lastPercentileNanos = scratch[Math.min(sampleCount - 1, (int) (sampleCount * PERCENTILE))];
+
+        if (lastPercentileNanos > budgetNanos * DOWN_RATIO) {
+            downStreak++;
+            upStreak = 0;
+        } else if (lastPercentileNanos < budgetNanos * UP_RATIO) {
+            upStreak++;
+            downStreak = 0;
+        } else {
+            downStreak = 0;
+            upStreak = 0;
+        }
+
+        if (nowNanos - lastChangeNanos < COOLDOWN_NANOS) return false;
+
+        Tier next = tier;
+        if (downStreak >= DOWN_STREAK) next = tier.lower();
+        else if (upStreak >= UP_STREAK) next = tier.higher();
+        if (next == tier) return false;
+
+        System.out.println("[DEBUG_LOG] Quality tier " + tier + " -> " + next
+                + " (p95 " + String.format("%.1f", lastPercentileNanos / 1e6) + " ms)");
+        tier = next;
+        lastChangeNanos = nowNanos;
+        clearWindow();
+        return true;
+    }
+
+    /**
+     * Drops collected samples, e.g. after a level load so its hitch doesn't count.
+     */
+    public void reset() {
+        lastFrameNanos = 0;
+        clearWindow();
+    }
+
+    private void clearWindow() {
+        sampleCount = 0;
+        sampleIndex = 0;
+        framesSinceEval = 0;
+        downStreak = 0;
+        upStreak = 0;
+    }
+
+    public Tier getTier() {
+        return tier;
+    }
+
+    /** Last evaluated frame-time percentile in milliseconds (0 before the first evaluation). */
+    public double getLastPercentileMs() {
+        return lastPercentileNanos / 1e6;
+    }
+}
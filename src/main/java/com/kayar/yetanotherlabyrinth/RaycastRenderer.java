@@ -0,0 +1,437 @@
+package com.kayar.yetanotherlabyrinth;
+
+import javafx.scene.image.Image;
+import javafx.scene.image.PixelBuffer;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.PixelReader;
+import javafx.scene.image.WritableImage;
+
+import java.nio.IntBuffer;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * CPU software raycaster, used when the JavaFX 3D SubScene is unavailable or too slow (e.g. no GPU).
+ * The maze is a strict 2D grid, so every screen column is a single DDA walk through it.
+ * Columns are split into strips rendered in parallel on a fork-join pool; a strip draws its walls,
+ * floor, ceiling and the part of every sprite that falls inside it, so strips never share pixels.
+ * Coordinates and angles follow {@link FirstPerson3DControl}: yaw 0 faces +Z, positive pitch looks up.
+ */
+public final class RaycastRenderer {
+
+    private static final int AMBIENT = 154;        // 0.6 * 256, matches the 3D scene's ambient light
+    private static final double MAX_PITCH = 60;    // y-shearing looks wrong beyond this
+    private static final int OPAQUE = 0xFF000000;
+
+    // Texture pre-shaded with the ambient factor, stored as ARGB ints
+    private static final class Tex {
+        final int w;
+        final int h;
+        final int[] argb;
+
+        Tex(int w, int h, int[] argb) {
+            this.w = w;
+            this.h = h;
+            this.argb = argb;
+        }
+    }
+
+    private final boolean[][] maze;
+    private final boolean[][] pits;
+    private final int gridW;
+    private final int gridH;
+    private final int tile;
+    private final double wallHeight;
+    private final double worldW;
+    private final double worldH;
+
+    private final int width;
+    private final int height;
+    private final int[] pixels;
+    private final PixelBuffer<IntBuffer> pixelBuffer;
+    private final WritableImage image;
+    private final double[] zBuffer; // perpendicular wall distance per column (world units)
+
+    private final Tex wallTex;
+    private final Tex floorTex;
+    private final Tex ceilingTex;
+    private final Tex[] pitTex;
+    private final Map<Image, Tex> textureCache = new IdentityHashMap<>();
+
+    // View state for the frame being rendered
+    private double camX;
+    private double camZ;
+    private double eye;
+    private double dirX;
+    private double dirZ;
+    private double rightX;
+    private double rightZ;
+    private double focal;
+    private double horizon;
+    private double fieldOfView = 65; // vertical, like PerspectiveCamera's default
+    private double farClip = 10000;
+
+    // Sprites, structure-of-arrays, grown on demand
+    private int spriteCount = 0;
+    private double[] spriteX = new double[16];
+    private double[] spriteZ = new double[16];
+    private double[] spriteW = new double[16];
+    private double[] spriteBottom = new double[16];
+    private double[] spriteH = new double[16];
+    private Tex[] spriteTex = new Tex[16];
+    // Projection of visible sprites
+    private int visibleCount = 0;
+    private long[] visibleOrder = new long[16]; // (float depth bits << 32) | sprite index, near to far
+    private double[] projDepth = new double[16];
+    private double[] projLeft = new double[16];
+    private double[] projWidth = new double[16];
+    private double[] projTop = new double[16];
+    private double[] projBottom = new double[16];
+
+    private final ForkJoinPool pool = ForkJoinPool.commonPool();
+    private final Strip[] strips;
+    private final FrameTask frameTask = new FrameTask();
+
+    public RaycastRenderer(boolean[][] maze, boolean[][] pits, int tile, double wallHeight, int width, int height,
+                           Image wall, Image floor, Image ceiling, Image pit1, Image pit2) {
+        this.maze = maze;
+        this.pits = pits;
+        this.gridW = maze.length;
+        this.gridH = maze[0].length;
+        this.tile = tile;
+        this.wallHeight = wallHeight;
+        this.worldW = gridW * (double) tile;
+        this.worldH = gridH * (double) tile;
+        this.width = Math.max(1, width);
+        this.height = Math.max(1, height);
+
+        this.pixels = new int[this.width * this.height];
+        this.pixelBuffer = new PixelBuffer<>(this.width, this.height, IntBuffer.wrap(pixels), PixelFormat.getIntArgbPreInstance());
+        this.image = new WritableImage(pixelBuffer);
+        this.zBuffer = new double[this.width];
+
+        this.wallTex = toTex(wall, 0xFF808080);
+        this.floorTex = toTex(floor, 0xFF404040);
+        this.ceilingTex = toTex(ceiling, 0xFF202030);
+        this.pitTex = new Tex[]{toTex(pit1, 0xFF100000), toTex(pit2, 0xFF100000)};
+
+        int stripCount = Math.max(1, Math.min(this.width, pool.getParallelism() * 4));
+        int stripW = (this.width + stripCount - 1) / stripCount;
+        java.util.List<Strip> list = new java.util.ArrayList<>();
+        for (int x0 = 0; x0 < this.width; x0 += stripW) {
+            list.add(new Strip(x0, Math.min(this.width, x0 + stripW)));
+        }
+        this.strips = list.toArray(new Strip[0]);
+    }
+
+    public WritableImage getImage() {
+        return image;
+    }
+
+    public void setFarClip(double farClip) {
+        this.farClip = farClip;
+    }
+
+    public void setFieldOfView(double degrees) {
+        this.fieldOfView = degrees;
+    }
+
+    // ---- Sprites ----
+
+    public void clearSprites() {
+        spriteCount = 0;
+    }
+
+    /**
+     * Adds a camera-facing sprite for the next frame.
+     *
+     * @param x       world X of the sprite centre
+     * @param z       world Z of the sprite centre
+     * @param w       world width
+     * @param bottomY world height of the sprite's bottom edge above the floor
+     * @param h       world height
+     * @param img     texture; fully transparent texels are skipped
+     */
+    public void addSprite(double x, double z, double w, double bottomY, double h, Image img) {
+        if (img == null) return;
+        if (spriteCount == spriteX.length) growSprites();
+        int i = spriteCount++;
+        spriteX[i] = x;
+        spriteZ[i] = z;
+        spriteW[i] = w;
+        spriteBottom[i] = bottomY;
+        spriteH[i] = h;
+        spriteTex[i] = textureCache.computeIfAbsent(img, im -> toTex(im, 0));
+    }
+
+    private void growSprites() {
+        int n = spriteX.length * 2;
+        spriteX = Arrays.copyOf(spriteX, n);
+        spriteZ = Arrays.copyOf(spriteZ, n);
+        spriteW = Arrays.copyOf(spriteW, n);
+        spriteBottom = Arrays.copyOf(spriteBottom, n);
+        spriteH = Arrays.copyOf(spriteH, n);
+        spriteTex = Arrays.copyOf(spriteTex, n);
+        visibleOrder = Arrays.copyOf(visibleOrder, n);
+        projDepth = Arrays.copyOf(projDepth, n);
+        projLeft = Arrays.copyOf(projLeft, n);
+        projWidth = Arrays.copyOf(projWidth, n);
+        projTop = Arrays.copyOf(projTop, n);
+        projBottom = Arrays.copyOf(projBottom, n);
+    }
+
+    // ---- Frame ----
+
+    /**
+     * Renders one frame and publishes it to the image. Must be called on the FX thread.
+     *
+     * @param eyeHeight camera height above the floor in world units
+     */
+    public void render(double x, double z, double eyeHeight, double yawDeg, double pitchDeg) {
+        double yaw = Math.toRadians(yawDeg);
+        double pitch = Math.toRadians(Math.max(-MAX_PITCH, Math.min(MAX_PITCH, pitchDeg)));
+        camX = x;
+        camZ = z;
+        eye = eyeHeight;
+        dirX = Math.sin(yaw);
+        dirZ = Math.cos(yaw);
+        rightX = Math.cos(yaw);
+        rightZ = -Math.sin(yaw);
+        focal = (height / 2.0) / Math.tan(Math.toRadians(fieldOfView) / 2.0);
+        horizon = height / 2.0 + Math.tan(pitch) * focal;
+
+        projectSprites();
+
+        frameTask.reinitialize();
+        pool.invoke(frameTask);
+        pixelBuffer.updateBuffer(pb -> null);
+    }
+
+    private void projectSprites() {
+        visibleCount = 0;
+        for (int i = 0; i < spriteCount; i++) {
+            double rx = spriteX[i] - camX;
+            double rz = spriteZ[i] - camZ;
+            double depth = rx * dirX + rz * dirZ;
+            if (depth < 1.0 || depth > farClip) continue;
+            double lateral = rx * rightX + rz * rightZ;
+            double pw = spriteW[i] / depth * focal;
+            double left = width / 2.0 + lateral / depth * focal - pw / 2.0;
+            if (left + pw < 0 || left >= width) continue;
+            projDepth[i] = depth;
+            projLeft[i] = left;
+            projWidth[i] = pw;
+            projTop[i] = horizon - (spriteBottom[i] + spriteH[i] - eye) * focal / depth;
+            projBottom[i] = horizon - (spriteBottom[i] - eye) * focal / depth;
+            // bits of a positive float order like the float itself, so the key sorts near to far
+            visibleOrder[visibleCount++] = ((long) Float.floatToIntBits((float) depth) << 32) | i;
+        }
+        Arrays.sort(visibleOrder, 0, visibleCount);
+    }
+
+    private final class FrameTask extends RecursiveAction {
+        @Override
+        protected void compute() {
+            for (Strip s : strips) s.reinitialize();
+            ForkJoinTask.invokeAll(strips);
+        }
+    }
+
+    private final class Strip extends RecursiveAction {
+        private final int x0;
+        private final int x1;
+
+        Strip(int x0, int x1) {
+            this.x0 = x0;
+            this.x1 = x1;
+        }
+
+        @Override
+        protected void compute() {
+            for (int c = x0; c < x1; c++) {
+                renderColumn(c);
+            }
+            // far to near so nearer sprites overwrite
+            for (int k = visibleCount - 1; k >= 0; k--) {
+                drawSprite((int) visibleOrder[k], x0, x1);
+            }
+        }
+    }
+
+    private void renderColumn(int c) {
+        double k = (c + 0.5 - width / 2.0) / focal;
+        double rdx = dirX + rightX * k;
+        double rdz = dirZ + rightZ * k;
+
+        // DDA in cell units
+        double posX = camX / tile;
+        double posZ = camZ / tile;
+        int mapX = (int) Math.floor(posX);
+        int mapZ = (int) Math.floor(posZ);
+        double deltaX = rdx == 0 ? 1e30 : Math.abs(1.0 / rdx);
+        double deltaZ = rdz == 0 ? 1e30 : Math.abs(1.0 / rdz);
+        int stepX = rdx < 0 ? -1 : 1;
+        int stepZ = rdz < 0 ? -1 : 1;
+        double sideX = rdx < 0 ? (posX - mapX) * deltaX : (mapX + 1.0 - posX) * deltaX;
+        double sideZ = rdz < 0 ? (posZ - mapZ) * deltaZ : (mapZ + 1.0 - posZ) * deltaZ;
+        double maxCells = farClip / tile;
+
+        boolean hit = false;
+        int side = 0;
+        double perp = 0;
+        while (true) {
+            if (sideX < sideZ) {
+                perp = sideX;
+                sideX += deltaX;
+                mapX += stepX;
+                side = 0;
+            } else {
+                perp = sideZ;
+                sideZ += deltaZ;
+                mapZ += stepZ;
+                side = 1;
+            }
+            if (perp > maxCells) break;
+            if (mapX < 0 || mapZ < 0 || mapX >= gridW || mapZ >= gridH || maze[mapX][mapZ]) {
+                hit = true;
+                break;
+            }
+        }
+
+        double dist = hit ? Math.max(1e-3, perp * tile) : Double.POSITIVE_INFINITY;
+        zBuffer[c] = dist;
+
+        int wallTop = height;
+        int wallBottom = height;
+        double wallTopF = 0;
+        double wallSpan = 1;
+        int texU = 0;
+        if (hit) {
+            wallTopF = horizon - (wallHeight - eye) * focal / dist;
+            double wallBottomF = horizon + eye * focal / dist;
+            wallSpan = Math.max(1e-6, wallBottomF - wallTopF);
+            wallTop = (int) Math.max(0, Math.ceil(wallTopF - 0.5));
+            wallBottom = (int) Math.min(height, Math.ceil(wallBottomF - 0.5));
+            double hitAlong = side == 0 ? posZ + perp * rdz : posX + perp * rdx;
+            double frac = hitAlong - Math.floor(hitAlong);
+            if ((side == 0 && rdx < 0) || (side == 1 && rdz > 0)) frac = 1.0 - frac;
+            texU = Math.min(wallTex.w - 1, (int) (frac * wallTex.w));
+        } else {
+            // Nothing within the far clip: horizon band stays black, floor/ceiling still drawn up to far clip
+            wallTop = (int) Math.max(0, Math.min(height, Math.ceil(horizon - 0.5)));
+            wallBottom = wallTop;
+        }
+
+        // Ceiling
+        double ceilH = wallHeight - eye;
+        for (int y = 0; y < Math.min(wallTop, height); y++) {
+            double den = horizon - y - 0.5;
+            int color = OPAQUE;
+            if (den > 0) {
+                double d = ceilH * focal / den;
+                if (d <= farClip) {
+                    double wx = camX + rdx * d;
+                    double wz = camZ + rdz * d;
+                    color = sample(ceilingTex, wx / worldW, wz / worldH);
+                }
+            }
+            pixels[y * width + c] = color;
+        }
+
+        // Wall
+        if (hit) {
+            int[] tex = wallTex.argb;
+            int th = wallTex.h;
+            for (int y = wallTop; y < wallBottom; y++) {
+                int tv = (int) ((y + 0.5 - wallTopF) / wallSpan * th);
+                if (tv < 0) tv = 0; else if (tv >= th) tv = th - 1;
+                pixels[y * width + c] = tex[tv * wallTex.w + texU];
+            }
+        }
+
+        // Floor (and pits)
+        for (int y = Math.max(0, wallBottom); y < height; y++) {
+            double den = y + 0.5 - horizon;
+            int color = OPAQUE;
+            if (den > 0) {
+                double d = eye * focal / den;
+                if (d <= farClip) {
+                    double wx = camX + rdx * d;
+                    double wz = camZ + rdz * d;
+                    int gx = (int) Math.floor(wx / tile);
+                    int gz = (int) Math.floor(wz / tile);
+                    if (pits != null && gx >= 0 && gz >= 0 && gx < gridW && gz < gridH && pits[gx][gz]) {
+                        double u = wx / tile - gx;
+                        double v = wz / tile - gz;
+                        color = sample(pitTex[((gx * 73856093) ^ (gz * 19349663)) & 1], u, v);
+                    } else {
+                        color = sample(floorTex, wx / worldW, wz / worldH);
+                    }
+                }
+            }
+            pixels[y * width + c] = color;
+        }
+    }
+
+    private void drawSprite(int i, int x0, int x1) {
+        double depth = projDepth[i];
+        double left = projLeft[i];
+        double pw = projWidth[i];
+        double top = projTop[i];
+        double span = Math.max(1e-6, projBottom[i] - top);
+        Tex tex = spriteTex[i];
+        int cStart = Math.max(x0, (int) Math.ceil(left - 0.5));
+        int cEnd = Math.min(x1, (int) Math.ceil(left + pw - 0.5));
+        int yStart = (int) Math.max(0, Math.ceil(top - 0.5));
+        int yEnd = (int) Math.min(height, Math.ceil(projBottom[i] - 0.5));
+        for (int c = cStart; c < cEnd; c++) {
+            if (depth >= zBuffer[c]) continue;
+            int tu = (int) ((c + 0.5 - left) / pw * tex.w);
+            if (tu < 0 || tu >= tex.w) continue;
+            for (int y = yStart; y < yEnd; y++) {
+                int tv = (int) ((y + 0.5 - top) / span * tex.h);
+                if (tv < 0 || tv >= tex.h) continue;
+                int argb = tex.argb[tv * tex.w + tu];
+                if ((argb >>> 24) >= 128) {
+                    pixels[y * width + c] = argb | OPAQUE;
+                }
+            }
+        }
+    }
+
+    private static int sample(Tex t, double u, double v) {
+        int tu = (int) (u * t.w);
+        int tv = (int) (v * t.h);
+        if (tu < 0) tu = 0; else if (tu >= t.w) tu = t.w - 1;
+        if (tv < 0) tv = 0; else if (tv >= t.h) tv = t.h - 1;
+        return t.argb[tv * t.w + tu];
+    }
+
+    // Reads an image into ARGB ints with the ambient factor baked in
+    private static Tex toTex(Image img, int fallback) {
+        if (img == null || img.getPixelReader() == null || img.getWidth() < 1 || img.getHeight() < 1) {
+            return new Tex(1, 1, new int[]{shade(fallback)});
+        }
+        int w = (int) img.getWidth();
+        int h = (int) img.getHeight();
+        int[] argb = new int[w * h];
+        PixelReader pr = img.getPixelReader();
+        pr.getPixels(0, 0, w, h, PixelFormat.getIntArgbInstance(), argb, 0, w);
+        for (int i = 0; i < argb.length; i++) {
+            argb[i] = shade(argb[i]);
+        }
+        return new Tex(w, h, argb);
+    }
+
+    private static int shade(int argb) {
+        int a = argb & 0xFF000000;
+        int r = (((argb >> 16) & 0xFF) * AMBIENT) >> 8;
+        int g = (((argb >> 8) & 0xFF) * AMBIENT) >> 8;
+        int b = ((argb & 0xFF) * AMBIENT) >> 8;
+        return a | (r << 16) | (g << 8) | b;
+    }
+}
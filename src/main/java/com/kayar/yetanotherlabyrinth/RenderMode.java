@@ -0,0 +1,29 @@
+package com.kayar.yetanotherlabyrinth;
+
+import javafx.application.ConditionalFeature;
+import javafx.application.Platform;
+
+/**
+ * How the level is drawn. Selected at startup with -Dlabyrinth.renderer=auto|3d|raycast|2d.
+ * TOP_DOWN is a cheap 2D mode driven by {@link PlayerControl}, meant for low-end kiosks and huge levels.
+ */
+public enum RenderMode {
+    SCENE_3D,
+    RAYCAST,
+    TOP_DOWN;
+
+    public static RenderMode fromSystemProperty() {
+        String value = System.getProperty("labyrinth.renderer", "auto").trim().toLowerCase();
+        switch (value) {
+            case "3d":
+                return SCENE_3D;
+            case "raycast":
+                return RAYCAST;
+            case "2d":
+                return TOP_DOWN;
+            default:
+                // auto: fall back to the CPU raycaster when the toolkit has no 3D support (e.g. no GPU)
+                return Platform.isSupported(ConditionalFeature.SCENE3D) ? SCENE_3D : RAYCAST;
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.kayar.yetanotherlabyrinth;
+
+import java.nio.file.Path;
+import java.util.Random;
+
+/**
+ * Deterministic playback benchmark. Replays an {@link InputRecording} headless, tick for tick, and
+ * reports the wall time per tick as percentiles, so the same run can be compared exactly between
+ * builds; the final state must hash to the recorded value, otherwise the run diverged.
+ * Recordings come from the game ({@code -Dlabyrinth.record=prefix}) or from {@code --make}, which
+ * records scripted input on a generated level.
+ * <p>
+ * Usage: {@code ReplayBench FILE [--runs N]} or
+ * {@code ReplayBench --make FILE [--level N] [--seed N] [--ticks N] [--enemies N]}.
+ * Exits with status 1 if a playback diverged from the recording.
+ */
+public final class ReplayBench {
+
+    private static final int TILE = 64;
+    private static final double STEP = 1.0 / 120.0;
+
+    private ReplayBench() {}
+
+    public static void main(String[] args) throws Exception {
+        if (args.length == 0) throw new IllegalArgumentException("Usage: ReplayBench FILE [--runs N] | --make FILE [options]");
+        if (args[0].equals("--make")) {
+            make(args);
+            return;
+        }
+        Path file = Path.of(args[0]);
+        int runs = 3;
+        for (int i = 1; i + 1 < args.length; i += 2) {
+            String v = args[i + 1];
+            switch (args[i]) {
+                case "--runs" -> runs = Math.max(1, Integer.parseInt(v));
+                default -> throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+        InputRecording rec = InputRecording.read(file);
+        System.out.println("Replay: level " + rec.level + ", seed " + rec.seed + ", " + rec.getTicks() + " ticks at "
+                + Math.round(1 / rec.step) + " Hz, " + rec.getCommandBytes() + " bytes of input");
+
+        boolean diverged = false;
+        FrameTimeStats ticks = new FrameTimeStats();
+        for (int run = 1; run <= runs; run++) {
+            ticks.clear();
+            World world = rec.newWorld();
+            InputRecording.Playback playback = rec.playback();
+            long t0 = System.nanoTime();
+            while (!playback.isFinished(world)) {
+                long s = System.nanoTime();
+                playback.applyDue(world);
+                world.tick(rec.step);
+                ticks.add(System.nanoTime() - s);
+            }
+            long wall = System.nanoTime() - t0;
+            long hash = InputRecording.stateHash(world);
+            boolean ok = hash == rec.getStateHash();
+            diverged |= !ok;
+            System.out.println("Run " + run + ": " + String.format("%.1f", rec.getTicks() / (wall / 1e9)) + " ticks/s, tick "
+                    + ticks.summary(1_000, "us") + (ok ? ", state matches" : ", DIVERGED (hash " + Long.toHexString(hash) + ")"));
+        }
+        if (diverged) System.exit(1);
+    }
+
+    // Scripted noise as in the soak test, recorded as it is applied
+    private static void make(String[] args) throws Exception {
+        if (args.length < 2) throw new IllegalArgumentException("--make needs a file");
+        Path file = Path.of(args[1]);
+        int level = 8;
+        long seed = 1;
+        long ticks = 36_000;
+        int enemies = -1;
+        for (int i = 2; i + 1 < args.length; i += 2) {
+            String v = args[i + 1];
+            switch (args[i]) {
+                case "--level" -> level = Math.max(1, Integer.parseInt(v));
+                case "--seed" -> seed = Long.parseLong(v);
+                case "--ticks" -> ticks = Math.max(1, Long.parseLong(v));
+                case "--enemies" -> enemies = Integer.parseInt(v);
+                default -> throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+        InputRecording rec = new InputRecording(level, seed, true, enemies, TILE, STEP);
+        World world = rec.newWorld();
+        Random rnd = new Random(seed);
+        for (long t = 0; t < ticks; t++) {
+            if (rnd.nextInt(60) == 0) command(rec, world, InputRecording.INPUT, rnd.nextInt(1 << 6));
+            if (rnd.nextInt(30) == 0) command(rec, world, InputRecording.YAW, InputRecording.angleUnits(rnd.nextGaussian() * 45));
+            if (rnd.nextInt(240) == 0) command(rec, world, InputRecording.JUMP, 0);
+            world.tick(STEP);
+        }
+        rec.finish(world);
+        rec.write(file);
+        System.out.println("Recorded " + ticks + " ticks of level " + level + " (seed " + seed + ") to " + file
+                + ": " + rec.getCommandBytes() + " bytes of input");
+    }
+
+    private static void command(InputRecording rec, World world, int kind, long arg) {
+        InputRecording.apply(world, kind, arg);
+        rec.add(world.getTicks(), kind, arg);
+    }
+}
@@ -0,0 +1,144 @@
+package com.kayar.yetanotherlabyrinth;
+
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Quick save of a level in progress: the layout's grid content and the {@link World}'s simulation state,
+ * so a level can be left and resumed without generating it again.
+ * <p>
+ * The file is one little-endian block: a versioned header (level, seed, algorithm, size, tile, enemy
+ * speed, key cell), the maze as it is now and the pits as bitsets (bit {@code gx * height + gz}), the
+ * enemy routes and the shifting wall pairs, then the player state, the next wall shift times and the
+ * enemies' arrays ({@link World#writeState}). Version 1 saves, from before walls shifted, still load.
+ * Everything is bulk-copied through one buffer, so a save is two bits per cell plus 130 bytes per enemy
+ * and 16 per shifting wall. Loading skips maze
+ * generation and item placement and only rebuilds derived structures (topology, distance fields,
+ * collision); the chase flow field is rebuilt from scratch, so a restored run is not
+ * tick-for-tick the same as the one that was saved.
+ */
+public final class SaveGame {
+
+    private static final int MAGIC = 0x4C534156; // "LSAV"
+    private static final int VERSION = 2;
+    private static final int HEADER_BYTES = 11 * Integer.BYTES + Long.BYTES + Double.BYTES;
+
+    private SaveGame() {}
+
+    /** Serializes the level and the world's state; call on the thread that ticks the world. */
+    public static byte[] encode(World world) {
+        LevelLayout l = world.getLayout();
+        int words = (l.width * l.height + 63) >>> 6;
+        int size = HEADER_BYTES + 2 * words * Long.BYTES + (l.enemyCells.length + l.shiftCells.length) * Integer.BYTES
+                + world.stateBytes();
+        ByteBuffer out = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+        out.putInt(MAGIC).putInt(VERSION);
+        out.putInt(l.level).putLong(l.seed).putInt(l.algorithm.ordinal());
+        out.putInt(l.width).putInt(l.height).putInt(world.getTile()).putDouble(l.enemySpeed);
+        out.putInt(l.keyGX).putInt(l.keyGY).putInt(l.enemyCells.length).putInt(l.shiftCells.length);
+        putBits(out, l.maze);
+        putBits(out, l.pits);
+        out.asIntBuffer().put(l.enemyCells).put(l.shiftCells);
+        skip(out, (l.enemyCells.length + l.shiftCells.length) * Integer.BYTES);
+        world.writeState(out);
+        return out.array();
+    }
+
+    /**
+     * Restores a world from {@link #encode(World)}'s output.
+     *
+     * @throws IOException if the data isn't a save of this version or is truncated
+     */
+    public static World decode(byte[] data) throws IOException {
+        ByteBuffer in = ByteBuffer.wrap(data).order(ByteOrder.LITTLE_ENDIAN);
+        try {
+            if (in.getInt() != MAGIC) throw new IOException("Not a saved game");
+            int version = in.getInt();
+            if (version != VERSION && version != 1) throw new IOException("Unsupported save version: " + version);
+            int level = in.getInt();
+            long seed = in.getLong();
+            int alg = in.getInt();
+            int w = in.getInt();
+            int h = in.getInt();
+            int tile = in.getInt();
+            double enemySpeed = in.getDouble();
+            int keyGX = in.getInt();
+            int keyGY = in.getInt();
+            int enemyInts = in.getInt();
+            int shiftInts = version >= 2 ? in.getInt() : 0;
+            MazeGenerator.Algorithm[] algorithms = MazeGenerator.Algorithm.values();
+            if (alg < 0 || alg >= algorithms.length || w < 3 || h < 3 || (long) w * h > Integer.MAX_VALUE - 63
+                    || tile <= 0 || enemyInts < 0 || shiftInts < 0) {
+                throw new IOException("Corrupt saved game header");
+            }
+            boolean[][] maze = getBits(in, w, h);
+            boolean[][] pits = getBits(in, w, h);
+            int[] enemyCells = new int[enemyInts];
+            int[] shiftCells = new int[shiftInts];
+            in.asIntBuffer().get(enemyCells).get(shiftCells);
+            skip(in, (enemyInts + shiftInts) * Integer.BYTES);
+
+            World world = new World(LevelLayout.restore(level, seed, algorithms[alg], maze, pits, keyGX, keyGY,
+                    enemyCells, enemySpeed, shiftCells), tile);
+            world.readState(in);
+            return world;
+        } catch (BufferUnderflowException | BufferOverflowException | IllegalArgumentException
+                 | IndexOutOfBoundsException e) {
+            throw new IOException("Corrupt saved game", e);
+        }
+    }
+
+    /** Writes the save next to the file and moves it into place, so a crash never leaves half a save. */
+    public static void write(Path file, byte[] data) throws IOException {
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        Files.write(tmp, data);
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    public static World read(Path file) throws IOException {
+        return decode(Files.readAllBytes(file));
+    }
+
+    static void skip(ByteBuffer buf, int bytes) {
+        buf.position(buf.position() + bytes);
+    }
+
+    // One bit per cell in the grid's memory order (column by column), 64 cells per long
+    private static void putBits(ByteBuffer out, boolean[][] grid) {
+        long word = 0;
+        int bit = 0;
+        for (boolean[] column : grid) {
+            for (boolean cell : column) {
+                word |= (cell ? 1L : 0L) << bit; // no branch: maze bits are too random to predict
+                if (++bit == 64) {
+                    out.putLong(word);
+                    word = 0;
+                    bit = 0;
+                }
+            }
+        }
+        if (bit > 0) out.putLong(word);
+    }
+
+    private static boolean[][] getBits(ByteBuffer in, int w, int h) {
+        boolean[][] grid = new boolean[w][h];
+        long word = 0;
+        int bit = 64;
+        for (boolean[] column : grid) {
+            for (int gz = 0; gz < h; gz++) {
+                if (bit == 64) {
+                    word = in.getLong();
+                    bit = 0;
+                }
+                column[gz] = (word & (1L << bit++)) != 0;
+            }
+        }
+        return grid;
+    }
+}
@@ -0,0 +1,356 @@
+package com.kayar.yetanotherlabyrinth;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Runs a {@link World} on its own thread so simulation and rendering use separate cores.
+ * <p>
+ * The FX thread stays the clock: each frame it requests the whole steps its {@link FixedTimestep}
+ * produced, so pausing the game (menus, dialogs) also pauses the simulation. Everything else crosses
+ * threads without locks or allocation:
+ * <ul>
+ *   <li>input (held keys, mouse look, jump, animation rate) goes to the simulation through an {@link SpscRing};</li>
+ *   <li>state comes back as {@link WorldSnapshot}s in a triple buffer: the simulation fills the back
+ *       buffer and swaps it with the middle one, the FX thread swaps the middle one with its front
+ *       buffer when a newer one is there;</li>
+ *   <li>gameplay events (footsteps, key, damage, death, shifted walls, ...) come back through a second ring and are
+ *       replayed to a {@link World.Listener} on the FX thread by {@link #pollEvents(World.Listener)},
+ *       only up to the state of the snapshot last taken, so an event never shows before its state.</li>
+ * </ul>
+ * The FX thread counts the steps it requested; {@link #renderAlpha(WorldSnapshot, double)} draws one step
+ * behind the steps requested before the current frame, so the picture follows the FX clock even when the
+ * newest snapshot is a batch ahead of or behind it.
+ * <p>
+ * Mouse look must not wait for the next step: the FX thread keeps a running sum of the yaw and pitch
+ * deltas it sent, the snapshot carries the sum the simulation applied, and the difference is added to
+ * the snapshot's angles when drawing. Deltas are sent in whole {@link InputRecording#ANGLE_UNIT}s.
+ * <p>
+ * Gameplay commands can be captured into an {@link InputRecording} as they are applied, or taken from
+ * one instead of the FX thread to replay a run tick for tick. A quick save is a command too: the
+ * simulation encodes a {@link SaveGame} between two steps and hands the bytes back.
+ */
+public final class SimulationLoop implements PlayerInput {
+
+    // commands, FX -> simulation
+    private static final int CMD_INPUT = 1;
+    private static final int CMD_YAW = 2;
+    private static final int CMD_PITCH = 3;
+    private static final int CMD_JUMP = 4;
+    private static final int CMD_ANIM_FRAME_TIME = 5;
+    private static final int CMD_SAVE = 6;
+
+    // events, simulation -> FX
+    private static final int EV_FOOTSTEP = 1;
+    private static final int EV_JUMP = 2;
+    private static final int EV_KEY_PICKED = 3;
+    private static final int EV_EXIT_LOCKED = 4;
+    private static final int EV_EXIT_REACHED = 5;
+    private static final int EV_DAMAGED = 6; // arg: amount << 32 | health
+    private static final int EV_DIED = 7;
+    private static final int EV_WALL_CHANGED = 8; // arg: gx << 32 | gz << 1 | wall
+
+    private static final int FRESH = 4; // middle-buffer flag: not yet taken by the reader
+    private static final int MAX_PENDING_STEPS = 16; // backlog cap if the simulation falls behind
+
+    private final World world;
+    private final double step;
+    private final SpscRing commands = new SpscRing(1024);
+    private final SpscRing events = new SpscRing(4096);
+    private final AtomicInteger pendingSteps = new AtomicInteger();
+    private final WorldSnapshot[] buffers = new WorldSnapshot[3];
+    private final AtomicInteger middle = new AtomicInteger(1 | FRESH);
+    private final AtomicReference<byte[]> saved = new AtomicReference<>();
+    private final Thread thread;
+    private volatile boolean running = true;
+
+    // simulation-thread state
+    private int back = 2;
+    private long yawApplied;   // in angle units
+    private long pitchApplied;
+    private final SpscRing.Handler applyCommand = this::applyCommand;
+    private InputRecording recording;          // commands are appended here when recording
+    private InputRecording.Playback playback;  // commands come from here when replaying
+    private volatile boolean playbackFinished;
+    private volatile long playbackHash;
+
+    // FX-thread state
+    private int front = 0;
+    private int inputBits;
+    private long yawSent;   // in angle units
+    private long pitchSent;
+    private boolean replaying;
+    private double animFrameTime = Double.NaN;
+    private World.Listener eventTarget;
+    private final SpscRing.Handler dispatchEvent = this::dispatchEvent;
+    private long requestedTicks;  // world ticks once every requested step has run
+    private long drawTicks;       // requestedTicks before the latest requestSteps() call
+
+    public SimulationLoop(World world, double step) {
+        this.world = world;
+        this.step = step;
+        int enemies = world.getEnemies().getCount();
+        for (int i = 0; i < 3; i++) {
+            buffers[i] = new WorldSnapshot(enemies);
+            buffers[i].copyFrom(world, 0, 0);
+        }
+        this.requestedTicks = world.getTicks();
+        this.drawTicks = requestedTicks;
+        world.setListener(new EventWriter());
+        this.thread = new Thread(this::run, "simulation");
+        thread.setDaemon(true);
+    }
+
+    public void start() {
+        thread.start();
+    }
+
+    /**
+     * Appends every gameplay command to the recording as it is applied; the recording is finished when
+     * the thread stops. Call before {@link #start()}.
+     */
+    public void record(InputRecording recording) {
+        if (thread.isAlive()) throw new IllegalStateException("Simulation already started");
+        this.recording = recording;
+    }
+
+    /**
+     * Takes the gameplay commands from the recording instead of the FX thread; input setters are ignored.
+     * The world must be freshly built from the recording's level. Call before {@link #start()}.
+     */
+    public void play(InputRecording recording) {
+        if (thread.isAlive()) throw new IllegalStateException("Simulation already started");
+        this.playback = recording.playback();
+        this.replaying = true;
+    }
+
+    /** Whether a playback has simulated all recorded ticks. */
+    public boolean isPlaybackFinished() {
+        return playbackFinished;
+    }
+
+    /** {@link InputRecording#stateHash(World)} when the playback finished. */
+    public long getPlaybackHash() {
+        return playbackHash;
+    }
+
+    /**
+     * Stops the simulation thread and waits briefly for it to finish its current step.
+     */
+    public void stop() {
+        running = false;
+        LockSupport.unpark(thread);
+        if (Thread.currentThread() != thread && thread.isAlive()) {
+            try {
+                thread.join(500);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void run() {
+        while (running) {
+            int n = pendingSteps.getAndSet(0);
+            if (n == 0) {
+                LockSupport.park(this);
+                continue;
+            }
+            for (int i = 0; i < n && running; i++) {
+                commands.drain(applyCommand);
+                if (playback != null) playback.applyDue(world);
+                world.tick(step);
+                if (playback != null && !playbackFinished && playback.isFinished(world)) {
+                    playbackHash = InputRecording.stateHash(world);
+                    playbackFinished = true;
+                }
+            }
+            // one snapshot per batch; it still carries the previous step for interpolation
+            buffers[back].copyFrom(world, yawApplied * InputRecording.ANGLE_UNIT, pitchApplied * InputRecording.ANGLE_UNIT);
+            buffers[back].eventMark = events.written();
+            back = middle.getAndSet(back | FRESH) & 3;
+        }
+        if (recording != null) recording.finish(world);
+    }
+
+    private void applyCommand(int code, long arg) {
+        switch (code) {
+            case CMD_INPUT -> command(InputRecording.INPUT, arg);
+            case CMD_YAW -> {
+                command(InputRecording.YAW, arg);
+                yawApplied += arg;
+            }
+            case CMD_PITCH -> {
+                command(InputRecording.PITCH, arg);
+                pitchApplied += arg;
+            }
+            case CMD_JUMP -> command(InputRecording.JUMP, 0);
+            case CMD_ANIM_FRAME_TIME -> world.getEnemies().setAnimFrameTime(Double.longBitsToDouble(arg));
+            case CMD_SAVE -> saved.set(SaveGame.encode(world));
+            default -> { }
+        }
+    }
+
+    private void command(int kind, long arg) {
+        InputRecording.apply(world, kind, arg);
+        if (recording != null) recording.add(world.getTicks(), kind, arg);
+    }
+
+    // --- FX thread ---
+
+    /** Lets the simulation run this many more fixed steps; call once per frame, also with 0. */
+    public void requestSteps(int steps) {
+        drawTicks = requestedTicks;
+        if (steps <= 0) return;
+        int cur;
+        int next;
+        do {
+            cur = pendingSteps.get();
+            next = Math.min(MAX_PENDING_STEPS, cur + steps);
+        } while (!pendingSteps.compareAndSet(cur, next));
+        requestedTicks += next - cur; // steps over the backlog cap never run
+        LockSupport.unpark(thread);
+    }
+
+    /**
+     * Interpolation factor for drawing s between its previous and current step at the frame's time: one
+     * step behind the ticks requested before this frame, plus the clock's leftover fraction. Clamped to
+     * the snapshot, so a simulation running late or early shows its nearest state and never moves back.
+     *
+     * @param alpha fraction of a step the frame clock has left over, in [0, 1]
+     */
+    public double renderAlpha(WorldSnapshot s, double alpha) {
+        return Math.max(0, Math.min(1, drawTicks - s.ticks + alpha));
+    }
+
+    /** The newest published state; stays valid (unchanged) until the next call. */
+    public WorldSnapshot latest() {
+        if ((middle.get() & FRESH) != 0) {
+            front = middle.getAndSet(front) & 3;
+        }
+        return buffers[front];
+    }
+
+    /**
+     * Replays the gameplay events published since the last call to the listener, in order, up to the
+     * state of the snapshot last returned by {@link #latest()}; later ones wait for their snapshot.
+     */
+    public int pollEvents(World.Listener listener) {
+        eventTarget = listener;
+        return events.drain(dispatchEvent, buffers[front].eventMark);
+    }
+
+    @Override
+    public void setInput(int bit, boolean on) {
+        if (replaying) return;
+        int bits = on ? (inputBits | bit) : (inputBits & ~bit);
+        if (bits != inputBits && commands.offer(CMD_INPUT, bits)) inputBits = bits;
+    }
+
+    @Override
+    public void addYaw(double deltaDegrees) {
+        long units = InputRecording.angleUnits(deltaDegrees);
+        if (replaying || units == 0) return;
+        // a delta that doesn't fit is dropped on both sides, so the look offset stays consistent
+        if (commands.offer(CMD_YAW, units)) yawSent += units;
+    }
+
+    @Override
+    public void addPitch(double deltaDegrees) {
+        long units = InputRecording.angleUnits(deltaDegrees);
+        if (replaying || units == 0) return;
+        if (commands.offer(CMD_PITCH, units)) pitchSent += units;
+    }
+
+    @Override
+    public void jump() {
+        if (!replaying) commands.offer(CMD_JUMP, 0);
+    }
+
+    /** Seconds per enemy animation frame; only sent when it changes. */
+    public void setAnimFrameTime(double seconds) {
+        if (seconds == animFrameTime) return;
+        if (commands.offer(CMD_ANIM_FRAME_TIME, Double.doubleToRawLongBits(seconds))) animFrameTime = seconds;
+    }
+
+    /**
+     * Asks for a {@link SaveGame} of the state before the next step, after the input sent so far.
+     * Returns false if the command ring is full.
+     */
+    public boolean requestSave() {
+        return commands.offer(CMD_SAVE, 0);
+    }
+
+    /** The save requested by {@link #requestSave()} once it is ready, otherwise null. */
+    public byte[] takeSave() {
+        return saved.getAndSet(null);
+    }
+
+    /** Yaw of the snapshot plus mouse look the simulation hasn't consumed yet. */
+    public double lookYaw(WorldSnapshot s) {
+        return s.yaw + (yawSent * InputRecording.ANGLE_UNIT - s.yawApplied);
+    }
+
+    public double lookPitch(WorldSnapshot s) {
+        return s.pitch + (pitchSent * InputRecording.ANGLE_UNIT - s.pitchApplied);
+    }
+
+    private void dispatchEvent(int code, long arg) {
+        World.Listener l = eventTarget;
+        switch (code) {
+            case EV_FOOTSTEP -> l.onFootstep();
+            case EV_JUMP -> l.onJump();
+            case EV_KEY_PICKED -> l.onKeyPicked();
+            case EV_EXIT_LOCKED -> l.onExitLocked();
+            case EV_EXIT_REACHED -> l.onExitReached();
+            case EV_DAMAGED -> l.onDamaged((int) (arg >> 32), (int) arg);
+            case EV_DIED -> l.onDied();
+            case EV_WALL_CHANGED -> l.onWallChanged((int) (arg >> 32), (int) (arg & 0xFFFFFFFFL) >>> 1, (arg & 1) != 0);
+            default -> { }
+        }
+    }
+
+    // Runs on the simulation thread inside World.tick()
+    private final class EventWriter implements World.Listener {
+        @Override
+        public void onFootstep() {
+            events.offer(EV_FOOTSTEP, 0);
+        }
+
+        @Override
+        public void onJump() {
+            events.offer(EV_JUMP, 0);
+        }
+
+        @Override
+        public void onKeyPicked() {
+            events.offer(EV_KEY_PICKED, 0);
+        }
+
+        @Override
+        public void onExitLocked() {
+            events.offer(EV_EXIT_LOCKED, 0);
+        }
+
+        @Override
+        public void onExitReached() {
+            events.offer(EV_EXIT_REACHED, 0);
+        }
+
+        @Override
+        public void onDamaged(int amount, int health) {
+            events.offer(EV_DAMAGED, ((long) amount << 32) | (health & 0xFFFFFFFFL));
+        }
+
+        @Override
+        public void onDied() {
+            events.offer(EV_DIED, 0);
+        }
+
+        @Override
+        public void onWallChanged(int gx, int gz, boolean wall) {
+            events.offer(EV_WALL_CHANGED, ((long) gx << 32) | ((long) gz << 1) | (wall ? 1 : 0));
+        }
+    }
+}
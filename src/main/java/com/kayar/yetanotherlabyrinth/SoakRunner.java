@@ -0,0 +1,682 @@
+package com.kayar.yetanotherlabyrinth;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Headless soak test of the {@link World} simulation. Plays many generated levels with bot input on
+ * all cores and reports simulation throughput, allocation per tick and rule violations
+ * (player inside a wall, health out of range, exit without the key, ...). Needs no display.
+ * <p>
+ * Usage: {@code SoakRunner [--levels N] [--threads N] [--seed N] [--max-level N] [--seconds N] [--bot path|random|mixed] [--enemies N]}.
+ * Exits with status 1 if any rule was violated.
+ */
+public final class SoakRunner {
+
+    private static final int TILE = 64;
+    private static final double STEP = 1.0 / 120.0;
+
+    enum Bot { PATH, RANDOM, MIXED }
+
+    private SoakRunner() {}
+
+    public static void main(String[] args) throws Exception {
+        int levels = 2000;
+        int threads = Runtime.getRuntime().availableProcessors();
+        long seed = 1;
+        int maxLevel = 12;
+        double seconds = 240; // simulated time limit per level
+        Bot bot = Bot.MIXED;
+        int enemies = -1; // per level; negative = the level's default
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            String v = args[i + 1];
+            switch (args[i]) {
+                case "--levels" -> levels = Integer.parseInt(v);
+                case "--threads" -> threads = Math.max(1, Integer.parseInt(v));
+                case "--seed" -> seed = Long.parseLong(v);
+                case "--max-level" -> maxLevel = Math.max(1, Integer.parseInt(v));
+                case "--seconds" -> seconds = Double.parseDouble(v);
+                case "--bot" -> bot = Bot.valueOf(v.toUpperCase());
+                case "--enemies" -> enemies = Integer.parseInt(v);
+                default -> throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+        System.out.println("Soak: " + levels + " levels on " + threads + " threads, seed " + seed
+                + ", levels 1.." + maxLevel + ", bot " + bot.name().toLowerCase()
+                + (enemies >= 0 ? ", " + enemies + " enemies" : ""));
+
+        Stats total = run(levels, threads, seed, maxLevel, (long) Math.ceil(seconds / STEP), bot, enemies);
+        total.print();
+        if (total.violations > 0) System.exit(1);
+    }
+
+    static Stats run(int levels, int threads, long seed, int maxLevel, long maxTicks, Bot bot, int enemies) throws Exception {
+        AtomicInteger next = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        List<Future<Stats>> futures = new ArrayList<>();
+        long start = System.nanoTime();
+        for (int t = 0; t < threads; t++) {
+            futures.add(pool.submit(() -> {
+                Stats stats = new Stats();
+                int i;
+                while ((i = next.getAndIncrement()) < levels) {
+                    int level = 1 + i % maxLevel;
+                    long levelSeed = seed * 0x9E3779B97F4A7C15L + i;
+                    boolean pathBot = bot == Bot.PATH || (bot == Bot.MIXED && (i & 1) == 0);
+                    playLevel(level, levelSeed, pathBot, maxTicks, enemies, stats);
+                }
+                return stats;
+            }));
+        }
+        Stats total = new Stats();
+        for (Future<Stats> f : futures) total.add(f.get());
+        pool.shutdown();
+        total.wallNanos = System.nanoTime() - start;
+        return total;
+    }
+
+    private static void playLevel(int level, long seed, boolean pathBot, long maxTicks, int enemies, Stats stats) {
+        LevelLayout layout = LevelLayout.generate(level, true, seed, enemies);
+        World world = new World(layout, TILE);
+        RuleChecker checker = new RuleChecker(world, seed);
+        world.setListener(checker);
+        PathBot path = pathBot ? new PathBot(world) : null;
+        Random rnd = new Random(seed);
+        checker.checkPathfinder();
+        checker.checkTopology();
+        checker.checkDistances();
+        checker.checkPlacement();
+
+        long allocBefore = allocatedBytes();
+        long t0 = System.nanoTime();
+        long ticks = 0;
+        while (ticks < maxTicks && !world.isExitReached() && !world.isDead()) {
+            if (path != null) {
+                path.steer();
+            } else {
+                randomInput(world, rnd);
+            }
+            world.tick(STEP);
+            ticks++;
+            checker.check();
+        }
+        stats.simNanos += System.nanoTime() - t0;
+        stats.allocatedBytes += allocatedBytes() - allocBefore;
+        checker.checkSaveGame();
+
+        stats.levels++;
+        stats.ticks += ticks;
+        stats.violations += checker.violations;
+        stats.wallChanges += checker.wallChanges;
+        if (world.isExitReached()) stats.completed++;
+        else if (world.isDead()) stats.died++;
+        else stats.timedOut++;
+        if (path != null) stats.pathLevels++;
+        if (path != null && world.isExitReached()) stats.pathCompleted++;
+    }
+
+    // Scripted noise: hold a random key combination for a random time, look around and jump now and then
+    private static void randomInput(World world, Random rnd) {
+        if (rnd.nextInt(60) == 0) {
+            world.setInput(rnd.nextInt(1 << 6));
+        }
+        if (rnd.nextInt(30) == 0) world.addYaw(rnd.nextGaussian() * 45);
+        if (rnd.nextInt(240) == 0) world.jump();
+    }
+
+    private static long allocatedBytes() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean sun && sun.isThreadAllocatedMemorySupported()) {
+            return sun.getCurrentThreadAllocatedBytes();
+        }
+        return 0;
+    }
+
+    /**
+     * Walks the shortest route to the key and then to the exit, preferring routes without pits and
+     * jumping over the pits it cannot avoid.
+     */
+    private static final class PathBot {
+        private final World world;
+        private final LevelLayout layout;
+        private final int w;
+        private int lastTarget = -1;
+        private int[] path;      // cells from the HPA* query, null when unreachable
+        private int pathPos;
+
+        PathBot(World world) {
+            this.world = world;
+            this.layout = world.getLayout();
+            this.w = layout.width;
+        }
+
+        void steer() {
+            int tile = world.getTile();
+            int cx = (int) Math.floor(world.getX() / tile);
+            int cy = (int) Math.floor(world.getZ() / tile);
+            int cell = cy * w + cx;
+            int target = world.isKeyActive() ? layout.keyGY * w + layout.keyGX : layout.exitGY * w + layout.exitGX;
+            if (target != lastTarget || !followPath(cell)) {
+                // new target or knocked off the route: query again (pits cost extra, so they're avoided when possible)
+                lastTarget = target;
+                path = world.getPathfinder().findPath(cx, cy, target % w, target / w);
+                pathPos = 0;
+            }
+            int nextCell = path != null && pathPos + 1 < path.length ? path[pathPos + 1] : -1;
+            if (nextCell < 0 || cell == target) {
+                // already in the target cell (or no route): head for its centre
+                aim(cx, cy);
+                return;
+            }
+            int nx = nextCell % w;
+            int ny = nextCell / w;
+            // Line up with the corridor before heading into the next cell so corners aren't clipped
+            double off = nx != cx ? Math.abs(world.getZ() - (cy + 0.5) * tile) : Math.abs(world.getX() - (cx + 0.5) * tile);
+            if (off > tile * 0.1) {
+                aim(cx, cy);
+            } else {
+                aim(nx, ny);
+            }
+            if (layout.pits[nx][ny] && !layout.pits[cx][cy]) {
+                double dx = world.getX() - (nx + 0.5) * tile;
+                double dz = world.getZ() - (ny + 0.5) * tile;
+                if (dx * dx + dz * dz < tile * tile) world.jump();
+            }
+        }
+
+        // Advances along the path when the player entered the next cell; false when off the path or a
+        // wall shifted onto its next cell
+        private boolean followPath(int cell) {
+            if (path == null) return false;
+            if (pathPos + 1 < path.length && layout.maze[path[pathPos + 1] % w][path[pathPos + 1] / w]) return false;
+            if (path[pathPos] == cell) return true;
+            if (pathPos + 1 < path.length && path[pathPos + 1] == cell) {
+                pathPos++;
+                return true;
+            }
+            return false;
+        }
+
+        private void aim(int gx, int gy) {
+            int tile = world.getTile();
+            double dx = (gx + 0.5) * tile - world.getX();
+            double dz = (gy + 0.5) * tile - world.getZ();
+            world.setYaw(Math.toDegrees(Math.atan2(dx, dz)));
+            world.setInput(dx * dx + dz * dz > 4 ? World.INPUT_FORWARD : 0);
+        }
+    }
+
+    /**
+     * Checks game rules after every tick and counts violations; prints the first few of each level.
+     */
+    private static final class RuleChecker implements World.Listener {
+        private final World world;
+        private final long seed;
+        private final Random probeRnd;
+        private int violations;
+        private boolean keyPickedEvent;
+        private int wallChanges;
+        private boolean wallsChanged; // since the last check
+
+        RuleChecker(World world, long seed) {
+            this.world = world;
+            this.seed = seed;
+            this.probeRnd = new Random(~seed);
+        }
+
+        @Override
+        public void onKeyPicked() {
+            keyPickedEvent = true;
+            // the player's centre must be within half a tile of the key cell's centre
+            double kx = (world.getLayout().keyGX + 0.5) * world.getTile();
+            double kz = (world.getLayout().keyGY + 0.5) * world.getTile();
+            if (Math.hypot(world.getX() - kx, world.getZ() - kz) > world.getTile() * 0.5 + 1e-6) {
+                violation("key picked up from a distance");
+            }
+        }
+
+        @Override
+        public void onExitReached() {
+            if (!world.hasKey()) violation("exit reached without the key");
+        }
+
+        @Override
+        public void onDamaged(int amount, int health) {
+            if (amount <= 0) violation("non-positive damage " + amount);
+        }
+
+        @Override
+        public void onWallChanged(int gx, int gz, boolean wall) {
+            wallChanges++;
+            wallsChanged = true;
+            if (world.getLayout().maze[gx][gz] != wall) violation("wall change at " + gx + "," + gz + " not in the maze");
+        }
+
+        void check() {
+            double x = world.getX();
+            double z = world.getZ();
+            if (Double.isNaN(x) || Double.isNaN(z) || Double.isNaN(world.getYOffset())) {
+                violation("NaN player state");
+                return;
+            }
+            if (world.collidesWithWalls(x, z)) violation("player overlaps a wall at " + x + "," + z);
+            // the collision field must agree with a brute-force circle-vs-cells test near the player
+            int tile = world.getTile();
+            double qx = x + (probeRnd.nextDouble() - 0.5) * tile;
+            double qz = z + (probeRnd.nextDouble() - 0.5) * tile;
+            double qr = probeRnd.nextDouble() * tile;
+            CollisionField field = world.getCollision();
+            if (field.collidesWithWalls(qx, qz, qr) != bruteForceOverlap(world.getLayout().maze, true, qx, qz, qr, tile)
+                    || field.overlapsPit(qx, qz, qr) != bruteForceOverlap(world.getLayout().pits, false, qx, qz, qr, tile)) {
+                violation("collision field disagrees with brute force at " + qx + "," + qz + " r=" + qr);
+            }
+            double y = world.getYOffset();
+            if (y < 0 || y > world.getMaxHeadroom() + 1e-9) violation("jump height out of range: " + y);
+            int health = world.getHealth();
+            if (health < 0 || health > World.MAX_HEALTH) violation("health out of range: " + health);
+            if (world.isDead() != (health <= 0)) violation("dead flag disagrees with health " + health);
+            if (world.hasKey() != keyPickedEvent) violation("key state changed without a pickup event");
+            if (world.hasKey() == world.isKeyActive() && world.getLayout().keyGX >= 0) violation("key both held and in the level");
+
+            boolean[][] maze = world.getLayout().maze;
+            EnemySystem enemies = world.getEnemies();
+            for (int i = 0; i < enemies.getCount(); i++) {
+                int gx = (int) Math.floor(enemies.getX(i) / tile);
+                int gz = (int) Math.floor(enemies.getZ(i) / tile);
+                if (gx < 0 || gz < 0 || gx >= maze.length || gz >= maze[0].length || maze[gx][gz]) {
+                    violation("enemy " + i + " left the corridors");
+                }
+                else if (world.getLayout().pits[gx][gz]) {
+                    violation("enemy " + i + " walked into a pit");
+                }
+                else if (enemies.getIndex().cellOf(i) != gz * maze.length + gx) {
+                    violation("enemy " + i + " is indexed in the wrong cell");
+                }
+            }
+            if (enemies.getCount() > 0) checkSight(probeRnd.nextInt(enemies.getCount()));
+            if (wallsChanged) {
+                wallsChanged = false;
+                checkShiftedWalls();
+            }
+        }
+
+        /**
+         * After walls shifted: the incrementally repaired exit field and compass hint match a fresh BFS,
+         * the exit is still reachable from the spawn, and HPA* finds a valid route there.
+         */
+        private void checkShiftedWalls() {
+            LevelLayout layout = world.getLayout();
+            int w = layout.width;
+            int exit = layout.exitGY * w + layout.exitGX;
+            int[] fromExit = DistanceFields.compute(layout.maze, new int[]{exit}, 1);
+            if (!java.util.Arrays.equals(fromExit, layout.distances.exitField())) violation("exit field not repaired after a wall shift");
+            if (fromExit[layout.spawnGY * w + layout.spawnGX] < 0) violation("a wall shift cut the spawn off the exit");
+            int[] target = world.isKeyActive()
+                    ? DistanceFields.compute(layout.maze, new int[]{layout.keyGY * w + layout.keyGX}, 1)
+                    : fromExit;
+            int tile = world.getTile();
+            int gx = (int) Math.floor(world.getX() / tile);
+            int gz = (int) Math.floor(world.getZ() / tile);
+            if (world.getHintDirection() != DistanceFields.step(target, w, layout.height, gx, gz)) {
+                violation("compass hint disagrees with a fresh BFS after a wall shift");
+            }
+            int[] route = world.getPathfinder().findPath(layout.spawnGX, layout.spawnGY, layout.exitGX, layout.exitGY);
+            if (route == null || !validPath(layout.maze, route, layout.spawnGY * w + layout.spawnGX, exit)) {
+                violation("no valid HPA* route to the exit after a wall shift");
+            }
+        }
+
+        /**
+         * Checks one enemy's cached line of sight to the player against uncached DDA walks in both directions,
+         * and a visible line against fine sampling for wall cells.
+         */
+        private void checkSight(int i) {
+            EnemySystem enemies = world.getEnemies();
+            int enemyCell = enemies.getIndex().cellOf(i);
+            int tile = world.getTile();
+            int w = world.getLayout().width;
+            double ax = (enemyCell % w + 0.5) * tile;
+            double az = (enemyCell / w + 0.5) * tile;
+            double bx = (Math.floor(world.getX() / tile) + 0.5) * tile;
+            double bz = (Math.floor(world.getZ() / tile) + 0.5) * tile;
+            LineOfSight sight = world.getSight();
+            boolean forward = sight.visible(ax, az, bx, bz);
+            if (forward != sight.visible(bx, bz, ax, az)) violation("line of sight is not symmetric for enemy " + i);
+            if (forward != enemies.seesPlayer(i)) violation("cached line of sight disagrees with DDA for enemy " + i);
+            if (forward) {
+                boolean[][] maze = world.getLayout().maze;
+                for (int k = 0; k <= 256; k++) {
+                    int gx = (int) Math.floor((ax + (bx - ax) * k / 256) / tile);
+                    int gz = (int) Math.floor((az + (bz - az) * k / 256) / tile);
+                    if (maze[gx][gz]) {
+                        violation("enemy " + i + " sees the player through a wall");
+                        break;
+                    }
+                }
+            }
+        }
+
+        /**
+         * Compares HPA* answers with a plain BFS on a copy of the grid for random cell pairs, then flips a
+         * few cells, repairs the pathfinder incrementally and compares again.
+         */
+        void checkPathfinder() {
+            LevelLayout layout = world.getLayout();
+            int w = layout.width;
+            int h = layout.height;
+            boolean[][] maze = new boolean[w][];
+            for (int x = 0; x < w; x++) maze[x] = layout.maze[x].clone();
+            HierarchicalPathfinder hpa = new HierarchicalPathfinder(maze, layout.pits, 8);
+            int[] seen = new int[w * h];
+            int[] queue = new int[w * h];
+            for (int round = 0; round < 4; round++) {
+                for (int q = 0; q < 8; q++) {
+                    int from = probeRnd.nextInt(w * h);
+                    int to = probeRnd.nextInt(w * h);
+                    if (maze[from % w][from / w] || maze[to % w][to / w]) continue;
+                    int[] found = hpa.findPath(from % w, from / w, to % w, to / w);
+                    boolean reachable = bfsReachable(maze, from, to, seen, queue, round * 8 + q + 1);
+                    if ((found != null) != reachable) {
+                        violation("pathfinder says " + (found != null) + ", BFS says " + reachable + " for " + from + " -> " + to);
+                    } else if (found != null && !validPath(maze, found, from, to)) {
+                        violation("pathfinder returned a broken path for " + from + " -> " + to);
+                    }
+                }
+                // flip a few interior cells and repair
+                for (int k = 0; k < 3; k++) {
+                    int gx = 1 + probeRnd.nextInt(w - 2);
+                    int gz = 1 + probeRnd.nextInt(h - 2);
+                    maze[gx][gz] = !maze[gx][gz];
+                    hpa.cellChanged(gx, gz);
+                }
+            }
+        }
+
+        /**
+         * Checks the topology index against the grid: every open cell is a node or lies on exactly one
+         * segment, segments are connected walks between their end nodes, and straight runs match a scan.
+         */
+        void checkTopology() {
+            LevelLayout layout = world.getLayout();
+            MazeTopology topo = layout.topology;
+            boolean[][] maze = layout.maze;
+            int w = layout.width;
+            int covered = 0;
+            for (int s = 0; s < topo.getSegmentCount(); s++) {
+                int n = topo.segmentCellCount(s);
+                covered += n;
+                if (topo.segmentLength(s) != n + 1) violation("segment " + s + " length disagrees with its cells");
+                int prev = topo.nodeCell(topo.segmentFrom(s));
+                for (int k = 0; k <= n; k++) {
+                    int c = k < n ? topo.segmentCell(s, k) : topo.nodeCell(topo.segmentTo(s));
+                    if (Math.abs(c % w - prev % w) + Math.abs(c / w - prev / w) != 1) {
+                        violation("segment " + s + " is not a connected walk");
+                        break;
+                    }
+                    if (k < n && topo.segmentAt(c % w, c / w) != s) violation("corridor cell " + c + " indexed in the wrong segment");
+                    prev = c;
+                }
+            }
+            int open = 0;
+            for (int gx = 0; gx < w; gx++) {
+                for (int gz = 0; gz < layout.height; gz++) {
+                    if (maze[gx][gz]) continue;
+                    open++;
+                    if ((topo.nodeAt(gx, gz) >= 0) == (topo.segmentAt(gx, gz) >= 0)) {
+                        violation("cell " + gx + "," + gz + " is not exactly one of node or corridor");
+                    }
+                }
+            }
+            if (covered + topo.getNodeCount() != open) violation("topology covers " + (covered + topo.getNodeCount()) + " of " + open + " open cells");
+            for (int c : topo.getFreeCells()) {
+                int gx = c % w;
+                int gz = c / w;
+                int left = gx;
+                while (left > 0 && !maze[left - 1][gz] && !layout.pits[left - 1][gz]) left--;
+                int up = gz;
+                while (up > 0 && !maze[gx][up - 1] && !layout.pits[gx][up - 1]) up--;
+                if (topo.runMinX(gx, gz) != left || topo.runMinZ(gx, gz) != up) {
+                    violation("straight run disagrees with a scan at " + gx + "," + gz);
+                    break;
+                }
+            }
+        }
+
+        /**
+         * Checks the distance fields: the parallel BFS matches the sequential one, placement follows the
+         * distance rules, and following the compass hint from the spawn reaches the key, then the exit.
+         */
+        void checkDistances() {
+            LevelLayout layout = world.getLayout();
+            DistanceFields df = layout.distances;
+            int w = layout.width;
+            int h = layout.height;
+            int[] source = {probeRnd.nextInt(w * h)};
+            if (!layout.maze[source[0] % w][source[0] / w]
+                    && !java.util.Arrays.equals(DistanceFields.compute(layout.maze, source, 1, false),
+                                                DistanceFields.compute(layout.maze, source, 1, true))) {
+                violation("parallel BFS disagrees with the sequential one from cell " + source[0]);
+            }
+            if (df.getPathLength() < 0) violation("exit not reachable from the spawn");
+            for (int gx = 0; gx < w; gx++) {
+                for (int gz = 0; gz < h; gz++) {
+                    if (layout.pits[gx][gz] && (df.fromSpawn(gx, gz) <= LevelLayout.PIT_CLEARANCE
+                            || df.fromExit(gx, gz) <= LevelLayout.PIT_CLEARANCE)) {
+                        violation("pit at " + gx + "," + gz + " too close to spawn or exit");
+                    }
+                }
+            }
+            if (layout.keyGX >= 0) {
+                int keyScore = Math.min(df.fromSpawn(layout.keyGX, layout.keyGY), df.fromExit(layout.keyGX, layout.keyGY));
+                int atMost = 0;
+                int total = 0;
+                for (int c : layout.topology.getFreeCells()) {
+                    total++;
+                    if (Math.min(df.fromSpawn(c % w, c / w), df.fromExit(c % w, c / w)) <= keyScore) atMost++;
+                }
+                // the key is at or above the percentile: that share of the free cells (less the 4 corners,
+                // which aren't candidates) is no farther than the key
+                if (atMost < Math.ceil(LevelLayout.KEY_PERCENTILE * total) - 4) {
+                    violation("key at " + layout.keyGX + "," + layout.keyGY + " closer than the placement percentile");
+                }
+            }
+            // follow the hint on a copy of the world's grid position without moving the player
+            int[] target = layout.keyGX >= 0
+                    ? DistanceFields.compute(layout.maze, new int[]{layout.keyGY * w + layout.keyGX}, 1)
+                    : df.exitField();
+            int gx = layout.spawnGX;
+            int gz = layout.spawnGY;
+            for (int steps = 0; steps <= w * h; steps++) {
+                byte d = DistanceFields.step(target, w, h, gx, gz);
+                if (d == FlowField.DIR_NONE) break;
+                gx += FlowField.dx(d);
+                gz += FlowField.dz(d);
+            }
+            if (target[gz * w + gx] != 0) violation("compass hint from the spawn ends at " + gx + "," + gz + ", not the target");
+            if (world.getHintDirection() != DistanceFields.step(target, w, h, layout.spawnGX, layout.spawnGY)) {
+                violation("world hint at the spawn disagrees with the distance field");
+            }
+        }
+
+        /**
+         * Checks the placement engine's constraints: items only on floor cells and off the corners, no two
+         * pits in an 8-neighbourhood, key and enemies off pits, and enemies share a cell only when there
+         * are more enemies than free cells.
+         */
+        void checkPlacement() {
+            LevelLayout layout = world.getLayout();
+            int w = layout.width;
+            int h = layout.height;
+            for (int gx = 0; gx < w; gx++) {
+                for (int gz = 0; gz < h; gz++) {
+                    if (!layout.pits[gx][gz]) continue;
+                    if (layout.maze[gx][gz] || isCorner(layout, gx, gz)) violation("pit on a wall or corner at " + gx + "," + gz);
+                    for (int dx = -1; dx <= 1; dx++) {
+                        for (int dz = -1; dz <= 1; dz++) {
+                            int nx = gx + dx;
+                            int nz = gz + dz;
+                            if ((dx != 0 || dz != 0) && nx >= 0 && nz >= 0 && nx < w && nz < h && layout.pits[nx][nz]) {
+                                violation("pits next to each other at " + gx + "," + gz);
+                            }
+                        }
+                    }
+                }
+            }
+            if (layout.keyGX >= 0 && (layout.maze[layout.keyGX][layout.keyGY] || layout.pits[layout.keyGX][layout.keyGY]
+                    || isCorner(layout, layout.keyGX, layout.keyGY))) {
+                violation("key on a wall, pit or corner at " + layout.keyGX + "," + layout.keyGY);
+            }
+            boolean[] taken = new boolean[w * h];
+            boolean shared = false;
+            for (int i = 0; i < layout.enemyCount; i++) {
+                int gx = layout.enemyCells[i * LevelLayout.ENEMY_STRIDE];
+                int gz = layout.enemyCells[i * LevelLayout.ENEMY_STRIDE + 1];
+                if (layout.maze[gx][gz] || layout.pits[gx][gz] || isCorner(layout, gx, gz)
+                        || (gx == layout.keyGX && gz == layout.keyGY)) {
+                    violation("enemy " + i + " starts on a wall, pit, corner or the key");
+                }
+                shared |= taken[gz * w + gx];
+                taken[gz * w + gx] = true;
+            }
+            if (shared && layout.enemyCount < layout.topology.getFreeCells().length - 5) {
+                violation("enemies share a start cell although there is room");
+            }
+        }
+
+        /**
+         * Checks that a saved game restores the state it was saved with: same state hash, grids and hint,
+         * and the restored world encodes to the same bytes.
+         */
+        void checkSaveGame() {
+            byte[] saved = SaveGame.encode(world);
+            World restored;
+            try {
+                restored = SaveGame.decode(saved);
+            } catch (java.io.IOException e) {
+                violation("saved game does not load: " + e.getMessage());
+                return;
+            }
+            if (InputRecording.stateHash(restored) != InputRecording.stateHash(world)) violation("restored state differs from the saved one");
+            if (!java.util.Arrays.deepEquals(restored.getLayout().maze, world.getLayout().maze)
+                    || !java.util.Arrays.deepEquals(restored.getLayout().pits, world.getLayout().pits)) {
+                violation("restored grid differs from the saved one");
+            }
+            if (restored.getHintDirection() != world.getHintDirection()) violation("restored compass hint differs");
+            if (!java.util.Arrays.equals(SaveGame.encode(restored), saved)) violation("restored world encodes differently");
+        }
+
+        private static boolean isCorner(LevelLayout layout, int gx, int gz) {
+            return (gx == 1 || gx == layout.width - 2) && (gz == 1 || gz == layout.height - 2);
+        }
+
+        private static boolean bfsReachable(boolean[][] maze, int from, int to, int[] seen, int[] queue, int mark) {
+            int w = maze.length;
+            int h = maze[0].length;
+            int head = 0;
+            int tail = 0;
+            queue[tail++] = from;
+            seen[from] = mark;
+            while (head < tail) {
+                int c = queue[head++];
+                if (c == to) return true;
+                int x = c % w;
+                int y = c / w;
+                for (int d = 0; d < 4; d++) {
+                    int nx = x + (d == 0 ? 1 : d == 1 ? -1 : 0);
+                    int ny = y + (d == 2 ? 1 : d == 3 ? -1 : 0);
+                    if (nx < 0 || ny < 0 || nx >= w || ny >= h || maze[nx][ny]) continue;
+                    int n = ny * w + nx;
+                    if (seen[n] == mark) continue;
+                    seen[n] = mark;
+                    queue[tail++] = n;
+                }
+            }
+            return false;
+        }
+
+        private static boolean validPath(boolean[][] maze, int[] path, int from, int to) {
+            int w = maze.length;
+            if (path[0] != from || path[path.length - 1] != to) return false;
+            for (int i = 0; i < path.length; i++) {
+                if (maze[path[i] % w][path[i] / w]) return false;
+                if (i > 0 && Math.abs(path[i] % w - path[i - 1] % w) + Math.abs(path[i] / w - path[i - 1] / w) != 1) return false;
+            }
+            return true;
+        }
+
+        // Reference check: does a circle overlap any flagged cell (outside the grid counts as 'outside')
+        private static boolean bruteForceOverlap(boolean[][] cells, boolean outside, double px, double pz, double r, int tile) {
+            int minGX = (int) Math.floor((px - r) / tile);
+            int maxGX = (int) Math.floor((px + r) / tile);
+            int minGZ = (int) Math.floor((pz - r) / tile);
+            int maxGZ = (int) Math.floor((pz + r) / tile);
+            for (int gx = minGX; gx <= maxGX; gx++) {
+                for (int gz = minGZ; gz <= maxGZ; gz++) {
+                    boolean in = gx >= 0 && gz >= 0 && gx < cells.length && gz < cells[0].length;
+                    if (in ? !cells[gx][gz] : !outside) continue;
+                    double nx = Math.max(gx * tile, Math.min(gx * tile + tile, px));
+                    double nz = Math.max(gz * tile, Math.min(gz * tile + tile, pz));
+                    if ((px - nx) * (px - nx) + (pz - nz) * (pz - nz) <= r * r) return true;
+                }
+            }
+            return false;
+        }
+
+        private void violation(String message) {
+            violations++;
+            if (violations <= 3) {
+                System.out.println("VIOLATION (seed " + seed + ", level " + world.getLayout().level
+                        + ", tick " + world.getTicks() + "): " + message);
+            }
+        }
+    }
+
+    static final class Stats {
+        long levels;
+        long ticks;
+        long violations;
+        long completed;
+        long died;
+        long timedOut;
+        long pathLevels;
+        long pathCompleted;
+        long wallChanges;
+        long simNanos;
+        long wallNanos;
+        long allocatedBytes;
+
+        void add(Stats o) {
+            levels += o.levels;
+            ticks += o.ticks;
+            violations += o.violations;
+            completed += o.completed;
+            died += o.died;
+            timedOut += o.timedOut;
+            pathLevels += o.pathLevels;
+            pathCompleted += o.pathCompleted;
+            wallChanges += o.wallChanges;
+            simNanos += o.simNanos;
+            allocatedBytes += o.allocatedBytes;
+        }
+
+        void print() {
+            double wallSec = wallNanos / 1e9;
+            double simSec = simNanos / 1e9;
+            System.out.println("Levels:      " + levels + " (completed " + completed + ", died " + died + ", timed out " + timedOut + ")");
+            System.out.println("Path bot:    " + pathCompleted + "/" + pathLevels + " levels completed");
+            System.out.println("Shifts:      " + wallChanges + " wall changes");
+            System.out.println("Ticks:       " + ticks + " in " + String.format("%.2f", wallSec) + " s wall");
+            System.out.println("Throughput:  " + String.format("%.0f", ticks / Math.max(1e-9, wallSec)) + " ticks/s total, "
+                    + String.format("%.0f", ticks / Math.max(1e-9, simSec)) + " ticks/s per thread");
+            System.out.println("Allocation:  " + String.format("%.1f", allocatedBytes / (double) Math.max(1, ticks)) + " bytes/tick, "
+                    + String.format("%.1f", allocatedBytes / Math.max(1e-9, wallSec) / (1024 * 1024)) + " MB/s");
+            System.out.println("Violations:  " + violations);
+        }
+    }
+}
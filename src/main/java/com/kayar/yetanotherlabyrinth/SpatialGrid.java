@@ -0,0 +1,127 @@
+package com.kayar.yetanotherlabyrinth;
+
+/**
+ * Uniform-grid spatial index over the maze cells for point entities identified by 0..capacity-1.
+ * Each cell holds a doubly linked list threaded through int arrays, so moving an entity to another
+ * cell is O(1) and allocation-free. Entities only touch the index when they cross a cell border.
+ * Queries visit just the cells overlapping the query area, costing O(local density).
+ */
+public final class SpatialGrid {
+
+    private static final int NONE = -1;
+
+    private final int w;
+    private final int h;
+    private final double cellSize;
+    private final int[] head;   // first entity per cell
+    private final int[] next;   // per entity
+    private final int[] prev;
+    private final int[] cellOf; // NONE when not indexed
+    private final double[] xs;
+    private final double[] zs;
+
+    public SpatialGrid(int w, int h, double cellSize, int capacity) {
+        this.w = w;
+        this.h = h;
+        this.cellSize = cellSize;
+        this.head = new int[w * h];
+        this.next = new int[capacity];
+        this.prev = new int[capacity];
+        this.cellOf = new int[capacity];
+        this.xs = new double[capacity];
+        this.zs = new double[capacity];
+        java.util.Arrays.fill(head, NONE);
+        java.util.Arrays.fill(cellOf, NONE);
+    }
+
+    /**
+     * Inserts the entity or updates its position; relinks it only if it changed cell.
+     */
+    public void update(int id, double x, double z) {
+        xs[id] = x;
+        zs[id] = z;
+        int cell = cellIndex(x, z);
+        if (cell == cellOf[id]) return;
+        if (cellOf[id] != NONE) unlink(id);
+        link(id, cell);
+    }
+
+    public void remove(int id) {
+        if (cellOf[id] != NONE) unlink(id);
+    }
+
+    /**
+     * Writes the ids of entities within radius r of (x, z) into out and returns how many were found
+     * (at most out.length).
+     */
+    public int queryRadius(double x, double z, double r, int[] out) {
+        int minGX = clampX((int) Math.floor((x - r) / cellSize));
+        int maxGX = clampX((int) Math.floor((x + r) / cellSize));
+        int minGZ = clampZ((int) Math.floor((z - r) / cellSize));
+        int maxGZ = clampZ((int) Math.floor((z + r) / cellSize));
+        double r2 = r * r;
+        int n = 0;
+        for (int gz = minGZ; gz <= maxGZ; gz++) {
+            for (int gx = minGX; gx <= maxGX; gx++) {
+                for (int id = head[gz * w + gx]; id != NONE; id = next[id]) {
+                    double dx = xs[id] - x;
+                    double dz = zs[id] - z;
+                    if (dx * dx + dz * dz <= r2) {
+                        if (n == out.length) return n;
+                        out[n++] = id;
+                    }
+                }
+            }
+        }
+        return n;
+    }
+
+    /**
+     * Writes the ids of entities in cell (gx, gz) into out and returns how many were found.
+     */
+    public int queryCell(int gx, int gz, int[] out) {
+        if (gx < 0 || gz < 0 || gx >= w || gz >= h) return 0;
+        int n = 0;
+        for (int id = head[gz * w + gx]; id != NONE && n < out.length; id = next[id]) {
+            out[n++] = id;
+        }
+        return n;
+    }
+
+    public int cellOf(int id) {
+        return cellOf[id];
+    }
+
+    private void link(int id, int cell) {
+        int first = head[cell];
+        next[id] = first;
+        prev[id] = NONE;
+        if (first != NONE) prev[first] = id;
+        head[cell] = id;
+        cellOf[id] = cell;
+    }
+
+    private void unlink(int id) {
+        int p = prev[id];
+        int n = next[id];
+        if (p != NONE) next[p] = n;
+        else head[cellOf[id]] = n;
+        if (n != NONE) prev[n] = p;
+        cellOf[id] = NONE;
+    }
+
+    // Positions outside the grid are kept in the nearest border cell
+    private int cellIndex(double x, double z) {
+        int gx = clampX((int) Math.floor(x / cellSize));
+        int gz = clampZ((int) Math.floor(z / cellSize));
+        return gz * w + gx;
+    }
+
+    private int clampX(int gx) {
+        return gx < 0 ? 0 : Math.min(gx, w - 1);
+    }
+
+    private int clampZ(int gz) {
+        return gz < 0 ? 0 : Math.min(gz, h - 1);
+    }
+}
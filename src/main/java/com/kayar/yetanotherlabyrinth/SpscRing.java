@@ -0,0 +1,80 @@
+package com.kayar.yetanotherlabyrinth;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded lock-free queue of small messages (an int code and a long argument) for exactly one
+ * producer thread and one consumer thread. Slots are preallocated parallel arrays; the producer
+ * publishes with a release store of the tail and the consumer frees slots with a release store of
+ * the head, so neither side locks or allocates.
+ */
+public final class SpscRing {
+
+    /** Receives drained messages on the consumer thread. */
+    public interface Handler {
+        void on(int code, long arg);
+    }
+
+    private final int[] codes;
+    private final long[] args;
+    private final int mask;
+    private final AtomicLong head = new AtomicLong(); // next slot to read, written by the consumer
+    private final AtomicLong tail = new AtomicLong(); // next slot to write, written by the producer
+    private long headCache;                           // producer's last view of head
+
+    public SpscRing(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        this.codes = new int[size];
+        this.args = new long[size];
+        this.mask = size - 1;
+    }
+
+    /**
+     * Producer side: appends a message; returns false (and drops it) when the ring is full.
+     */
+    public boolean offer(int code, long arg) {
+        long t = tail.getPlain();
+        if (t - headCache > mask) {
+            headCache = head.getAcquire();
+            if (t - headCache > mask) return false;
+        }
+        int i = (int) t & mask;
+        codes[i] = code;
+        args[i] = arg;
+        tail.setRelease(t + 1);
+        return true;
+    }
+
+    /**
+     * Consumer side: passes every message published so far to the handler, oldest first, and
+     * returns how many there were.
+     */
+    public int drain(Handler handler) {
+        return drain(handler, Long.MAX_VALUE);
+    }
+
+    /**
+     * Consumer side: like {@link #drain(Handler)}, but stops before the message numbered mark, a value
+     * the producer took from {@link #written()}.
+     */
+    public int drain(Handler handler, long mark) {
+        long h = head.getPlain();
+        long t = Math.min(tail.getAcquire(), mark);
+        if (t <= h) return 0;
+        for (long k = h; k < t; k++) {
+            int i = (int) k & mask;
+            handler.on(codes[i], args[i]);
+        }
+        head.setRelease(t);
+        return (int) (t - h);
+    }
+
+    /** Producer side: number of messages accepted so far. */
+    public long written() {
+        return tail.getPlain();
+    }
+
+    public int capacity() {
+        return mask + 1;
+    }
+}
@@ -0,0 +1,117 @@
+package com.kayar.yetanotherlabyrinth;
+
+import javafx.scene.Group;
+import javafx.scene.Node;
+import javafx.scene.image.Image;
+import javafx.scene.image.ImageView;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.PixelReader;
+import javafx.scene.image.WritableImage;
+
+/**
+ * Pre-rendered top-down view of the maze for the 2D render mode.
+ * The grid is rasterized once per level into chunk images (a few cells of pixels each, scaled up to
+ * world size by their ImageViews), so a frame only moves the viewport and toggles which chunks are visible
+ * instead of drawing per-cell nodes.
+ */
+public final class TopDownMap {
+
+    public static final int CELL_PX = 16;     // raster pixels per maze cell
+    public static final int CHUNK_CELLS = 32; // cells per chunk side
+
+    private final Group root = new Group();
+    private final ImageView[] chunks;
+    private final int chunksX;
+    private final int chunksY;
+    private final double chunkWorld;
+
+    public TopDownMap(boolean[][] maze, boolean[][] pits, int exitGX, int exitGY, int tile,
+                      Image wall, Image floor, Image pit, Image exit) {
+        int gridW = maze.length;
+        int gridH = maze[0].length;
+        this.chunksX = (gridW + CHUNK_CELLS - 1) / CHUNK_CELLS;
+        this.chunksY = (gridH + CHUNK_CELLS - 1) / CHUNK_CELLS;
+        this.chunkWorld = (double) CHUNK_CELLS * tile;
+        this.chunks = new ImageView[chunksX * chunksY];
+
+        int[] wallPx = cellTexture(wall, 0xFF808080);
+        int[] floorPx = cellTexture(floor, 0xFF404040);
+        int[] pitPx = cellTexture(pit, 0xFF200000);
+        int[] exitPx = cellTexture(exit, 0xFF32CD32);
+
+        int[] buf = new int[CHUNK_CELLS * CELL_PX * CHUNK_CELLS * CELL_PX];
+        for (int cy = 0; cy < chunksY; cy++) {
+            for (int cx = 0; cx < chunksX; cx++) {
+                int cellsW = Math.min(CHUNK_CELLS, gridW - cx * CHUNK_CELLS);
+                int cellsH = Math.min(CHUNK_CELLS, gridH - cy * CHUNK_CELLS);
+                int pw = cellsW * CELL_PX;
+                int ph = cellsH * CELL_PX;
+                for (int ly = 0; ly < cellsH; ly++) {
+                    for (int lx = 0; lx < cellsW; lx++) {
+                        int gx = cx * CHUNK_CELLS + lx;
+                        int gy = cy * CHUNK_CELLS + ly;
+                        int[] src;
+                        if (maze[gx][gy]) src = wallPx;
+                        else if (gx == exitGX && gy == exitGY) src = exitPx;
+                        else if (pits != null && pits[gx][gy]) src = pitPx;
+                        else src = floorPx;
+                        for (int py = 0; py < CELL_PX; py++) {
+                            System.arraycopy(src, py * CELL_PX, buf, (ly * CELL_PX + py) * pw + lx * CELL_PX, CELL_PX);
+                        }
+                    }
+                }
+                WritableImage img = new WritableImage(pw, ph);
+                img.getPixelWriter().setPixels(0, 0, pw, ph, PixelFormat.getIntArgbInstance(), buf, 0, pw);
+                ImageView view = new ImageView(img);
+                view.setSmooth(false);
+                view.setFitWidth(cellsW * (double) tile);
+                view.setFitHeight(cellsH * (double) tile);
+                view.setTranslateX(cx * chunkWorld);
+                view.setTranslateY(cy * chunkWorld);
+                chunks[cy * chunksX + cx] = view;
+                root.getChildren().add(view);
+            }
+        }
+    }
+
+    public Node getNode() {
+        return root;
+    }
+
+    /**
+     * Shows only the chunks overlapping the given world-space viewport.
+     */
+    public void updateViewport(double x, double y, double w, double h) {
+        int minCX = (int) Math.floor(x / chunkWorld);
+        int maxCX = (int) Math.floor((x + w) / chunkWorld);
+        int minCY = (int) Math.floor(y / chunkWorld);
+        int maxCY = (int) Math.floor((y + h) / chunkWorld);
+        for (int cy = 0; cy < chunksY; cy++) {
+            for (int cx = 0; cx < chunksX; cx++) {
+                boolean visible = cx >= minCX && cx <= maxCX && cy >= minCY && cy <= maxCY;
+                ImageView view = chunks[cy * chunksX + cx];
+                if (view.isVisible() != visible) view.setVisible(visible);
+            }
+        }
+    }
+
+    // Downsamples a texture to one cell of CELL_PX x CELL_PX opaque pixels
+    private static int[] cellTexture(Image img, int fallback) {
+        int[] out = new int[CELL_PX * CELL_PX];
+        if (img == null || img.getPixelReader() == null || img.getWidth() < 1 || img.getHeight() < 1) {
+            java.util.Arrays.fill(out, fallback);
+            return out;
+        }
+        PixelReader pr = img.getPixelReader();
+        int w = (int) img.getWidth();
+        int h = (int) img.getHeight();
+        for (int y = 0; y < CELL_PX; y++) {
+            for (int x = 0; x < CELL_PX; x++) {
+                int argb = pr.getArgb(Math.min(w - 1, x * w / CELL_PX), Math.min(h - 1, y * h / CELL_PX));
+                // transparent texels (exit sprite) show the fallback colour underneath
+                out[y * CELL_PX + x] = (argb >>> 24) < 128 ? fallback : (argb | 0xFF000000);
+            }
+        }
+        return out;
+    }
+}
@@ -0,0 +1,161 @@
+package com.kayar.yetanotherlabyrinth;
+
+/**
+ * Trigger zones on maze cells (key, exit, pits, later items) with edge-triggered events.
+ * Each cell holds at most one trigger id. {@link #update} takes the player's circle, works out which
+ * cells it overlaps (at most a 2x2 block, since the radius is below half a tile) and whether its centre
+ * is within half a tile of its cell's centre, and compares that footprint with the previous one as a
+ * single packed int: when it is unchanged nothing happens. Pits are occupied while the circle overlaps
+ * them; the key and the exit only while the centre is within half a tile of theirs, so items are reached
+ * by walking onto them rather than brushing a corner. When the footprint changed, triggers that became
+ * occupied get onEnter, those no longer occupied onExit and those still occupied onStay, so a zone
+ * reports each visit exactly once however long the player stands in it.
+ * Allocation-free after setup. Not thread-safe.
+ */
+public final class TriggerGrid {
+
+    // Trigger kinds
+    public static final byte NONE = 0;
+    public static final byte KEY = 1;
+    public static final byte EXIT = 2;
+    public static final byte PIT = 3;
+
+    /** Trigger events; called from within {@link #update}. */
+    public interface Listener {
+        default void onEnter(int id, byte kind) {}
+        default void onStay(int id, byte kind) {}
+        default void onExit(int id, byte kind) {}
+    }
+
+    private final int w;
+    private final int h;
+    private final int tile;
+    private final int[] cellTrigger; // trigger id per cell, -1 for none
+
+    private byte[] kinds = new byte[16];
+    private int[] cells = new int[16];
+    private int count;
+
+    // occupied triggers of the last footprint and the one being computed
+    private int footprint = -1; // packed base cell and 2x2 mask, -1 before the first update
+    private int[] occupied = new int[4];
+    private int occupiedCount;
+    private int[] nextOccupied = new int[4];
+
+    public TriggerGrid(int w, int h, int tile) {
+        this.w = w;
+        this.h = h;
+        this.tile = tile;
+        this.cellTrigger = new int[w * h];
+        java.util.Arrays.fill(cellTrigger, -1);
+    }
+
+    /**
+     * Places a trigger of the given kind on cell (gx, gz) and returns its id.
+     */
+    public int add(int gx, int gz, byte kind) {
+        if (gx < 0 || gz < 0 || gx >= w || gz >= h) throw new IllegalArgumentException("Cell outside the grid: " + gx + "," + gz);
+        int cell = gz * w + gx;
+        if (cellTrigger[cell] >= 0) throw new IllegalArgumentException("Cell already has a trigger: " + gx + "," + gz);
+        if (count == kinds.length) {
+            kinds = java.util.Arrays.copyOf(kinds, count * 2);
+            cells = java.util.Arrays.copyOf(cells, count * 2);
+        }
+        kinds[count] = kind;
+        cells[count] = cell;
+        cellTrigger[cell] = count;
+        // a footprint already on the cell picks the trigger up on the next change, not retroactively
+        return count++;
+    }
+
+    /**
+     * Removes a trigger (e.g. a picked-up item). It fires no further events, not even onExit.
+     */
+    public void remove(int id) {
+        if (kinds[id] == NONE) return;
+        cellTrigger[cells[id]] = -1;
+        kinds[id] = NONE;
+    }
+
+    /**
+     * Moves the player's footprint to the circle at (x, z) with radius r (below half a tile) and fires
+     * events for triggers whose occupancy changed.
+     */
+    public void update(double x, double z, double r, Listener listener) {
+        int gx0 = (int) Math.floor((x - r) / tile);
+        int gz0 = (int) Math.floor((z - r) / tile);
+        int cx = (int) Math.floor(x / tile);
+        int cz = (int) Math.floor(z / tile);
+        double ox = x - (cx + 0.5) * tile;
+        double oz = z - (cz + 0.5) * tile;
+        boolean inner = ox * ox + oz * oz <= tile * tile * 0.25; // centre zone of the centre's cell
+        int mask = 0;
+        for (int k = 0; k < 4; k++) {
+            int gx = gx0 + (k & 1);
+            int gz = gz0 + (k >> 1);
+            if (gx < 0 || gz < 0 || gx >= w || gz >= h) continue;
+            double nx = Math.max(gx * tile, Math.min(gx * tile + tile, x));
+            double nz = Math.max(gz * tile, Math.min(gz * tile + tile, z));
+            if ((x - nx) * (x - nx) + (z - nz) * (z - nz) <= r * r) mask |= 1 << k;
+        }
+        int packed = mask == 0 ? -2 : ((gz0 + 1) * (w + 2) + gx0 + 1) << 5 | (inner ? 16 : 0) | mask;
+        if (packed == footprint) return;
+        footprint = packed;
+
+        int n = 0;
+        for (int k = 0; k < 4; k++) {
+            if ((mask & (1 << k)) == 0) continue;
+            int gx = gx0 + (k & 1);
+            int gz = gz0 + (k >> 1);
+            int id = cellTrigger[gz * w + gx];
+            if (id < 0) continue;
+            if (centreZone(kinds[id]) && !(inner && gx == cx && gz == cz)) continue;
+            nextOccupied[n++] = id;
+        }
+        int[] prev = occupied;
+        int prevCount = occupiedCount;
+        occupied = nextOccupied;
+        occupiedCount = n;
+        nextOccupied = prev;
+        for (int i = 0; i < prevCount; i++) {
+            int id = prev[i];
+            if (kinds[id] != NONE && !contains(occupied, n, id)) listener.onExit(id, kinds[id]);
+        }
+        for (int i = 0; i < n; i++) {
+            int id = occupied[i];
+            if (kinds[id] == NONE) continue; // removed by an earlier callback
+            if (contains(prev, prevCount, id)) {
+                listener.onStay(id, kinds[id]);
+            } else {
+                listener.onEnter(id, kinds[id]);
+            }
+        }
+    }
+
+    // Kinds occupied by the player's centre near the cell centre rather than by the circle touching the cell
+    private static boolean centreZone(byte kind) {
+        return kind == KEY || kind == EXIT;
+    }
+
+    private static boolean contains(int[] ids, int n, int id) {
+        for (int i = 0; i < n; i++) {
+            if (ids[i] == id) return true;
+        }
+        return false;
+    }
+
+    /** Trigger id on cell (gx, gz), or -1. */
+    public int triggerAt(int gx, int gz) {
+        if (gx < 0 || gz < 0 || gx >= w || gz >= h) return -1;
+        return cellTrigger[gz * w + gx];
+    }
+
+    public byte kind(int id) {
+        return kinds[id];
+    }
+
+    /** Whether the trigger is in the player's current footprint. */
+    public boolean isOccupied(int id) {
+        return kinds[id] != NONE && contains(occupied, occupiedCount, id);
+    }
+}
@@ -0,0 +1,84 @@
+package com.kayar.yetanotherlabyrinth;
+
+import javafx.scene.Group;
+import javafx.scene.Node;
+import javafx.scene.paint.PhongMaterial;
+import javafx.scene.shape.CullFace;
+import javafx.scene.shape.MeshView;
+import javafx.scene.shape.TriangleMesh;
+
+/**
+ * The level's walls in the 3D scene as one {@link WallMesher} mesh per {@link #CHUNK} x {@link #CHUNK}
+ * block of cells, instead of a box per wall cell. Reads the given maze live: after a cell changed,
+ * {@link #cellChanged(int, int)} re-meshes only the blocks that show one of its sides, the block of the
+ * cell and of any neighbour across a block border. Call on the FX thread.
+ */
+public final class WallChunks {
+
+    public static final int CHUNK = 16; // cells per block side
+
+    private final boolean[][] maze;
+    private final int w;
+    private final int h;
+    private final int tile;
+    private final double wallHeight;
+    private final int chunksX;
+    private final TriangleMesh[] meshes;
+    private final Group group = new Group();
+    private final WallMesher mesher = new WallMesher(CHUNK);
+    private final WallMesher.Grid grid = this::isWall;
+
+    public WallChunks(boolean[][] maze, int tile, double wallHeight, PhongMaterial material) {
+        this.maze = maze;
+        this.w = maze.length;
+        this.h = maze[0].length;
+        this.tile = tile;
+        this.wallHeight = wallHeight;
+        this.chunksX = (w + CHUNK - 1) / CHUNK;
+        int chunksZ = (h + CHUNK - 1) / CHUNK;
+        this.meshes = new TriangleMesh[chunksX * chunksZ];
+        for (int c = 0; c < meshes.length; c++) {
+            TriangleMesh mesh = new TriangleMesh();
+            mesh.getTexCoords().setAll(WallMesher.TEX_COORDS);
+            MeshView view = new MeshView(mesh);
+            view.setMaterial(material);
+            view.setCullFace(CullFace.NONE);
+            view.setTranslateX((c % chunksX) * CHUNK * tile);
+            view.setTranslateZ((c / chunksX) * CHUNK * tile);
+            meshes[c] = mesh;
+            rebuild(c);
+            group.getChildren().add(view);
+        }
+    }
+
+    public Node getNode() {
+        return group;
+    }
+
+    /** Re-meshes the blocks that show a side of cell (gx, gz), once the maze holds its new state. */
+    public void cellChanged(int gx, int gz) {
+        if (gx < 0 || gz < 0 || gx >= w || gz >= h) return;
+        int c = chunkOf(gx, gz);
+        rebuild(c);
+        // neighbours across a block border face the cell from their own block
+        if (gx % CHUNK == 0 && gx > 0) rebuild(chunkOf(gx - 1, gz));
+        if (gx % CHUNK == CHUNK - 1 && gx + 1 < w) rebuild(chunkOf(gx + 1, gz));
+        if (gz % CHUNK == 0 && gz > 0) rebuild(chunkOf(gx, gz - 1));
+        if (gz % CHUNK == CHUNK - 1 && gz + 1 < h) rebuild(chunkOf(gx, gz + 1));
+    }
+
+    private void rebuild(int c) {
+        int quads = mesher.build(grid, (c % chunksX) * CHUNK, (c / chunksX) * CHUNK, CHUNK, tile, wallHeight);
+        meshes[c].getPoints().setAll(mesher.getPoints(), 0, quads * 12);
+        meshes[c].getFaces().setAll(mesher.getFaces(), 0, quads * 12);
+    }
+
+    // Cells past the grid's right and bottom edges belong to no block; the mesher sees them as walls
+    private boolean isWall(int gx, int gz) {
+        return gx < 0 || gz < 0 || gx >= w || gz >= h || maze[gx][gz];
+    }
+
+    private int chunkOf(int gx, int gz) {
+        return (gz / CHUNK) * chunksX + gx / CHUNK;
+    }
+}
@@ -0,0 +1,84 @@
+package com.kayar.yetanotherlabyrinth;
+
+/**
+ * Wall geometry of a square block of grid cells as triangle-mesh arrays: one vertical quad, floor to wall
+ * top, for every side where a floor cell of the block meets a wall. Faces belong to the block of the floor
+ * cell they look onto, so a block's mesh depends only on its cells and the ring of cells around it.
+ * Coordinates are block-local world units (negative Y up, as in the 3D scene); the arrays are scratch
+ * space reused for every block, in the layout of {@code TriangleMesh} points and faces with
+ * {@link #TEX_COORDS}. No JavaFX dependency, so the counts can be checked headless.
+ */
+final class WallMesher {
+
+    /** Texture coordinates of a quad's corners, bottom-left first, counter-clockwise. */
+    static final float[] TEX_COORDS = {0, 1, 1, 1, 1, 0, 0, 0};
+
+    /** Grid the mesher reads; any coordinates, cells outside the grid count as walls. */
+    interface Grid {
+        boolean isWall(int gx, int gz);
+    }
+
+    private final int maxSize;
+    private final float[] points;
+    private final int[] faces;
+
+    /**
+     * @param maxSize largest block side in cells that {@link #build} will be asked for
+     */
+    WallMesher(int maxSize) {
+        int maxQuads = maxSize * maxSize * 4;
+        this.maxSize = maxSize;
+        this.points = new float[maxQuads * 4 * 3];
+        this.faces = new int[maxQuads * 2 * 6];
+    }
+
+    /**
+     * Meshes the size x size block with its corner at cell (gx0, gz0). Returns the number of quads; the
+     * first quads * 12 entries of {@link #getPoints()} and {@link #getFaces()} hold them.
+     */
+    int build(Grid grid, int gx0, int gz0, int size, int tile, double wallHeight) {
+        if (size > maxSize) throw new IllegalArgumentException("Block of " + size + " cells above " + maxSize);
+        float top = (float) -wallHeight;
+        int quads = 0;
+        for (int lz = 0; lz < size; lz++) {
+            for (int lx = 0; lx < size; lx++) {
+                if (grid.isWall(gx0 + lx, gz0 + lz)) continue;
+                float x0 = lx * tile;
+                float x1 = x0 + tile;
+                float z0 = lz * tile;
+                float z1 = z0 + tile;
+                if (grid.isWall(gx0 + lx, gz0 + lz - 1)) quads = quad(quads, x0, z0, x1, z0, top);
+                if (grid.isWall(gx0 + lx + 1, gz0 + lz)) quads = quad(quads, x1, z0, x1, z1, top);
+                if (grid.isWall(gx0 + lx, gz0 + lz + 1)) quads = quad(quads, x1, z1, x0, z1, top);
+                if (grid.isWall(gx0 + lx - 1, gz0 + lz)) quads = quad(quads, x0, z1, x0, z0, top);
+            }
+        }
+        return quads;
+    }
+
+    // Vertical quad from (ax, az) to (bx, bz), floor to wall top
+    private int quad(int q, float ax, float az, float bx, float bz, float top) {
+        int p = q * 12;
+        points[p] = ax;      points[p + 1] = 0;    points[p + 2] = az;
+        points[p + 3] = bx;  points[p + 4] = 0;    points[p + 5] = bz;
+        points[p + 6] = bx;  points[p + 7] = top;  points[p + 8] = bz;
+        points[p + 9] = ax;  points[p + 10] = top; points[p + 11] = az;
+        int v = q * 4;
+        int f = q * 12;
+        faces[f] = v;          faces[f + 1] = 0;
+        faces[f + 2] = v + 1;  faces[f + 3] = 1;
+        faces[f + 4] = v + 2;  faces[f + 5] = 2;
+        faces[f + 6] = v;      faces[f + 7] = 0;
+        faces[f + 8] = v + 2;  faces[f + 9] = 2;
+        faces[f + 10] = v + 3; faces[f + 11] = 3;
+        return q + 1;
+    }
+
+    float[] getPoints() {
+        return points;
+    }
+
+    int[] getFaces() {
+        return faces;
+    }
+}
@@ -0,0 +1,503 @@
+package com.kayar.yetanotherlabyrinth;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Headless game simulation: player movement and jumping ({@link PlayerMotion}), wall collision, pits,
+ * key pickup, exit, enemy patrol and contact damage, and health. No JavaFX or FXGL dependency, so it runs the same
+ * rules in the game (through {@link FirstPerson3DControl}) and in {@link SoakRunner}.
+ * Advance it with {@link #tick(double)} at a fixed step; things the presentation layer cares about
+ * (sounds, notifications, dialogs) are reported through a {@link Listener}.
+ * Walls can change while the level runs ({@link #setWall(int, int, boolean)}): the layout's shifting wall
+ * pairs swap every {@link #SHIFT_INTERVAL}, and each change patches collision, paths, sight and the
+ * compass fields around the cell instead of rebuilding them.
+ * Coordinates are world units on the XZ plane: cell (gx, gy) spans [gx*tile, (gx+1)*tile) on X and Z.
+ */
+public final class World implements PlayerInput {
+
+    // Held-input bits for setInput()
+    public static final int INPUT_FORWARD = 1;
+    public static final int INPUT_BACKWARD = 1 << 1;
+    public static final int INPUT_LEFT = 1 << 2;
+    public static final int INPUT_RIGHT = 1 << 3;
+    public static final int INPUT_TURN_LEFT = 1 << 4;
+    public static final int INPUT_TURN_RIGHT = 1 << 5;
+
+    public static final int MAX_HEALTH = 100;
+    public static final int PIT_DAMAGE = 10;
+    public static final int ENEMY_DAMAGE = 10;
+    public static final double DAMAGE_INTERVAL = 0.3;   // seconds between damage ticks from a pit or an enemy
+    public static final double STEP_INTERVAL = 0.45;    // seconds between footstep events
+    public static final double PLAYER_SPEED = 180;      // units per second
+    public static final double TURN_SPEED = 120;        // degrees per second
+    public static final double SHIFT_INTERVAL = 6.0;    // seconds between swaps of a shifting wall pair
+    static final int STATE_BYTES = 12 * Double.BYTES + Long.BYTES + Integer.BYTES + 1; // writeState() without shifts and enemies
+
+    /** Game events for sounds and UI; called from within tick() or jump(). */
+    public interface Listener {
+        default void onFootstep() {}
+        default void onJump() {}
+        default void onKeyPicked() {}
+        default void onExitLocked() {}
+        default void onExitReached() {}
+        default void onDamaged(int amount, int health) {}
+        default void onDied() {}
+        /** Cell (gx, gz) turned into a wall (true) or floor; the layout's maze already shows it. */
+        default void onWallChanged(int gx, int gz, boolean wall) {}
+    }
+
+    private static final Listener NO_LISTENER = new Listener() {};
+
+    private final LevelLayout layout;
+    private final CollisionField collision;
+    private final int tile;
+
+    private final PlayerMotion player;    // pose, walking and jumping
+    private final double safeJumpHeight;  // above this a pit does no damage
+
+    private final TriggerGrid triggers; // key, exit and pit cells
+    private final TriggerEvents triggerEvents = new TriggerEvents();
+    private int pitsOccupied;            // pit cells the player currently overlaps
+
+    private Listener listener = NO_LISTENER;
+
+    // player state
+    private int health = MAX_HEALTH;
+    private boolean dead;
+    private boolean keyActive;
+    private boolean hasKey;
+    private boolean exitReached;
+
+    // timers in simulated seconds
+    private double pitTimeAccum;
+    private double time;
+    private long ticks;
+
+    private final FlowField flow; // paths to the player for chasing enemies
+    private HierarchicalPathfinder pathfinder; // long-range routes, built on first use; null until then
+    private final LineOfSight sight; // cached cell-to-cell visibility
+    private final int[] keyField;     // BFS distances to the key cell for the compass hint, null without a key
+    private final EnemySystem enemies;
+    private final int[] queryBuf; // enemy ids near the player
+    private final double[] nextShift; // per shifting wall pair: time of its next swap
+    private final DistanceFields.Updater fieldUpdater; // keeps the exit and key fields current as walls shift
+
+    public World(LevelLayout layout, int tile) {
+        this.layout = layout;
+        this.collision = new CollisionField(layout.maze, layout.pits, tile);
+        this.tile = tile;
+        this.player = new PlayerMotion(tile, cellCenter(layout.spawnGX), cellCenter(layout.spawnGY), collision::collidesWithWalls);
+        this.safeJumpHeight = tile * 0.45;
+
+        this.keyActive = layout.keyGX >= 0;
+        this.triggers = new TriggerGrid(layout.width, layout.height, tile);
+        triggers.add(layout.exitGX, layout.exitGY, TriggerGrid.EXIT);
+        if (keyActive) triggers.add(layout.keyGX, layout.keyGY, TriggerGrid.KEY);
+        for (int gx = 0; gx < layout.width; gx++) {
+            for (int gz = 0; gz < layout.height; gz++) {
+                if (layout.pits[gx][gz] && !layout.maze[gx][gz]) triggers.add(gx, gz, TriggerGrid.PIT);
+            }
+        }
+
+        this.flow = new FlowField(collision, layout.width, layout.height, EnemySystem.AGGRO_CELLS + 1);
+        this.sight = new LineOfSight(collision, layout.width, layout.height, LineOfSight.DEFAULT_CACHE_SLOTS);
+        this.enemies = new EnemySystem(layout, tile, collision, flow);
+        this.keyField = keyActive
+                ? DistanceFields.compute(layout.maze, new int[]{layout.keyGY * layout.width + layout.keyGX}, 1)
+                : null;
+        this.queryBuf = new int[Math.max(1, enemies.getCount())];
+        this.nextShift = new double[layout.shiftCount];
+        for (int i = 0; i < nextShift.length; i++) {
+            nextShift[i] = SHIFT_INTERVAL * (1 + (double) i / nextShift.length); // staggered
+        }
+        this.fieldUpdater = new DistanceFields.Updater(layout.maze);
+    }
+
+    public void setListener(Listener listener) {
+        this.listener = listener != null ? listener : NO_LISTENER;
+    }
+
+    /**
+     * Advances the simulation by one fixed step of dt seconds.
+     */
+    public void tick(double dt) {
+        ticks++;
+        time += dt;
+
+        tickPlayer(dt);
+        if (nextShift.length > 0) shiftWalls();
+        if (enemies.getCount() > 0) {
+            flow.setRoot((int) Math.floor(player.x / tile), (int) Math.floor(player.z / tile));
+        }
+        enemies.setFrozen(dead);
+        enemies.update(dt, player.x, player.z);
+        updateEnemySight(); // who may start chasing on the next step
+        if (!dead) enemyContacts();
+    }
+
+    private void updateEnemySight() {
+        if (enemies.getCount() > 0) {
+            enemies.updateSight(sight, (int) Math.floor(player.z / tile) * layout.width + (int) Math.floor(player.x / tile));
+        }
+    }
+
+    private void tickPlayer(double dt) {
+        player.step(dt, listener);
+
+        // Key, exit and pit zones fire only when the set of cells the player overlaps changes
+        triggers.update(player.x, player.z, player.radius, triggerEvents);
+
+        // Pit damage over time while overlapping a pit and not high enough.
+        // Jumping over is allowed: no damage while ascending (yVelocity > 0)
+        if (!dead) {
+            boolean damaging = pitsOccupied > 0 && player.yVelocity <= 0 && player.yOffset < safeJumpHeight;
+            if (damaging) {
+                pitTimeAccum += dt;
+                while (pitTimeAccum >= DAMAGE_INTERVAL && !dead) {
+                    pitTimeAccum -= DAMAGE_INTERVAL;
+                    damage(PIT_DAMAGE);
+                }
+            } else {
+                pitTimeAccum = 0.0;
+            }
+        }
+    }
+
+    private final class TriggerEvents implements TriggerGrid.Listener {
+        @Override
+        public void onEnter(int id, byte kind) {
+            switch (kind) {
+                case TriggerGrid.PIT -> pitsOccupied++;
+                case TriggerGrid.KEY -> {
+                    triggers.remove(id);
+                    keyActive = false;
+                    hasKey = true;
+                    listener.onKeyPicked();
+                }
+                case TriggerGrid.EXIT -> {
+                    // gated by key possession; a locked exit reports once per visit
+                    if (exitReached || dead) return;
+                    if (hasKey) {
+                        exitReached = true;
+                        listener.onExitReached();
+                    } else {
+                        listener.onExitLocked();
+                    }
+                }
+                default -> { }
+            }
+        }
+
+        @Override
+        public void onExit(int id, byte kind) {
+            if (kind == TriggerGrid.PIT) pitsOccupied--;
+        }
+    }
+
+    // Swaps the wall pairs whose time has come. A pair waits while anyone is in the cell it would close.
+    private void shiftWalls() {
+        int w = layout.width;
+        for (int i = 0; i < nextShift.length; i++) {
+            if (time < nextShift[i]) continue;
+            int wall = layout.shiftCells[2 * i];
+            int floor = layout.shiftCells[2 * i + 1];
+            boolean asGenerated = layout.maze[wall % w][wall / w];
+            int opening = asGenerated ? wall : floor;
+            int closing = asGenerated ? floor : wall;
+            if (occupied(closing % w, closing / w)) continue;
+            nextShift[i] = time + SHIFT_INTERVAL;
+            // open first, so the maze is connected at every change
+            setWall(opening % w, opening / w, false);
+            setWall(closing % w, closing / w, true);
+        }
+    }
+
+    // True if the player's circle touches cell (gx, gz) or an enemy stands in it
+    private boolean occupied(int gx, int gz) {
+        double px = player.x;
+        double pz = player.z;
+        double nx = Math.max(gx * tile, Math.min(px, (gx + 1) * tile)); // nearest point of the cell
+        double nz = Math.max(gz * tile, Math.min(pz, (gz + 1) * tile));
+        if ((nx - px) * (nx - px) + (nz - pz) * (nz - pz) <= player.radius * player.radius) return true;
+        return enemies.getIndex().queryCell(gx, gz, queryBuf) > 0;
+    }
+
+    /**
+     * Turns cell (gx, gz) into a wall or back into floor, and patches what depends on it: the collision
+     * masks around it, the path clusters holding it (once built), the sight cache, the exit and key
+     * fields (only the cells whose distance changes) and the chase flow field, rebuilt around the player.
+     * Then reports the change to the listener. The border, spawn, exit, key and pit cells can't change; callers keep
+     * the player and enemies out of a cell they close.
+     */
+    public void setWall(int gx, int gz, boolean wall) {
+        if (gx <= 0 || gz <= 0 || gx >= layout.width - 1 || gz >= layout.height - 1) {
+            throw new IllegalArgumentException("Not an inner cell: " + gx + "," + gz);
+        }
+        if ((gx == layout.spawnGX && gz == layout.spawnGY) || (gx == layout.exitGX && gz == layout.exitGY)
+                || (gx == layout.keyGX && gz == layout.keyGY) || layout.pits[gx][gz]) {
+            throw new IllegalArgumentException("Cell " + gx + "," + gz + " can't change");
+        }
+        if (layout.maze[gx][gz] == wall) return;
+        layout.maze[gx][gz] = wall;
+        collision.cellChanged(layout.maze, layout.pits, gx, gz);
+        if (pathfinder != null) pathfinder.cellChanged(gx, gz);
+        sight.invalidate();
+        fieldUpdater.cellChanged(layout.distances.exitField(), gx, gz);
+        if (keyField != null) fieldUpdater.cellChanged(keyField, gx, gz);
+        flow.invalidate();
+        listener.onWallChanged(gx, gz, wall);
+    }
+
+    // Contact damage every DAMAGE_INTERVAL of simulated time, only from enemies near the player
+    private void enemyContacts() {
+        int n = enemies.getIndex().queryRadius(player.x, player.z, tile * 0.45, queryBuf);
+        for (int k = 0; k < n && !dead; k++) {
+            if (enemies.tryContact(queryBuf[k], DAMAGE_INTERVAL)) {
+                damage(ENEMY_DAMAGE);
+            }
+        }
+    }
+
+    public void damage(int amount) {
+        if (dead) return;
+        if (amount < 0) amount = 0;
+        health = Math.max(0, health - amount);
+        listener.onDamaged(amount, health);
+        if (health <= 0) {
+            dead = true;
+            listener.onDied();
+        }
+    }
+
+    /**
+     * True if a player-sized circle at (px, pz) overlaps a wall or leaves the grid.
+     */
+    public boolean collidesWithWalls(double px, double pz) {
+        return collision.collidesWithWalls(px, pz, player.radius);
+    }
+
+    private double cellCenter(int g) {
+        return g * tile + tile / 2.0;
+    }
+
+    // --- Input ---
+
+    public void setInput(int bits) {
+        player.input = bits;
+    }
+
+    @Override
+    public void setInput(int bit, boolean on) {
+        player.setInput(bit, on);
+    }
+
+    public int getInput() {
+        return player.input;
+    }
+
+    @Override
+    public void jump() {
+        player.jumpRequested = true;
+    }
+
+    @Override
+    public void addYaw(double deltaDegrees) {
+        player.yaw += deltaDegrees;
+    }
+
+    @Override
+    public void addPitch(double deltaDegrees) {
+        player.pitch += deltaDegrees;
+    }
+
+    public void setYaw(double degrees) {
+        player.yaw = degrees;
+    }
+
+    // --- State ---
+
+    public LevelLayout getLayout() {
+        return layout;
+    }
+
+    public CollisionField getCollision() {
+        return collision;
+    }
+
+    public int getTile() {
+        return tile;
+    }
+
+    public double getX() {
+        return player.x;
+    }
+
+    public double getZ() {
+        return player.z;
+    }
+
+    public double getPrevX() {
+        return player.prevX;
+    }
+
+    public double getPrevZ() {
+        return player.prevZ;
+    }
+
+    public double getYaw() {
+        return player.yaw;
+    }
+
+    public double getPitch() {
+        return player.pitch;
+    }
+
+    public double getYOffset() {
+        return player.yOffset;
+    }
+
+    public double getPrevYOffset() {
+        return player.prevYOffset;
+    }
+
+    public double getCameraHeight() {
+        return player.cameraHeight;
+    }
+
+    public double getMaxHeadroom() {
+        return player.maxHeadroom;
+    }
+
+    public double getRadius() {
+        return player.radius;
+    }
+
+    public int getHealth() {
+        return health;
+    }
+
+    public boolean isDead() {
+        return dead;
+    }
+
+    public boolean isKeyActive() {
+        return keyActive;
+    }
+
+    public boolean hasKey() {
+        return hasKey;
+    }
+
+    public boolean isExitReached() {
+        return exitReached;
+    }
+
+    public double getTime() {
+        return time;
+    }
+
+    public long getTicks() {
+        return ticks;
+    }
+
+    /**
+     * Compass hint: direction (FlowField.DIR_*) of the next cell towards the key while it lies in the
+     * maze, then towards the exit. One lookup in a precomputed distance field, no pathfinding.
+     */
+    public byte getHintDirection() {
+        int[] field = keyActive ? keyField : layout.distances.exitField();
+        return DistanceFields.step(field, layout.width, layout.height, (int) Math.floor(player.x / tile), (int) Math.floor(player.z / tile));
+    }
+
+    // --- Save state (see SaveGame) ---
+
+    /** Size of {@link #writeState(ByteBuffer)}'s output. */
+    int stateBytes() {
+        return STATE_BYTES + nextShift.length * Double.BYTES + enemies.stateBytes();
+    }
+
+    /**
+     * Writes the player and enemy state: pose, jump, health, flags, timers, tick count and the times of
+     * the next wall shifts. Held input is not saved (the keys held after loading count); which side of each
+     * shifting pair is open is in the saved maze, and derived state (triggers, flow field, sight) is
+     * rebuilt by {@link #readState(ByteBuffer)}.
+     */
+    void writeState(ByteBuffer out) {
+        PlayerMotion p = player;
+        out.putDouble(p.x).putDouble(p.z).putDouble(p.prevX).putDouble(p.prevZ);
+        out.putDouble(p.yaw).putDouble(p.pitch).putDouble(p.yOffset).putDouble(p.prevYOffset).putDouble(p.yVelocity);
+        out.putDouble(pitTimeAccum).putDouble(p.stepCooldown).putDouble(time);
+        out.putLong(ticks).putInt(health);
+        out.put((byte) ((p.grounded ? 1 : 0) | (dead ? 2 : 0) | (keyActive ? 4 : 0) | (hasKey ? 8 : 0) | (exitReached ? 16 : 0)));
+        for (double t : nextShift) out.putDouble(t);
+        enemies.writeState(out);
+    }
+
+    /** Restores {@link #writeState(ByteBuffer)}'s output into a world freshly built on the same layout. */
+    void readState(ByteBuffer in) {
+        PlayerMotion p = player;
+        p.x = in.getDouble();
+        p.z = in.getDouble();
+        p.prevX = in.getDouble();
+        p.prevZ = in.getDouble();
+        p.yaw = in.getDouble();
+        p.pitch = in.getDouble();
+        p.yOffset = in.getDouble();
+        p.prevYOffset = in.getDouble();
+        p.yVelocity = in.getDouble();
+        pitTimeAccum = in.getDouble();
+        p.stepCooldown = in.getDouble();
+        time = in.getDouble();
+        ticks = in.getLong();
+        health = in.getInt();
+        int flags = in.get();
+        p.grounded = (flags & 1) != 0;
+        dead = (flags & 2) != 0;
+        keyActive = (flags & 4) != 0 && layout.keyGX >= 0;
+        hasKey = (flags & 8) != 0;
+        exitReached = (flags & 16) != 0;
+        for (int i = 0; i < nextShift.length; i++) nextShift[i] = in.getDouble();
+        enemies.readState(in);
+        updateEnemySight();
+
+        if (!keyActive && layout.keyGX >= 0) {
+            int id = triggers.triggerAt(layout.keyGX, layout.keyGY);
+            if (id >= 0) triggers.remove(id);
+        }
+        // take over the footprint without firing events; only the pit count follows from it
+        pitsOccupied = 0;
+        triggers.update(player.x, player.z, player.radius, new TriggerGrid.Listener() {
+            @Override
+            public void onEnter(int id, byte kind) {
+                if (kind == TriggerGrid.PIT) pitsOccupied++;
+            }
+        });
+    }
+
+    public FlowField getFlowField() {
+        return flow;
+    }
+
+    /**
+     * Long-range router over the maze as it is now. Nothing in the game needs one, so the cluster graph
+     * is built on the first call (for bots and tests) and only then kept up to date as walls shift.
+     */
+    public HierarchicalPathfinder getPathfinder() {
+        if (pathfinder == null) {
+            pathfinder = new HierarchicalPathfinder(layout.maze, layout.pits, HierarchicalPathfinder.DEFAULT_CLUSTER_SIZE);
+        }
+        return pathfinder;
+    }
+
+    public TriggerGrid getTriggers() {
+        return triggers;
+    }
+
+    public LineOfSight getSight() {
+        return sight;
+    }
+
+    public EnemySystem getEnemies() {
+        return enemies;
+    }
+}
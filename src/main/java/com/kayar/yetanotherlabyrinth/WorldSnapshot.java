@@ -0,0 +1,169 @@
+package com.kayar.yetanotherlabyrinth;
+
+/**
+ * Copy of the {@link World} state the presentation layer draws: player pose (current and previous step,
+ * for interpolation), health, key state and compass hint, and the enemies' positions and sprite state.
+ * Written by the simulation thread and handed to the FX thread through {@link SimulationLoop}'s
+ * triple buffer; a published instance is never written while the FX thread holds it. Arrays are sized
+ * once for the level's enemy count, so {@link #copyFrom(World, double, double)} doesn't allocate.
+ */
+public final class WorldSnapshot {
+
+    long ticks;
+    long eventMark;      // events the simulation had written up to this state, see SimulationLoop#pollEvents
+    double x;
+    double z;
+    double prevX;
+    double prevZ;
+    double yOffset;
+    double prevYOffset;
+    double yaw;
+    double pitch;
+    double yawApplied;   // sum of yaw deltas from the input queue consumed up to this state
+    double pitchApplied;
+    int health;
+    boolean dead;
+    boolean hasKey;
+    boolean keyActive;
+    boolean exitReached;
+    byte hintDir;
+
+    final int enemyCount;
+    final double[] enemyX;
+    final double[] enemyZ;
+    final double[] enemyPrevX;
+    final double[] enemyPrevZ;
+    final double[] enemyDirX;
+    final double[] enemyDirZ;
+    final int[] enemyFrame;
+    final int[] enemyDirRow;
+
+    WorldSnapshot(int enemyCount) {
+        this.enemyCount = enemyCount;
+        this.enemyX = new double[enemyCount];
+        this.enemyZ = new double[enemyCount];
+        this.enemyPrevX = new double[enemyCount];
+        this.enemyPrevZ = new double[enemyCount];
+        this.enemyDirX = new double[enemyCount];
+        this.enemyDirZ = new double[enemyCount];
+        this.enemyFrame = new int[enemyCount];
+        this.enemyDirRow = new int[enemyCount];
+    }
+
+    void copyFrom(World world, double yawApplied, double pitchApplied) {
+        ticks = world.getTicks();
+        x = world.getX();
+        z = world.getZ();
+        prevX = world.getPrevX();
+        prevZ = world.getPrevZ();
+        yOffset = world.getYOffset();
+        prevYOffset = world.getPrevYOffset();
+        yaw = world.getYaw();
+        pitch = world.getPitch();
+        this.yawApplied = yawApplied;
+        this.pitchApplied = pitchApplied;
+        health = world.getHealth();
+        dead = world.isDead();
+        hasKey = world.hasKey();
+        keyActive = world.isKeyActive();
+        exitReached = world.isExitReached();
+        hintDir = world.getHintDirection();
+        EnemySystem es = world.getEnemies();
+        for (int i = 0; i < enemyCount; i++) {
+            enemyX[i] = es.getX(i);
+            enemyZ[i] = es.getZ(i);
+            enemyPrevX[i] = es.getPrevX(i);
+            enemyPrevZ[i] = es.getPrevZ(i);
+            enemyDirX[i] = es.getDirX(i);
+            enemyDirZ[i] = es.getDirZ(i);
+            enemyFrame[i] = es.getFrame(i);
+            enemyDirRow[i] = es.getDirRow(i);
+        }
+    }
+
+    public long getTicks() {
+        return ticks;
+    }
+
+    // Player position between the previous and current step
+    public double renderX(double alpha) {
+        return prevX + (x - prevX) * alpha;
+    }
+
+    public double renderZ(double alpha) {
+        return prevZ + (z - prevZ) * alpha;
+    }
+
+    public double renderYOffset(double alpha) {
+        return prevYOffset + (yOffset - prevYOffset) * alpha;
+    }
+
+    public double getX() {
+        return x;
+    }
+
+    public double getZ() {
+        return z;
+    }
+
+    public double getYaw() {
+        return yaw;
+    }
+
+    public double getPitch() {
+        return pitch;
+    }
+
+    public int getHealth() {
+        return health;
+    }
+
+    public boolean isDead() {
+        return dead;
+    }
+
+    public boolean hasKey() {
+        return hasKey;
+    }
+
+    public boolean isKeyActive() {
+        return keyActive;
+    }
+
+    public boolean isExitReached() {
+        return exitReached;
+    }
+
+    /** Compass hint direction (FlowField.DIR_*), see {@link World#getHintDirection()}. */
+    public byte getHintDirection() {
+        return hintDir;
+    }
+
+    public int getEnemyCount() {
+        return enemyCount;
+    }
+
+    public double enemyRenderX(int i, double alpha) {
+        return enemyPrevX[i] + (enemyX[i] - enemyPrevX[i]) * alpha;
+    }
+
+    public double enemyRenderZ(int i, double alpha) {
+        return enemyPrevZ[i] + (enemyZ[i] - enemyPrevZ[i]) * alpha;
+    }
+
+    public double enemyDirX(int i) {
+        return enemyDirX[i];
+    }
+
+    public double enemyDirZ(int i) {
+        return enemyDirZ[i];
+    }
+
+    public int enemyFrame(int i) {
+        return enemyFrame[i];
+    }
+
+    public int enemyDirRow(int i) {
+        return enemyDirRow[i];
+    }
+}